@@ -26,6 +26,7 @@ package org.oobium.app.http;
  *   <tr><td>{@link #showAll}</td><td>GET</td><td>/{models}</td><td>show all models</td></tr>
  *   <tr><td>{@link #showEdit}</td><td>GET</td><td>/{models}/{id}/edit</td><td>return an HTML form to edit a specific model</td></tr>
  *   <tr><td>{@link #showNew}</td><td>GET</td><td>/{models}/new</td><td>return an HTML form to create a new model</td></tr>
+ *   <tr><td>{@link #batch}</td><td>POST</td><td>/{models}/batch</td><td>create, update, destroy or show many models in one request</td></tr>
  * </table>
  * <p>{models} refers to the plural of the model name that this action is used with; for example, the showAll path
  * for the Post model would be: "/posts" and it purpose would be to show all models of type Post.</p>
@@ -86,11 +87,20 @@ public enum Action {
 	 * @see HttpRequest.Type#GET
 	 * @see Controller#showNew()
 	 */
-	showNew;
+	showNew,
+
+	/**
+	 * Create, update, destroy or show a list of model objects in a single request.<br/>
+	 * By convention, uses the POST request type and calls the controller's batch method.
+	 * @see HttpRequest.Type#POST
+	 * @see Controller#batch()
+	 */
+	batch;
 
 	public String getMethod() {
 		switch(this) {
 		case create:	return "POST";
+		case batch:		return "POST";
 		case update:	return "PUT";
 		case destroy:	return "DELETE";
 		default:		return "GET";
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.oobium.app.handlers.HttpRequest404Handler;
@@ -51,6 +52,7 @@ import org.oobium.persist.NullPersistServiceException;
 import org.oobium.persist.PersistClient;
 import org.oobium.persist.PersistService;
 import org.oobium.persist.PersistServiceProvider;
+import org.oobium.persist.QueryCounter;
 import org.oobium.pipeline.AssetPipeline;
 import org.oobium.pipeline.PipelinedAsset;
 import org.oobium.utils.Config;
@@ -101,7 +103,7 @@ public class AppService extends ModuleService implements HttpRequestHandler, Htt
 	private PersistServices persistServices;
 	private ServiceTracker moduleTracker;
 	
-	private AssetPipeline pipeline;
+	private volatile AssetPipeline pipeline;
 	private ServiceTracker pipelineTracker;
 
 	private ServiceRegistration request404HandlerRegistration;
@@ -344,11 +346,19 @@ public class AppService extends ModuleService implements HttpRequestHandler, Htt
 		logger.debug("start handleRequest - {}: {}", getName(), request.getPath());
 		
 		// TODO rethink external routers
+		AssetPipeline pipeline = this.pipeline;
 		if(pipeline != null) {
 			if(request.getMethod() == HttpMethod.GET) {
 				PipelinedAsset asset = pipeline.getAsset(request.getPath());
-				if(asset != null && asset.isFile()) {
-					return new StaticResponse((File) asset.getPayload());
+				if(asset != null) {
+					if(asset.isFile()) {
+						return new StaticResponse((File) asset.getPayload());
+					}
+					// the location is fingerprinted, so the content at it never changes
+					StaticResponse response = new StaticResponse(asset.getMimeType(), asset.getPayload(), asset.getLength(), asset.getLastModified());
+					response.setHeader(HttpHeaders.Names.CACHE_CONTROL, "public, max-age=31536000");
+					response.setETag(asset.getETag());
+					return response;
 				}
 			}
 		}
@@ -367,6 +377,7 @@ public class AppService extends ModuleService implements HttpRequestHandler, Htt
 						persistServices.openSession(getPersistClientName());
 						Model.setLogger(logger);
 						Model.setPersistServiceProvider(persistServices);
+						QueryCounter.reset();
 						try {
 							Response response = httpHandler.routeRequest(request);
 							if(running) {
@@ -374,6 +385,9 @@ public class AppService extends ModuleService implements HttpRequestHandler, Htt
 							}
 							return response;
 						} finally {
+							if(logger.isLoggingDebug()) {
+								logger.debug("{} queries for {}", QueryCounter.getCount(), request.getPath());
+							}
 							if(running) {
 								persistServices.closeSession();
 								Model.setPersistServiceProvider(null);
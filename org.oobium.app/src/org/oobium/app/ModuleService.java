@@ -33,6 +33,7 @@ import org.oobium.persist.Model;
 import org.oobium.persist.Observer;
 import org.oobium.utils.Config;
 import org.oobium.utils.StringUtils;
+import org.oobium.utils.coercion.TypeCoercer;
 import org.oobium.utils.json.JsonUtils;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
@@ -440,6 +441,7 @@ public abstract class ModuleService implements BundleActivator {
 		if(this instanceof AppService) {
 			((AppService) this).stopApp();
 		}
+		TypeCoercer.clearCache(); // release this module's classes
 
 		logger.info(toString() + " stopped");
 		logger.setTag(null);
@@ -10,8 +10,13 @@
  ******************************************************************************/
 package org.oobium.app.controllers;
 
+import static org.oobium.app.http.Action.create;
+import static org.oobium.app.http.Action.destroy;
+import static org.oobium.app.http.Action.show;
+import static org.oobium.app.http.Action.showAll;
 import static org.oobium.app.http.Action.showEdit;
 import static org.oobium.app.http.Action.showNew;
+import static org.oobium.app.http.Action.update;
 import static org.oobium.app.http.MimeType.CSS;
 import static org.oobium.app.http.MimeType.JS;
 import static org.oobium.app.http.MimeType.JSON;
@@ -25,8 +30,8 @@ import static org.oobium.utils.StringUtils.plural;
 import static org.oobium.utils.StringUtils.underscored;
 import static org.oobium.utils.StringUtils.varName;
 import static org.oobium.utils.coercion.TypeCoercer.coerce;
-import static org.oobium.utils.json.JsonUtils.format;
 import static org.oobium.utils.json.JsonUtils.toJson;
+import static org.oobium.utils.json.JsonUtils.toList;
 import static org.oobium.utils.json.JsonUtils.toMap;
 import static org.oobium.utils.json.JsonUtils.toStringMap;
 import static org.oobium.utils.literal.Map;
@@ -36,6 +41,8 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -47,21 +54,26 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.handler.codec.http.Cookie;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.util.CharsetUtil;
 import org.oobium.app.AppService;
 import org.oobium.app.http.Action;
 import org.oobium.app.http.MimeType;
 import org.oobium.app.request.Request;
 import org.oobium.app.response.Response;
 import org.oobium.app.response.StaticResponse;
+import org.oobium.app.response.StreamingResponse;
 import org.oobium.app.routing.AppRouter;
 import org.oobium.app.routing.IPathRouting;
 import org.oobium.app.routing.IUrlRouting;
@@ -88,11 +100,19 @@ import org.oobium.utils.Base64;
 import org.oobium.utils.Config.Mode;
 import org.oobium.utils.FileUtils;
 import org.oobium.utils.StringUtils;
+import org.oobium.utils.json.JsonUtils;
+import org.oobium.utils.json.JsonWritable;
+import org.oobium.utils.json.JsonWriter;
 
 public class HttpController implements IFlash, IParams, IPathRouting, IUrlRouting, ISessions, IHttp {
 
 	public static final String PARAM_ID = "id";
 	
+	/**
+	 * The largest number of requests that {@link #batch()} will run in a single call.
+	 */
+	public static final int MAX_BATCH_SIZE = 1000;
+	
 	public static final String FLASH_KEY = "oobium_flash";
 	public static final String FLASH_ERROR = "error";
 	public static final String FLASH_NOTICE = "notice";
@@ -318,6 +338,118 @@ public class HttpController implements IFlash, IParams, IPathRouting, IUrlRoutin
 		return false;
 	}
 	
+	/**
+	 * POST url/[model]s/batch
+	 * <p>Runs a list of requests through this controller's own create, update, destroy, show or showAll method
+	 * (and its filters), one after another, so that a client can save or retrieve many models in a single
+	 * round trip. The action is given in the "action" parameter, and the requests in the "requests"
+	 * parameter as a JSON array of parameter maps; each map holds the same parameters that the single
+	 * request would have had (model[field] values, the id, or the query and values).</p>
+	 * <p>Renders a JSON array with an entry for each request, in order, holding its status and, if present,
+	 * its id header and body: [{"status":201,"id":"1"},{"status":409,"body":{...}},...]</p>
+	 * <p>Only actions that the router also has a route for, on this controller, can be batched (403 Forbidden
+	 * otherwise), so that publishing the batch route does not publish any other action; and no more than
+	 * {@value #MAX_BATCH_SIZE} requests are run at a time (413 Request Entity Too Large otherwise).</p>
+	 * @throws Exception
+	 */
+	public void batch() throws Exception {
+		String name = getParam("action", String.class);
+		Action batchAction = null;
+		for(Action a : new Action[] { create, update, destroy, show, showAll }) {
+			if(a.name().equals(name)) {
+				batchAction = a;
+			}
+		}
+		if(batchAction == null) {
+			render(HttpResponseStatus.BAD_REQUEST, "invalid batch action: " + name);
+			return;
+		}
+		if(router == null || !router.hasRoute(getClass(), batchAction, parentClass, parentField)) {
+			render(HttpResponseStatus.FORBIDDEN, "batch action is not routed: " + name);
+			return;
+		}
+
+		Object o = getParam("requests");
+		List<?> requests = (o instanceof List) ? (List<?>) o : toList(coerce(o).to(String.class));
+		if(requests.size() > MAX_BATCH_SIZE) {
+			render(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, "too many batch requests: " + requests.size() + " (the maximum is " + MAX_BATCH_SIZE + ")");
+			return;
+		}
+		final List<Response> responses = new ArrayList<Response>(requests.size());
+		
+		Action action = this.action;
+		Map<String, Object> params = this.params;
+		try {
+			for(Object request : requests) {
+				Map<String, Object> requestParams = new HashMap<String, Object>();
+				if(request instanceof Map) {
+					for(Entry<?, ?> entry : ((Map<?, ?>) request).entrySet()) {
+						requestParams.put(String.valueOf(entry.getKey()), entry.getValue());
+					}
+				}
+				if(routeParams != null) {
+					requestParams.putAll(routeParams);
+				}
+				this.params = mapParams(requestParams);
+				this.action = batchAction;
+				this.response = null;
+				this.isRendered = false;
+				try {
+					callFilters(true);
+					if(!isRendered) {
+						switch(batchAction) {
+						case create:	create();	break;
+						case update:	update();	break;
+						case destroy:	destroy();	break;
+						case show:		show();		break;
+						case showAll:	showAll();	break;
+						}
+					}
+					callFilters(false);
+				} catch(Exception e) {
+					logger.warn(e);
+					this.response = new Response(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+				}
+				responses.add(this.response);
+			}
+		} finally {
+			this.action = action;
+			this.params = params;
+			this.response = null;
+			this.isRendered = false;
+		}
+
+		render(JSON, null, false, new JsonWritable() {
+			@Override
+			public void writeJson(JsonWriter writer) throws IOException {
+				writer.beginArray();
+				for(Response response : responses) {
+					writer.beginObject();
+					if(response == null) {
+						writer.name("status").value(HttpResponseStatus.NOT_FOUND.getCode());
+					} else {
+						writer.name("status").value(response.getStatus().getCode());
+						String id = response.getHeader(PARAM_ID);
+						if(id != null) {
+							writer.name("id").value(id);
+						}
+						String body = response.getContentAsString();
+						if(!blank(body)) {
+							writer.name("body");
+							if(response.getContentType() == JSON) {
+								writer.rawValue(body);
+							} else {
+								writer.value(body);
+							}
+						}
+					}
+					writer.endObject();
+				}
+				writer.endArray();
+			}
+		});
+	}
+	
 	/**
 	 * Code to be executed before the actual request handler.  A filter that either
 	 * renders or redirects will end the execution chain and all subsequent filters
@@ -463,6 +595,7 @@ public class HttpController implements IFlash, IParams, IPathRouting, IUrlRoutin
 						case showAll:	showAll();	break;
 						case showEdit:	showEdit();	break;
 						case showNew:	showNew();	break;
+						case batch:		batch();	break;
 						}
 					}
 					if(isRendered && response != null) {
@@ -1092,11 +1225,50 @@ public class HttpController implements IFlash, IParams, IPathRouting, IUrlRoutin
 	}
 	
 	public Response render(MimeType type, Collection<? extends Model> models) {
-		return render(type, (models == null) ? "null" : Model.toJson(models));
+		return render(type, models, null);
 	}
 	
-	public Response render(MimeType type, Collection<? extends Model> models, String include, Object...values) {
-		return render(type, (models == null) ? "null" : Model.toJson(models, include, values));
+	public Response render(MimeType type, final Collection<? extends Model> models, final String include, final Object...values) {
+		if(models == null) {
+			return render(type, "null");
+		}
+		return render(type, null, false, new JsonWritable() {
+			@Override
+			public void writeJson(JsonWriter writer) throws IOException {
+				Model.toJson(writer, models, include, values);
+			}
+		});
+	}
+	
+	/**
+	 * Write the JSON straight into the response's content buffer, rather than building it up as a String
+	 * (or several, one per nesting level) that is then copied into the buffer.
+	 * @param callback the name of a JSONP callback function to wrap the JSON in; may be null
+	 * @param format true if the JSON is to be formatted, the same as {@link JsonUtils#format(String)}
+	 */
+	private Response render(MimeType type, String callback, boolean format, JsonWritable json) {
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+		Writer out = new OutputStreamWriter(new ChannelBufferOutputStream(buffer), CharsetUtil.UTF_8);
+		try {
+			if(callback != null) {
+				out.append(callback).append('(');
+			}
+			JsonWriter writer = new JsonWriter(out);
+			writer.setFormat(format);
+			json.writeJson(writer);
+			if(callback != null) {
+				out.append(");");
+			}
+			out.close();
+		} catch(IOException e) {
+			// not thrown by a ChannelBufferOutputStream
+			throw new IllegalStateException(e);
+		}
+		rendering();
+		response = new Response();
+		response.setContentType(type);
+		response.setContent(buffer);
+		return response;
 	}
 	
 	public Response render(MimeType type, String body) {
@@ -1219,13 +1391,14 @@ public class HttpController implements IFlash, IParams, IPathRouting, IUrlRoutin
 		rendering();
 		
 		try {
-			response = new Response();
-			response.setContentType(MimeType.HTML);
+			StreamingResponse viewResponse = new StreamingResponse();
+			viewResponse.setContentType(MimeType.HTML);
+			response = viewResponse;
 			
 			ViewRenderer renderer = new ViewRenderer(this, view);
 			renderer.setPartial(partial);
 			
-			response.setContent(renderer.render());
+			viewResponse.setContentParts(renderer.renderParts());
 		} finally {
 			view.setRenderer(null);
 		}
@@ -1371,12 +1544,16 @@ public class HttpController implements IFlash, IParams, IPathRouting, IUrlRoutin
 		if(blank(models)) {
 			return render(MimeType.JSON, "[]");
 		}
-		String json = Model.toJson(models, include, values);
-		return render(MimeType.JSON, json);
+		return render(MimeType.JSON, models, include, values);
 	}
 
-	public Response renderJson(Object object) {
-		return render(MimeType.JSON, format(toJson(object)));
+	public Response renderJson(final Object object) {
+		return render(MimeType.JSON, null, true, new JsonWritable() {
+			@Override
+			public void writeJson(JsonWriter writer) throws IOException {
+				writer.value(object);
+			}
+		});
 	}
 	
 	/**
@@ -1386,15 +1563,18 @@ public class HttpController implements IFlash, IParams, IPathRouting, IUrlRoutin
 	 * See http://api.jquery.com/jQuery.ajax/ for more details.</p>
 	 * @param object the object to be rendered as JSON data
 	 */
-	public Response renderJsonP(Object object) {
+	public Response renderJsonP(final Object object) {
 		String callbackName = param("callback", String.class); // standard JQuery jsonp implementation
 		if(callbackName == null) {
 			logger.warn("error in renderJsonP: no 'callback' parameter in request");
 			return render(JS, "alert('error in renderJsonP: no callback parameter in request')");
 		}
-		String json = format(toJson(object));
-		String callback = callbackName + "(" + json + ");";
-		return render(MimeType.JS, callback);
+		return render(MimeType.JS, callbackName, true, new JsonWritable() {
+			@Override
+			public void writeJson(JsonWriter writer) throws IOException {
+				writer.value(object);
+			}
+		});
 	}
 
 	public Response renderOK() {
@@ -19,8 +19,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.oobium.persist.ListCursor;
 import org.oobium.persist.Model;
 import org.oobium.persist.ModelAdapter;
+import org.oobium.persist.ModelCursor;
 import org.oobium.persist.PersistService;
 import org.oobium.persist.ServiceInfo;
 import org.oobium.utils.json.JsonUtils;
@@ -157,6 +159,11 @@ public class MemoryPersistService implements PersistService {
 		throw new Exception(msg);
 	}
 
+	@Override
+	public <T extends Model> ModelCursor<T> findEach(Class<T> clazz, String where, Object... values) throws Exception {
+		return new ListCursor<T>(findAll(clazz, where, values));
+	}
+
 	@Override
 	public ServiceInfo getInfo() {
 		return new ServiceInfo() {
@@ -212,6 +219,11 @@ public class MemoryPersistService implements PersistService {
 		throw new UnsupportedOperationException("not yet implemented");
 	}
 
+	@Override
+	public void retrieve(Model[] models, String hasMany) throws Exception {
+		throw new UnsupportedOperationException("not yet implemented");
+	}
+
 	@Override
 	public void update(Model...models) throws Exception {
 		for(Model model : models) {
@@ -18,6 +18,8 @@ import java.io.File;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.oobium.app.http.MimeType;
+import org.oobium.app.server.StaticFileCache;
+import org.oobium.app.server.StaticFileCache.FileInfo;
 
 public class StaticResponse extends Response {
 
@@ -34,10 +36,15 @@ public class StaticResponse extends Response {
 	}
 	
 	
-	private final Object payload;
+	private Object payload;
 
 	public StaticResponse(File file) {
-		this(OK, getMimeType(file), file, Long.toString(file.length()), httpDate(file.lastModified()), isGzipped(file));
+		this(file, StaticFileCache.get(file));
+	}
+	
+	private StaticResponse(File file, FileInfo info) {
+		this(OK, getMimeType(file), file, Long.toString(info.length), info.httpDate, isGzipped(file));
+		setETag(info.getETag());
 	}
 	
 	public StaticResponse(MimeType type, String payload) {
@@ -71,8 +78,34 @@ public class StaticResponse extends Response {
 		this.payload = payload;
 	}
 
+	public String getETag() {
+		return getHeader(HttpHeaders.Names.ETAG);
+	}
+
 	public Object getPayload() {
 		return payload;
 	}
 
+	/**
+	 * Replace the payload of this response (with a compressed variant of it, for example),
+	 * along with its Content-Length header.
+	 */
+	public void setPayload(Object payload, long length) {
+		this.payload = payload;
+		setHeader(HttpHeaders.Names.CONTENT_LENGTH, Long.toString(length));
+	}
+
+	/**
+	 * Set the ETag header, which is compared with a conditional GET's If-None-Match header
+	 * so that an unchanged payload is not sent again.
+	 * @param etag a quoted entity tag, or null to remove the header
+	 */
+	public void setETag(String etag) {
+		if(etag == null) {
+			removeHeader(HttpHeaders.Names.ETAG);
+		} else {
+			setHeader(HttpHeaders.Names.ETAG, etag);
+		}
+	}
+
 }
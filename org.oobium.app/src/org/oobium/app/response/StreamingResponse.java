@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.app.response;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.stream.ChunkedInput;
+import org.jboss.netty.util.CharsetUtil;
+
+/**
+ * A Response whose content (UTF-8) is held as the character sequences it was rendered into (a view's head and
+ * body, for instance) rather than as a single, already encoded, buffer.
+ * <p>The server can {@link #stream(int)} the content: each sequence is encoded directly into chunk sized
+ * buffers as the channel is ready for them, which are then sent as HTTP chunks. Otherwise, the content is
+ * encoded the first time {@link #getContent()} is called, without first being joined into a single String.</p>
+ */
+public class StreamingResponse extends Response {
+
+	private static class Chunks implements ChunkedInput {
+
+		private final CharSequence[] parts;
+		private final CharsetEncoder encoder;
+		private final int chunkSize;
+		private int index;
+		private CharBuffer in;
+		private boolean flushed;
+		private boolean done;
+
+		Chunks(CharSequence[] parts, int chunkSize) {
+			if(chunkSize < 16) {
+				throw new IllegalArgumentException("chunkSize must be at least 16 (bytes)");
+			}
+			this.parts = parts;
+			this.encoder = CharsetUtil.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		public void close() {
+			in = null;
+			done = true;
+		}
+
+		/**
+		 * Encode as much of the remaining content as fits into the given buffer.
+		 */
+		private void fill(ByteBuffer out) {
+			while(!flushed) {
+				boolean endOfInput = (index == parts.length);
+				if(in != null && encoder.encode(in, out, endOfInput).isOverflow()) {
+					return;
+				}
+				if(endOfInput) {
+					if(encoder.flush(out).isOverflow()) {
+						return;
+					}
+					flushed = true;
+					return;
+				}
+				CharSequence part = parts[index++];
+				if(part == null) {
+					part = "";
+				}
+				if(in != null && in.hasRemaining()) {
+					// a surrogate pair split across two parts
+					in = CharBuffer.wrap(in.toString() + part);
+				} else {
+					in = CharBuffer.wrap(part);
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNextChunk() {
+			return !done;
+		}
+
+		@Override
+		public boolean isEndOfInput() {
+			return done;
+		}
+
+		@Override
+		public Object nextChunk() {
+			ChannelBuffer buffer = nextBuffer();
+			if(buffer == null) {
+				if(done) {
+					return null;
+				}
+				done = true;
+				return HttpChunk.LAST_CHUNK;
+			}
+			return new DefaultHttpChunk(buffer);
+		}
+
+		/**
+		 * @return the next buffer of encoded content, or null if there is no more content.
+		 */
+		ChannelBuffer nextBuffer() {
+			if(done || flushed) {
+				return null;
+			}
+			byte[] bytes = new byte[chunkSize];
+			ByteBuffer out = ByteBuffer.wrap(bytes);
+			fill(out);
+			if(out.position() == 0) {
+				return null;
+			}
+			return ChannelBuffers.wrappedBuffer(bytes, 0, out.position());
+		}
+
+	}
+
+
+	private CharSequence[] parts;
+
+	public StreamingResponse() {
+		super();
+	}
+
+	@Override
+	public ChannelBuffer getContent() {
+		if(parts != null) {
+			CharSequence[] parts = this.parts;
+			this.parts = null;
+			int length = getLength(parts);
+			Chunks chunks = new Chunks(parts, Math.max(256, length + 16));
+			List<ChannelBuffer> buffers = new ArrayList<ChannelBuffer>(1);
+			ChannelBuffer buffer;
+			while((buffer = chunks.nextBuffer()) != null) {
+				buffers.add(buffer);
+			}
+			switch(buffers.size()) {
+			case 0:  super.setContent(ChannelBuffers.EMPTY_BUFFER); break;
+			case 1:  super.setContent(buffers.get(0)); break;
+			default: super.setContent(ChannelBuffers.wrappedBuffer(buffers.toArray(new ChannelBuffer[buffers.size()])));
+			}
+		}
+		return super.getContent();
+	}
+
+	private static int getLength(CharSequence[] parts) {
+		int length = 0;
+		for(CharSequence part : parts) {
+			if(part != null) {
+				length += part.length();
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * @return the number of characters in the content that has not yet been encoded; or -1 if it has already been encoded.
+	 */
+	public int getLength() {
+		return (parts != null) ? getLength(parts) : -1;
+	}
+
+	/**
+	 * @return true if the content has not yet been encoded, and can therefore still be streamed
+	 */
+	public boolean isStreamable() {
+		return parts != null;
+	}
+
+	@Override
+	public void setContent(ChannelBuffer content) {
+		this.parts = null;
+		super.setContent(content);
+	}
+
+	/**
+	 * Set the content of this response to the given character sequences, in order. The sequences are
+	 * held onto, as-is, until the content is sent or {@link #getContent()} is called, so they must not be
+	 * modified after this method has been called.
+	 */
+	public void setContentParts(CharSequence...parts) {
+		setContent(ChannelBuffers.EMPTY_BUFFER);
+		this.parts = parts;
+	}
+
+	/**
+	 * Switch this response to the chunked transfer encoding and return the input that produces its
+	 * content as HTTP chunks of, at most, the given size (in bytes). The response itself must then be
+	 * written before the returned input.
+	 * @throws IllegalStateException if the content has already been encoded
+	 */
+	public ChunkedInput stream(int chunkSize) {
+		if(parts == null) {
+			throw new IllegalStateException("content has already been encoded");
+		}
+		Chunks chunks = new Chunks(parts, chunkSize);
+		parts = null;
+		removeHeader(HttpHeaders.Names.CONTENT_LENGTH);
+		setHeader(HttpHeaders.Names.TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+		setChunked(true);
+		return chunks;
+	}
+
+}
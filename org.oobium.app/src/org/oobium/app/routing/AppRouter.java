@@ -29,7 +29,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.jboss.netty.handler.codec.http.HttpMethod;
@@ -251,7 +250,7 @@ public class AppRouter extends Router implements IPathRouting, IUrlRouting {
 		return null;
 	}
 
-	private String[][] getParams(Route cr, Matcher matcher) {
+	private String[][] getParams(Route cr, RouteTree.Match match) {
 		String[][] params;
 		String[][] cparams = cr.params();
 		if(cparams == null) {
@@ -261,11 +260,11 @@ public class AppRouter extends Router implements IPathRouting, IUrlRouting {
 			for(int i = 0; i < params.length; i++) {
 				params[i] = new String[] { cparams[i][0], cparams[i][1] };
 			}
-			if(matcher.groupCount() > 0) {
+			if(match.groupCount() > 0) {
 				int group = 1;
 				for(int i = 0; i < params.length; i++) {
 					if(params[i][1] == null) {
-						params[i][1] = decode(matcher.group(group++));
+						params[i][1] = decode(match.group(group++));
 					}
 				}
 			}
@@ -395,37 +394,32 @@ public class AppRouter extends Router implements IPathRouting, IUrlRouting {
 	}
 	
 	private RouteHandler getPatternRouteHandler(Request request, Router router) {
-		if(router.patternRoutes != null) {
-			HttpMethod method = getMethod(request);
-			for(Route route : router.patternRoutes) {
-				if(route.httpMethod == method) {
-					Matcher matcher = route.matcher(route.matchOnFullPath ? request.getUri() : request.getPath());
-					if(matcher.matches()) {
-						route = getRoute(route, router, request);
-						switch(route.type) {
-						case Route.ASSET:
-						case Route.AUTHORIZATION:
-							throw new UnsupportedOperationException();
-						case Route.FILE_DIRECTORY:
-							FileDirectoryRoute fr = (FileDirectoryRoute) route;
-							return new FileDirectoryHandler(router, fr.basePath, matcher.group(1));
-						case Route.HTTP_CONTROLLER:
-							HttpRoute cr = (HttpRoute) route;
-							RouteHandler unauth = checkAuthorization(request, router, cr);
-							return (unauth != null) ? unauth : new HttpHandler(router, cr.controllerClass, cr.action, cr.parentClass, cr.hasManyField, getParams(cr, matcher));
-						case Route.REDIRECT:
-							RedirectRoute rr = (RedirectRoute) route;
-							return new RedirectHandler(router, rr.to);
-						case Route.VIEW:
-							ViewRoute vr = (ViewRoute) route;
-							return new ViewHandler(router, vr.viewClass, vr.params);
-						case Route.WEBSOCKET:
-							WebsocketRoute wr = (WebsocketRoute) route;
-							return new WebsocketHandler(router, wr.controllerClass, wr.group, getParams(wr, matcher));
-						default:
-							throw new IllegalStateException("unknown route type: " + route.type);
-						}
-					}
+		if(router.routeTree != null) {
+			RouteTree.Match match = router.routeTree.match(getMethod(request), request.getPath(), request.getUri());
+			if(match != null) {
+				Route route = getRoute(match.route, router, request);
+				switch(route.type) {
+				case Route.ASSET:
+				case Route.AUTHORIZATION:
+					throw new UnsupportedOperationException();
+				case Route.FILE_DIRECTORY:
+					FileDirectoryRoute fr = (FileDirectoryRoute) route;
+					return new FileDirectoryHandler(router, fr.basePath, match.group(1));
+				case Route.HTTP_CONTROLLER:
+					HttpRoute cr = (HttpRoute) route;
+					RouteHandler unauth = checkAuthorization(request, router, cr);
+					return (unauth != null) ? unauth : new HttpHandler(router, cr.controllerClass, cr.action, cr.parentClass, cr.hasManyField, getParams(cr, match));
+				case Route.REDIRECT:
+					RedirectRoute rr = (RedirectRoute) route;
+					return new RedirectHandler(router, rr.to);
+				case Route.VIEW:
+					ViewRoute vr = (ViewRoute) route;
+					return new ViewHandler(router, vr.viewClass, vr.params);
+				case Route.WEBSOCKET:
+					WebsocketRoute wr = (WebsocketRoute) route;
+					return new WebsocketHandler(router, wr.controllerClass, wr.group, getParams(wr, match));
+				default:
+					throw new IllegalStateException("unknown route type: " + route.type);
 				}
 			}
 		}
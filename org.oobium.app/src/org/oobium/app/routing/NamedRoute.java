@@ -75,6 +75,7 @@ public class NamedRoute {
 		case showAll:	route = router.addRoute(name, name, clazz, action);					break;
 		case showEdit:	route = router.addRoute(name, name + "/{id}/edit", clazz, action);	break;
 		case showNew:	route = router.addRoute(name, name + "/new", clazz, action);		break;
+		case batch:		route = router.addRoute(name, name + "/batch", clazz, action);		break;
 		default:
 			throw new IllegalArgumentException("unknown action: " + action);
 		}
@@ -0,0 +1,410 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.app.routing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import org.jboss.netty.handler.codec.http.HttpMethod;
+
+/**
+ * A segment tree of pattern routes, keyed by HttpMethod, that allows a request path
+ * to be matched against all routes in a single pass.<br/>
+ * Each route is broken into its path segments when it is added: segments that are plain text
+ * become static children, segments that are a single word capture ("(\w+)", as created for
+ * the {id} and un-typed variables) become capture children, and FileDirectoryRoutes end in
+ * a wildcard tail. Routes that cannot be broken down this way (custom regular expressions,
+ * routes that match on the query string, etc.) are kept in a separate list and are only
+ * checked with their regular expression when they were added before the best tree match.
+ * <p>This class is not synchronized; Router is responsible for keeping it in step with its patternRoutes.</p>
+ */
+class RouteTree {
+
+	/**
+	 * The result of a successful match: the matched route and its captured groups.
+	 * Groups are indexed the same as {@link Matcher#group(int)}, starting at 1.
+	 */
+	static class Match {
+
+		final Route route;
+		private final String[] groups;
+
+		private Match(Route route, String[] groups) {
+			this.route = route;
+			this.groups = groups;
+		}
+
+		String group(int group) {
+			return groups[group-1];
+		}
+
+		int groupCount() {
+			return groups.length;
+		}
+
+	}
+
+	private static class Entry {
+
+		final Route route;
+		final int order;
+		Entry next;
+
+		Entry(Route route, int order) {
+			this.route = route;
+			this.order = order;
+		}
+
+	}
+
+	private static class Node {
+
+		Map<String, Node> statics;
+		Node capture;
+		Entry route;
+		Entry tail;
+
+		boolean isEmpty() {
+			return statics == null && capture == null && route == null && tail == null;
+		}
+
+	}
+
+	private static final String CAPTURE = "(\\w+)";
+	private static final String TAIL = "/(.+)";
+
+
+	/**
+	 * @return the segments of the given pattern, or null if the pattern cannot be placed in the tree
+	 */
+	private static String[] segments(Route route) {
+		if(route.pattern == null || route.matchOnFullPath) {
+			return null;
+		}
+
+		String pattern = route.pattern.pattern();
+
+		if(route.type == Route.FILE_DIRECTORY) {
+			// pattern is: "{path}|{path}/(.+)"
+			int ix = pattern.indexOf('|');
+			if(ix == -1) {
+				return null;
+			}
+			String path = pattern.substring(0, ix);
+			if(!pattern.equals(path + "|" + path + TAIL) || !isStatic(path)) {
+				return null;
+			}
+			return split(path);
+		}
+
+		String[] segments = split(pattern);
+		for(String segment : segments) {
+			if(!CAPTURE.equals(segment) && !isStatic(segment)) {
+				return null;
+			}
+		}
+		return segments;
+	}
+
+	private static boolean isStatic(String segment) {
+		for(int i = 0; i < segment.length(); i++) {
+			switch(segment.charAt(i)) {
+			case '\\': case '.': case '[': case ']': case '{': case '}': case '(': case ')':
+			case '*': case '+': case '?': case '^': case '$': case '|':
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isWord(String path, int start, int end) {
+		if(start == end) {
+			return false;
+		}
+		for(int i = start; i < end; i++) {
+			char c = path.charAt(i);
+			if(!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * split on '/', keeping empty segments (a leading '/' results in an empty first segment)
+	 */
+	private static String[] split(String path) {
+		List<String> segments = new ArrayList<String>();
+		int s0 = 0;
+		for(int s1 = path.indexOf('/'); s1 != -1; s1 = path.indexOf('/', s0)) {
+			segments.add(path.substring(s0, s1));
+			s0 = s1 + 1;
+		}
+		segments.add(path.substring(s0));
+		return segments.toArray(new String[segments.size()]);
+	}
+
+
+	/**
+	 * add the given entry to the end of the given chain; entries are always added
+	 * in increasing order so the head of a chain is always its earliest route
+	 */
+	private static Entry append(Entry head, Entry entry) {
+		if(head == null) {
+			return entry;
+		}
+		Entry e = head;
+		while(e.next != null) {
+			e = e.next;
+		}
+		e.next = entry;
+		return head;
+	}
+
+	private static Entry remove(Entry head, Route route) {
+		if(head == null) {
+			return null;
+		}
+		if(head.route.equals(route)) {
+			return head.next;
+		}
+		for(Entry e = head; e.next != null; e = e.next) {
+			if(e.next.route.equals(route)) {
+				e.next = e.next.next;
+				break;
+			}
+		}
+		return head;
+	}
+
+
+	private final Map<HttpMethod, Node> roots;
+	private final Map<HttpMethod, List<Entry>> regexRoutes;
+	private int order;
+
+	RouteTree() {
+		roots = new HashMap<HttpMethod, Node>();
+		regexRoutes = new HashMap<HttpMethod, List<Entry>>();
+	}
+
+	void add(Route route) {
+		String[] segments = segments(route);
+		if(segments == null) {
+			List<Entry> entries = regexRoutes.get(route.httpMethod);
+			if(entries == null) {
+				entries = new ArrayList<Entry>();
+				regexRoutes.put(route.httpMethod, entries);
+			}
+			entries.add(new Entry(route, order++));
+		} else {
+			Node node = roots.get(route.httpMethod);
+			if(node == null) {
+				node = new Node();
+				roots.put(route.httpMethod, node);
+			}
+			for(String segment : segments) {
+				if(CAPTURE.equals(segment)) {
+					if(node.capture == null) {
+						node.capture = new Node();
+					}
+					node = node.capture;
+				} else {
+					if(node.statics == null) {
+						node.statics = new HashMap<String, Node>();
+					}
+					Node child = node.statics.get(segment);
+					if(child == null) {
+						child = new Node();
+						node.statics.put(segment, child);
+					}
+					node = child;
+				}
+			}
+			Entry entry = new Entry(route, order++);
+			if(route.type == Route.FILE_DIRECTORY) {
+				node.tail = append(node.tail, entry);
+			} else {
+				node.route = append(node.route, entry);
+			}
+		}
+	}
+
+	void clear() {
+		roots.clear();
+		regexRoutes.clear();
+	}
+
+	boolean isEmpty() {
+		return roots.isEmpty() && regexRoutes.isEmpty();
+	}
+
+	/**
+	 * Find the first route (in the order that they were added) for the given method that matches the request.
+	 * @param method the HttpMethod of the request
+	 * @param path the path of the request (without the query string)
+	 * @param uri the full uri of the request (with the query string)
+	 * @return a {@link Match} for the first matching route, or null if no routes match
+	 */
+	Match match(HttpMethod method, String path, String uri) {
+		Entry best = null;
+		String[] captures = null;
+
+		Node root = roots.get(method);
+		if(root != null) {
+			int count = 0;
+			for(int i = 0; i < path.length(); i++) {
+				if(path.charAt(i) == '/') count++;
+			}
+			int[] starts = new int[count+1];
+			int[] ends = new int[count+1];
+			int s0 = 0;
+			for(int i = 0, s1 = path.indexOf('/'); s1 != -1; i++, s1 = path.indexOf('/', s0)) {
+				starts[i] = s0;
+				ends[i] = s1;
+				s0 = s1 + 1;
+			}
+			starts[count] = s0;
+			ends[count] = path.length();
+
+			Entry[] result = new Entry[1];
+			int[] groups = new int[count+1];
+			int[] found = match(root, path, starts, ends, 0, groups, 0, result, null);
+			if(result[0] != null) {
+				best = result[0];
+				captures = new String[found.length / 2];
+				for(int i = 0; i < captures.length; i++) {
+					int start = found[i*2];
+					int end = found[i*2+1];
+					captures[i] = (start == -1) ? null : path.substring(start, end);
+				}
+			}
+		}
+
+		List<Entry> entries = regexRoutes.get(method);
+		if(entries != null) {
+			for(Entry entry : entries) {
+				if(best != null && entry.order > best.order) {
+					break;
+				}
+				Route route = entry.route;
+				Matcher matcher = route.matcher(route.matchOnFullPath ? uri : path);
+				if(matcher.matches()) {
+					String[] groups = new String[matcher.groupCount()];
+					for(int i = 0; i < groups.length; i++) {
+						groups[i] = matcher.group(i+1);
+					}
+					return new Match(route, groups);
+				}
+			}
+		}
+
+		if(best != null) {
+			return new Match(best.route, captures);
+		}
+		return null;
+	}
+
+	/**
+	 * Depth first search of the tree for the entry with the lowest order that matches the given segments.
+	 * @return the start and end indexes of the captured groups of the best match, as pairs
+	 */
+	private int[] match(Node node, String path, int[] starts, int[] ends, int segment, int[] groups, int captures, Entry[] best, int[] found) {
+		if(node.tail != null && (best[0] == null || node.tail.order < best[0].order)) {
+			if(segment == starts.length) {
+				best[0] = node.tail;
+				found = new int[] { -1, -1 };
+			} else if(starts[segment] < path.length()) {
+				best[0] = node.tail;
+				found = new int[] { starts[segment], path.length() };
+			}
+		}
+
+		if(segment == starts.length) {
+			if(node.route != null && (best[0] == null || node.route.order < best[0].order)) {
+				best[0] = node.route;
+				found = new int[captures * 2];
+				for(int i = 0; i < captures; i++) {
+					found[i*2] = starts[groups[i]];
+					found[i*2+1] = ends[groups[i]];
+				}
+			}
+			return found;
+		}
+
+		if(node.statics != null) {
+			Node child = node.statics.get(path.substring(starts[segment], ends[segment]));
+			if(child != null) {
+				found = match(child, path, starts, ends, segment+1, groups, captures, best, found);
+			}
+		}
+		if(node.capture != null && isWord(path, starts[segment], ends[segment])) {
+			groups[captures] = segment;
+			found = match(node.capture, path, starts, ends, segment+1, groups, captures+1, best, found);
+		}
+		return found;
+	}
+
+	void remove(Route route) {
+		String[] segments = segments(route);
+		if(segments == null) {
+			List<Entry> entries = regexRoutes.get(route.httpMethod);
+			if(entries != null) {
+				for(Iterator<Entry> iter = entries.iterator(); iter.hasNext(); ) {
+					if(iter.next().route.equals(route)) {
+						iter.remove();
+						break;
+					}
+				}
+				if(entries.isEmpty()) {
+					regexRoutes.remove(route.httpMethod);
+				}
+			}
+		} else {
+			Node root = roots.get(route.httpMethod);
+			if(root != null && remove(root, segments, 0, route)) {
+				roots.remove(route.httpMethod);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the given node is empty after the removal, and should itself be removed from its parent
+	 */
+	private boolean remove(Node node, String[] segments, int segment, Route route) {
+		if(segment == segments.length) {
+			if(route.type == Route.FILE_DIRECTORY) {
+				node.tail = remove(node.tail, route);
+			} else {
+				node.route = remove(node.route, route);
+			}
+		}
+		else if(CAPTURE.equals(segments[segment])) {
+			if(node.capture != null && remove(node.capture, segments, segment+1, route)) {
+				node.capture = null;
+			}
+		}
+		else if(node.statics != null) {
+			Node child = node.statics.get(segments[segment]);
+			if(child != null && remove(child, segments, segment+1, route)) {
+				node.statics.remove(segments[segment]);
+				if(node.statics.isEmpty()) {
+					node.statics = null;
+				}
+			}
+		}
+		return node.isEmpty();
+	}
+
+}
@@ -14,6 +14,7 @@ import static org.jboss.netty.handler.codec.http.HttpMethod.DELETE;
 import static org.jboss.netty.handler.codec.http.HttpMethod.GET;
 import static org.jboss.netty.handler.codec.http.HttpMethod.POST;
 import static org.jboss.netty.handler.codec.http.HttpMethod.PUT;
+import static org.oobium.app.http.Action.batch;
 import static org.oobium.app.http.Action.create;
 import static org.oobium.app.http.Action.destroy;
 import static org.oobium.app.http.Action.show;
@@ -132,6 +133,8 @@ public class Router {
 	boolean autoPublish;
 	Set<Route> published;
 	
+	RouteTree routeTree;
+	
 	public Router(ModuleService service) {
 		this.service = service;
 		this.logger = service.getLogger();
@@ -357,6 +360,7 @@ public class Router {
 	 *   <tr><td>GET</td><td>/{models}</td><td>{@link #showAll}</td><td>show all models</td></tr>
 	 *   <tr><td>GET</td><td>/{models}/{id}/edit</td><td>{@link #showEdit}</td><td>return an HTML form to edit a specific model</td></tr>
 	 *   <tr><td>GET</td><td>/{models}/new</td><td>{@link #showNew}</td><td>return an HTML form to create a new model</td></tr>
+	 *   <tr><td>POST</td><td>/{models}/batch</td><td>{@link #batch}</td><td>create, update, destroy or show many models in one request</td></tr>
 	 * </table>
 	 * <p>{models} refers to the plural of the given model name.<br/>
 	 * For example, if the given model class was
@@ -443,6 +447,7 @@ public class Router {
 			case showAll:	r = addResource(parsedRules[showAll.ordinal()],	clazz, action); break;
 			case showEdit:	r = addResource(parsedRules[showEdit.ordinal()],clazz, action); break;
 			case showNew:	r = addResource(parsedRules[showNew.ordinal()],	clazz, action); break;
+			case batch:		r = addResource(parsedRules[batch.ordinal()],	clazz, action); break;
 			default:
 				throw new IllegalArgumentException("unknown action: " + action);
 			}
@@ -522,8 +527,10 @@ public class Router {
 		} else {
 			if(patternRoutes == null) {
 				patternRoutes = new ArrayList<Route>();
+				routeTree = new RouteTree();
 			}
 			patternRoutes.add(route);
+			routeTree.add(route);
 		}
 	}
 	
@@ -545,6 +552,7 @@ public class Router {
 		case showAll:	type = GET;		break;
 		case showEdit:	type = GET;		break;
 		case showNew:	type = GET;		break;
+		case batch:		type = POST;	break;
 		default:
 			throw new IllegalArgumentException("unknown action: " + action);
 		}
@@ -580,6 +588,7 @@ public class Router {
 		case showAll:	type = GET;		break;
 		case showEdit:	type = GET;		break;
 		case showNew:	type = GET;		break;
+		case batch:		type = POST;	break;
 		default:
 			throw new IllegalArgumentException("unknown action: " + action);
 		}
@@ -664,6 +673,8 @@ public class Router {
 		if(patternRoutes != null) {
 			patternRoutes.clear();
 			patternRoutes = null;
+			routeTree.clear();
+			routeTree = null;
 		}
 		if(fixedRoutes != null) {
 			for(Map<?,?> map : fixedRoutes.values()) {
@@ -908,6 +919,7 @@ public class Router {
 			case showAll:	return "/{models}";
 			case showEdit:	return "/{models}/{id}/edit";
 			case showNew:	return "/{models}/new";
+			case batch:		return "/{models}/batch";
 			default:		throw new IllegalArgumentException("unknown action: " + action);
 			}
 		} else if(path.charAt(0) == '?') {
@@ -919,6 +931,7 @@ public class Router {
 			case showAll:	return "/{models}" + path;
 			case showEdit:	return "/{models}/{id}/edit" + path;
 			case showNew:	return "/{models}/new" + path;
+			case batch:		return "/{models}/batch" + path;
 			default:		throw new IllegalArgumentException("unknown action: " + action);
 			}
 		}
@@ -1012,6 +1025,29 @@ public class Router {
 		return getWebsockets(MODEL_NOTIFY_GROUP);
 	}
 	
+	/**
+	 * Whether or not this router has a route to the given action of the given controller class.
+	 * @param parentClass the parent class of a hasMany route; null for a resource route
+	 * @param parentField the hasMany field of the parent class; null for a resource route
+	 * @return true if a matching route has been added; false otherwise
+	 */
+	public boolean hasRoute(Class<? extends HttpController> controllerClass, Action action, Class<? extends Model> parentClass, String parentField) {
+		if(routes != null) {
+			for(Route[] ra : routes.values()) {
+				for(Route route : ra) {
+					if(route instanceof HttpRoute) {
+						HttpRoute r = (HttpRoute) route;
+						if(r.controllerClass == controllerClass && r.action == action && r.parentClass == parentClass &&
+								(r.hasManyField == null ? parentField == null : r.hasManyField.equals(parentField))) {
+							return true;
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+	
 	public boolean isAuthorized(Request request, Realm realm) {
 		String header = request.getHeader(HttpHeaders.Names.AUTHORIZATION);
 		if(header != null && header.startsWith("Basic ")) {
@@ -1097,7 +1133,7 @@ public class Router {
 			modelRules = path.substring(0, id[0]+1) + idRule + path.substring(id[1]);
 		}
 
-		String[] sa = new String[7];
+		String[] sa = new String[8];
 		sa[create.ordinal()] =   classRules;
 		sa[destroy.ordinal()] =  modelRules;
 		sa[update.ordinal()] =   modelRules;
@@ -1105,6 +1141,7 @@ public class Router {
 		sa[showAll.ordinal()] =  classRules;
 		sa[showEdit.ordinal()] = modelRules.contains("?") ? modelRules.replaceFirst("\\?", "/edit?") : modelRules + "/edit";
 		sa[showNew.ordinal()] =  classRules.contains("?") ? classRules.replaceFirst("\\?", "/new?") : classRules + "/new";
+		sa[batch.ordinal()] =    classRules.contains("?") ? classRules.replaceFirst("\\?", "/batch?") : classRules + "/batch";
 		
 		return sa;
 	}
@@ -1202,10 +1239,12 @@ public class Router {
 					Route route = iter.next();
 					if(route instanceof StaticRoute) {
 						iter.remove();
+						routeTree.remove(route);
 					}
 				}
 				if(patternRoutes.isEmpty()) {
 					patternRoutes = null;
+					routeTree = null;
 				}
 			}
 		}
@@ -1342,6 +1381,7 @@ public class Router {
 			case showAll:	removeResource(parsedRules[showAll.ordinal()],	clazz, action); break;
 			case showEdit:	removeResource(parsedRules[showEdit.ordinal()],clazz, action); break;
 			case showNew:	removeResource(parsedRules[showNew.ordinal()],	clazz, action); break;
+			case batch:		removeResource(parsedRules[batch.ordinal()],	clazz, action); break;
 			default:
 				throw new IllegalArgumentException("unknown action: " + action);
 			}
@@ -1369,8 +1409,10 @@ public class Router {
 		} else {
 			if(patternRoutes != null) {
 				patternRoutes.remove(route);
+				routeTree.remove(route);
 				if(patternRoutes.isEmpty()) {
 					patternRoutes = null;
+					routeTree = null;
 				}
 			}
 		}
@@ -1414,6 +1456,7 @@ public class Router {
 		case showAll:	type = GET;		break;
 		case showEdit:	type = GET;		break;
 		case showNew:	type = GET;		break;
+		case batch:		type = POST;	break;
 		default:
 			throw new IllegalArgumentException("unknown action: " + action);
 		}
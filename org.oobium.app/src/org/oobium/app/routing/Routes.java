@@ -136,6 +136,7 @@ public class Routes {
 				route = router.addRoute(key, rule + "/new", parentClass, field, hasManyClass, action);
 				updateParams(route, parentIdParam, hasManyParam);
 				break;
+			case batch:
 			case destroy:
 			case show:
 			case showEdit:
@@ -18,6 +18,7 @@ import org.oobium.app.response.StaticResponse;
 import org.oobium.app.response.Response;
 import org.oobium.app.routing.RouteHandler;
 import org.oobium.app.routing.Router;
+import org.oobium.app.server.StaticFileCache;
 
 public class AssetHandler extends RouteHandler {
 
@@ -25,6 +26,8 @@ public class AssetHandler extends RouteHandler {
 	private final MimeType type;
 	private final String length;
 	private final String lastModified;
+	private volatile URL url;
+	private volatile String etag;
 	
 	public AssetHandler(Router router, String assetPath, MimeType type, String length, String lastModified) {
 		super(router);
@@ -36,12 +39,20 @@ public class AssetHandler extends RouteHandler {
 
 	@Override
 	public Response routeRequest(Request request) throws Exception {
-		ClassLoader loader = router.getService().getClass().getClassLoader();
-		URL url = loader.getResource(assetPath);
-		if(url != null) {
-			return new StaticResponse(type, url, length, lastModified);
+		URL url = this.url;
+		if(url == null) {
+			ClassLoader loader = router.getService().getClass().getClassLoader();
+			url = loader.getResource(assetPath);
+			if(url == null) {
+				return null;
+			}
+			// the asset is in the bundle, so it won't change: hash it only once
+			etag = StaticFileCache.etag(url.openStream());
+			this.url = url;
 		}
-		return null;
+		StaticResponse response = new StaticResponse(type, url, length, lastModified);
+		response.setETag(etag);
+		return response;
 	}
 	
 	@Override
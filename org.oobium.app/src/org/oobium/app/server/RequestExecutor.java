@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.app.server;
+
+import static org.oobium.utils.coercion.TypeCoercer.coerce;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The executor that runs the {@link HandlerTask}s submitted by the {@link ServerHandler}.
+ * <p>Configured through the "executor" options of the primary {@link ServerConfig}:</p>
+ * <ul>
+ *   <li><b>executor.mode</b>: "bounded" (default) or "cached" (a new thread for every task when none are idle, with no limit)</li>
+ *   <li><b>executor.coreSize</b>: the number of threads kept alive when idle (default 16)</li>
+ *   <li><b>executor.maxSize</b>: the maximum number of threads (default 200)</li>
+ *   <li><b>executor.queueSize</b>: the number of tasks that can wait for a thread (default 1000)</li>
+ *   <li><b>executor.keepAlive</b>: seconds that threads above the core size may stay idle (default 60)</li>
+ *   <li><b>executor.retryAfter</b>: seconds sent in the Retry-After header of a 503 response (default 5)</li>
+ * </ul>
+ * In bounded mode a new thread is started for a task whenever no thread is idle, up to the maximum; only
+ * then are tasks queued. (A plain ThreadPoolExecutor does it the other way around, growing past its core size
+ * only once the queue is full.) When the queue is full and all threads are busy, a task is rejected by
+ * throwing a {@link RejectedExecutionException}; the ServerHandler answers these requests with a 503.
+ */
+public class RequestExecutor extends ThreadPoolExecutor {
+
+	public static final String OPTION_PREFIX = "executor.";
+
+	public static final String MODE = "executor.mode";
+	public static final String CORE_SIZE = "executor.coreSize";
+	public static final String MAX_SIZE = "executor.maxSize";
+	public static final String QUEUE_SIZE = "executor.queueSize";
+	public static final String KEEP_ALIVE = "executor.keepAlive";
+	public static final String RETRY_AFTER = "executor.retryAfter";
+
+	private static class RequestThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "oobium-request-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Refuses a task while there is no idle thread to take it and the pool can still grow, so that
+	 * the executor starts a new thread for it instead.
+	 */
+	private static class RequestQueue extends ArrayBlockingQueue<Runnable> {
+		private static final long serialVersionUID = 1L;
+		private volatile RequestExecutor executor;
+		RequestQueue(int capacity) {
+			super(capacity);
+		}
+		@Override
+		public boolean offer(Runnable r) {
+			RequestExecutor executor = this.executor;
+			if(executor != null) {
+				int poolSize = executor.getPoolSize();
+				if(executor.submitted.get() > poolSize && poolSize < executor.getMaximumPoolSize()) {
+					return false;
+				}
+			}
+			return super.offer(r);
+		}
+		boolean force(Runnable r) {
+			return super.offer(r);
+		}
+	}
+
+	private static class RejectionCounter implements RejectedExecutionHandler {
+		private final AtomicLong count = new AtomicLong();
+		@Override
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			if(!executor.isShutdown() && executor.getQueue() instanceof RequestQueue) {
+				if(((RequestQueue) executor.getQueue()).force(r)) {
+					return; // refused to start a thread, but the pool reached its maximum in the meantime
+				}
+			}
+			count.incrementAndGet();
+			throw new RejectedExecutionException("request executor saturated: " +
+					executor.getActiveCount() + " active, " + executor.getQueue().size() + " queued");
+		}
+	}
+
+	public static RequestExecutor create(ServerConfig config) {
+		Map<?,?> options = config.options();
+		int keepAlive = coerce(options.get(KEEP_ALIVE)).from(60);
+		int retryAfter = coerce(options.get(RETRY_AFTER)).from(5);
+		if("cached".equals(options.get(MODE))) {
+			return new RequestExecutor(0, Integer.MAX_VALUE, keepAlive, new SynchronousQueue<Runnable>(), retryAfter);
+		}
+		int coreSize = coerce(options.get(CORE_SIZE)).from(16);
+		int maxSize = coerce(options.get(MAX_SIZE)).from(200);
+		int queueSize = coerce(options.get(QUEUE_SIZE)).from(1000);
+		if(maxSize < coreSize) {
+			maxSize = coreSize;
+		}
+		BlockingQueue<Runnable> queue = (queueSize > 0) ? new RequestQueue(queueSize) : new SynchronousQueue<Runnable>();
+		return new RequestExecutor(coreSize, maxSize, keepAlive, queue, retryAfter);
+	}
+
+
+	private final RejectionCounter rejections;
+	private final int retryAfter;
+	private final AtomicInteger submitted; // tasks that are queued or running
+
+	private RequestExecutor(int coreSize, int maxSize, int keepAlive, BlockingQueue<Runnable> queue, int retryAfter) {
+		super(coreSize, maxSize, keepAlive, TimeUnit.SECONDS, queue, new RequestThreadFactory(), new RejectionCounter());
+		this.rejections = (RejectionCounter) getRejectedExecutionHandler();
+		this.retryAfter = retryAfter;
+		this.submitted = new AtomicInteger();
+		if(queue instanceof RequestQueue) {
+			((RequestQueue) queue).executor = this;
+		}
+	}
+
+	@Override
+	protected void afterExecute(Runnable r, Throwable t) {
+		submitted.decrementAndGet();
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		submitted.incrementAndGet();
+		try {
+			super.execute(command);
+		} catch(RejectedExecutionException e) {
+			submitted.decrementAndGet();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the number of tasks waiting for a thread
+	 */
+	public int getQueueDepth() {
+		return getQueue().size();
+	}
+
+	/**
+	 * @return the number of tasks that could still be queued before tasks are rejected
+	 */
+	public int getQueueRemaining() {
+		return getQueue().remainingCapacity();
+	}
+
+	/**
+	 * @return the total number of tasks rejected since this executor was created
+	 */
+	public long getRejectedCount() {
+		return rejections.count.get();
+	}
+
+	/**
+	 * @return the number of seconds to send in the Retry-After header of a rejected request
+	 */
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	@Override
+	public String toString() {
+		return "RequestExecutor {active: " + getActiveCount() + ", pool: " + getPoolSize() + "/" + getMaximumPoolSize() +
+				", queued: " + getQueueDepth() + ", rejected: " + getRejectedCount() + ", completed: " + getCompletedTaskCount() + "}";
+	}
+
+}
@@ -0,0 +1,535 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.app.server;
+
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.ACCEPT_ENCODING;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.CONTENT_ENCODING;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.CONTENT_LENGTH;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.ETAG;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.LAST_MODIFIED;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.RANGE;
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.VARY;
+import static org.jboss.netty.handler.codec.http.HttpMethod.GET;
+import static org.jboss.netty.handler.codec.http.HttpResponseStatus.OK;
+import static org.oobium.utils.coercion.TypeCoercer.coerce;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.stream.ChunkedInput;
+import org.jboss.netty.util.CharsetUtil;
+import org.oobium.app.response.StaticResponse;
+import org.oobium.app.response.StreamingResponse;
+import org.oobium.app.server.StaticFileCache.FileInfo;
+
+/**
+ * Negotiates the Content-Encoding of a response with its request's Accept-Encoding header, and compresses
+ * the response (gzip or deflate) if it is of an allowed MIME type and at least the threshold in size.
+ * <p>A static file is served from its precompressed ".gz" sibling, if there is an up to date one. Otherwise
+ * the compressed variants of static files and URLs are built once, and held in a bounded in-memory cache
+ * (least recently used first out). Other payloads, and dynamic content, are compressed for every response.</p>
+ * <p>A streamed view is compressed chunk by chunk as it is sent, each chunk flushed through the compressor so
+ * that the client can render it right away. That flush needs Java 7 or later: on Java 6 streamed views are
+ * left uncompressed, see {@link #canEncodeChunks()}.</p>
+ * <p>Configured with the server options:
+ * <ul>
+ * <li>compression.level: 1-9, or 0 to turn compression off (default 6)</li>
+ * <li>compression.threshold: the smallest response, in bytes, to compress (default 1024)</li>
+ * <li>compression.types: the MIME types to compress (default text, JSON, JavaScript, XML and SVG)</li>
+ * <li>compression.cacheSize: the bytes of compressed static variants to keep in memory (default 16MB)</li>
+ * <li>compression.maxStaticSize: the largest static payload, in bytes, to compress on the fly (default 1MB)</li>
+ * </ul></p>
+ */
+public class ResponseCompressor {
+
+	public static final String OPTION_PREFIX = "compression.";
+
+	public static final String GZIP = "gzip";
+	public static final String DEFLATE = "deflate";
+
+	private static final String[] DEFAULT_TYPES = {
+		"text/html", "text/css", "text/plain", "text/xml", "text/javascript", "text/csv",
+		"application/json", "application/javascript", "application/x-javascript", "application/xml", "image/svg+xml"
+	};
+
+	/**
+	 * @return the encoding to use for a client that sent the given Accept-Encoding header: gzip if it is
+	 * acceptable, deflate if it is not but deflate is, or null if neither is acceptable
+	 */
+	static String accepts(String acceptEncoding) {
+		if(acceptEncoding == null) {
+			return null;
+		}
+		float gzip = -1;
+		float deflate = -1;
+		float any = -1;
+		for(String part : acceptEncoding.split(",")) {
+			String coding = part;
+			float q = 1;
+			int ix = part.indexOf(';');
+			if(ix != -1) {
+				coding = part.substring(0, ix);
+				int qx = part.indexOf("q=", ix);
+				if(qx != -1) {
+					try {
+						q = Float.parseFloat(part.substring(qx + 2).trim());
+					} catch(NumberFormatException e) {
+						q = 0;
+					}
+				}
+			}
+			coding = coding.trim().toLowerCase();
+			if(GZIP.equals(coding) || "x-gzip".equals(coding)) {
+				gzip = q;
+			} else if(DEFLATE.equals(coding)) {
+				deflate = q;
+			} else if("*".equals(coding)) {
+				any = q;
+			}
+		}
+		if(gzip == -1) gzip = any;
+		if(deflate == -1) deflate = any;
+		if(gzip > 0 && gzip >= deflate) {
+			return GZIP;
+		}
+		if(deflate > 0) {
+			return DEFLATE;
+		}
+		return null;
+	}
+
+	private static final int SYNC_FLUSH = 2; // Deflater.SYNC_FLUSH (Java 7)
+
+	/**
+	 * Deflater#deflate(byte[], int, int, int), which can flush the data compressed so far; null on Java 6
+	 */
+	private static final Method deflate = getDeflateMethod();
+
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	/**
+	 * @return true if a streamed response can be compressed chunk by chunk, with {@link #encode(HttpResponse, ChunkedInput, String)}
+	 */
+	public static boolean canEncodeChunks() {
+		return deflate != null;
+	}
+
+	private static Method getDeflateMethod() {
+		try {
+			return Deflater.class.getMethod("deflate", byte[].class, int.class, int.class, int.class);
+		} catch(NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static String mimeType(HttpResponse response) {
+		String type = response.getHeader(CONTENT_TYPE);
+		if(type != null) {
+			int ix = type.indexOf(';');
+			if(ix != -1) {
+				type = type.substring(0, ix);
+			}
+			return type.trim().toLowerCase();
+		}
+		return null;
+	}
+
+	private static void writeInt(OutputStream out, long i) throws IOException {
+		out.write((int) (i & 0xff));
+		out.write((int) ((i >> 8) & 0xff));
+		out.write((int) ((i >> 16) & 0xff));
+		out.write((int) ((i >> 24) & 0xff));
+	}
+
+	private static void read(InputStream in, OutputStream out) throws IOException {
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * Compresses the chunks of a streamed response as they are pulled from it. Each chunk's compressed data is
+	 * flushed out with it (rather than held back by the compressor until it has a full block), so that
+	 * the client can decompress and render every chunk as soon as it arrives.
+	 */
+	private static class EncodedChunks implements ChunkedInput {
+
+		private final ChunkedInput chunks;
+		private final Deflater deflater;
+		private final CRC32 crc; // gzip only: its header and trailer are written here
+		private final byte[] buffer;
+		private boolean started;
+		private boolean ended;
+		private Object last;
+
+		EncodedChunks(ChunkedInput chunks, String encoding, int level) {
+			this.chunks = chunks;
+			this.deflater = new Deflater(level, GZIP.equals(encoding));
+			this.crc = GZIP.equals(encoding) ? new CRC32() : null;
+			this.buffer = new byte[8192];
+		}
+
+		@Override
+		public void close() throws Exception {
+			chunks.close();
+			end();
+		}
+
+		private void end() {
+			if(!ended) {
+				ended = true;
+				deflater.end();
+			}
+		}
+
+		@Override
+		public boolean hasNextChunk() throws Exception {
+			return last != null || chunks.hasNextChunk();
+		}
+
+		@Override
+		public boolean isEndOfInput() throws Exception {
+			return last == null && chunks.isEndOfInput();
+		}
+
+		@Override
+		public Object nextChunk() throws Exception {
+			if(last != null) {
+				Object chunk = last;
+				last = null;
+				return chunk;
+			}
+			Object chunk = chunks.nextChunk();
+			if(!(chunk instanceof HttpChunk) || ended) {
+				return chunk;
+			}
+
+			HttpChunk httpChunk = (HttpChunk) chunk;
+			ChannelBuffer content = httpChunk.getContent();
+			byte[] bytes = new byte[content.readableBytes()];
+			content.getBytes(content.readerIndex(), bytes);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 2));
+			if(!started) {
+				started = true;
+				if(crc != null) {
+					out.write(GZIP_HEADER);
+				}
+			}
+			if(crc != null) {
+				crc.update(bytes);
+			}
+			deflater.setInput(bytes);
+			if(httpChunk.isLast()) {
+				deflater.finish();
+				while(!deflater.finished()) {
+					out.write(buffer, 0, deflater.deflate(buffer));
+				}
+				if(crc != null) {
+					writeInt(out, crc.getValue());
+					writeInt(out, deflater.getBytesRead());
+				}
+				end();
+				last = chunk; // the end of the compressed data has to go out ahead of the last chunk
+			} else {
+				int length;
+				do {
+					length = flush();
+					out.write(buffer, 0, length);
+				} while(length == buffer.length);
+			}
+			return new DefaultHttpChunk(ChannelBuffers.wrappedBuffer(out.toByteArray()));
+		}
+
+		private int flush() throws Exception {
+			try {
+				return (Integer) deflate.invoke(deflater, buffer, 0, buffer.length, SYNC_FLUSH);
+			} catch(InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw (Exception) cause;
+			}
+		}
+
+	}
+
+
+	private final int level;
+	private final int threshold;
+	private final Set<String> types;
+	private final long cacheSize;
+	private final long maxStaticSize;
+	private final LinkedHashMap<String, byte[]> cache;
+	private long cached;
+
+	public ResponseCompressor(ServerConfig config) {
+		this(config.options());
+	}
+
+	public ResponseCompressor(Map<?, ?> options) {
+		this.level = coerce(options.get(OPTION_PREFIX + "level")).from(6);
+		this.threshold = coerce(options.get(OPTION_PREFIX + "threshold")).from(1024);
+		this.cacheSize = coerce(options.get(OPTION_PREFIX + "cacheSize")).from(16L * 1024 * 1024);
+		this.maxStaticSize = coerce(options.get(OPTION_PREFIX + "maxStaticSize")).from(1024L * 1024);
+		this.types = new HashSet<String>();
+		String[] types = coerce(options.get(OPTION_PREFIX + "types")).to(String[].class);
+		for(String type : (types != null && types.length > 0) ? types : DEFAULT_TYPES) {
+			this.types.add(type.trim().toLowerCase());
+		}
+		this.cache = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+		if(level < 0 || level > 9) {
+			throw new IllegalArgumentException("compression level must be between 0 and 9: " + level);
+		}
+	}
+
+	private byte[] compress(byte[] bytes, int offset, int length, String encoding) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+		try {
+			DeflaterOutputStream dout = open(out, encoding);
+			dout.write(bytes, offset, length);
+			dout.close();
+		} catch(IOException e) {
+			throw new IllegalStateException(e); // not from a ByteArrayOutputStream
+		}
+		return out.toByteArray();
+	}
+
+	private byte[] compress(InputStream in, String encoding) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeflaterOutputStream dout = open(out, encoding);
+		read(in, dout);
+		dout.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Compress the given response, which must have been negotiated with {@link #negotiate(HttpRequest, HttpResponse)}.
+	 * If it can't be compressed after all (a static file that can no longer be read, for example) it is left as is.
+	 * <p>The content of a streamable response is buffered by this - compress its chunks with
+	 * {@link #encode(HttpResponse, ChunkedInput, String)} instead, if it is to be streamed.</p>
+	 */
+	public void encode(HttpResponse response, String encoding) {
+		byte[] bytes;
+		if(response instanceof StaticResponse) {
+			StaticResponse sr = (StaticResponse) response;
+			Object payload = sr.getPayload();
+			try {
+				if(payload instanceof File) {
+					File file = (File) payload;
+					FileInfo info = StaticFileCache.get(file);
+					if(GZIP.equals(encoding)) {
+						FileInfo gz = StaticFileCache.get(new File(file.getPath() + ".gz"));
+						if(gz.lastModified >= info.lastModified && gz.length > 0) {
+							sr.setPayload(gz.file, gz.length);
+							response.setHeader(CONTENT_ENCODING, encoding);
+							return;
+						}
+					}
+					bytes = getVariant(encoding + ":" + file.getPath() + ":" + info.lastModified + ":" + info.length, new FileInputStream(file), encoding);
+				}
+				else if(payload instanceof URL) {
+					URL url = (URL) payload;
+					bytes = getVariant(encoding + ":" + url + ":" + response.getHeader(LAST_MODIFIED), url.openStream(), encoding);
+				}
+				else if(payload instanceof String) {
+					byte[] b = ((String) payload).getBytes(CharsetUtil.UTF_8.name());
+					bytes = compress(b, 0, b.length, encoding);
+				}
+				else if(payload instanceof byte[]) {
+					byte[] b = (byte[]) payload;
+					String etag = response.getHeader(ETAG);
+					if(etag != null) {
+						// the etag identifies the content (a pipelined asset, for example), so the variant can be cached
+						bytes = getVariant(encoding + ":" + etag, new ByteArrayInputStream(b), encoding);
+					} else {
+						bytes = compress(b, 0, b.length, encoding);
+					}
+				}
+				else if(payload instanceof ChannelBuffer) {
+					ChannelBuffer buffer = (ChannelBuffer) payload;
+					byte[] b = new byte[buffer.readableBytes()];
+					buffer.getBytes(buffer.readerIndex(), b);
+					bytes = compress(b, 0, b.length, encoding);
+				}
+				else {
+					return;
+				}
+			} catch(IOException e) {
+				return;
+			}
+			sr.setPayload(bytes, bytes.length);
+		} else {
+			ChannelBuffer content = response.getContent();
+			if(content.hasArray()) {
+				bytes = compress(content.array(), content.arrayOffset() + content.readerIndex(), content.readableBytes(), encoding);
+			} else {
+				byte[] b = new byte[content.readableBytes()];
+				content.getBytes(content.readerIndex(), b);
+				bytes = compress(b, 0, b.length, encoding);
+			}
+			response.setContent(ChannelBuffers.wrappedBuffer(bytes));
+			response.setHeader(CONTENT_LENGTH, bytes.length);
+		}
+		response.setHeader(CONTENT_ENCODING, encoding);
+	}
+
+	/**
+	 * Compress the given streamed response chunk by chunk, as it is written out. The response, which must
+	 * have been negotiated with {@link #negotiate(HttpRequest, HttpResponse)}, is only marked as encoded; it is
+	 * the returned input that must be written out in place of the given one.
+	 * @throws UnsupportedOperationException if chunks can't be compressed on this JVM: see {@link #canEncodeChunks()}
+	 */
+	public ChunkedInput encode(HttpResponse response, ChunkedInput chunks, String encoding) {
+		if(deflate == null) {
+			throw new UnsupportedOperationException("compressing chunks requires Java 7 or later");
+		}
+		response.setHeader(CONTENT_ENCODING, encoding);
+		return new EncodedChunks(chunks, encoding, level);
+	}
+
+	/**
+	 * @return the number of bytes of compressed static variants currently held in memory
+	 */
+	public synchronized long getCached() {
+		return cached;
+	}
+
+	private long getLength(HttpResponse response) {
+		if(response instanceof StaticResponse) {
+			Object payload = ((StaticResponse) response).getPayload();
+			if(payload instanceof File || payload instanceof URL) {
+				long length = coerce(response.getHeader(CONTENT_LENGTH)).from(-1L);
+				return (length <= maxStaticSize) ? length : -1;
+			}
+			if(payload instanceof String || payload instanceof byte[] || payload instanceof ChannelBuffer) {
+				return coerce(response.getHeader(CONTENT_LENGTH)).from(-1L);
+			}
+			return -1; // streams are not compressed
+		}
+		if(response instanceof StreamingResponse && ((StreamingResponse) response).isStreamable()) {
+			return ((StreamingResponse) response).getLength();
+		}
+		ChannelBuffer content = response.getContent();
+		return (content != null) ? content.readableBytes() : 0;
+	}
+
+	private byte[] getVariant(String key, InputStream in, String encoding) throws IOException {
+		byte[] bytes;
+		synchronized(this) {
+			bytes = cache.get(key);
+		}
+		if(bytes != null) {
+			in.close();
+			return bytes;
+		}
+		bytes = compress(in, encoding); // a race only compresses it twice
+		if(bytes.length <= cacheSize) {
+			synchronized(this) {
+				byte[] old = cache.put(key, bytes);
+				cached += bytes.length - ((old != null) ? old.length : 0);
+				for(Iterator<byte[]> iter = cache.values().iterator(); cached > cacheSize && iter.hasNext(); ) {
+					cached -= iter.next().length;
+					iter.remove();
+				}
+			}
+		}
+		return bytes;
+	}
+
+	public boolean isEnabled() {
+		return level > 0;
+	}
+
+	/**
+	 * Decide whether, and how, the given response is to be compressed for the given request. A response
+	 * that could be compressed gets a "Vary: Accept-Encoding" header, whether or not this client accepts a
+	 * compressed response, and the ETag of a compressed response is changed to that of its compressed variant.
+	 * The response itself is not compressed until {@link #encode(HttpResponse, String)} is called, so that
+	 * it needn't be if it turns out that the client's copy is not modified.
+	 * @return the encoding to compress the response with, or null if it is not to be compressed
+	 */
+	public String negotiate(HttpRequest request, HttpResponse response) {
+		if(level <= 0 || request.getMethod() != GET || response.getStatus() != OK) {
+			return null;
+		}
+		if(response.containsHeader(CONTENT_ENCODING) || request.containsHeader(RANGE)) {
+			return null;
+		}
+		String type = mimeType(response);
+		if(type == null || !types.contains(type)) {
+			return null;
+		}
+		long length = getLength(response);
+		if(length < threshold) {
+			return null;
+		}
+		response.addHeader(VARY, ACCEPT_ENCODING);
+		String encoding = accepts(request.getHeader(ACCEPT_ENCODING));
+		if(encoding != null) {
+			String etag = response.getHeader(ETAG);
+			if(etag != null && etag.endsWith("\"")) {
+				response.setHeader(ETAG, etag.substring(0, etag.length() - 1) + "-" + encoding + "\"");
+			}
+		}
+		return encoding;
+	}
+
+	private DeflaterOutputStream open(OutputStream out, String encoding) throws IOException {
+		if(GZIP.equals(encoding)) {
+			return new GZIPOutputStream(out, 8192) {
+				{
+					def.setLevel(level);
+				}
+			};
+		}
+		return new DeflaterOutputStream(out, new Deflater(level), 8192) {
+			@Override
+			public void close() throws IOException {
+				super.close();
+				def.end(); // not ended by close when passed in
+			}
+		};
+	}
+
+}
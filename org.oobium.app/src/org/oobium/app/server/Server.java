@@ -4,7 +4,6 @@ import static org.oobium.utils.coercion.TypeCoercer.coerce;
 
 import java.net.InetSocketAddress;
 import java.util.Map.Entry;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import org.jboss.netty.bootstrap.ServerBootstrap;
@@ -18,12 +17,17 @@ import org.oobium.app.handlers.HttpRequest404Handler;
 import org.oobium.app.handlers.HttpRequest500Handler;
 import org.oobium.app.handlers.RequestHandler;
 import org.oobium.logging.Logger;
+import org.oobium.utils.Config.Mode;
 
 public class Server {
 
 	Logger logger;
 	RequestHandlers handlers;
-	ExecutorService executors;
+	RequestExecutor executors;
+	WebsocketExecutor websockets;
+	int fileChunkSize;
+	int viewChunkSize;
+	ResponseCompressor compressor;
 	
 	private ChannelFactory channelFactory;
 //	private ServerBootstrap server;
@@ -46,6 +50,20 @@ public class Server {
 		return handler;
 	}
 	
+	/**
+	 * @return the executor that runs this server's request tasks, or null if the server has not been created
+	 */
+	public RequestExecutor getExecutor() {
+		return executors;
+	}
+	
+	/**
+	 * @return the executor that runs this server's websocket controllers, or null if the server has not been created
+	 */
+	public WebsocketExecutor getWebsocketExecutor() {
+		return websockets;
+	}
+	
 	public void addChannel(Channel channel) {
 		channels.add(channel);
 	}
@@ -86,7 +104,7 @@ public class Server {
 	        server.setOption("child.keepAlive", coerce(config.options().get("keepAlive")).from(true));
 	        for(Entry<?, ?> e : config.options().entrySet()) {
 	        	String option = (String) e.getKey();
-	        	if(!option.equals("tcpNoDelay") && !option.equals("keepAlive")) {
+	        	if(!option.equals("tcpNoDelay") && !option.equals("keepAlive") && !isServerOption(option)) {
 	        		server.setOption(option, e.getValue());
 	        	}
 	        }
@@ -105,7 +123,15 @@ public class Server {
 		
 		channelFactory = new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool());
 		channels = new DefaultChannelGroup();
-		executors = Executors.newCachedThreadPool();
+		executors = RequestExecutor.create(config);
+		websockets = WebsocketExecutor.create(config);
+		fileChunkSize = coerce(config.options().get("file.chunkSize")).from(8192);
+		viewChunkSize = coerce(config.options().get("view.chunkSize")).from(8192);
+		StaticFileCache.setCheckInterval(coerce(config.options().get("file.checkInterval")).from(Mode.isDEV() ? 0 : 2000));
+		StaticFileCache.setMaxFiles(coerce(config.options().get("file.cacheSize")).from(1024));
+		compressor = new ResponseCompressor(config);
+		logger.info("request executor: core {}, max {}, queue {}", executors.getCorePoolSize(), executors.getMaximumPoolSize(), executors.getQueueRemaining());
+		logger.info("websocket executor: threads {}, queue {}, max queue {}", websockets.getCorePoolSize(), websockets.getQueueSize(), websockets.getMaxQueueSize());
 
 		createServer(config, false);
 		createServer(config, true);
@@ -113,6 +139,15 @@ public class Server {
 		addShutdownHook();
 	}
 
+	/**
+	 * @return true if the given option is used to configure the Server itself, rather than being a Netty bootstrap option
+	 */
+	private boolean isServerOption(String option) {
+		return option.startsWith(RequestExecutor.OPTION_PREFIX) || option.startsWith(WebsocketExecutor.OPTION_PREFIX)
+				|| option.startsWith(ResponseCompressor.OPTION_PREFIX)
+				|| option.startsWith("file.") || option.startsWith("view.");
+	}
+
 	public synchronized void dispose() {
 		if(channelFactory != null) {
 			logger.debug("disposing server...");
@@ -120,10 +155,14 @@ public class Server {
 			removeShutdownHook();
 
 			executors.shutdownNow();
+			websockets.shutdown();
 			channels.close().awaitUninterruptibly();
 			channelFactory.releaseExternalResources();
 
+			StaticFileCache.clear();
+
 			executors = null;
+			websockets = null;
 			channels = null;
 			channelFactory = null;
 			
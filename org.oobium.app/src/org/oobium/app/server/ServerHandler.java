@@ -15,6 +15,7 @@ import static org.jboss.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.OK;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.PARTIAL_CONTENT;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+import static org.jboss.netty.handler.codec.http.HttpResponseStatus.SERVICE_UNAVAILABLE;
 import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import static org.oobium.utils.DateUtils.httpDate;
 import static org.oobium.utils.StringUtils.blank;
@@ -28,7 +29,7 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -39,6 +40,7 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.FileRegion;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
@@ -50,10 +52,12 @@ import org.jboss.netty.handler.codec.http.websocket.WebSocketFrameDecoder;
 import org.jboss.netty.handler.codec.http.websocket.WebSocketFrameEncoder;
 import org.jboss.netty.handler.ssl.SslHandler;
 import org.jboss.netty.handler.stream.ChunkedFile;
+import org.jboss.netty.handler.stream.ChunkedInput;
 import org.jboss.netty.handler.stream.ChunkedStream;
 import org.jboss.netty.util.CharsetUtil;
 import org.oobium.app.request.Request;
 import org.oobium.app.response.StaticResponse;
+import org.oobium.app.response.StreamingResponse;
 import org.oobium.app.response.WebsocketUpgrade;
 import org.oobium.app.server.netty4.Attribute;
 import org.oobium.logging.Logger;
@@ -64,14 +68,22 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
 	private final Server server;
 	private final Logger logger;
 	private final RequestHandlers handlers;
-	private final ExecutorService executors;
+	private final RequestExecutor executors;
+	private final WebsocketExecutor websockets;
 	private final List<Channel> secureChannels; // TODO: List, Set, or LinkedHashSet?
+	private final int chunkSize;
+	private final int viewChunkSize;
+	private final ResponseCompressor compressor;
 	
 	public ServerHandler(Server server, boolean secure) {
 		this.server = server;
 		this.logger = server.logger;
 		this.handlers = server.handlers;
 		this.executors = server.executors;
+		this.websockets = server.websockets;
+		this.chunkSize = server.fileChunkSize;
+		this.viewChunkSize = server.viewChunkSize;
+		this.compressor = server.compressor;
 		if(secure) {
 			secureChannels = new ArrayList<Channel>();
 		} else {
@@ -179,6 +191,14 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
 		return response;
 	}
 
+	private HttpResponse get503Response() {
+		HttpResponse response = new DefaultHttpResponse(HTTP_1_1, SERVICE_UNAVAILABLE);
+		response.setContent(ChannelBuffers.copiedBuffer(SERVICE_UNAVAILABLE.getReasonPhrase(), CharsetUtil.UTF_8));
+		response.setHeader(HttpHeaders.Names.CONTENT_LENGTH, response.getContent().readableBytes());
+		response.setHeader(HttpHeaders.Names.RETRY_AFTER, executors.getRetryAfter());
+		return response;
+	}
+
 	private int[] getRange(Request request, HttpResponse response) {
 		String header = request.getHeader(Names.RANGE);
 		if(header != null) {
@@ -293,15 +313,31 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
 				}
 			});
 			logger.trace("submitting task");
-			executors.submit(task);
+			try {
+				executors.execute(task);
+			} catch(RejectedExecutionException e) {
+				logger.warn("{} - {}", e.getMessage(), request.getUri());
+				writeResponse(channel, request, get503Response());
+			}
 		}
 		else {
 			throw new IllegalStateException("response: " + response);
 		}
 	}
 	
+	/**
+	 * A conditional GET is answered with a 304 if its If-None-Match header matches the response's ETag or,
+	 * when there is no If-None-Match header, if the response hasn't been modified since its If-Modified-Since date.
+	 * Static payloads (files and URLs) are not opened or read at all for a 304.
+	 */
 	private boolean isNotModified(HttpRequest request, HttpResponse response) {
 		if(Mode.isNotDEV() && request.getMethod() == GET && response.getStatus() == OK) {
+			String ifNoneMatch = request.getHeader(HttpHeaders.Names.IF_NONE_MATCH);
+			if(ifNoneMatch != null) {
+				// If-None-Match takes precedence: If-Modified-Since is ignored when it is present
+				String etag = response.getHeader(HttpHeaders.Names.ETAG);
+				return etag != null && matches(ifNoneMatch, etag);
+			}
 			String lastModified = response.getHeader(HttpHeaders.Names.LAST_MODIFIED);
 			if(!blank(lastModified)) {
 				String ifMod = request.getHeader(HttpHeaders.Names.IF_MODIFIED_SINCE);
@@ -327,6 +363,57 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
 		return false;
 	}
 	
+	/**
+	 * A rendered view is sent as HTTP chunks when it is larger than a single chunk, saving the copy into
+	 * one large buffer - but only to HTTP/1.1 clients, and only if it hasn't been encoded already.
+	 * A streamed view is compressed chunk by chunk, or, where that isn't possible (Java 6), not at all.
+	 * Streaming is disabled by setting the "view.chunkSize" server option to 0.
+	 */
+	private boolean isStreamable(HttpRequest request, HttpResponse response) {
+		if(viewChunkSize > 0 && response instanceof StreamingResponse && request.getProtocolVersion() == HTTP_1_1) {
+			StreamingResponse streaming = (StreamingResponse) response;
+			return streaming.isStreamable() && streaming.getLength() > viewChunkSize;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return true if the given If-None-Match header value is "*", or contains the given ETag
+	 * (using the weak comparison, so that W/"x" matches "x")
+	 */
+	private static boolean matches(String ifNoneMatch, String etag) {
+		if(etag.startsWith("W/")) {
+			etag = etag.substring(2);
+		}
+		int len = ifNoneMatch.length();
+		int i = 0;
+		while(i < len) {
+			char c = ifNoneMatch.charAt(i);
+			if(c == ' ' || c == ',') {
+				i++;
+			} else if(c == '*') {
+				return true;
+			} else {
+				if(c == 'W' && ifNoneMatch.startsWith("W/", i)) {
+					i += 2;
+				}
+				int end;
+				if(i < len && ifNoneMatch.charAt(i) == '"') {
+					end = ifNoneMatch.indexOf('"', i + 1);
+					end = (end == -1) ? len : end + 1;
+				} else {
+					end = ifNoneMatch.indexOf(',', i);
+					if(end == -1) end = len;
+				}
+				if(etag.regionMatches(0, ifNoneMatch, i, end - i) && etag.length() == end - i) {
+					return true;
+				}
+				i = end;
+			}
+		}
+		return false;
+	}
+	
 	@Override
 	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
 		Request request = (Request) e.getMessage();
@@ -356,7 +443,7 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
 		future.addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
 		
 		pipeline.replace("encoder", "wsencoder", new WebSocketFrameEncoder());
-		pipeline.replace("handler", "wshandler", new WebsocketServerHandler(logger, channel, request, upgrade));
+		pipeline.replace("handler", "wshandler", new WebsocketServerHandler(logger, channel, request, upgrade, websockets));
 	}
 	
 	private ChannelFuture writePayload(Channel channel, StaticResponse response) {
@@ -373,6 +460,15 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
 			return channel.write(payload);
 		}
 		
+		if(payload instanceof byte[]) {
+			byte[] bytes = (byte[]) payload;
+			if(range == null) {
+				return channel.write(ChannelBuffers.wrappedBuffer(bytes));
+			} else {
+				return channel.write(ChannelBuffers.wrappedBuffer(bytes, range[0], range[1]-range[0]));
+			}
+		}
+		
 		if(payload instanceof String) {
 			if(range != null) {
 				payload = ((String) payload).substring(range[0], range[1]);
@@ -381,15 +477,26 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
 		}
 
 		if(payload instanceof File) {
-			// TODO better file server: http://docs.jboss.org/netty/3.2/xref/org/jboss/netty/example/http/file/HttpStaticFileServerHandler.html
+			File file = (File) payload;
 			try {
-				if(range == null) {
-					payload = new ChunkedFile((File) payload);
+				long position = (range == null) ? 0 : range[0];
+				long count = (range == null) ? StaticFileCache.get(file).length : (range[1]-range[0]);
+				if(secureChannels == null) {
+					// zero-copy transfer (sendfile) straight from the file system to the socket
+					final FileRegion region = StaticFileCache.getRegion(file, position, count);
+					ChannelFuture future = channel.write(region);
+					future.addListener(new ChannelFutureListener() {
+						@Override
+						public void operationComplete(ChannelFuture future) throws Exception {
+							region.releaseExternalResources();
+						}
+					});
+					return future;
 				} else {
-					RandomAccessFile raf = new RandomAccessFile((File) payload, "r");
-					payload = new ChunkedFile(raf, range[0], range[1]-range[0], 8192);
+					// SSL must encrypt the content in user space - fall back to chunked reads
+					RandomAccessFile raf = new RandomAccessFile(file, "r");
+					return channel.write(new ChunkedFile(raf, position, count, chunkSize));
 				}
-				return channel.write(payload);
 			} catch(Exception e) {
 				throw new RuntimeException(e);
 			}
@@ -430,6 +537,11 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
 		if(response == null) {
 			response = get404Response(request);
 		}
+		boolean streamable = isStreamable(request, response);
+		String encoding = null;
+		if(compressor != null && (!streamable || ResponseCompressor.canEncodeChunks())) {
+			encoding = compressor.negotiate(request, response);
+		}
 		ChannelFuture future;
 		if(isNotModified(request, response)) {
 			response.setStatus(NOT_MODIFIED);
@@ -444,12 +556,24 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
 				future = writeResponse(channel, response);
 			}
 			else {
+				if(encoding != null && !streamable) {
+					compressor.encode(response, encoding);
+				}
 				int[] range = getRange(request, response);
 				if(range == null) {
-					setContentLength(response);
-					future = writeResponse(channel, response);
-					if(response instanceof StaticResponse) {
-						future = writePayload(channel, (StaticResponse) response);
+					if(streamable) {
+						ChunkedInput chunks = ((StreamingResponse) response).stream(viewChunkSize);
+						if(encoding != null) {
+							chunks = compressor.encode(response, chunks, encoding);
+						}
+						writeResponse(channel, response);
+						future = channel.write(chunks);
+					} else {
+						setContentLength(response);
+						future = writeResponse(channel, response);
+						if(response instanceof StaticResponse) {
+							future = writePayload(channel, (StaticResponse) response);
+						}
 					}
 				} else {
 					if(range[0] == -1) { // invalid range
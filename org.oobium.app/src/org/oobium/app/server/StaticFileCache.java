@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.app.server;
+
+import static org.oobium.utils.DateUtils.httpDate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.netty.channel.FileRegion;
+import org.oobium.utils.Config.Mode;
+
+/**
+ * Caches the length and last modified date of static files, and shares one open FileChannel
+ * per file between all of the requests that are serving it with a {@link FileRegion}.
+ * <p>A file is only checked again (with its length() and lastModified() calls) once the check interval
+ * has passed since its last check; in DEV mode the interval defaults to 0 so that changes are seen immediately.
+ * A cached FileChannel is closed once its file has changed, or it has been evicted, and the last region using it is released.</p>
+ * <p>The ETag of a file is a hash of its content, calculated the first time it is asked for (and again only if the file changes).</p>
+ */
+public class StaticFileCache {
+
+	public static class FileInfo {
+
+		public final File file;
+		public final long length;
+		public final long lastModified;
+		public final String httpDate;
+
+		private volatile long checked;
+		private volatile String etag;
+		private FileChannel channel;
+		private int refs;
+		private boolean stale;
+
+		private FileInfo(File file, long checked) {
+			this.file = file;
+			this.length = file.length();
+			this.lastModified = file.lastModified();
+			this.httpDate = httpDate(lastModified);
+			this.checked = checked;
+		}
+
+		private synchronized FileChannel acquire() throws IOException {
+			if(channel == null) {
+				channel = new RandomAccessFile(file, "r").getChannel();
+			}
+			refs++;
+			return channel;
+		}
+
+		/**
+		 * @return a strong ETag for this version of the file: a hash of its content, or of its length and
+		 * last modified date if it is larger than the max hash length
+		 */
+		public String getETag() {
+			String etag = this.etag;
+			if(etag == null) {
+				synchronized(this) {
+					if((etag = this.etag) == null) {
+						if(length > maxHashLength) {
+							etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+						} else {
+							try {
+								etag = etag(new FileInputStream(file));
+							} catch(IOException e) {
+								etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+							}
+						}
+						this.etag = etag;
+					}
+				}
+			}
+			return etag;
+		}
+
+		private synchronized void release() {
+			refs--;
+			if(stale && refs <= 0) {
+				close();
+			}
+		}
+
+		private synchronized void retire() {
+			stale = true;
+			if(refs <= 0) {
+				close();
+			}
+		}
+
+		private void close() {
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch(IOException e) {
+					// discard
+				}
+				channel = null;
+			}
+		}
+
+		private boolean isCurrent(long now) {
+			if((now - checked) < checkInterval) {
+				return true;
+			}
+			if(file.lastModified() == lastModified && file.length() == length) {
+				checked = now;
+				return true;
+			}
+			return false;
+		}
+
+	}
+
+	/**
+	 * A FileRegion on a cached, shared, FileChannel. Releasing the region releases its hold on the
+	 * channel, but does not close it (that is handled by the cache).
+	 */
+	private static class SharedFileRegion implements FileRegion {
+
+		private final FileInfo info;
+		private final FileChannel channel;
+		private final long position;
+		private final long count;
+		private boolean released;
+
+		SharedFileRegion(FileInfo info, long position, long count) throws IOException {
+			this.info = info;
+			this.channel = info.acquire();
+			this.position = position;
+			this.count = count;
+		}
+
+		@Override
+		public long getCount() {
+			return count;
+		}
+
+		@Override
+		public long getPosition() {
+			return position;
+		}
+
+		@Override
+		public synchronized void releaseExternalResources() {
+			if(!released) {
+				released = true;
+				info.release();
+			}
+		}
+
+		@Override
+		public long transferTo(WritableByteChannel target, long position) throws IOException {
+			long count = this.count - position;
+			if(count < 0 || position < 0) {
+				throw new IllegalArgumentException("position out of range: " + position + " (expected: 0 - " + (this.count - 1) + ")");
+			}
+			if(count == 0) {
+				return 0L;
+			}
+			return channel.transferTo(this.position + position, count, target);
+		}
+
+	}
+
+
+	private static final ConcurrentMap<String, FileInfo> files = new ConcurrentHashMap<String, FileInfo>();
+	private static volatile long checkInterval = Mode.isDEV() ? 0 : 2000;
+	private static volatile int maxFiles = 1024;
+	private static volatile long maxHashLength = 4 * 1024 * 1024;
+
+	/**
+	 * Clear the cache, closing any open FileChannels that are not currently in use.
+	 */
+	public static void clear() {
+		for(Iterator<FileInfo> iter = files.values().iterator(); iter.hasNext(); ) {
+			FileInfo info = iter.next();
+			iter.remove();
+			info.retire();
+		}
+	}
+
+	/**
+	 * Create a strong ETag from a hash of the given stream's content. The stream is closed when done.
+	 */
+	public static String etag(InputStream in) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+			byte[] hash = digest.digest();
+			StringBuilder sb = new StringBuilder(hash.length * 2 + 2);
+			sb.append('"');
+			for(byte b : hash) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.append('"').toString();
+		} catch(NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Get the cached information for the given file, checking the file system only if the check interval has passed.
+	 * @param file the file
+	 * @return the FileInfo; never null
+	 */
+	public static FileInfo get(File file) {
+		String key = file.getPath();
+		long now = System.currentTimeMillis();
+		FileInfo info = files.get(key);
+		if(info != null) {
+			if(info.isCurrent(now)) {
+				return info;
+			}
+			files.remove(key, info);
+			info.retire();
+		}
+		FileInfo fresh = new FileInfo(file, now);
+		if(files.size() >= maxFiles) {
+			evict();
+		}
+		info = files.putIfAbsent(key, fresh);
+		return (info != null) ? info : fresh;
+	}
+
+	private static void evict() {
+		// the map isn't ordered - just make room by dropping some of the entries
+		int count = Math.max(1, maxFiles / 8);
+		for(Iterator<FileInfo> iter = files.values().iterator(); count > 0 && iter.hasNext(); count--) {
+			FileInfo info = iter.next();
+			iter.remove();
+			info.retire();
+		}
+	}
+
+	/**
+	 * Create a new FileRegion for the given file, using the cached FileChannel if there is one.
+	 * The caller must call {@link FileRegion#releaseExternalResources()} when the region has been written.
+	 */
+	public static FileRegion getRegion(File file, long position, long count) throws IOException {
+		return new SharedFileRegion(get(file), position, count);
+	}
+
+	/**
+	 * @param interval the number of milliseconds between checks of a cached file's length and last modified date
+	 */
+	public static void setCheckInterval(long interval) {
+		checkInterval = interval;
+	}
+
+	/**
+	 * @param max the largest file, in bytes, whose ETag is a hash of its content; the ETag of a larger
+	 * file is made from its length and last modified date, so that it isn't read just to create it
+	 */
+	public static void setMaxHashLength(long max) {
+		maxHashLength = max;
+	}
+
+	/**
+	 * @param max the maximum number of files to cache
+	 */
+	public static void setMaxFiles(int max) {
+		maxFiles = max;
+	}
+
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.app.server;
+
+import static org.oobium.utils.coercion.TypeCoercer.coerce;
+
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The executor that runs the controllers of a server's websockets, off of the I/O threads.
+ * <p>Each connection queues its events (connect, messages, errors and disconnect) in order, and has at most one
+ * task on this executor at a time, which works through them; so a connection's events are handled in order, by one
+ * thread at a time, and a slow controller only holds up its own connection. The executor's own queue is therefore
+ * bounded by the number of connections, while each connection's queue is bounded by the options below.</p>
+ * <p>Configured through the "websocket" options of the primary {@link ServerConfig}:</p>
+ * <ul>
+ *   <li><b>websocket.threads</b>: the number of threads running the controllers (default 16)</li>
+ *   <li><b>websocket.queueSize</b>: the number of messages that can wait on a connection before reading from it is
+ *   suspended; reading is resumed once half of them have been handled (default 64)</li>
+ *   <li><b>websocket.maxQueueSize</b>: the number of messages that can wait on a connection, including those already
+ *   read when it was suspended, before the overflow policy is applied (default 256)</li>
+ *   <li><b>websocket.overflow</b>: "drop" (default) to discard the messages that overflow, or "close" to close
+ *   the connection</li>
+ * </ul>
+ */
+public class WebsocketExecutor extends ThreadPoolExecutor {
+
+	public static final String OPTION_PREFIX = "websocket.";
+
+	public static final String THREADS = "websocket.threads";
+	public static final String QUEUE_SIZE = "websocket.queueSize";
+	public static final String MAX_QUEUE_SIZE = "websocket.maxQueueSize";
+	public static final String OVERFLOW = "websocket.overflow";
+
+	private static class WebsocketThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "oobium-websocket-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	public static WebsocketExecutor create(ServerConfig config) {
+		Map<?,?> options = config.options();
+		int threads = Math.max(1, coerce(options.get(THREADS)).from(16));
+		int queueSize = Math.max(1, coerce(options.get(QUEUE_SIZE)).from(64));
+		int maxQueueSize = Math.max(queueSize, coerce(options.get(MAX_QUEUE_SIZE)).from(256));
+		boolean close = "close".equals(options.get(OVERFLOW));
+		return new WebsocketExecutor(threads, queueSize, maxQueueSize, close);
+	}
+
+
+	private final int queueSize;
+	private final int maxQueueSize;
+	private final boolean closeOnOverflow;
+
+	private final AtomicInteger connections = new AtomicInteger();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong closed = new AtomicLong();
+	private final AtomicLong suspended = new AtomicLong();
+
+	private WebsocketExecutor(int threads, int queueSize, int maxQueueSize, boolean closeOnOverflow) {
+		super(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new WebsocketThreadFactory());
+		this.queueSize = queueSize;
+		this.maxQueueSize = maxQueueSize;
+		this.closeOnOverflow = closeOnOverflow;
+	}
+
+	void connected() {
+		connections.incrementAndGet();
+	}
+
+	void disconnected() {
+		connections.decrementAndGet();
+	}
+
+	/**
+	 * @return the number of websocket connections that are currently open
+	 */
+	public int getConnectionCount() {
+		return connections.get();
+	}
+
+	/**
+	 * @return the total number of connections closed because their queue overflowed
+	 */
+	public long getClosedCount() {
+		return closed.get();
+	}
+
+	/**
+	 * @return the total number of messages dropped because their connection's queue overflowed
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return the number of messages that can wait on a connection before reading from it is suspended
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * @return the number of messages that can wait on a connection before the overflow policy is applied
+	 */
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	/**
+	 * @return the total number of times that reading from a connection has been suspended
+	 */
+	public long getSuspendedCount() {
+		return suspended.get();
+	}
+
+	public boolean isCloseOnOverflow() {
+		return closeOnOverflow;
+	}
+
+	/**
+	 * Record an overflowed message.
+	 * @return true if the connection is to be closed; false if the message is to be dropped
+	 */
+	boolean overflowed() {
+		if(closeOnOverflow) {
+			closed.incrementAndGet();
+			return true;
+		}
+		dropped.incrementAndGet();
+		return false;
+	}
+
+	void suspended() {
+		suspended.incrementAndGet();
+	}
+
+	@Override
+	public String toString() {
+		return "WebsocketExecutor {active: " + getActiveCount() + ", pool: " + getPoolSize() + ", connections: " + getConnectionCount() +
+				", suspended: " + getSuspendedCount() + ", dropped: " + getDroppedCount() + ", closed: " + getClosedCount() + "}";
+	}
+
+}
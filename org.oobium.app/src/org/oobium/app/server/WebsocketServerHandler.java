@@ -1,6 +1,10 @@
 package org.oobium.app.server;
 
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -16,121 +20,275 @@ import org.oobium.app.routing.Router;
 import org.oobium.logging.Logger;
 import org.oobium.utils.json.JsonUtils;
 
+/**
+ * Handles a single websocket connection, with a single {@link WebsocketController} for its whole lifetime.
+ * <p>The controller is never called on the I/O thread: each event is put on this connection's queue, which
+ * is worked through, in order, by the {@link WebsocketExecutor}. When too many messages are waiting, reading
+ * from the channel is suspended until the controller catches up; see {@link WebsocketExecutor} for the limits.</p>
+ */
 public class WebsocketServerHandler extends SimpleChannelUpstreamHandler {
 
+	/**
+	 * The number of events handled in a row before the thread is given up to the other connections.
+	 */
+	private static final int BATCH_SIZE = 32;
+
 	final Logger logger;
 	private final Router router;
 	final Channel channel;
 	final Request request;
-	private final Class<? extends WebsocketController> controllerClass;
 	final Map<String, Object> params;
-	
+	private final WebsocketExecutor executor;
+	private final WebsocketController controller;
+
 	private Websocket websocket;
-	
-	public WebsocketServerHandler(Logger logger, Channel channel, Request request, WebsocketUpgrade upgrade) {
+
+	private final Queue<Runnable> events;
+	private final AtomicInteger scheduled; // the number of events queued or running
+	private final AtomicInteger waiting; // the number of messages queued or running
+	private final Object readLock; // guards suspended, and the channel's readability along with it
+	private volatile boolean suspended;
+	private final Runnable drain;
+
+	public WebsocketServerHandler(Logger logger, Channel channel, Request request, WebsocketUpgrade upgrade, WebsocketExecutor executor) {
 		this.logger = logger;
 		this.router = upgrade.router;
 		this.channel = channel;
 		this.request = request;
-		this.controllerClass = upgrade.controllerClass;
 		this.params = upgrade.params;
+		this.executor = executor;
+
+		this.events = new ConcurrentLinkedQueue<Runnable>();
+		this.scheduled = new AtomicInteger();
+		this.waiting = new AtomicInteger();
+		this.readLock = new Object();
+		this.drain = new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
 
 		String id = (params == null) ? null : String.valueOf(params.get("id"));
 		String gp = upgrade.group;
-		
+
 		websocket = new Websocket(this, id, gp);
 		router.registerWebsocket(websocket);
+		executor.connected();
 
-		WebsocketController controller = getController(request);
+		controller = createController(upgrade.controllerClass);
 		if(controller != null)  {
-			try {
-				controller.handleConnect();
-			} catch(Exception e) {
-				if(logger.isLoggingDebug()) logger.warn(e);
-				else logger.warn(e.getLocalizedMessage());
-				channel.close();
-			}
+			dispatch(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						controller.handleConnect();
+					} catch(Exception e) {
+						warn(e);
+						WebsocketServerHandler.this.channel.close();
+					}
+				}
+			});
 		}
 	}
 
 	@Override
 	public void channelDisconnected(ChannelHandlerContext ctx, ChannelStateEvent event) throws Exception {
-		WebsocketController controller = getController(request);
-		if(controller != null)  {
+		dispatch(new Runnable() {
+			@Override
+			public void run() {
+				if(controller != null)  {
+					try {
+						controller.handleDisconnect();
+					} catch(Exception e) {
+						warn(e);
+					}
+				}
+				if(websocket != null) {
+					router.unregisterWebsocket(websocket);
+				}
+				executor.disconnected();
+			}
+		});
+		super.channelDisconnected(ctx, event);
+	}
+
+	private WebsocketController createController(Class<? extends WebsocketController> controllerClass) {
+		if(controllerClass != null) {
 			try {
-				controller.handleDisconnect();
+				WebsocketController controller = controllerClass.newInstance();
+				controller.init(logger, request, websocket);
+				return controller;
 			} catch(Exception e) {
-				if(logger.isLoggingDebug()) logger.warn(e);
-				else logger.warn(e.getLocalizedMessage());
+				warn(e);
 			}
 		}
-		if(websocket != null) {
-			router.unregisterWebsocket(websocket);
+		return null;
+	}
+
+	/**
+	 * Put the given event on this connection's queue; if the queue was empty, schedule it to be worked through.
+	 */
+	private void dispatch(Runnable event) {
+		events.offer(event);
+		if(scheduled.getAndIncrement() == 0) {
+			schedule();
 		}
-		super.channelDisconnected(ctx, event);
 	}
-	
-	@Override
-	public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent event) throws Exception {
-		Throwable t = event.getCause();
-		WebsocketController controller = getController(request);
-		if(controller != null)  {
+
+	private void drain() {
+		for(int i = 0; i < BATCH_SIZE; i++) {
+			Runnable event = events.poll();
 			try {
-				controller.handleError(t);
+				event.run();
 			} catch(Exception e) {
-				if(logger.isLoggingDebug()) logger.warn(e);
-				else logger.warn(e.getLocalizedMessage());
+				warn(e);
+			}
+			if(scheduled.decrementAndGet() == 0) {
+				return;
 			}
 		}
-		logger.warn(t.getLocalizedMessage());
-		event.getChannel().close();
+		schedule(); // more are waiting, but give the other connections a turn first
 	}
-	
-	private WebsocketController getController(Request request) {
-		if(controllerClass != null) {
-			try {
-				WebsocketController controller = controllerClass.newInstance();
-				controller.init(logger, request, websocket);
-				return controller;
-			} catch(Exception e) {
-				if(logger.isLoggingDebug()) {
-					logger.warn(e);
-				} else {
-					logger.warn(e.getLocalizedMessage());
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent event) throws Exception {
+		final Throwable t = event.getCause();
+		if(controller != null)  {
+			dispatch(new Runnable() {
+				@Override
+				public void run() {
+					controller.handleError(t);
 				}
-			}
+			});
 		}
-		return null;
+		logger.warn(t.getLocalizedMessage());
+		event.getChannel().close();
+	}
+
+	/**
+	 * @return the controller of this connection; null if it could not be created
+	 */
+	public WebsocketController getController() {
+		return controller;
 	}
 
 	public Websocket getWebsocket() {
 		return websocket;
 	}
 
+	/**
+	 * @return the number of messages waiting to be handled by the controller, including the one being handled
+	 */
+	public int getWaiting() {
+		return waiting.get();
+	}
+
+	private void handle(WebSocketFrame frame) {
+		if(frame.isText()) {
+			String text = frame.getTextData();
+			if(text.length() > 15 && text.startsWith("registration:{") && text.charAt(text.length()-1) == '}') {
+				Map<String, String> properties = JsonUtils.toStringMap(text.substring(13));
+				controller.handleRegistration(properties);
+				return;
+			}
+		}
+		controller.handleMessage(frame);
+	}
+
+	/**
+	 * @return true if reading from the channel is suspended, waiting for the controller to catch up
+	 */
+	public boolean isSuspended() {
+		return suspended;
+	}
+
 	@Override
 	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-		WebsocketController controller = getController(request);
 		if(controller == null)  {
 			ctx.getChannel().close();
-		} else {
-			WebSocketFrame frame = (WebSocketFrame) e.getMessage();
-			if(frame.isText()) {
-				String text = frame.getTextData();
-				if(text.length() > 15 && text.startsWith("registration:{") && text.charAt(text.length()-1) == '}') {
-					Map<String, String> properties = JsonUtils.toStringMap(text.substring(13));
-					controller.handleRegistration(properties);
-					return;
-				}
+			return;
+		}
+
+		int count = waiting.incrementAndGet();
+		if(count > executor.getMaxQueueSize()) {
+			waiting.decrementAndGet();
+			if(executor.overflowed()) {
+				logger.warn("closing {}: more than {} messages waiting", websocket, executor.getMaxQueueSize());
+				ctx.getChannel().close();
+			} else {
+				logger.debug("dropped message to {}: more than {} messages waiting", websocket, executor.getMaxQueueSize());
 			}
-			controller.handleMessage(frame);
+			return;
 		}
+		if(count >= executor.getQueueSize() && !suspended) {
+			suspend();
+		}
+
+		final WebSocketFrame frame = (WebSocketFrame) e.getMessage();
+		dispatch(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					handle(frame);
+				} finally {
+					waiting.decrementAndGet();
+					resume();
+				}
+			}
+		});
 	}
-	
+
 	void register(String id, String group) {
 		router.unregisterWebsocket(websocket);
 		websocket.id = id;
 		websocket.group = group;
 		router.registerWebsocket(websocket);
 	}
-	
+
+	/**
+	 * Resume reading from the channel, if it was suspended and the controller has worked through half of the queue.
+	 */
+	private void resume() {
+		if(suspended && waiting.get() <= executor.getQueueSize() / 2) {
+			synchronized(readLock) {
+				if(suspended && waiting.get() <= executor.getQueueSize() / 2) {
+					suspended = false;
+					channel.setReadable(true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Suspend reading from the channel until the controller has caught up. The flag and the channel's readability
+	 * are only changed together, under the read lock, so that a resume can't slip in between them.
+	 */
+	private void suspend() {
+		synchronized(readLock) {
+			if(!suspended) {
+				suspended = true;
+				executor.suspended();
+				channel.setReadable(false);
+			}
+		}
+		resume(); // in case the controller caught up while this was going on
+	}
+
+	private void schedule() {
+		try {
+			executor.execute(drain);
+		} catch(RejectedExecutionException e) {
+			drain(); // the server is shutting down: work through the rest on this thread
+		}
+	}
+
+	private void warn(Exception e) {
+		if(logger.isLoggingDebug()) {
+			logger.warn(e);
+		} else {
+			logger.warn(e.getLocalizedMessage());
+		}
+	}
+
 }
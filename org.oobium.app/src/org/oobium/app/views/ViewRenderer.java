@@ -269,6 +269,24 @@ public class ViewRenderer {
 	}
 	
 	public String render() {
+		CharSequence[] parts = renderParts();
+		if(parts.length == 1) {
+			return parts[0].toString();
+		}
+		StringBuilder sb = new StringBuilder(parts[0].length() + parts[1].length() + parts[2].length());
+		for(CharSequence part : parts) {
+			sb.append(part);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Render the view into the parts of its page, in order, without joining them together: the document
+	 * up to, and including, the opening body tag (the layout's head content, scripts and styles), the body,
+	 * and the closing tags. A partial view renders into a single part: its body.
+	 * @return the rendered parts; they are no longer used by this renderer, so they can be sent as-is.
+	 */
+	public CharSequence[] renderParts() {
 		body = new StringBuilder();
 		head = new StringBuilder();
 
@@ -276,27 +294,25 @@ public class ViewRenderer {
 			view.setRenderer(this);
 			view.render();
 			applyNamedContent();
-			return body.toString();
+			return new CharSequence[] { body };
 		} else {
-			StringBuilder sb;
 			View layout = (this.layout != null) ? this.layout : view.getLayout();
 			if(layout != null) {
 				layout.setRenderer(this);
 				layout.setChild(view);
-				sb = render(layout);
+				return render(layout);
 			} else {
 				view.setRenderer(this);
-				sb = render(view);
+				return render(view);
 			}
-			return sb.toString();
 		}
 	}
 	
-	private StringBuilder render(View view) {
+	private CharSequence[] render(View view) {
 		view.render();
 		applyNamedContent();
 		
-		StringBuilder sb = new StringBuilder(head.length() + body.length() + 75);
+		StringBuilder sb = new StringBuilder(head.length() + 75);
 //		sb.append("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Transitional//EN\" ");
 //		sb.append("\"http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd\">\n");
 //		sb.append("<html xmlns=\"http://www.w3.org/1999/xhtml\" xml:lang=\"en\" lang=\"en\">\n");
@@ -311,12 +327,8 @@ public class ViewRenderer {
 			sb.append(head);
 		}
 		sb.append("</head><body>");
-		if(body.length() > 0) {
-			sb.append(body);
-		}
-		sb.append("</body></html>");
 
-		return sb;
+		return new CharSequence[] { sb, body, "</body></html>" };
 	}
 	
 	public void setLayout(View layout) {
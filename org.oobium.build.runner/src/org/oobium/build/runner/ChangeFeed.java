@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.build.runner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.oobium.build.workspace.Bundle;
+import org.oobium.build.workspace.Module;
+
+/**
+ * Watches the files of a set of bundles, and reports which files of which bundles have changed.
+ * <p>Each call to {@link #poll()} compares the files against a snapshot taken by the previous call. A directory
+ * is only listed again if it has been modified (a file was added or removed), so a scan of an unchanged tree
+ * costs a single stat per file. The changes to a bundle are held back until they have been quiet for the
+ * debounce period, so that a build in progress is reported once, when it is complete, rather than file by file.</p>
+ * <p>For modules, only the ESP source files (.esp, .emt, .ess, .ejs) are watched in src - the compiled
+ * classes of everything else are watched in bin. The classes of ESP files are ignored in bin, because the
+ * editor compiles them on each edit: an ESP file is reported when it is saved, and only once its classes
+ * have caught up with it. Since that may take a while, or never happen (if the file does not compile), a bundle
+ * that is only waiting on its ESP classes does not count as {@link #hasPending() pending}.</p>
+ */
+class ChangeFeed {
+
+	static final long DEBOUNCE = 300;
+
+	private static final String[] EFILES = { ".esp", ".emt", ".ess", ".ejs" };
+
+	private static boolean isEFile(File file) {
+		String name = file.getName();
+		for(String ext : EFILES) {
+			if(name.endsWith(ext)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * The snapshot of a single bundle's files.
+	 */
+	private static class Snapshot {
+		final Bundle bundle;
+		Map<File, Long> files;
+		Map<File, Long> dirs;
+		Map<File, File[]> listings;
+		Snapshot(Bundle bundle) {
+			this.bundle = bundle;
+			this.files = new HashMap<File, Long>();
+			this.dirs = new HashMap<File, Long>();
+			this.listings = new HashMap<File, File[]>();
+		}
+	}
+
+
+	private final Map<Bundle, Snapshot> snapshots;
+	private final Map<Bundle, Set<File>> pending;
+	private final Map<Bundle, Long> lastChanged;
+	private final Set<Bundle> compiling;
+	private final long debounce;
+
+	ChangeFeed(Collection<Bundle> bundles) {
+		this(bundles, DEBOUNCE);
+	}
+
+	ChangeFeed(Collection<Bundle> bundles, long debounce) {
+		this.snapshots = new LinkedHashMap<Bundle, Snapshot>();
+		this.pending = new HashMap<Bundle, Set<File>>();
+		this.lastChanged = new HashMap<Bundle, Long>();
+		this.compiling = new HashSet<Bundle>();
+		this.debounce = debounce;
+		for(Bundle bundle : bundles) {
+			Snapshot snapshot = new Snapshot(bundle);
+			scan(snapshot, System.currentTimeMillis());
+			snapshots.put(bundle, snapshot);
+		}
+	}
+
+	/**
+	 * @return the class file compiled from the given ESP file, or null if it is not in the views or mailers folder
+	 */
+	private File getBinEFile(Module module, File efile) {
+		String path = efile.getPath();
+		if(path.startsWith(module.views.getPath() + File.separator) || path.startsWith(module.mailers.getPath() + File.separator)) {
+			return module.getBinEFiles(efile)[0];
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if there are changes that are still settling down; changes that have settled, but are to
+	 * ESP files that have not been compiled yet, are not counted
+	 */
+	synchronized boolean hasPending() {
+		return pending.size() > compiling.size();
+	}
+
+	/**
+	 * Modules are only ready once the changed ESP files have been compiled.
+	 */
+	private boolean isCompiled(Bundle bundle, Set<File> changes) {
+		if(bundle instanceof Module) {
+			Module module = (Module) bundle;
+			for(File file : changes) {
+				if(isEFile(file) && file.exists()) {
+					File bin = getBinEFile(module, file);
+					if(bin != null && bin.lastModified() < file.lastModified()) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the given file, found under the given root, is to be watched.
+	 */
+	private boolean isWatched(Bundle bundle, File root, File file, Set<String> ignore) {
+		if(bundle instanceof Module && !bundle.isJar) {
+			if(root.equals(bundle.src)) {
+				return isEFile(file);
+			}
+			if(root.equals(bundle.bin) && !ignore.isEmpty()) {
+				String path = file.getPath();
+				int ix = path.indexOf('$');
+				if(ix == -1) {
+					ix = path.lastIndexOf('.');
+				}
+				return ix == -1 || !ignore.contains(path.substring(0, ix));
+			}
+		}
+		return true;
+	}
+
+	boolean isWatching(Bundle bundle) {
+		return snapshots.containsKey(bundle);
+	}
+
+	/**
+	 * Scan all of the watched bundles for changes.
+	 * @return the changed files of each bundle whose changes have been quiet for the debounce period; never null
+	 */
+	synchronized Map<Bundle, Set<File>> poll() {
+		long now = System.currentTimeMillis();
+		for(Snapshot snapshot : snapshots.values()) {
+			Set<File> changes = scan(snapshot, now);
+			if(!changes.isEmpty()) {
+				Set<File> files = pending.get(snapshot.bundle);
+				if(files == null) {
+					pending.put(snapshot.bundle, changes);
+				} else {
+					files.addAll(changes);
+				}
+				lastChanged.put(snapshot.bundle, now);
+				compiling.remove(snapshot.bundle);
+			}
+		}
+
+		Map<Bundle, Set<File>> ready = new LinkedHashMap<Bundle, Set<File>>();
+		for(Iterator<Entry<Bundle, Set<File>>> iter = pending.entrySet().iterator(); iter.hasNext(); ) {
+			Entry<Bundle, Set<File>> entry = iter.next();
+			Bundle bundle = entry.getKey();
+			if(now - lastChanged.get(bundle) >= debounce) {
+				if(isCompiled(bundle, entry.getValue())) {
+					ready.put(bundle, entry.getValue());
+					lastChanged.remove(bundle);
+					compiling.remove(bundle);
+					iter.remove();
+				} else {
+					compiling.add(bundle);
+				}
+			}
+		}
+		return ready;
+	}
+
+	private List<File> roots(Bundle bundle) {
+		List<File> roots = new ArrayList<File>(3);
+		if(bundle.isJar) {
+			roots.add(bundle.file);
+		} else {
+			if(bundle instanceof Module) {
+				roots.add(bundle.src); // first, so that the ESP classes to ignore in bin are known
+				roots.add(bundle.bin);
+				roots.add(((Module) bundle).assets);
+			} else {
+				roots.add(bundle.bin);
+			}
+		}
+		return roots;
+	}
+
+	private Set<File> scan(Snapshot snapshot, long now) {
+		Bundle bundle = snapshot.bundle;
+		Map<File, Long> files = new HashMap<File, Long>(snapshot.files.size());
+		Map<File, Long> dirs = new HashMap<File, Long>(snapshot.dirs.size());
+		Map<File, File[]> listings = new HashMap<File, File[]>(snapshot.listings.size());
+
+		Set<String> ignore = new HashSet<String>();
+		for(File root : roots(bundle)) {
+			if(root.isDirectory()) {
+				scan(snapshot, bundle, root, root, now, files, dirs, listings, ignore);
+			} else if(root.isFile()) {
+				files.put(root, root.lastModified());
+			}
+		}
+
+		Set<File> changes = new HashSet<File>();
+		for(Entry<File, Long> entry : files.entrySet()) {
+			if(!entry.getValue().equals(snapshot.files.get(entry.getKey()))) {
+				changes.add(entry.getKey()); // added, or modified
+			}
+		}
+		for(File file : snapshot.files.keySet()) {
+			if(!files.containsKey(file)) {
+				changes.add(file); // removed
+			}
+		}
+
+		snapshot.files = files;
+		snapshot.dirs = dirs;
+		snapshot.listings = listings;
+		return changes;
+	}
+
+	private void scan(Snapshot snapshot, Bundle bundle, File root, File dir, long now, Map<File, Long> files, Map<File, Long> dirs, Map<File, File[]> listings, Set<String> ignore) {
+		long modified = dir.lastModified();
+		Long previous = snapshot.dirs.get(dir);
+		File[] children = snapshot.listings.get(dir);
+		// list again if the directory changed - or if it might have changed within the timestamp's resolution
+		if(children == null || previous == null || previous != modified || now - modified < 2000) {
+			children = dir.listFiles();
+			if(children == null) {
+				return;
+			}
+		}
+		dirs.put(dir, modified);
+		listings.put(dir, children);
+		for(File child : children) {
+			if(child.getName().charAt(0) == '.') {
+				continue;
+			}
+			boolean isDir;
+			if(snapshot.dirs.containsKey(child)) {
+				isDir = true;
+			} else if(snapshot.files.containsKey(child)) {
+				isDir = false;
+			} else {
+				isDir = child.isDirectory(); // new: the only time it needs to be checked
+			}
+			if(isDir) {
+				scan(snapshot, bundle, root, child, now, files, dirs, listings, ignore);
+			}
+			else if(isWatched(bundle, root, child, ignore)) {
+				files.put(child, child.lastModified());
+				if(root.equals(bundle.src)) {
+					File bin = getBinEFile((Module) bundle, child);
+					if(bin != null) {
+						String path = bin.getPath();
+						ignore.add(path.substring(0, path.length() - 6)); // strip ".class"
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -15,7 +15,10 @@ import org.oobium.build.workspace.Bundle;
 
 public class RunEvent {
 
-	public enum Type { Open, Start, Started, Stop, Stopped, Update, Updated, Migrate, Migrated, Error, Warning }
+	/**
+	 * Changed events are sent before the changed bundles are updated; their details are a Map of each bundle to its changed files.
+	 */
+	public enum Type { Open, Start, Started, Stop, Stopped, Changed, Update, Updated, Migrate, Migrated, Error, Warning }
 	
 	public final Type type;
 	public final Application application;
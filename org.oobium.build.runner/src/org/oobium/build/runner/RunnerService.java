@@ -160,6 +160,12 @@ public class RunnerService extends AppService {
 		notifyListeners(event);
 	}
 	
+	static void notifyListeners(Type type, Application app, Map<Bundle, Set<File>> changes) {
+		RunEvent event = new RunEvent(type, app, changes.keySet().toArray(new Bundle[changes.size()]));
+		event.setDetails(changes);
+		notifyListeners(event);
+	}
+	
 	static void notifyListeners(Type type, Application app, String message) {
 		RunEvent event = new RunEvent(type, app);
 		event.setMessage(message);
@@ -14,11 +14,13 @@ import static org.oobium.build.workspace.Bundle.update;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -27,24 +29,28 @@ import java.util.Set;
 import org.oobium.build.runner.RunEvent.Type;
 import org.oobium.build.workspace.Application;
 import org.oobium.build.workspace.Bundle;
-import org.oobium.build.workspace.Module;
 import org.oobium.build.workspace.Workspace;
 import org.oobium.client.Client;
 import org.oobium.client.ClientResponse;
 import org.oobium.logging.LogProvider;
 import org.oobium.logging.Logger;
-import org.oobium.utils.FileUtils;
 
 class UpdaterThread extends Thread {
 
+	/**
+	 * How long to sleep between scans while there are no changes (or only changes waiting on ESP classes).
+	 */
+	private static final long IDLE_INTERVAL = 1000;
+
+	/**
+	 * How long to sleep between scans while changes are settling down.
+	 */
+	private static final long BUSY_INTERVAL = 100;
+
 	private class MigrateListener implements RunListener {
 		@Override
 		public void handleEvent(RunEvent event) {
 			if(event.type == Type.Started) {
-				try {
-					Thread.sleep(50); // TODO VERY TEMPORARY FIX
-				} catch(InterruptedException e) {
-				}
 				handleEvent("/migrate");
 			}
 		}
@@ -53,7 +59,7 @@ class UpdaterThread extends Thread {
 			RunnerService.notifyListeners(Type.Migrate, application);
 			new Thread() {
 				public void run() {
-					ClientResponse response = Client.client(migratorHost, migratorPort).post(command);
+					ClientResponse response = post(command);
 					if(response.isSuccess()) {
 						logger.info(response.getBody());
 					} else {
@@ -67,6 +73,26 @@ class UpdaterThread extends Thread {
 				};
 			}.start();
 		}
+		/**
+		 * The application reports that it has started before the migrator is necessarily listening,
+		 * so retry (with a growing delay) for as long as the connection is refused.
+		 */
+		private ClientResponse post(String command) {
+			long delay = 50;
+			for(int i = 0; ; i++) {
+				ClientResponse response = Client.client(migratorHost, migratorPort).post(command);
+				if(i == 10 || !response.exceptionThrown() || !(response.getException() instanceof ConnectException)) {
+					return response;
+				}
+				try {
+					Thread.sleep(delay);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return response;
+				}
+				delay = Math.min(delay * 2, 1000);
+			}
+		}
 	}
 
 	private class ReMigrateListener extends MigrateListener {
@@ -87,7 +113,7 @@ class UpdaterThread extends Thread {
 	private final String migratorHost;
 	private final int migratorPort;
 
-	private Map<Bundle, Long> bundles;
+	private final ChangeFeed feed;
 	private Map<Bundle, Bundle> exported;
 
 	private ReMigrateListener reMigListener;
@@ -98,6 +124,7 @@ class UpdaterThread extends Thread {
 
 	private final Object waitLock;
 	private Map<Bundle, Set<File>> waitFor;
+	private Map<Bundle, Set<File>> held;
 	
 	private Map<Bundle, List<File>> editing;
 	
@@ -113,13 +140,14 @@ class UpdaterThread extends Thread {
 		this.managerPort = 5050;
 		this.migratorHost = "localhost";
 		this.migratorPort = 5001;
-		this.bundles = new HashMap<Bundle, Long>();
 		this.exported = new HashMap<Bundle, Bundle>();
-		this.bundles.put(application, getLastModified(application));
+		Set<Bundle> watched = new LinkedHashSet<Bundle>();
+		watched.add(application);
 		for(Bundle bundle : bundles) {
 			logger.debug("updater monitoring: {}", bundle);
-			this.bundles.put(bundle, getLastModified(bundle));
+			watched.add(bundle);
 		}
+		this.feed = new ChangeFeed(watched);
 		RunnerService.addListener(new MigrateListener());
 	}
 	
@@ -155,75 +183,37 @@ class UpdaterThread extends Thread {
 		}
 	}
 	
-	private synchronized File[] getEditing(Module module) {
-		if(editing != null) {
-			List<File> files = editing.get(module);
-			if(files != null) {
-				return files.toArray(new File[files.size()]);
-			}
-		}
-		return null;
+	public boolean isAutoMigrating() {
+		return autoMigrating;
 	}
-	
-	private long getLastModified(Bundle bundle) {
-		long modified;
-		
-		if(bundle.isJar) {
-			modified = bundle.file.lastModified();
+
+	/**
+	 * Sort the given bundles so that each comes after any of the others that it depends on.
+	 */
+	private List<Bundle> order(Collection<Bundle> bundles) {
+		List<Bundle> ordered = new ArrayList<Bundle>(bundles.size());
+		if(bundles.size() == 1) {
+			ordered.addAll(bundles);
 		} else {
-			if(bundle instanceof Module) {
-				Module module = (Module) bundle;
-				File[] src = FileUtils.findFiles(bundle.src, ".esp", ".emt", ".ess", ".ejs");
-				if(src.length == 0) {
-					modified = FileUtils.getLastModified(module.bin, module.assets);
-				} else {
-					File[] bin = module.getBinEFiles(src);
-					long binMod = FileUtils.getLastModified(bin);
-					long mod = FileUtils.getLastModified(module.bin);
-					if(mod > binMod) {
-						modified = mod;
-					} else {
-						long srcMod = FileUtils.getLastModified(src);
-						if(srcMod > binMod) {
-							modified = 0; // hasn't been compiled yet - don't update!
-						} else {
-							// bin may be newer than the src because the src hasn't been saved,
-							//  but the bin is saved on each edit
-							modified = srcMod;
-						}
-					}
-				}
-			} else {
-				modified = FileUtils.getLastModified(bundle.bin);
+			Set<Bundle> visited = new HashSet<Bundle>();
+			for(Bundle bundle : bundles) {
+				order(bundle, bundles, visited, ordered);
 			}
 		}
-
-		return modified;
+		return ordered;
 	}
 
-	private long getLastModified1(Bundle bundle) {
-		if(bundle.isJar) {
-			return bundle.file.lastModified();
-		}
-		
-		if(bundle instanceof Module) {
-			Module module = (Module) bundle;
-
-			File[] ea = getEditing(module);
-			if(ea != null) {
-				long mod1 = FileUtils.getLastModified(ea);
-				long mod2 = FileUtils.getLastModifiedExcluding(module.bin, module.getBinEFiles(ea));
-				return Math.max(mod1, mod2);
+	private void order(Bundle bundle, Collection<Bundle> bundles, Set<Bundle> visited, List<Bundle> ordered) {
+		if(visited.add(bundle)) {
+			for(Bundle dependency : bundle.getDependencies(workspace).keySet()) {
+				if(bundles.contains(dependency)) {
+					order(dependency, bundles, visited, ordered);
+				}
 			}
+			ordered.add(bundle);
 		}
-
-		return FileUtils.getLastModified(bundle.bin);
 	}
 	
-	public boolean isAutoMigrating() {
-		return autoMigrating;
-	}
-
 	public void paused(boolean paused) {
 		this.paused = paused;
 	}
@@ -237,7 +227,7 @@ class UpdaterThread extends Thread {
 	}
 
 	public void waitFor(Bundle bundle, Collection<File> files) {
-		if(bundles.containsKey(bundle)) {
+		if(feed.isWatching(bundle)) {
 			synchronized(waitLock) {
 				if(waitFor == null) {
 					waitFor = new HashMap<Bundle, Set<File>>();
@@ -256,15 +246,12 @@ class UpdaterThread extends Thread {
 		running = true;
 		while(running) {
 			try {
-				sleep(1000);
+				sleep(feed.hasPending() ? BUSY_INTERVAL : IDLE_INTERVAL);
 				if(!paused) {
-					// long start = System.currentTimeMillis();
-					if(waitFor == null) {
-						updateBundles();
-					} else {
-						updateWaitFor();
+					Map<Bundle, Set<File>> changes = feed.poll();
+					if(!changes.isEmpty() || held != null) {
+						updateBundles(changes);
 					}
-					// System.out.println("updater: " + (System.currentTimeMillis() - start));
 				}
 			} catch(InterruptedException e) {
 				// restart
@@ -272,57 +259,65 @@ class UpdaterThread extends Thread {
 		}
 	}
 
-	private void updateBundles() {
-		for(Entry<Bundle, Long> entry : bundles.entrySet()) {
-			Bundle bundle = entry.getKey();
-			long modified = entry.getValue();
-			long lastModified = getLastModified(bundle);
-			if(modified < lastModified) {
-				try {
-					Bundle update = workspace.export(application, bundle);
-					logger.debug("updating {} ({} < {})", update, modified, lastModified);
-					bundles.put(bundle, lastModified);
-					if(autoMigrating && update.isMigrator() && reMigListener == null) {
-						reMigListener = new ReMigrateListener();
-						RunnerService.addListener(reMigListener);
-					}
-					update(managerHost, managerPort, bundle, "file:" + update.file.getAbsolutePath());
-					RunnerService.notifyListeners(Type.Update, application, update);
-					Bundle previous = exported.put(bundle, update);
-					if(previous != null) {
-						previous.delete();
+	/**
+	 * Update the changed bundles - unless there are files being waited for, in which case the changes
+	 * are held until they have all been seen.
+	 */
+	private void updateBundles(Map<Bundle, Set<File>> changes) {
+		synchronized(waitLock) {
+			if(held != null) {
+				for(Entry<Bundle, Set<File>> entry : changes.entrySet()) {
+					Set<File> files = held.get(entry.getKey());
+					if(files == null) {
+						held.put(entry.getKey(), entry.getValue());
+					} else {
+						files.addAll(entry.getValue());
 					}
-//					break; // just update the first one, we'll be back soon if there's more...
-				} catch(IOException e) {
-					e.printStackTrace();
 				}
+				changes = held;
+				held = null;
 			}
-		}
-	}
-
-	private void updateWaitFor() {
-		synchronized(waitLock) {
-			if(waitFor != null) { // just in case we missed the change while not synchronized
-				for(Iterator<Entry<Bundle, Set<File>>> i1 = waitFor.entrySet().iterator(); i1.hasNext(); ) {
-					Entry<Bundle, Set<File>> entry = i1.next();
-					long modified = bundles.get(entry.getKey());
-					Set<File> files = entry.getValue();
-					for(Iterator<File> i2 = files.iterator(); i2.hasNext(); ) {
-						File file = i2.next();
-						if(modified < file.lastModified()) {
-							i2.remove();
-							if(files.isEmpty()) {
-								i1.remove();
-							}
+			if(waitFor != null) {
+				for(Entry<Bundle, Set<File>> entry : changes.entrySet()) {
+					Set<File> files = waitFor.get(entry.getKey());
+					if(files != null) {
+						files.removeAll(entry.getValue());
+						if(files.isEmpty()) {
+							waitFor.remove(entry.getKey());
 						}
 					}
 				}
 				if(waitFor.isEmpty()) {
 					waitFor = null;
-					updateBundles(); // TODO
+				} else {
+					held = new LinkedHashMap<Bundle, Set<File>>(changes);
+					return;
 				}
 			}
 		}
+		if(changes.isEmpty()) {
+			return;
+		}
+
+		RunnerService.notifyListeners(Type.Changed, application, changes);
+		for(Bundle bundle : order(changes.keySet())) {
+			try {
+				Bundle update = workspace.export(application, bundle);
+				logger.debug("updating {} ({} changed files)", update, changes.get(bundle).size());
+				if(autoMigrating && update.isMigrator() && reMigListener == null) {
+					reMigListener = new ReMigrateListener();
+					RunnerService.addListener(reMigListener);
+				}
+				update(managerHost, managerPort, bundle, "file:" + update.file.getAbsolutePath());
+				RunnerService.notifyListeners(Type.Update, application, update);
+				Bundle previous = exported.put(bundle, update);
+				if(previous != null) {
+					previous.delete();
+				}
+			} catch(IOException e) {
+				logger.warn("could not update {}", e, bundle);
+			}
+		}
 	}
-	
+
 }
@@ -146,9 +146,9 @@ public class EspCompiler {
 		inJava = true;
 
 		indent(body);
-		body.append(sbName).append(".append(h(toJson(toMap(");
+		body.append("h(").append(sbName).append(", toJson(toMap(");
 		build(value, body);
-		body.append("))));\n");
+		body.append(")));\n");
 
 		prepForMarkup(body);
 		body.append("\\\"");
@@ -382,14 +382,22 @@ public class EspCompiler {
 				return;
 			}
 			
+			char escapeChar = getEscapeChar(container);
+
+			// HTML is escaped straight into the StringBuilder: h(sb, value) rather than sb.append(h(value))
+			boolean escapeInto = (escapeChar == 'h' && !inJava && !forceInJava);
+			
 			if(!inJava && !forceInJava) {
 				sb.append("\");\n");
 				indent(sb);
-				sb.append(sbName).append(".append(");
+				if(escapeInto) {
+					sb.append("h(").append(sbName).append(", ");
+				} else {
+					sb.append(sbName).append(".append(");
+				}
 			}
 			
-			char escapeChar = getEscapeChar(container);
-			if(escapeChar != 0) sb.append(escapeChar).append('(');
+			if(escapeChar != 0 && !escapeInto) sb.append(escapeChar).append('(');
 			
 			List<EspPart> parts = container.getParts();
 			for(int i = 0; i < parts.size(); i++) {
@@ -406,7 +414,7 @@ public class EspCompiler {
 				}
 			}
 			
-			if(escapeChar != 0) sb.append(')');
+			if(escapeChar != 0 && !escapeInto) sb.append(')');
 			
 			if(!inJava && !forceInJava) {
 				sb.append(");\n");
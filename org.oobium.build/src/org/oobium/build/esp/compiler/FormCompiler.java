@@ -653,9 +653,9 @@ public class FormCompiler {
 					String text = parent.getSimpleString(arg.getValue());
 					if(text == null) {
 						parent.prepForJava(body);
-						body.append(sbName).append(".append(h(titleize(");
+						body.append("h(").append(sbName).append(", titleize(");
 						parent.build(arg, body);
-						body.append(")));\n");
+						body.append("));\n");
 						parent.prepForMarkup(body);
 					} else {
 						body.append(titleize(text));
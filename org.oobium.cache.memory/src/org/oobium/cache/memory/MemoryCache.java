@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.cache.memory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size bounded, segmented LRU cache of byte arrays.
+ * <p>Keys are spread over a number of independently locked segments, so that readers and writers of
+ * different keys rarely contend. Each segment is split into a probationary area, where new entries
+ * are placed, and a protected area (80% of the segment) that entries are promoted to when they are
+ * read again. Entries are evicted from the least recently used end of the probationary area first, so a
+ * burst of one-off entries cannot push out the entries that are actually being read.</p>
+ */
+public class MemoryCache {
+
+	private class Segment {
+
+		final LinkedHashMap<String, MemoryCacheObject> probation;
+		final LinkedHashMap<String, MemoryCacheObject> protect;
+		final long maxWeight;
+		final long maxProtected;
+		long probationWeight;
+		long protectedWeight;
+
+		Segment(long maxWeight) {
+			this.probation = new LinkedHashMap<String, MemoryCacheObject>(16, 0.75f, true);
+			this.protect = new LinkedHashMap<String, MemoryCacheObject>(16, 0.75f, true);
+			this.maxWeight = maxWeight;
+			this.maxProtected = (maxWeight * 8) / 10;
+		}
+
+		synchronized void clear() {
+			probation.clear();
+			protect.clear();
+			probationWeight = 0;
+			protectedWeight = 0;
+		}
+
+		private void evict() {
+			while(probationWeight + protectedWeight > maxWeight) {
+				Iterator<MemoryCacheObject> iter = probation.values().iterator();
+				if(!iter.hasNext()) {
+					iter = protect.values().iterator();
+					MemoryCacheObject obj = iter.next();
+					iter.remove();
+					protectedWeight -= obj.weight;
+				} else {
+					MemoryCacheObject obj = iter.next();
+					iter.remove();
+					probationWeight -= obj.weight;
+				}
+				evictions.incrementAndGet();
+			}
+		}
+
+		synchronized MemoryCacheObject get(String key, long now) {
+			MemoryCacheObject obj = protect.get(key);
+			if(obj == null) {
+				obj = probation.remove(key);
+				if(obj == null) {
+					return null;
+				}
+				probationWeight -= obj.weight;
+				if(obj.isExpired(now)) {
+					return null;
+				}
+				protect.put(key, obj);
+				protectedWeight += obj.weight;
+				while(protectedWeight > maxProtected) {
+					// demote the least recently used protected entries back to probation
+					Iterator<MemoryCacheObject> iter = protect.values().iterator();
+					MemoryCacheObject demoted = iter.next();
+					iter.remove();
+					protectedWeight -= demoted.weight;
+					probation.put(demoted.key, demoted);
+					probationWeight += demoted.weight;
+				}
+			}
+			else if(obj.isExpired(now)) {
+				protect.remove(key);
+				protectedWeight -= obj.weight;
+				return null;
+			}
+			return obj;
+		}
+
+		synchronized void put(MemoryCacheObject obj) {
+			remove(obj.key);
+			probation.put(obj.key, obj);
+			probationWeight += obj.weight;
+			evict();
+		}
+
+		synchronized MemoryCacheObject remove(String key) {
+			MemoryCacheObject obj = probation.remove(key);
+			if(obj != null) {
+				probationWeight -= obj.weight;
+			} else {
+				obj = protect.remove(key);
+				if(obj != null) {
+					protectedWeight -= obj.weight;
+				}
+			}
+			return obj;
+		}
+
+		synchronized int size() {
+			return probation.size() + protect.size();
+		}
+
+		synchronized long weight() {
+			return probationWeight + protectedWeight;
+		}
+
+	}
+
+
+	private final Segment[] segments;
+	private final int mask;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final AtomicLong evictions;
+
+	/**
+	 * @param maxBytes the approximate maximum number of bytes held by the cache
+	 * @param concurrency the expected number of concurrent threads using the cache;
+	 * rounded up to a power of 2 to give the number of segments
+	 */
+	public MemoryCache(long maxBytes, int concurrency) {
+		int count = 1;
+		while(count < concurrency) {
+			count <<= 1;
+		}
+		segments = new Segment[count];
+		for(int i = 0; i < count; i++) {
+			segments[i] = new Segment(maxBytes / count);
+		}
+		mask = count - 1;
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+		evictions = new AtomicLong();
+	}
+
+	private Segment segment(String key) {
+		int h = key.hashCode();
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return segments[h & mask];
+	}
+
+	public void clear() {
+		for(Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public MemoryCacheObject get(String key) {
+		MemoryCacheObject obj = segment(key).get(key, System.currentTimeMillis());
+		if(obj != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return obj;
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Put the given data into the cache.
+	 * @param key the key
+	 * @param data the data to cache; the array is not copied and must not be modified afterwards
+	 * @param ttl the time to live, in milliseconds; 0 if the entry should not expire
+	 * @return true if the data was cached, false if it was too large to cache
+	 */
+	public boolean put(String key, byte[] data, long ttl) {
+		long now = System.currentTimeMillis();
+		MemoryCacheObject obj = new MemoryCacheObject(key, data, now, (ttl > 0) ? (now + ttl) : 0);
+		Segment segment = segment(key);
+		if(obj.weight > segment.maxWeight) {
+			segment.remove(key);
+			return false;
+		}
+		segment.put(obj);
+		return true;
+	}
+
+	public void remove(String key) {
+		segment(key).remove(key);
+	}
+
+	/**
+	 * @return the number of entries in the cache (expired entries are included until they are read or evicted)
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		long h = hits.get();
+		long m = misses.get();
+		long total = h + m;
+		return "MemoryCache {entries: " + size() + ", bytes: " + weight() + ", hits: " + h + ", misses: " + m +
+				", hitRate: " + ((total == 0) ? 0 : ((h * 100) / total)) + "%, evictions: " + evictions.get() + "}";
+	}
+
+	/**
+	 * @return the approximate number of bytes held by the cache
+	 */
+	public long weight() {
+		long weight = 0;
+		for(Segment segment : segments) {
+			weight += segment.weight();
+		}
+		return weight;
+	}
+
+}
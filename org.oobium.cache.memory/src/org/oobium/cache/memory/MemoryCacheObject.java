@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.cache.memory;
+
+import static org.oobium.utils.DateUtils.httpDate;
+
+import org.oobium.cache.CacheObject;
+
+public class MemoryCacheObject implements CacheObject {
+
+	private static final int OVERHEAD = 96; // rough size of the object, its key, and its map entry
+
+	final String key;
+	final byte[] data;
+	final long expires;
+	final int weight;
+	private final String lastModified;
+	private final String contentLength;
+
+	MemoryCacheObject(String key, byte[] data, long created, long expires) {
+		this.key = key;
+		this.data = data;
+		this.expires = expires;
+		this.weight = data.length + (key.length() * 2) + OVERHEAD;
+		this.lastModified = httpDate(created);
+		this.contentLength = Integer.toString(data.length);
+	}
+
+	@Override
+	public String lastModified() {
+		return lastModified;
+	}
+
+	@Override
+	public String contentLength() {
+		return contentLength;
+	}
+
+	boolean isExpired(long now) {
+		return expires > 0 && now >= expires;
+	}
+
+	/**
+	 * @return the cached bytes; this array is shared and must not be modified
+	 */
+	@Override
+	public Object payload() {
+		return data;
+	}
+
+}
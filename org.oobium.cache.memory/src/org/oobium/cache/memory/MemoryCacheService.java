@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.cache.memory;
+
+import static org.oobium.utils.FileUtils.readFile;
+
+import java.io.File;
+import java.util.Hashtable;
+
+import org.oobium.cache.CacheObject;
+import org.oobium.cache.CacheService;
+import org.oobium.logging.LogProvider;
+import org.oobium.logging.Logger;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.util.tracker.ServiceTracker;
+
+/**
+ * A CacheService that keeps its objects in memory, in a {@link MemoryCache}.
+ * <p>Configured with system properties:</p>
+ * <ul>
+ *   <li><b>org.oobium.cache.memory.size</b>: the maximum size of the cache, in bytes (default 64MB)</li>
+ *   <li><b>org.oobium.cache.memory.ttl</b>: the default time to live of a cached object, in seconds (default 0, no expiry)</li>
+ *   <li><b>org.oobium.cache.memory.segments</b>: the number of independently locked segments (default 16)</li>
+ *   <li><b>org.oobium.cache.memory.tier</b>: set to "file" to put this cache in front of the file CacheService (an L1/L2 tier):
+ *   misses are read from the file cache, and sets and expires are written through to it</li>
+ * </ul>
+ * The service is registered with a higher ranking than the file cache so that it is the one used by applications.
+ */
+public class MemoryCacheService implements BundleActivator, CacheService {
+
+	private final Logger logger;
+	private final MemoryCache cache;
+	private final long ttl;
+	private final boolean tiered;
+	private ServiceTracker l2Tracker;
+
+	public MemoryCacheService() {
+		this(Long.getLong("org.oobium.cache.memory.size", 64 * 1024 * 1024),
+			 Long.getLong("org.oobium.cache.memory.ttl", 0) * 1000,
+			 Integer.getInteger("org.oobium.cache.memory.segments", 16),
+			 CacheService.TYPE_FILE.equals(System.getProperty("org.oobium.cache.memory.tier")));
+	}
+
+	public MemoryCacheService(long maxBytes, long ttl, int segments, boolean tiered) {
+		this.logger = LogProvider.getLogger(MemoryCacheService.class);
+		this.cache = new MemoryCache(maxBytes, segments);
+		this.ttl = ttl;
+		this.tiered = tiered;
+	}
+
+	@Override
+	public void start(BundleContext context) throws Exception {
+		logger.setTag(context.getBundle().getSymbolicName());
+		logger.info("starting MemoryCacheService...");
+
+		if(tiered) {
+			String filter = "(&(" + Constants.OBJECTCLASS + "=" + CacheService.class.getName() + ")(" + CacheService.TYPE + "=" + CacheService.TYPE_FILE + "))";
+			l2Tracker = new ServiceTracker(context, context.createFilter(filter), null);
+			l2Tracker.open();
+			logger.info("using the file cache as a second level");
+		}
+
+		Hashtable<String, Object> properties = new Hashtable<String, Object>();
+		properties.put(CacheService.TYPE, CacheService.TYPE_MEMORY);
+		properties.put(Constants.SERVICE_RANKING, 10);
+		context.registerService(CacheService.class.getName(), this, properties);
+
+		logger.info("MemoryCacheService started");
+	}
+
+	@Override
+	public void stop(BundleContext context) throws Exception {
+		if(l2Tracker != null) {
+			l2Tracker.close();
+			l2Tracker = null;
+		}
+		logger.info(cache.toString());
+		cache.clear();
+		logger.info("MemoryCacheService stopped");
+		logger.setTag(null);
+	}
+
+	private CacheService getSecondLevel() {
+		ServiceTracker tracker = l2Tracker;
+		if(tracker != null) {
+			return (CacheService) tracker.getService();
+		}
+		return null;
+	}
+
+	@Override
+	public void expire() {
+		cache.clear();
+		CacheService l2 = getSecondLevel();
+		if(l2 != null) {
+			l2.expire();
+		}
+	}
+
+	@Override
+	public void expire(String key) {
+		if(key == null || key.length() == 0) {
+			throw new IllegalArgumentException("key cannot be blank");
+		}
+		cache.remove(key);
+		CacheService l2 = getSecondLevel();
+		if(l2 != null) {
+			l2.expire(key);
+		}
+	}
+
+	@Override
+	public CacheObject get(String key) {
+		if(key == null || key.length() == 0) {
+			throw new IllegalArgumentException("key cannot be blank");
+		}
+		CacheObject obj = cache.get(key);
+		if(obj == null) {
+			CacheService l2 = getSecondLevel();
+			if(l2 != null) {
+				obj = l2.get(key);
+				if(obj != null) {
+					promote(key, obj);
+				}
+			}
+		}
+		return obj;
+	}
+
+	/**
+	 * @return the underlying cache, for access to its statistics
+	 */
+	public MemoryCache getCache() {
+		return cache;
+	}
+
+	private void promote(String key, CacheObject obj) {
+		Object payload = obj.payload();
+		if(payload instanceof byte[]) {
+			cache.put(key, (byte[]) payload, ttl);
+		}
+		else if(payload instanceof File) {
+			File file = (File) payload;
+			long length = file.length();
+			if(length > 0 && length < Integer.MAX_VALUE) {
+				cache.put(key, readFile(file, new byte[(int) length]), ttl);
+			}
+		}
+	}
+
+	@Override
+	public void set(String key, byte[] value) {
+		set(key, value, ttl);
+	}
+
+	/**
+	 * Cache the given value, expiring it after the given time to live.
+	 * @param key the key
+	 * @param value the value to cache
+	 * @param ttl the time to live, in milliseconds; 0 if the value should not expire
+	 */
+	public void set(String key, byte[] value, long ttl) {
+		if(key == null || key.length() == 0) {
+			throw new IllegalArgumentException("key cannot be blank");
+		}
+		if(!cache.put(key, (value == null) ? new byte[0] : value, ttl)) {
+			logger.debug("too large to cache in memory: {}", key);
+		}
+		CacheService l2 = getSecondLevel();
+		if(l2 != null) {
+			l2.set(key, value);
+		}
+	}
+
+}
@@ -19,8 +19,9 @@ import java.io.ByteArrayInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -31,8 +32,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
 import org.oobium.utils.StringUtils;
 
 public class Client {
@@ -61,6 +68,7 @@ public class Client {
 
 	private String boundary;
 	private boolean sendBinaryAsJson;
+	private long timeout;
 	
 	private ClientResponse response;
 
@@ -82,6 +90,8 @@ public class Client {
 		this.host = host;
 		this.port = port;
 		this.url = null;
+
+		this.headers = new LinkedHashMap<String, List<String>>();
 	}
 	
 	public void addHeader(String name, String value) {
@@ -97,6 +107,25 @@ public class Client {
 		doAddParameter(key, value);
 	}
 	
+	private ChannelBuffer createContent(Map<String, String> params, Map<String, MessagePart> parts, String boundary) throws IOException {
+		ChannelBuffer content = ChannelBuffers.dynamicBuffer();
+		if(parts == null) {
+			content.writeBytes(attrsEncode(params).getBytes("UTF-8"));
+		} else {
+			DataOutputStream out = new DataOutputStream(new ChannelBufferOutputStream(content));
+			out.writeBytes("--" + boundary + "\r\n");
+			for(Entry<String, String> entry : params.entrySet()) {
+				writeParam(out, entry.getKey(), entry.getValue(), boundary);
+			}
+			for(Entry<String, MessagePart> entry : parts.entrySet()) {
+				writePart(out, entry.getKey(), entry.getValue(), boundary);
+			}
+			out.writeBytes("--");
+			out.flush();
+		}
+		return content;
+	}
+
 	public ClientResponse delete() {
 		return request(DELETE, getPath());
 	}
@@ -141,6 +170,36 @@ public class Client {
 		return boundary;
 	}
 
+	private String getBoundary(Map<String, MessagePart> parts) {
+		if(parts == null) {
+			return null;
+		}
+		String boundary = this.boundary;
+		if(boundary == null) {
+			List<String> ctypes = headers.get(HttpHeaders.Names.CONTENT_TYPE);
+			if(ctypes != null && !ctypes.isEmpty()) {
+				for(String ctype : ctypes) {
+					String[] sa = ctype.split("\\s*;\\s*");
+					for(int i = 0; i < sa.length; i++) {
+						if(sa[i].startsWith("boundary=")) {
+							if(sa[i].length() > 9) {
+								boundary = (sa[i].substring(9));
+							}
+							break;
+						}
+					}
+					if(boundary != null) {
+						break;
+					}
+				}
+			}
+			if(boundary == null) {
+				boundary = "---------------------------OobiumBoundary";
+			}
+		}
+		return boundary;
+	}
+
 	public String getHost() {
 		return (url != null) ? url.getHost() : host;
 	}
@@ -169,7 +228,7 @@ public class Client {
 		}
 	}
 	
-	private URL getURL(Map<String, String> parameters) throws MalformedURLException {
+	private String getUri(Map<String, String> parameters) {
 		String path = this.path;
 		if(parameters != null && !parameters.isEmpty()) {
 			switch(method.getName().charAt(0)) {
@@ -180,6 +239,10 @@ public class Client {
 				break;
 			}
 		}
+		return path;
+	}
+
+	private URL getURL(String path) throws MalformedURLException {
 		if(url != null) {
 			return new URL(url.getProtocol(), url.getHost(), url.getPort(), path);
 		} else {
@@ -257,16 +320,61 @@ public class Client {
 		this.path = path;
 		this.parameters = parameters;
 		
-		run();
+		try {
+			response = send().get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			response = new ClientResponse(e);
+		}
 		
 		return response;
 	}
+
+	/**
+	 * Send a request without waiting for its response; the response is not available from {@link #getResponse()}.
+	 * @see HttpClient
+	 */
+	public ClientFuture requestAsync(HttpMethod type, String path, Map<String, ?> parameters) {
+		if(path == null) {
+			path = "/";
+		} else if(!path.startsWith("/")) {
+			path = "/" + path;
+		}
+		this.method = type;
+		this.path = path;
+		this.parameters = parameters;
+		
+		return send();
+	}
 	
+	private ClientResponse run(URL url, ChannelBuffer content, String contentType) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		conn.setRequestMethod(method.getName());
+		if(timeout > 0) {
+			conn.setConnectTimeout((int) timeout);
+			conn.setReadTimeout((int) timeout);
+		}
+		setHeaders(conn);
+		if(content != null) {
+			conn.setRequestProperty(HttpHeaders.Names.CONTENT_TYPE, contentType);
+			conn.setDoOutput(true);
+			OutputStream out = conn.getOutputStream();
+			content.readBytes(out, content.readableBytes());
+			out.flush();
+			out.close();
+		}
+		return new ClientResponse(conn);
+	}
+
 	public void sendBinaryAsJson(boolean sendAsJson) {
 		this.sendBinaryAsJson = sendAsJson;
 	}
 	
-	private void run() {
+	/**
+	 * Send the current request, on a pooled connection from the {@link HttpClient} of this client's host
+	 * (HTTPS requests are sent synchronously with an HttpURLConnection).
+	 */
+	private ClientFuture send() {
 		try {
 			Map<String, String> params = null;
 			Map<String, MessagePart> parts = null;
@@ -298,59 +406,37 @@ public class Client {
 					}
 				}
 			}
-			
-			URL url = getURL(params);
-	        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-	        conn.setRequestMethod(method.getName());
-	        setHeaders(conn);
-	        if(method == POST || method == PUT) {
-	        	conn.setDoOutput(true);
-	        	if(parts == null) {
-			        OutputStreamWriter out = new OutputStreamWriter(conn.getOutputStream());
-			        out.write(attrsEncode(params));
-			        out.flush();
-			        out.close();
-	        	} else {
-	        		String boundary = this.boundary;
-	        		if(boundary == null) {
-		        		List<String> ctypes = headers.get(HttpHeaders.Names.CONTENT_TYPE);
-		        		if(ctypes != null && !ctypes.isEmpty()) {
-		        			for(String ctype : ctypes) {
-		        				String[] sa = ctype.split("\\s*;\\s*");
-		        				for(int i = 0; i < sa.length; i++) {
-		        					if(sa[i].startsWith("boundary=")) {
-		        						if(sa[i].length() > 9) {
-		        							boundary = (sa[i].substring(9));
-		        						}
-		        						break;
-		        					}
-		        				}
-		        				if(boundary != null) {
-		        					break;
-		        				}
-		        			}
-		        		}
-		        		if(boundary == null) {
-		        			boundary = "---------------------------OobiumBoundary";
-		        		}
-	        		}
-	        		conn.setRequestProperty(HttpHeaders.Names.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
-	                DataOutputStream out = new DataOutputStream(conn.getOutputStream());
-	                out.writeBytes("--" + boundary + "\r\n");
-	                for(Entry<String, String> entry : params.entrySet()) {
-	                	writeParam(out, entry.getKey(), entry.getValue(), boundary);
-	                }
-	                for(Entry<String, MessagePart> entry : parts.entrySet()) {
-	                	writePart(out, entry.getKey(), entry.getValue(), boundary);
-	                }
-	                out.writeBytes("--");
-	                out.flush();
-	                out.close();
-	        	}
-	        }
-	        response = new ClientResponse(conn);
+
+			String uri = getUri(params);
+			ChannelBuffer content = null;
+			String contentType = null;
+			if(method == POST || method == PUT) {
+				String boundary = getBoundary(parts);
+				content = createContent(params, parts, boundary);
+				if(boundary != null) {
+					contentType = "multipart/form-data; boundary=" + boundary;
+				} else if(headers.containsKey(HttpHeaders.Names.CONTENT_TYPE)) {
+					contentType = headers.get(HttpHeaders.Names.CONTENT_TYPE).get(0);
+				} else {
+					contentType = "application/x-www-form-urlencoded";
+				}
+			}
+
+			if("https".equalsIgnoreCase(getProtocol())) {
+				return ClientFuture.completed(run(getURL(uri), content, contentType));
+			}
+
+			HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri);
+			setHeaders(request);
+			if(content != null) {
+				request.setHeader(HttpHeaders.Names.CONTENT_TYPE, contentType);
+				request.setHeader(HttpHeaders.Names.CONTENT_LENGTH, content.readableBytes());
+				request.setContent(content);
+			}
+			HttpClient client = HttpClient.getClient(getHost(), getPort());
+			return (timeout > 0) ? client.request(request, timeout) : client.request(request);
 		} catch(Exception e) {
-	        response = new ClientResponse(e);
+			return ClientFuture.completed(new ClientResponse(e));
 		}
 	}
 
@@ -389,19 +475,37 @@ public class Client {
 		}
 	}
 	
+	private void setHeaders(HttpRequest request) {
+		if(headers == null || !headers.containsKey(HttpHeaders.Names.USER_AGENT)) {
+			request.addHeader(HttpHeaders.Names.USER_AGENT, "Oobium Client");
+		}
+		if(headers != null) {
+			for(Entry<String, List<String>> entry : headers.entrySet()) {
+				request.setHeader(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * Set the number of milliseconds to wait for a response (0, the default, uses the default of the {@link HttpClient}).
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+	
     @Override
 	public String toString() {
 		if(url != null) return url.toString();
 		return protocol + "://" + host + ":" + port;
 	}
 
-	private void writeParam(DataOutputStream out, String name, String value, String boundary) throws Exception {
+	private void writeParam(DataOutputStream out, String name, String value, String boundary) throws IOException {
         out.writeBytes("content-disposition: form-data; name=\"" + name + "\"\r\n\r\n");
         out.writeBytes((value == null) ? "null" : value);
         out.writeBytes("\r\n--" + boundary + "\r\n");
     }
 	
-	private void writePart(DataOutputStream out, String name, MessagePart part, String boundary) throws Exception {
+	private void writePart(DataOutputStream out, String name, MessagePart part, String boundary) throws IOException {
 		StringBuilder sb = new StringBuilder();
 		sb.append("Content-Disposition").append(": form-data; name=\"").append(name).append('"');
 		for(Entry<String, String> entry : part.getParameters().entrySet()) {
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending response of a request sent with an {@link HttpClient}.
+ * <p>A request that fails does not cause {@link #get()} to throw an exception; instead, the response
+ * carries the exception, just as with the synchronous {@link Client} methods.</p>
+ */
+public class ClientFuture implements Future<ClientResponse> {
+
+	public static ClientFuture completed(ClientResponse response) {
+		ClientFuture future = new ClientFuture();
+		future.complete(response);
+		return future;
+	}
+
+
+	private ClientResponse response;
+	private boolean done;
+	private boolean cancelled;
+	private List<ResponseListener> listeners;
+
+	ClientFuture() {
+		// package private
+	}
+
+	/**
+	 * Add a listener to be notified when the response is available. If it is already available,
+	 * the listener is notified immediately, on the calling thread.
+	 */
+	public void addListener(ResponseListener listener) {
+		synchronized(this) {
+			if(!done) {
+				if(listeners == null) {
+					listeners = new ArrayList<ResponseListener>(2);
+				}
+				listeners.add(listener);
+				return;
+			}
+		}
+		listener.onResponse(response);
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized(this) {
+			if(done) {
+				return false;
+			}
+			cancelled = true;
+		}
+		return complete(new ClientResponse(new CancellationException()));
+	}
+
+	boolean complete(ClientResponse response) {
+		List<ResponseListener> listeners;
+		synchronized(this) {
+			if(done) {
+				return false;
+			}
+			this.response = response;
+			this.done = true;
+			listeners = this.listeners;
+			this.listeners = null;
+			notifyAll();
+		}
+		if(listeners != null) {
+			for(ResponseListener listener : listeners) {
+				listener.onResponse(response);
+			}
+		}
+		return true;
+	}
+
+	boolean fail(Throwable cause) {
+		return complete(new ClientResponse((cause instanceof Exception) ? (Exception) cause : new Exception(cause)));
+	}
+
+	@Override
+	public synchronized ClientResponse get() throws InterruptedException {
+		while(!done) {
+			wait();
+		}
+		if(cancelled) {
+			throw new CancellationException();
+		}
+		return response;
+	}
+
+	@Override
+	public synchronized ClientResponse get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		long end = System.nanoTime() + unit.toNanos(timeout);
+		while(!done) {
+			long remaining = end - System.nanoTime();
+			if(remaining <= 0) {
+				throw new TimeoutException();
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		if(cancelled) {
+			throw new CancellationException();
+		}
+		return response;
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return done;
+	}
+
+}
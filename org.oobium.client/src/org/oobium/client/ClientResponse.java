@@ -22,6 +22,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 
 public class ClientResponse {
@@ -42,6 +44,28 @@ public class ClientResponse {
 		return create(status, "system", isJS);
 	}
 	
+	/**
+	 * Create a response from its parts; used when the results of several requests are carried back
+	 * in the body of a single (batch) response.
+	 * @param headers the response headers; may be null
+	 * @param body the response body; may be null
+	 */
+	public static ClientResponse create(HttpResponseStatus status, Map<String, String> headers, String body) {
+		ClientResponse response = new ClientResponse();
+		response.status = status;
+		response.headers = new LinkedHashMap<String, List<String>>();
+		response.headers.put(null, Collections.singletonList("HTTP/1.1 " + status.getCode() + " " + status.getReasonPhrase()));
+		if(headers != null) {
+			for(Entry<String, String> header : headers.entrySet()) {
+				response.headers.put(header.getKey().toLowerCase(), Collections.singletonList(header.getValue()));
+			}
+		}
+		if(body != null) {
+			response.content = body.getBytes();
+		}
+		return response;
+	}
+	
 	private static ClientResponse create(HttpResponseStatus status, String server, boolean isJS) {
 		ClientResponse response = new ClientResponse();
 		response.status = status;
@@ -112,6 +136,20 @@ public class ClientResponse {
 		}
 	}
 	
+	ClientResponse(HttpResponse response) {
+		status = response.getStatus();
+		headers = new LinkedHashMap<String, List<String>>();
+		headers.put(null, Collections.singletonList(response.getProtocolVersion() + " " + status.getCode() + " " + status.getReasonPhrase()));
+		for(String name : response.getHeaderNames()) {
+			headers.put(name.toLowerCase(), response.getHeaders(name));
+		}
+		ChannelBuffer buffer = response.getContent();
+		if(buffer.readable()) {
+			content = new byte[buffer.readableBytes()];
+			buffer.readBytes(content);
+		}
+	}
+	
 	public boolean exceptionThrown() {
 		return exception != null;
 	}
@@ -0,0 +1,486 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.HttpChunkAggregator;
+import org.jboss.netty.handler.codec.http.HttpClientCodec;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+/**
+ * An asynchronous HTTP client for a single host, which keeps a pool of persistent (keep-alive) connections
+ * to it and reuses them from one request to the next.
+ * <p>Requests are sent on an idle connection if there is one, on a new connection if fewer than
+ * {@link #getMaxConnections()} are open, or are queued until a connection is free. Each connection
+ * has at most {@link #getMaxPipelined()} requests on it at a time (1, the default, turns pipelining off;
+ * only raise it for servers that answer pipelined requests in order).</p>
+ * <p>Use {@link #getClient(String, int)} to get the shared client for a host. The shared clients run on
+ * daemon threads, which are released by {@link #closeAll()} (called when this bundle is stopped).</p>
+ */
+public class HttpClient {
+
+	public static final int DEFAULT_MAX_CONNECTIONS = 8;
+	public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+	public static final int DEFAULT_MAX_PIPELINED = 1;
+	public static final long DEFAULT_TIMEOUT = 30000;
+
+	private static final int MAX_CONTENT_LENGTH = 64 * 1024 * 1024;
+
+	private static class ClientThreadFactory implements ThreadFactory {
+		private final String name;
+		private final AtomicInteger count = new AtomicInteger();
+		ClientThreadFactory(String name) {
+			this.name = name;
+		}
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private static final Map<String, HttpClient> clients = new HashMap<String, HttpClient>();
+	private static NioClientSocketChannelFactory channelFactory;
+	private static Timer timer;
+
+	/**
+	 * Close the connections of all shared clients and release the threads they use.
+	 */
+	public static synchronized void closeAll() {
+		for(HttpClient client : clients.values()) {
+			client.close();
+		}
+		clients.clear();
+		if(channelFactory != null) {
+			channelFactory.releaseExternalResources();
+			channelFactory = null;
+		}
+		if(timer != null) {
+			timer.stop();
+			timer = null;
+		}
+	}
+
+	/**
+	 * @return the shared client for the given host and port, creating it if necessary
+	 */
+	public static synchronized HttpClient getClient(String host, int port) {
+		if(port == -1) {
+			port = 80;
+		}
+		String key = host + ":" + port;
+		HttpClient client = clients.get(key);
+		if(client == null || client.closed) {
+			if(channelFactory == null) {
+				channelFactory = new NioClientSocketChannelFactory(
+						Executors.newCachedThreadPool(new ClientThreadFactory("oobium-client-boss")),
+						Executors.newCachedThreadPool(new ClientThreadFactory("oobium-client-worker")));
+				timer = new HashedWheelTimer(new ClientThreadFactory("oobium-client-timer"));
+			}
+			client = new HttpClient(host, port, channelFactory, timer);
+			clients.put(key, client);
+		}
+		return client;
+	}
+
+
+	/**
+	 * A request and its future, along with any state needed while it is queued or on a connection.
+	 */
+	static class Exchange {
+		final HttpRequest request;
+		final ClientFuture future;
+		Timeout timeout;
+		HttpClientHandler handler;
+		boolean retried;
+
+		Exchange(HttpRequest request) {
+			this.request = request;
+			this.future = new ClientFuture();
+		}
+
+		boolean isRetryable() {
+			if(retried) {
+				return false;
+			}
+			HttpMethod method = request.getMethod();
+			return method == HttpMethod.GET || method == HttpMethod.HEAD;
+		}
+	}
+
+
+	private final String host;
+	private final int port;
+	private final ClientBootstrap bootstrap;
+	private final Timer clientTimer;
+
+	private final List<HttpClientHandler> connections;
+	private final LinkedList<Exchange> waiting;
+	private int connecting;
+	private boolean closed;
+
+	private int maxConnections;
+	private int maxPipelined;
+	private int maxInFlight;
+	private long timeout;
+	private Semaphore inFlight;
+
+	private HttpClient(String host, int port, NioClientSocketChannelFactory channelFactory, Timer timer) {
+		this.host = host;
+		this.port = port;
+		this.clientTimer = timer;
+		this.connections = new ArrayList<HttpClientHandler>();
+		this.waiting = new LinkedList<Exchange>();
+		this.maxConnections = DEFAULT_MAX_CONNECTIONS;
+		this.maxPipelined = DEFAULT_MAX_PIPELINED;
+		this.maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+		this.timeout = DEFAULT_TIMEOUT;
+		this.inFlight = new Semaphore(maxInFlight);
+
+		bootstrap = new ClientBootstrap(channelFactory);
+		bootstrap.setOption("tcpNoDelay", true);
+		bootstrap.setOption("keepAlive", true);
+		bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+			@Override
+			public ChannelPipeline getPipeline() throws Exception {
+				ChannelPipeline pipeline = Channels.pipeline();
+				pipeline.addLast("codec", new HttpClientCodec());
+				pipeline.addLast("aggregator", new HttpChunkAggregator(MAX_CONTENT_LENGTH));
+				pipeline.addLast("handler", new HttpClientHandler(HttpClient.this));
+				return pipeline;
+			}
+		});
+	}
+
+	/**
+	 * Close all of this client's connections; requests that have not yet completed fail.
+	 * A closed client cannot be used again, although {@link #getClient(String, int)} will create a new one.
+	 */
+	public void close() {
+		List<HttpClientHandler> handlers;
+		List<Exchange> failed;
+		synchronized(this) {
+			closed = true;
+			handlers = new ArrayList<HttpClientHandler>(connections);
+			failed = new ArrayList<Exchange>(waiting);
+			waiting.clear();
+		}
+		for(HttpClientHandler handler : handlers) {
+			handler.close();
+		}
+		for(Exchange exchange : failed) {
+			exchange.future.fail(new IOException("client closed"));
+		}
+	}
+
+	private void connect() {
+		connecting++;
+		bootstrap.connect(new InetSocketAddress(host, port)).addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				if(!future.isSuccess()) {
+					connectFailed(future.getCause());
+				}
+			}
+		});
+	}
+
+	void connected(HttpClientHandler handler) {
+		synchronized(this) {
+			connecting--;
+			if(!closed) {
+				connections.add(handler);
+				dispatch(handler);
+				return;
+			}
+		}
+		handler.close();
+	}
+
+	private void connectFailed(Throwable cause) {
+		List<Exchange> failed = null;
+		synchronized(this) {
+			connecting--;
+			if(connections.isEmpty() && connecting == 0) {
+				// nothing is going to pick these up
+				failed = new ArrayList<Exchange>(waiting);
+				waiting.clear();
+			}
+		}
+		if(failed != null) {
+			for(Exchange exchange : failed) {
+				exchange.future.fail(cause);
+			}
+		}
+	}
+
+	/**
+	 * Called when a connection closes; the requests still on it are either sent again (if it is safe to do so -
+	 * the server may have closed an idle connection just as they were being sent) or failed.
+	 */
+	void disconnected(HttpClientHandler handler, List<Exchange> pending) {
+		List<Exchange> failed = new ArrayList<Exchange>();
+		synchronized(this) {
+			connections.remove(handler);
+			for(Exchange exchange : pending) {
+				if(!closed && !exchange.future.isDone() && exchange.isRetryable()) {
+					exchange.retried = true;
+					exchange.handler = null;
+					waiting.addFirst(exchange);
+				} else {
+					failed.add(exchange);
+				}
+			}
+			if(!waiting.isEmpty()) {
+				dispatch(null);
+			}
+		}
+		for(Exchange exchange : failed) {
+			exchange.future.fail(new IOException("connection closed"));
+		}
+	}
+
+	/**
+	 * Send as many waiting requests as possible, on the given handler first (if not null); open new
+	 * connections for the rest, up to the maximum. Must be called while holding this client's lock.
+	 */
+	private void dispatch(HttpClientHandler handler) {
+		if(handler != null) {
+			while(!waiting.isEmpty() && handler.canSend(maxPipelined)) {
+				send(handler, waiting.removeFirst());
+			}
+		}
+		for(Iterator<HttpClientHandler> iter = connections.iterator(); !waiting.isEmpty() && iter.hasNext(); ) {
+			HttpClientHandler h = iter.next();
+			while(!waiting.isEmpty() && h.canSend(maxPipelined)) {
+				send(h, waiting.removeFirst());
+			}
+		}
+		int needed = waiting.size() - connecting;
+		while(needed-- > 0 && connections.size() + connecting < maxConnections) {
+			connect();
+		}
+	}
+
+	/**
+	 * @return the total number of open connections, idle or not
+	 */
+	public synchronized int getConnectionCount() {
+		return connections.size();
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public synchronized int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public synchronized int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	public synchronized int getMaxPipelined() {
+		return maxPipelined;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public synchronized long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Called when a response for the given exchange has been received on the given handler.
+	 */
+	void received(HttpClientHandler handler, Exchange exchange, ClientResponse response) {
+		exchange.future.complete(response);
+		synchronized(this) {
+			if(!waiting.isEmpty()) {
+				dispatch(handler);
+			}
+		}
+	}
+
+	/**
+	 * Send the given request. If the maximum number of requests are already in flight, this blocks
+	 * until one completes (at most for the client's timeout, after which the request fails).
+	 * @see #request(HttpRequest, long)
+	 */
+	public ClientFuture request(HttpRequest request) {
+		return request(request, getTimeout());
+	}
+
+	/**
+	 * Send the given request, failing it if its response has not been received within the given
+	 * number of milliseconds (0 for no timeout). If the maximum number of requests are already in
+	 * flight, this blocks until one completes (at most for the timeout, after which the request fails).
+	 */
+	public ClientFuture request(HttpRequest request, long timeout) {
+		if(!request.containsHeader(HttpHeaders.Names.HOST)) {
+			request.setHeader(HttpHeaders.Names.HOST, (port == 80) ? host : (host + ":" + port));
+		}
+
+		final Exchange exchange = new Exchange(request);
+
+		final Semaphore permits;
+		synchronized(this) {
+			permits = inFlight;
+		}
+		try {
+			if(timeout > 0) {
+				if(!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+					exchange.future.fail(new TimeoutException("too many requests in flight to " + this));
+					return exchange.future;
+				}
+			} else {
+				permits.acquire();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			exchange.future.fail(e);
+			return exchange.future;
+		}
+
+		exchange.future.addListener(new ResponseListener() {
+			@Override
+			public void onResponse(ClientResponse response) {
+				permits.release();
+				if(exchange.timeout != null) {
+					exchange.timeout.cancel();
+				}
+			}
+		});
+
+		if(timeout > 0) {
+			exchange.timeout = clientTimer.newTimeout(new TimerTask() {
+				@Override
+				public void run(Timeout t) throws Exception {
+					timedOut(exchange);
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+		}
+
+		boolean isClosed;
+		synchronized(this) {
+			isClosed = closed;
+			if(!isClosed) {
+				waiting.add(exchange);
+				dispatch(null);
+			}
+		}
+		if(isClosed) {
+			exchange.future.fail(new IOException("client closed"));
+		}
+
+		return exchange.future;
+	}
+
+	private void send(HttpClientHandler handler, Exchange exchange) {
+		if(exchange.future.isDone()) {
+			return; // timed out or cancelled while waiting
+		}
+		exchange.handler = handler;
+		handler.send(exchange);
+	}
+
+	/**
+	 * Set the maximum number of connections that will be kept open to the host.
+	 */
+	public synchronized void setMaxConnections(int maxConnections) {
+		if(maxConnections < 1) {
+			throw new IllegalArgumentException("maxConnections must be greater than 0");
+		}
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * Set the maximum number of requests that may be in flight (sent or waiting to be sent, but not yet
+	 * completed) at a time; further requests block until there is room. The new limit applies to requests
+	 * made after this call.
+	 */
+	public synchronized void setMaxInFlight(int maxInFlight) {
+		if(maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be greater than 0");
+		}
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Set the maximum number of requests that may be sent on a connection before the first of them has been answered;
+	 * 1 turns pipelining off. The server must answer pipelined requests in the order they were received.
+	 */
+	public synchronized void setMaxPipelined(int maxPipelined) {
+		if(maxPipelined < 1) {
+			throw new IllegalArgumentException("maxPipelined must be greater than 0");
+		}
+		this.maxPipelined = maxPipelined;
+	}
+
+	/**
+	 * Set the default number of milliseconds to wait for a response (0 for no timeout).
+	 */
+	public synchronized void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	private void timedOut(Exchange exchange) {
+		HttpClientHandler handler;
+		synchronized(this) {
+			handler = exchange.handler;
+			if(handler == null) {
+				waiting.remove(exchange);
+			}
+		}
+		if(exchange.future.fail(new TimeoutException("timed out waiting for a response from " + this)) && handler != null) {
+			// responses on this connection can no longer be matched up with their requests
+			handler.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "http://" + host + ":" + port;
+	}
+
+}
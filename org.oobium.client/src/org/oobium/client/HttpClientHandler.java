@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.client;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.oobium.client.HttpClient.Exchange;
+
+/**
+ * Handles a single pooled connection of an {@link HttpClient}, matching responses up with the requests
+ * sent on it, in order. The pending list is guarded by the client's lock.
+ */
+class HttpClientHandler extends SimpleChannelUpstreamHandler {
+
+	private final HttpClient client;
+	private final LinkedList<Exchange> pending;
+	private Channel channel;
+	private boolean closing;
+
+	HttpClientHandler(HttpClient client) {
+		this.client = client;
+		this.pending = new LinkedList<Exchange>();
+	}
+
+	boolean canSend(int maxPipelined) {
+		return !closing && channel != null && channel.isConnected() && pending.size() < maxPipelined;
+	}
+
+	@Override
+	public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+		List<Exchange> list;
+		synchronized(client) {
+			closing = true;
+			list = new ArrayList<Exchange>(pending);
+			pending.clear();
+		}
+		client.disconnected(this, list);
+	}
+
+	@Override
+	public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+		channel = ctx.getChannel();
+		client.connected(this);
+	}
+
+	void close() {
+		synchronized(client) {
+			closing = true;
+		}
+		if(channel != null) {
+			channel.close();
+		}
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+		// pending requests are failed (or retried) when the channel is closed
+		ctx.getChannel().close();
+	}
+
+	@Override
+	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+		HttpResponse response = (HttpResponse) e.getMessage();
+		boolean keepAlive = HttpHeaders.isKeepAlive(response);
+		Exchange exchange;
+		synchronized(client) {
+			exchange = pending.poll();
+			if(!keepAlive) {
+				closing = true;
+			}
+		}
+		if(!keepAlive) {
+			ctx.getChannel().close();
+		}
+		if(exchange != null) {
+			client.received(this, exchange, new ClientResponse(response));
+		}
+	}
+
+	void send(Exchange exchange) {
+		pending.add(exchange);
+		channel.write(exchange.request);
+	}
+
+}
@@ -0,0 +1,22 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.client;
+
+public interface ResponseListener {
+
+	/**
+	 * Called once the response for a request has been received, or the request has failed (see
+	 * {@link ClientResponse#exceptionThrown()}). This is usually called on one of the client's I/O threads,
+	 * so implementations must not block.
+	 */
+	public abstract void onResponse(ClientResponse response);
+
+}
@@ -0,0 +1,95 @@
+package org.oobium.app.response;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.stream.ChunkedInput;
+import org.junit.Test;
+
+public class StreamingResponseTests {
+
+	private String page(int size) {
+		StringBuilder sb = new StringBuilder(size);
+		for(int i = 0; sb.length() < size; i++) {
+			sb.append("<p>").append(i).append(" caf\u00e9 \u20ac \ud83d\ude00</p>");
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testGetContent() throws Exception {
+		StreamingResponse response = new StreamingResponse();
+		response.setContentParts("<head>", new StringBuilder("caf\u00e9"), null, "</body>");
+		assertTrue(response.isStreamable());
+		assertEquals(17, response.getLength());
+
+		assertEquals("<head>caf\u00e9</body>", response.getContentAsString());
+		assertFalse(response.isStreamable());
+		assertEquals(-1, response.getLength());
+	}
+
+	@Test
+	public void testGetContentLarge() throws Exception {
+		String body = page(10000);
+		StreamingResponse response = new StreamingResponse();
+		response.setContentParts("<html>", body, "</html>");
+		assertEquals("<html>" + body + "</html>", response.getContentAsString());
+	}
+
+	@Test
+	public void testSetContentDiscardsParts() throws Exception {
+		StreamingResponse response = new StreamingResponse();
+		response.setContentParts("parts");
+		response.setContent("content");
+		assertFalse(response.isStreamable());
+		assertEquals("content", response.getContentAsString());
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		String head = "<!DOCTYPE html><html><head></head><body>";
+		String body = page(20000);
+		StreamingResponse response = new StreamingResponse();
+		response.setHeader(HttpHeaders.Names.CONTENT_LENGTH, 10);
+		response.setContentParts(head, new StringBuilder(body), "</body></html>");
+
+		ChunkedInput chunks = response.stream(1024);
+		assertTrue(response.isChunked());
+		assertEquals(HttpHeaders.Values.CHUNKED, response.getHeader(HttpHeaders.Names.TRANSFER_ENCODING));
+		assertNull(response.getHeader(HttpHeaders.Names.CONTENT_LENGTH));
+		assertEquals(0, response.getContent().readableBytes());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int count = 0;
+		while(chunks.hasNextChunk()) {
+			HttpChunk chunk = (HttpChunk) chunks.nextChunk();
+			if(chunk.isLast()) {
+				assertTrue(chunks.isEndOfInput());
+				break;
+			}
+			ChannelBuffer buffer = chunk.getContent();
+			assertTrue(buffer.readableBytes() > 0);
+			assertTrue(buffer.readableBytes() <= 1024);
+			byte[] bytes = new byte[buffer.readableBytes()];
+			buffer.readBytes(bytes);
+			out.write(bytes);
+			count++;
+		}
+		assertFalse(chunks.hasNextChunk());
+		assertTrue(count > 20);
+		assertEquals(head + body + "</body></html>", new String(out.toByteArray(), "UTF-8"));
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testStreamAfterGetContent() throws Exception {
+		StreamingResponse response = new StreamingResponse();
+		response.setContentParts("content");
+		response.getContent();
+		response.stream(1024);
+	}
+
+}
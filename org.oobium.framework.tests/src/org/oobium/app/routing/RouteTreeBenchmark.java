@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.app.routing;
+
+import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.oobium.app.http.Action.show;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.junit.Test;
+import org.oobium.app.AppService;
+import org.oobium.app.controllers.HttpController;
+import org.oobium.app.request.Request;
+import org.oobium.app.routing.handlers.HttpHandler;
+import org.oobium.app.server.ServerConfig;
+import org.oobium.framework.tests.Benchmark;
+import org.oobium.framework.tests.Benchmark.Task;
+import org.oobium.logging.Logger;
+
+/**
+ * Compares the RouteTree used by {@link AppRouter#getHandler(Request)} against a linear
+ * regex scan of the same routes (the way pattern routes used to be resolved).
+ * <p>Every route is a pattern route ("/resourcesN/{id}"), and the requests cycle through all of them, so the
+ * scan tries half of the routes on average; at 1000 routes it is the slow part of the run.</p>
+ */
+public class RouteTreeBenchmark {
+
+	public static class BenchController extends HttpController { }
+
+	private AppRouter router(int count) {
+		Logger logger = mock(Logger.class);
+		AppService service = mock(AppService.class);
+		when(service.getLogger()).thenReturn(logger);
+		when(service.getServerConfig()).thenReturn(new ServerConfig("localhost", 5555, false));
+
+		AppRouter router = new AppRouter(service);
+		router.setApi(null);
+		router.removeModelNotifier();
+		for(int i = 0; i < count; i++) {
+			router.addRoute("/resources" + i + "/{id}", BenchController.class, show);
+		}
+		return router;
+	}
+
+	private Request[] requests(int count) {
+		Request[] requests = new Request[count];
+		for(int i = 0; i < count; i++) {
+			requests[i] = new Request(HTTP_1_1, HttpMethod.GET, "/resources" + i + "/" + i, 5555);
+			requests[i].setHeader(HttpHeaders.Names.HOST, "localhost");
+			requests[i].getPath(); // decode the path up front so that it isn't part of the timing
+		}
+		return requests;
+	}
+
+	private void run(int count) throws Exception {
+		final AppRouter router = router(count);
+		final Request[] requests = requests(count);
+
+		final List<Route> routes = new ArrayList<Route>();
+		final List<HttpMethod> methods = new ArrayList<HttpMethod>();
+		for(Route route : router.getRoutes()) {
+			if(!route.isFixed()) {
+				String s = route.toString();
+				routes.add(route);
+				methods.add(HttpMethod.valueOf(s.substring(1, s.indexOf(']'))));
+			}
+		}
+		assertEquals(count, routes.size());
+
+		for(Request request : requests) {
+			RouteHandler handler = router.getHandler(request);
+			assertTrue(handler instanceof HttpHandler);
+			String id = request.getPath().substring(request.getPath().lastIndexOf('/') + 1);
+			assertEquals(id, ((HttpHandler) handler).params[0][1]);
+		}
+
+		new Benchmark(count + " routes")
+			.add("scan", new Task() {
+				@Override
+				public void run(int i) {
+					Request request = requests[i % requests.length];
+					String path = request.getPath();
+					Route match = null;
+					for(int j = 0; match == null && j < routes.size(); j++) {
+						if(methods.get(j) == request.getMethod()) {
+							if(routes.get(j).matcher(path).matches()) {
+								match = routes.get(j);
+							}
+						}
+					}
+					assertNotNull(match);
+				}
+			})
+			.add("tree", new Task() {
+				@Override
+				public void run(int i) {
+					assertNotNull(router.getHandler(requests[i % requests.length]));
+				}
+			})
+			.run();
+
+		router.clear();
+	}
+
+	@Test
+	public void test10Routes() throws Exception {
+		run(10);
+	}
+
+	@Test
+	public void test100Routes() throws Exception {
+		run(100);
+	}
+
+	@Test
+	public void test1000Routes() throws Exception {
+		run(1000);
+	}
+
+}
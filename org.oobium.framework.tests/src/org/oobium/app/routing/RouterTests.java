@@ -13,6 +13,7 @@ package org.oobium.app.routing;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.AUTHORIZATION;
 import static org.jboss.netty.handler.codec.http.HttpMethod.GET;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -33,6 +34,7 @@ import static org.oobium.app.http.Action.update;
 import static org.oobium.utils.StringUtils.asString;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -1003,14 +1005,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes() throws Exception {
 		router.addResources(Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /accounts -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /accounts/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1030,14 +1033,15 @@ public class RouterTests {
 	public void testAddModelRoutesTwice() throws Exception {
 		router.addResources(Account.class);
 		router.addResources(Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /accounts -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /accounts/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1057,15 +1061,16 @@ public class RouterTests {
 	public void testAddModelRoutes_AddShowAll() throws Exception {
 		router.addResources(Account.class);
 		router.addResource("{models}/{type:\\w+}", Account.class, showAll); // the last one added is the one used
-		assertEquals(8, router.getRoutes().size());
+		assertEquals(9, router.getRoutes().size());
 		assertEquals("[GET] /accounts -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(6).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#showAll(type)",		router.getRoutes().get(7).toString());
+		assertEquals("[POST] /accounts/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#showAll(type)",		router.getRoutes().get(8).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1078,7 +1083,7 @@ public class RouterTests {
 		assertEquals("/accounts/new", router.pathTo(account, showNew).toString());
 		
 		router.removeResource("{models}/{type:\\w+}", Account.class, showAll);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("/accounts", router.pathTo(account, showAll).toString());
 		
 		router.removeResources(Account.class);
@@ -1089,15 +1094,16 @@ public class RouterTests {
 	public void testAddShowAll_AddModelRoutes() throws Exception {
 		router.addResource("{models}/{type:\\w+}", Account.class, showAll);
 		router.addResources(Account.class);
-		assertEquals(8, router.getRoutes().size());
+		assertEquals(9, router.getRoutes().size());
 		assertEquals("[GET] /accounts -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#showAll(type)", 		router.getRoutes().get(3).toString());
-		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
-		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
-		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
+		assertEquals("[POST] /accounts/batch -> AccountController#batch", 		router.getRoutes().get(3).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#showAll(type)", 		router.getRoutes().get(4).toString());
+		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(5).toString());
+		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(6).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(7).toString());
+		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(8).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1110,7 +1116,7 @@ public class RouterTests {
 		assertEquals("/accounts/new", router.pathTo(account, showNew).toString());
 
 		router.removeResource("{models}/{type:\\w+}", Account.class, showAll);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 
 		router.removeResources(Account.class);
 		assertEquals(0, router.getRoutes().size());
@@ -1133,6 +1139,49 @@ public class RouterTests {
 		assertEquals("/#", router.pathTo(account, showNew).toString());
 	}
 	
+	@Test
+	public void testHasRoute() throws Exception {
+		router.addResources(Account.class, Action.show, Action.batch);
+		router.addResources(Member.class, Action.show).hasMany("phones");
+		assertTrue(router.hasRoute(AccountController.class, show, null, null));
+		assertTrue(router.hasRoute(AccountController.class, Action.batch, null, null));
+		assertFalse(router.hasRoute(AccountController.class, destroy, null, null));
+		assertFalse(router.hasRoute(CategoryController.class, show, null, null));
+		assertTrue(router.hasRoute(PhoneController.class, showAll, Member.class, "phones"));
+		assertFalse(router.hasRoute(PhoneController.class, showAll, null, null));
+	}
+	
+	@Test
+	public void testBatch_OnlyRoutedActions() throws Exception {
+		router.addResources(Account.class, Action.show, Action.showAll, Action.batch);
+
+		Request request = request("[POST] /accounts/batch");
+		Map<String, Object> params = new HashMap<String, Object>();
+		when(request.getParameters()).thenReturn(params);
+		HttpHandler handler = (HttpHandler) router.getHandler(request);
+
+		params.put("action", "destroy");
+		params.put("requests", "[{id:1}]");
+		HttpController controller = handler.getController(request);
+		controller.execute(Action.batch);
+		assertEquals(403, controller.getResponse().getStatus().getCode());
+
+		params.put("action", "show");
+		controller = handler.getController(request);
+		controller.execute(Action.batch);
+		assertEquals(200, controller.getResponse().getStatus().getCode());
+		assertEquals("[{\"status\":404}]", controller.getResponse().getContentAsString()); // show is routed, but not implemented
+
+		StringBuilder sb = new StringBuilder("[");
+		for(int i = 0; i <= HttpController.MAX_BATCH_SIZE; i++) {
+			sb.append(i == 0 ? "" : ",").append("{id:").append(i).append('}');
+		}
+		params.put("requests", sb.append(']').toString());
+		controller = handler.getController(request);
+		controller.execute(Action.batch);
+		assertEquals(413, controller.getResponse().getStatus().getCode());
+	}
+	
 	@Test
 	public void testAddModelRoutes_Single_ShowAll() throws Exception {
 		router.addResources(Account.class, Action.showAll);
@@ -1172,14 +1221,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_WithPrefix() throws Exception {
 		router.addResources("prefix", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /prefix/accounts -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /prefix/accounts/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /prefix/accounts -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /prefix/accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /prefix/accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /prefix/accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /prefix/accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /prefix/accounts/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /prefix/accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /prefix/accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /prefix/accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /prefix/accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
 		assertEquals("/prefix/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/prefix/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/prefix/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1198,14 +1248,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_MissingId() throws Exception {
 		router.addResources("{models}/postmodel", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /accounts/postmodel -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/postmodel/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts/postmodel -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /accounts/postmodel/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /accounts/postmodel/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /accounts/postmodel/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /accounts/postmodel/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /accounts/postmodel/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /accounts/postmodel/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /accounts/postmodel/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /accounts/postmodel/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /accounts/postmodel/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
 		assertEquals("/accounts/postmodel", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts/postmodel", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/postmodel/new", router.pathTo(Account.class, showNew).toString());
@@ -1224,14 +1275,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_MissingModel() throws Exception {
 		router.addResources("prefix/{id}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /prefix/accounts -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /prefix/accounts/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /prefix/accounts -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /prefix/(\\w+)/accounts -> AccountController#update(id)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /prefix/(\\w+)/accounts -> AccountController#destroy(id)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /prefix/(\\w+)/accounts -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /prefix/(\\w+)/accounts/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /prefix/accounts/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /prefix/(\\w+)/accounts -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /prefix/(\\w+)/accounts -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /prefix/(\\w+)/accounts -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /prefix/(\\w+)/accounts/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
 		assertEquals("/prefix/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/prefix/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/prefix/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1250,14 +1302,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_DefaultsParts() throws Exception {
 		router.addResources("{models}/{id}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /accounts -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /accounts/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1273,14 +1326,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_DefaultsPartsReversed() throws Exception {
 		router.addResources("{id}/{models}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /accounts -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /(\\w+)/accounts -> AccountController#update(id)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /(\\w+)/accounts -> AccountController#destroy(id)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /(\\w+)/accounts -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /(\\w+)/accounts/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /accounts/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /(\\w+)/accounts -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /(\\w+)/accounts -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /(\\w+)/accounts -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /(\\w+)/accounts/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1296,14 +1350,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_CustomId() throws Exception {
 		router.addResources("{models}/{id:\\w+}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /accounts -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /accounts/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1322,7 +1377,7 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_CustomPartAndId() throws Exception {
 		router.addResources("{name:\\w+}/{models}/{id:\\w+}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[POST] /(\\w+)/accounts -> AccountController#create(name)", 					router.getRoutes().get(0).toString());
 		assertEquals("[PUT] /(\\w+)/accounts/(\\w+) -> AccountController#update(name,id)", 			router.getRoutes().get(1).toString());
 		assertEquals("[DELETE] /(\\w+)/accounts/(\\w+) -> AccountController#destroy(name,id)", 		router.getRoutes().get(2).toString());
@@ -1330,6 +1385,7 @@ public class RouterTests {
 		assertEquals("[GET] /(\\w+)/accounts -> AccountController#showAll(name)", 					router.getRoutes().get(4).toString());
 		assertEquals("[GET] /(\\w+)/accounts/(\\w+)/edit -> AccountController#showEdit(name,id)", 	router.getRoutes().get(5).toString());
 		assertEquals("[GET] /(\\w+)/accounts/new -> AccountController#showNew(name)", 				router.getRoutes().get(6).toString());
+		assertEquals("[POST] /(\\w+)/accounts/batch -> AccountController#batch(name)", 				router.getRoutes().get(7).toString());
 		assertEquals("/#", router.pathTo(Account.class, create).toString());
 		assertEquals("/#", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/#", router.pathTo(Account.class, showNew).toString());
@@ -1348,14 +1404,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_Prefix() throws Exception {
 		router.addResources("prefix/{models}/{id}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /prefix/accounts -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /prefix/accounts/new -> AccountController#showNew", 				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /prefix/accounts -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /prefix/accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /prefix/accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /prefix/accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /prefix/accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /prefix/accounts/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /prefix/accounts/(\\w+) -> AccountController#update(id)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /prefix/accounts/(\\w+) -> AccountController#destroy(id)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /prefix/accounts/(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /prefix/accounts/(\\w+)/edit -> AccountController#showEdit(id)", 	router.getRoutes().get(7).toString());
 		assertEquals("/prefix/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/prefix/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/prefix/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1374,14 +1431,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_Partial() throws Exception {
 		router.addResources("{models=account}{id}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /account -> AccountController#showAll", 				router.getRoutes().get(0).toString());
 		assertEquals("[GET] /account/new -> AccountController#showNew",				router.getRoutes().get(1).toString());
 		assertEquals("[POST] /account -> AccountController#create", 				router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /account(\\w+) -> AccountController#update(id)", 		router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /account(\\w+) -> AccountController#destroy(id)", 	router.getRoutes().get(4).toString());
-		assertEquals("[GET] /account(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /account(\\w+)/edit -> AccountController#showEdit(id)",	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /account/batch -> AccountController#batch", 		router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /account(\\w+) -> AccountController#update(id)", 		router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /account(\\w+) -> AccountController#destroy(id)", 	router.getRoutes().get(5).toString());
+		assertEquals("[GET] /account(\\w+) -> AccountController#show(id)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /account(\\w+)/edit -> AccountController#showEdit(id)",	router.getRoutes().get(7).toString());
 		assertEquals("/account", router.pathTo(Account.class, create).toString());
 		assertEquals("/account", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/account/new", router.pathTo(Account.class, showNew).toString());
@@ -1400,14 +1458,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_PartialAsId() throws Exception {
 		router.addResources("{id=type:\\w+}{models=Account}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /Account -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /Account/new -> AccountController#showNew",					router.getRoutes().get(1).toString());
 		assertEquals("[POST] /Account -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /(\\w+)Account -> AccountController#update(type)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /(\\w+)Account -> AccountController#destroy(type)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /(\\w+)Account -> AccountController#show(type)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /(\\w+)Account/edit -> AccountController#showEdit(type)",	router.getRoutes().get(6).toString());
+		assertEquals("[POST] /Account/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /(\\w+)Account -> AccountController#update(type)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /(\\w+)Account -> AccountController#destroy(type)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /(\\w+)Account -> AccountController#show(type)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /(\\w+)Account/edit -> AccountController#showEdit(type)",	router.getRoutes().get(7).toString());
 		assertEquals("/Account", router.pathTo(Account.class, create).toString());
 		assertEquals("/Account", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/Account/new", router.pathTo(Account.class, showNew).toString());
@@ -1426,7 +1485,7 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_ParamPart() throws Exception {
 		router.addResources("{models}/{id}?{name:\\w+}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[POST] /accounts\\?name\\=(\\w+) -> AccountController#create(name)", 					router.getRoutes().get(0).toString());
 		assertEquals("[PUT] /accounts/(\\w+)\\?name\\=(\\w+) -> AccountController#update(id,name)", 			router.getRoutes().get(1).toString());
 		assertEquals("[DELETE] /accounts/(\\w+)\\?name\\=(\\w+) -> AccountController#destroy(id,name)", 		router.getRoutes().get(2).toString());
@@ -1434,6 +1493,7 @@ public class RouterTests {
 		assertEquals("[GET] /accounts\\?name\\=(\\w+) -> AccountController#showAll(name)", 					router.getRoutes().get(4).toString());
 		assertEquals("[GET] /accounts/(\\w+)/edit\\?name\\=(\\w+) -> AccountController#showEdit(id,name)", 	router.getRoutes().get(5).toString());
 		assertEquals("[GET] /accounts/new\\?name\\=(\\w+) -> AccountController#showNew(name)", 				router.getRoutes().get(6).toString());
+		assertEquals("[POST] /accounts/batch\\?name\\=(\\w+) -> AccountController#batch(name)", 				router.getRoutes().get(7).toString());
 		assertEquals("/#", router.pathTo(Account.class, create).toString());
 		assertEquals("/#", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/#", router.pathTo(Account.class, showNew).toString());
@@ -1452,14 +1512,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_ParamPartsGiven() throws Exception {
 		router.addResources("{models}/{id}?{type=savings}{name=holiday}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /accounts -> AccountController#showAll(type=savings,name=holiday)", 				router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/new -> AccountController#showNew(type=savings,name=holiday)", 			router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts -> AccountController#create(type=savings,name=holiday)",					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id,type=savings,name=holiday)", 		router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id,type=savings,name=holiday)", 	router.getRoutes().get(4).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id,type=savings,name=holiday)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id,type=savings,name=holiday)", router.getRoutes().get(6).toString());
+		assertEquals("[POST] /accounts/batch -> AccountController#batch(type=savings,name=holiday)", 		router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id,type=savings,name=holiday)", 		router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id,type=savings,name=holiday)", 	router.getRoutes().get(5).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id,type=savings,name=holiday)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id,type=savings,name=holiday)", router.getRoutes().get(7).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1478,14 +1539,15 @@ public class RouterTests {
 	@Test
 	public void testAddModelRoutes_OnlyParamPartsGiven() throws Exception {
 		router.addResources("?{type=savings}{name=holiday}", Account.class);
-		assertEquals(7, router.getRoutes().size());
+		assertEquals(8, router.getRoutes().size());
 		assertEquals("[GET] /accounts -> AccountController#showAll(type=savings,name=holiday)", 				router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/new -> AccountController#showNew(type=savings,name=holiday)", 			router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts -> AccountController#create(type=savings,name=holiday)",					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id,type=savings,name=holiday)", 		router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id,type=savings,name=holiday)", 	router.getRoutes().get(4).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id,type=savings,name=holiday)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id,type=savings,name=holiday)", router.getRoutes().get(6).toString());
+		assertEquals("[POST] /accounts/batch -> AccountController#batch(type=savings,name=holiday)", 		router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id,type=savings,name=holiday)", 		router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id,type=savings,name=holiday)", 	router.getRoutes().get(5).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id,type=savings,name=holiday)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id,type=savings,name=holiday)", router.getRoutes().get(7).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1778,17 +1840,18 @@ public class RouterTests {
 		Member member = new Member();
 		Phone phone = new Phone();
 		router.addResources(Member.class).hasMany("phones");
-		assertEquals(10, router.getRoutes().size());
+		assertEquals(11, router.getRoutes().size());
 		assertEquals("[GET] /members -> MemberController#showAll", 								router.getRoutes().get(0).toString());
 		assertEquals("[GET] /members/new -> MemberController#showNew", 							router.getRoutes().get(1).toString());
 		assertEquals("[POST] /members -> MemberController#create", 								router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /members/(\\w+) -> MemberController#update(id)", 					router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /members/(\\w+) -> MemberController#destroy(id)", 				router.getRoutes().get(4).toString());
-		assertEquals("[GET] /members/(\\w+) -> MemberController#show(id)", 						router.getRoutes().get(5).toString());
-		assertEquals("[GET] /members/(\\w+)/edit -> MemberController#showEdit(id)", 			router.getRoutes().get(6).toString());
-		assertEquals("[POST] /members/(\\w+)/phones -> PhoneController#create(member[id])", 	router.getRoutes().get(7).toString());
-		assertEquals("[GET] /members/(\\w+)/phones -> PhoneController#showAll(member[id])", 	router.getRoutes().get(8).toString());
-		assertEquals("[GET] /members/(\\w+)/phones/new -> PhoneController#showNew(member[id])",	router.getRoutes().get(9).toString());
+		assertEquals("[POST] /members/batch -> MemberController#batch", 					router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /members/(\\w+) -> MemberController#update(id)", 					router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /members/(\\w+) -> MemberController#destroy(id)", 				router.getRoutes().get(5).toString());
+		assertEquals("[GET] /members/(\\w+) -> MemberController#show(id)", 						router.getRoutes().get(6).toString());
+		assertEquals("[GET] /members/(\\w+)/edit -> MemberController#showEdit(id)", 			router.getRoutes().get(7).toString());
+		assertEquals("[POST] /members/(\\w+)/phones -> PhoneController#create(member[id])", 	router.getRoutes().get(8).toString());
+		assertEquals("[GET] /members/(\\w+)/phones -> PhoneController#showAll(member[id])", 	router.getRoutes().get(9).toString());
+		assertEquals("[GET] /members/(\\w+)/phones/new -> PhoneController#showNew(member[id])",	router.getRoutes().get(10).toString());
 		assertEquals("/members", router.pathTo(Member.class, create).toString());
 		assertEquals("/members", router.pathTo(Member.class, showAll).toString());
 		assertEquals("/members/new", router.pathTo(Member.class, showNew).toString());
@@ -1839,17 +1902,18 @@ public class RouterTests {
 	@Test
 	public void testNestedRoutes_Bidi() throws Exception {
 		router.addResources(Account.class).hasMany("categories");
-		assertEquals(10, router.getRoutes().size());
+		assertEquals(11, router.getRoutes().size());
 		assertEquals("[GET] /accounts -> AccountController#showAll", 						router.getRoutes().get(0).toString());
 		assertEquals("[GET] /accounts/new -> AccountController#showNew", 					router.getRoutes().get(1).toString());
 		assertEquals("[POST] /accounts -> AccountController#create", 						router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 				router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 			router.getRoutes().get(4).toString());
-		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 				router.getRoutes().get(5).toString());
-		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 		router.getRoutes().get(6).toString());
-		assertEquals("[POST] /accounts/(\\w+)/categories -> CategoryController#create(category[cAccount])", 	router.getRoutes().get(7).toString());
-		assertEquals("[GET] /accounts/(\\w+)/categories -> CategoryController#showAll(account[id])", 			router.getRoutes().get(8).toString());
-		assertEquals("[GET] /accounts/(\\w+)/categories/new -> CategoryController#showNew(category[cAccount])",	router.getRoutes().get(9).toString());
+		assertEquals("[POST] /accounts/batch -> AccountController#batch", 				router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /accounts/(\\w+) -> AccountController#update(id)", 				router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /accounts/(\\w+) -> AccountController#destroy(id)", 			router.getRoutes().get(5).toString());
+		assertEquals("[GET] /accounts/(\\w+) -> AccountController#show(id)", 				router.getRoutes().get(6).toString());
+		assertEquals("[GET] /accounts/(\\w+)/edit -> AccountController#showEdit(id)", 		router.getRoutes().get(7).toString());
+		assertEquals("[POST] /accounts/(\\w+)/categories -> CategoryController#create(category[cAccount])", 	router.getRoutes().get(8).toString());
+		assertEquals("[GET] /accounts/(\\w+)/categories -> CategoryController#showAll(account[id])", 			router.getRoutes().get(9).toString());
+		assertEquals("[GET] /accounts/(\\w+)/categories/new -> CategoryController#showNew(category[cAccount])",	router.getRoutes().get(10).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, create).toString());
 		assertEquals("/accounts", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/accounts/new", router.pathTo(Account.class, showNew).toString());
@@ -1898,17 +1962,18 @@ public class RouterTests {
 		Member member = new Member();
 		Phone phone = new Phone();
 		router.addResources("{id=type:\\w+}{models=Member}", Member.class).hasMany("phones");
-		assertEquals(10, router.getRoutes().size());
+		assertEquals(11, router.getRoutes().size());
 		assertEquals("[GET] /Member -> MemberController#showAll", 								router.getRoutes().get(0).toString());
 		assertEquals("[GET] /Member/new -> MemberController#showNew",							router.getRoutes().get(1).toString());
 		assertEquals("[POST] /Member -> MemberController#create", 								router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /(\\w+)Member -> MemberController#update(type)", 					router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /(\\w+)Member -> MemberController#destroy(type)", 				router.getRoutes().get(4).toString());
-		assertEquals("[GET] /(\\w+)Member -> MemberController#show(type)", 						router.getRoutes().get(5).toString());
-		assertEquals("[GET] /(\\w+)Member/edit -> MemberController#showEdit(type)",				router.getRoutes().get(6).toString());
-		assertEquals("[POST] /(\\w+)Member/phones -> PhoneController#create(member[type])", 	router.getRoutes().get(7).toString());
-		assertEquals("[GET] /(\\w+)Member/phones -> PhoneController#showAll(member[type])", 	router.getRoutes().get(8).toString());
-		assertEquals("[GET] /(\\w+)Member/phones/new -> PhoneController#showNew(member[type])",	router.getRoutes().get(9).toString());
+		assertEquals("[POST] /Member/batch -> MemberController#batch", 					router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /(\\w+)Member -> MemberController#update(type)", 					router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /(\\w+)Member -> MemberController#destroy(type)", 				router.getRoutes().get(5).toString());
+		assertEquals("[GET] /(\\w+)Member -> MemberController#show(type)", 						router.getRoutes().get(6).toString());
+		assertEquals("[GET] /(\\w+)Member/edit -> MemberController#showEdit(type)",				router.getRoutes().get(7).toString());
+		assertEquals("[POST] /(\\w+)Member/phones -> PhoneController#create(member[type])", 	router.getRoutes().get(8).toString());
+		assertEquals("[GET] /(\\w+)Member/phones -> PhoneController#showAll(member[type])", 	router.getRoutes().get(9).toString());
+		assertEquals("[GET] /(\\w+)Member/phones/new -> PhoneController#showNew(member[type])",	router.getRoutes().get(10).toString());
 		assertEquals("/Member", router.pathTo(Member.class, create).toString());
 		assertEquals("/Member", router.pathTo(Member.class, showAll).toString());
 		assertEquals("/Member/new", router.pathTo(Member.class, showNew).toString());
@@ -1950,17 +2015,18 @@ public class RouterTests {
 	@Test
 	public void testNestedRoutes_CustomId_Bidi() throws Exception {
 		router.addResources("{id=type:\\w+}{models=Account}", Account.class).hasMany("categories");
-		assertEquals(10, router.getRoutes().size());
+		assertEquals(11, router.getRoutes().size());
 		assertEquals("[GET] /Account -> AccountController#showAll", 					router.getRoutes().get(0).toString());
 		assertEquals("[GET] /Account/new -> AccountController#showNew",					router.getRoutes().get(1).toString());
 		assertEquals("[POST] /Account -> AccountController#create", 					router.getRoutes().get(2).toString());
-		assertEquals("[PUT] /(\\w+)Account -> AccountController#update(type)", 			router.getRoutes().get(3).toString());
-		assertEquals("[DELETE] /(\\w+)Account -> AccountController#destroy(type)", 		router.getRoutes().get(4).toString());
-		assertEquals("[GET] /(\\w+)Account -> AccountController#show(type)", 			router.getRoutes().get(5).toString());
-		assertEquals("[GET] /(\\w+)Account/edit -> AccountController#showEdit(type)",	router.getRoutes().get(6).toString());
-		assertEquals("[POST] /(\\w+)Account/categories -> CategoryController#create(category[cAccount][type])", 	router.getRoutes().get(7).toString());
-		assertEquals("[GET] /(\\w+)Account/categories -> CategoryController#showAll(account[type])", 				router.getRoutes().get(8).toString());
-		assertEquals("[GET] /(\\w+)Account/categories/new -> CategoryController#showNew(category[cAccount][type])",	router.getRoutes().get(9).toString());
+		assertEquals("[POST] /Account/batch -> AccountController#batch", 			router.getRoutes().get(3).toString());
+		assertEquals("[PUT] /(\\w+)Account -> AccountController#update(type)", 			router.getRoutes().get(4).toString());
+		assertEquals("[DELETE] /(\\w+)Account -> AccountController#destroy(type)", 		router.getRoutes().get(5).toString());
+		assertEquals("[GET] /(\\w+)Account -> AccountController#show(type)", 			router.getRoutes().get(6).toString());
+		assertEquals("[GET] /(\\w+)Account/edit -> AccountController#showEdit(type)",	router.getRoutes().get(7).toString());
+		assertEquals("[POST] /(\\w+)Account/categories -> CategoryController#create(category[cAccount][type])", 	router.getRoutes().get(8).toString());
+		assertEquals("[GET] /(\\w+)Account/categories -> CategoryController#showAll(account[type])", 				router.getRoutes().get(9).toString());
+		assertEquals("[GET] /(\\w+)Account/categories/new -> CategoryController#showNew(category[cAccount][type])",	router.getRoutes().get(10).toString());
 		assertEquals("/Account", router.pathTo(Account.class, create).toString());
 		assertEquals("/Account", router.pathTo(Account.class, showAll).toString());
 		assertEquals("/Account/new", router.pathTo(Account.class, showNew).toString());
@@ -2488,7 +2554,7 @@ public class RouterTests {
 		router.addResources(Account.class);
 		Map<String, Map<String, Map<String, String>>> map = router.getModelRouteMap();
 		assertEquals(1, map.size());
-		assertEquals(7, map.get(Account.class.getName()).size());
+		assertEquals(8, map.get(Account.class.getName()).size());
 	}
 
 	@Test
@@ -2496,7 +2562,7 @@ public class RouterTests {
 		router.addResources(Account.class).hasMany("categories").publish();
 		Map<String, Map<String, Map<String, String>>> map = router.getModelRouteMap();
 		assertEquals(1, map.size());
-		assertEquals(10, map.get(Account.class.getName()).size());
+		assertEquals(11, map.get(Account.class.getName()).size());
 
 		Set<Route> routes = router.published;
 		System.out.println(routes);
@@ -2508,8 +2574,8 @@ public class RouterTests {
 		router.addResources(Account.class).hasMany("categories").publish();
 		Map<String, Map<String, Map<String, String>>> map = router.getModelRouteMap();
 		assertEquals(2, map.size());
-		assertEquals(10, map.get(Account.class.getName()).size());
-		assertEquals(7, map.get(Category.class.getName()).size());
+		assertEquals(11, map.get(Account.class.getName()).size());
+		assertEquals(8, map.get(Category.class.getName()).size());
 		
 		Set<Route> routes = router.published;
 		System.out.println(routes);
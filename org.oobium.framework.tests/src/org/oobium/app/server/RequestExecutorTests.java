@@ -0,0 +1,113 @@
+package org.oobium.app.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RequestExecutorTests {
+
+	private ServerConfig config(Object...options) {
+		Map<String, Object> map = new HashMap<String, Object>();
+		for(int i = 0; i < options.length; i += 2) {
+			map.put((String) options[i], options[i+1]);
+		}
+		Map<String, Object> config = new HashMap<String, Object>();
+		config.put("port", 5555);
+		config.put("options", map);
+		return new ServerConfig("test", config);
+	}
+	
+	@Test
+	public void testDefaults() throws Exception {
+		RequestExecutor executor = RequestExecutor.create(config());
+		assertEquals(16, executor.getCorePoolSize());
+		assertEquals(200, executor.getMaximumPoolSize());
+		assertEquals(1000, executor.getQueueRemaining());
+		assertEquals(5, executor.getRetryAfter());
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testCachedMode() throws Exception {
+		RequestExecutor executor = RequestExecutor.create(config("executor.mode", "cached"));
+		assertEquals(0, executor.getCorePoolSize());
+		assertEquals(Integer.MAX_VALUE, executor.getMaximumPoolSize());
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void testGrowsBeforeQueueing() throws Exception {
+		RequestExecutor executor = RequestExecutor.create(config("executor.coreSize", 1, "executor.maxSize", 3, "executor.queueSize", 10));
+		final CountDownLatch started = new CountDownLatch(3);
+		final CountDownLatch latch = new CountDownLatch(1);
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					latch.await();
+				} catch(InterruptedException e) {
+					// exit
+				}
+			}
+		};
+
+		for(int i = 0; i < 3; i++) {
+			executor.execute(task);
+		}
+		assertTrue(started.await(5, TimeUnit.SECONDS)); // each on a thread of its own, rather than queued
+		assertEquals(3, executor.getPoolSize());
+		assertEquals(0, executor.getQueueDepth());
+
+		executor.execute(task); // queued, once the maximum has been reached
+		assertEquals(3, executor.getPoolSize());
+		assertEquals(1, executor.getQueueDepth());
+
+		latch.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(4, executor.getCompletedTaskCount());
+		assertEquals(0, executor.getRejectedCount());
+	}
+
+	@Test
+	public void testRejection() throws Exception {
+		RequestExecutor executor = RequestExecutor.create(config("executor.coreSize", 1, "executor.maxSize", 1, "executor.queueSize", 1, "executor.retryAfter", 10));
+		final CountDownLatch latch = new CountDownLatch(1);
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					latch.await();
+				} catch(InterruptedException e) {
+					// exit
+				}
+			}
+		};
+		
+		executor.execute(task); // running
+		executor.execute(task); // queued
+		try {
+			executor.execute(task);
+			fail("expected a RejectedExecutionException");
+		} catch(RejectedExecutionException e) {
+			// expected
+		}
+
+		assertEquals(1, executor.getQueueDepth());
+		assertEquals(1, executor.getRejectedCount());
+		assertEquals(10, executor.getRetryAfter());
+		
+		latch.countDown();
+		executor.shutdownNow();
+	}
+	
+}
@@ -0,0 +1,253 @@
+package org.oobium.app.server;
+
+import static org.junit.Assert.*;
+import static org.oobium.utils.literal.Map;
+import static org.oobium.utils.literal.e;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.stream.ChunkedInput;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.oobium.app.http.MimeType;
+import org.oobium.app.response.Response;
+import org.oobium.app.response.StaticResponse;
+import org.oobium.app.response.StreamingResponse;
+
+public class ResponseCompressorTests {
+
+	private static String text(int length) {
+		StringBuilder sb = new StringBuilder(length);
+		while(sb.length() < length) {
+			sb.append("hello world ");
+		}
+		return sb.substring(0, length);
+	}
+
+	private static String read(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return new String(out.toByteArray(), "UTF-8");
+	}
+
+	private static HttpRequest request(String acceptEncoding) {
+		HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+		if(acceptEncoding != null) {
+			request.setHeader(HttpHeaders.Names.ACCEPT_ENCODING, acceptEncoding);
+		}
+		return request;
+	}
+
+	private static Response response(MimeType type, String content) {
+		Response response = new Response();
+		response.setContentType(type);
+		response.setContent(ChannelBuffers.copiedBuffer(content, CharsetUtil.UTF_8));
+		return response;
+	}
+
+	private File dir;
+
+	@Before
+	public void setup() throws Exception {
+		dir = File.createTempFile("compressor", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@After
+	public void teardown() throws Exception {
+		for(File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+		StaticFileCache.clear();
+	}
+
+	@Test
+	public void testNegotiate() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor(Map());
+		assertEquals("gzip", compressor.negotiate(request("gzip, deflate"), response(MimeType.HTML, text(2000))));
+		assertEquals("deflate", compressor.negotiate(request("deflate"), response(MimeType.HTML, text(2000))));
+		assertEquals("deflate", compressor.negotiate(request("gzip;q=0, deflate"), response(MimeType.HTML, text(2000))));
+		assertEquals("gzip", compressor.negotiate(request("*"), response(MimeType.HTML, text(2000))));
+		assertNull(compressor.negotiate(request("identity"), response(MimeType.HTML, text(2000))));
+		assertNull(compressor.negotiate(request(null), response(MimeType.HTML, text(2000))));
+	}
+
+	@Test
+	public void testNegotiate_NotCompressible() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor(Map());
+
+		Response response = response(MimeType.HTML, text(100));
+		assertNull(compressor.negotiate(request("gzip"), response));
+		assertNull(response.getHeader(HttpHeaders.Names.VARY));
+
+		response = response(MimeType.IMG_PNG, text(2000));
+		assertNull(compressor.negotiate(request("gzip"), response));
+
+		response = response(MimeType.HTML, text(2000));
+		HttpRequest request = request("gzip");
+		request.setHeader(HttpHeaders.Names.RANGE, "bytes=0-100");
+		assertNull(compressor.negotiate(request, response));
+
+		response = response(MimeType.HTML, text(2000));
+		assertNull(compressor.negotiate(request(null), response));
+		assertEquals(HttpHeaders.Names.ACCEPT_ENCODING, response.getHeader(HttpHeaders.Names.VARY));
+	}
+
+	@Test
+	public void testOptions() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor(Map(e("compression.threshold", 10), e("compression.types", "image/png")));
+		assertEquals("gzip", compressor.negotiate(request("gzip"), response(MimeType.IMG_PNG, text(100))));
+		assertNull(compressor.negotiate(request("gzip"), response(MimeType.HTML, text(100))));
+
+		compressor = new ResponseCompressor(Map("compression.level", 0));
+		assertFalse(compressor.isEnabled());
+		assertNull(compressor.negotiate(request("gzip"), response(MimeType.HTML, text(2000))));
+	}
+
+	@Test
+	public void testEncode() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor(Map());
+		String text = text(2000);
+
+		Response response = response(MimeType.HTML, text);
+		compressor.encode(response, compressor.negotiate(request("gzip"), response));
+		assertEquals("gzip", response.getHeader(HttpHeaders.Names.CONTENT_ENCODING));
+		assertEquals(String.valueOf(response.getContent().readableBytes()), response.getHeader(HttpHeaders.Names.CONTENT_LENGTH));
+		assertTrue(response.getContent().readableBytes() < 200);
+		assertEquals(text, read(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsBytes()))));
+
+		response = response(MimeType.JSON, text);
+		compressor.encode(response, compressor.negotiate(request("deflate"), response));
+		assertEquals("deflate", response.getHeader(HttpHeaders.Names.CONTENT_ENCODING));
+		assertEquals(text, read(new InflaterInputStream(new ByteArrayInputStream(response.getContentAsBytes()))));
+	}
+
+	@Test
+	public void testEncode_Chunks() throws Exception {
+		if(!ResponseCompressor.canEncodeChunks()) {
+			return; // Java 6: streamed views are not compressed
+		}
+		ResponseCompressor compressor = new ResponseCompressor(Map());
+		String text = text(5000);
+
+		StreamingResponse response = new StreamingResponse();
+		response.setContentType(MimeType.HTML);
+		response.setContentParts(text.substring(0, 1000), text.substring(1000, 3000), text.substring(3000));
+		String encoding = compressor.negotiate(request("gzip"), response);
+		assertEquals("gzip", encoding);
+		ChunkedInput chunks = compressor.encode(response, response.stream(512), encoding);
+		assertEquals("gzip", response.getHeader(HttpHeaders.Names.CONTENT_ENCODING));
+		assertNull(response.getHeader(HttpHeaders.Names.CONTENT_LENGTH));
+
+		ByteArrayOutputStream all = new ByteArrayOutputStream();
+		Inflater inflater = new Inflater(true);
+		byte[] inflated = new byte[text.length()];
+		int count = 0;
+		int length = 0;
+		HttpChunk chunk;
+		while(!(chunk = (HttpChunk) chunks.nextChunk()).isLast()) {
+			byte[] bytes = new byte[chunk.getContent().readableBytes()];
+			chunk.getContent().getBytes(0, bytes);
+			assertTrue(bytes.length > 0);
+			all.write(bytes);
+			if(count++ == 0) {
+				inflater.setInput(bytes, 10, bytes.length - 10); // skip the gzip header
+			} else {
+				inflater.setInput(bytes);
+			}
+			if(length < text.length()) {
+				// each chunk can be decompressed as soon as it arrives, and holds all of the content sent so far
+				length += inflater.inflate(inflated, length, inflated.length - length);
+				assertEquals(Math.min(512 * count, text.length()), length);
+			}
+		}
+		assertTrue(chunks.isEndOfInput());
+		assertNull(chunks.nextChunk());
+		assertEquals(11, count); // 10 chunks of content, and the end of the compressed data
+		assertEquals(text, new String(inflated, "UTF-8"));
+		assertEquals(text, read(new GZIPInputStream(new ByteArrayInputStream(all.toByteArray()))));
+		assertTrue(all.size() < 1000);
+
+		response = new StreamingResponse();
+		response.setContentType(MimeType.HTML);
+		response.setContentParts(text);
+		encoding = compressor.negotiate(request("deflate"), response);
+		chunks = compressor.encode(response, response.stream(512), encoding);
+		assertEquals("deflate", response.getHeader(HttpHeaders.Names.CONTENT_ENCODING));
+		all = new ByteArrayOutputStream();
+		while(!(chunk = (HttpChunk) chunks.nextChunk()).isLast()) {
+			all.write(chunk.getContent().array(), chunk.getContent().arrayOffset(), chunk.getContent().readableBytes());
+		}
+		assertEquals(text, read(new InflaterInputStream(new ByteArrayInputStream(all.toByteArray()))));
+	}
+
+	@Test
+	public void testEncode_StaticFile() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor(Map());
+		String text = text(5000);
+		File file = new File(dir, "application.css");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(text.getBytes("UTF-8"));
+		out.close();
+
+		StaticResponse response = new StaticResponse(file);
+		String etag = response.getETag();
+		compressor.encode(response, compressor.negotiate(request("gzip"), response));
+		assertEquals(etag.substring(0, etag.length() - 1) + "-gzip\"", response.getETag());
+		byte[] bytes = (byte[]) response.getPayload();
+		assertEquals(String.valueOf(bytes.length), response.getHeader(HttpHeaders.Names.CONTENT_LENGTH));
+		assertEquals(text, read(new GZIPInputStream(new ByteArrayInputStream(bytes))));
+		assertEquals(bytes.length, compressor.getCached());
+
+		// built only once
+		response = new StaticResponse(file);
+		compressor.encode(response, compressor.negotiate(request("gzip"), response));
+		assertSame(bytes, response.getPayload());
+	}
+
+	@Test
+	public void testEncode_StaticFile_Precompressed() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor(Map());
+		String text = text(5000);
+		File file = new File(dir, "application.js");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(text.getBytes("UTF-8"));
+		out.close();
+		File gz = new File(dir, "application.js.gz");
+		GZIPOutputStream gzout = new GZIPOutputStream(new FileOutputStream(gz));
+		gzout.write(text.getBytes("UTF-8"));
+		gzout.close();
+
+		StaticResponse response = new StaticResponse(file);
+		compressor.encode(response, compressor.negotiate(request("gzip"), response));
+		assertEquals(gz, response.getPayload());
+		assertEquals(String.valueOf(gz.length()), response.getHeader(HttpHeaders.Names.CONTENT_LENGTH));
+		assertEquals("gzip", response.getHeader(HttpHeaders.Names.CONTENT_ENCODING));
+		assertEquals(0, compressor.getCached());
+	}
+
+}
@@ -0,0 +1,64 @@
+package org.oobium.app.server;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+
+import org.junit.After;
+import org.junit.Test;
+import org.oobium.app.server.StaticFileCache.FileInfo;
+import org.oobium.utils.Config.Mode;
+
+public class StaticFileCacheTests {
+
+	@After
+	public void teardown() {
+		StaticFileCache.clear();
+		StaticFileCache.setCheckInterval(Mode.isDEV() ? 0 : 2000);
+		StaticFileCache.setMaxHashLength(4 * 1024 * 1024);
+	}
+
+	private File write(File file, String content) throws Exception {
+		FileWriter writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+		return file;
+	}
+
+	@Test
+	public void testETag() throws Exception {
+		assertEquals("\"900150983cd24fb0d6963f7d28e17f72\"", StaticFileCache.etag(new ByteArrayInputStream("abc".getBytes())));
+	}
+
+	@Test
+	public void testFileETag() throws Exception {
+		StaticFileCache.setCheckInterval(0);
+		File file = write(File.createTempFile("etag", ".txt"), "abc");
+		try {
+			String etag = StaticFileCache.get(file).getETag();
+			assertEquals("\"900150983cd24fb0d6963f7d28e17f72\"", etag);
+			assertSame(etag, StaticFileCache.get(file).getETag());
+
+			write(file, "abcd");
+			file.setLastModified(file.lastModified() + 2000);
+			assertFalse(etag.equals(StaticFileCache.get(file).getETag()));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFileETag_Large() throws Exception {
+		StaticFileCache.setMaxHashLength(2);
+		File file = write(File.createTempFile("etag", ".txt"), "abc");
+		try {
+			FileInfo info = StaticFileCache.get(file);
+			assertEquals("\"3-" + Long.toHexString(info.lastModified) + "\"", info.getETag());
+		} finally {
+			file.delete();
+		}
+	}
+
+}
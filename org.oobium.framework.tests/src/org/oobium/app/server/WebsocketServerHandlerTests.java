@@ -0,0 +1,201 @@
+package org.oobium.app.server;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.http.websocket.DefaultWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocket.WebSocketFrame;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.oobium.app.controllers.WebsocketController;
+import org.oobium.app.request.Request;
+import org.oobium.app.response.WebsocketUpgrade;
+import org.oobium.app.routing.Router;
+import org.oobium.logging.LogProvider;
+
+public class WebsocketServerHandlerTests {
+
+	static final AtomicInteger instances = new AtomicInteger();
+	static final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+	static final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+	static volatile CountDownLatch block;
+
+	public static class TestController extends WebsocketController {
+		public TestController() {
+			instances.incrementAndGet();
+		}
+		@Override
+		public void handleConnect() {
+			events.add("connect");
+		}
+		@Override
+		public void handleDisconnect() {
+			events.add("disconnect");
+		}
+		@Override
+		public void handleMessage(WebSocketFrame frame) {
+			threads.add(Thread.currentThread());
+			CountDownLatch latch = block;
+			if(latch != null) {
+				try {
+					latch.await(5, TimeUnit.SECONDS);
+				} catch(InterruptedException e) {
+					// exit
+				}
+			}
+			events.add(frame.getTextData());
+		}
+	}
+
+	private static ServerConfig config(Object...options) {
+		Map<String, Object> map = new HashMap<String, Object>();
+		for(int i = 0; i < options.length; i += 2) {
+			map.put((String) options[i], options[i+1]);
+		}
+		Map<String, Object> config = new HashMap<String, Object>();
+		config.put("port", 5555);
+		config.put("options", map);
+		return new ServerConfig("test", config);
+	}
+
+	private static void waitFor(int count) throws InterruptedException {
+		for(int i = 0; i < 500 && events.size() < count; i++) {
+			Thread.sleep(10);
+		}
+	}
+
+
+	private WebsocketExecutor executor;
+	private Channel channel;
+	private ChannelHandlerContext ctx;
+
+	@Before
+	public void setup() {
+		instances.set(0);
+		events.clear();
+		threads.clear();
+		block = null;
+		channel = mock(Channel.class);
+		ctx = mock(ChannelHandlerContext.class);
+		when(ctx.getChannel()).thenReturn(channel);
+	}
+
+	@After
+	public void teardown() {
+		if(block != null) {
+			block.countDown();
+		}
+		if(executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	private WebsocketServerHandler handler(Object...options) throws Exception {
+		executor = WebsocketExecutor.create(config(options));
+		WebsocketUpgrade upgrade = new WebsocketUpgrade(mock(Router.class), TestController.class, null, null);
+		return new WebsocketServerHandler(LogProvider.getLogger(), channel, mock(Request.class), upgrade, executor);
+	}
+
+	private void send(WebsocketServerHandler handler, String text) throws Exception {
+		MessageEvent event = mock(MessageEvent.class);
+		when(event.getMessage()).thenReturn(new DefaultWebSocketFrame(text));
+		handler.messageReceived(ctx, event);
+	}
+
+	@Test
+	public void testOneControllerPerConnection() throws Exception {
+		WebsocketServerHandler handler = handler();
+		send(handler, "a");
+		send(handler, "b");
+		handler.channelDisconnected(ctx, mock(ChannelStateEvent.class));
+
+		waitFor(4);
+		for(int i = 0; i < 500 && executor.getConnectionCount() > 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(asList("connect", "a", "b", "disconnect"), events);
+		assertEquals(1, instances.get());
+		assertEquals(0, executor.getConnectionCount());
+	}
+
+	@Test
+	public void testOrderedOffIoThread() throws Exception {
+		WebsocketServerHandler handler = handler("websocket.threads", 4, "websocket.queueSize", 1000, "websocket.maxQueueSize", 1000);
+		List<String> expected = new ArrayList<String>();
+		expected.add("connect");
+		for(int i = 0; i < 500; i++) {
+			send(handler, String.valueOf(i));
+			expected.add(String.valueOf(i));
+		}
+
+		waitFor(501);
+		assertEquals(expected, events);
+		assertFalse(threads.contains(Thread.currentThread()));
+		verify(channel, never()).setReadable(false);
+	}
+
+	@Test
+	public void testSuspendAndResume() throws Exception {
+		block = new CountDownLatch(1);
+		WebsocketServerHandler handler = handler("websocket.queueSize", 2, "websocket.maxQueueSize", 4);
+		send(handler, "a");
+		assertFalse(handler.isSuspended());
+		send(handler, "b");
+		assertTrue(handler.isSuspended());
+		verify(channel).setReadable(false);
+		assertEquals(1, executor.getSuspendedCount());
+
+		block.countDown();
+		waitFor(3);
+		for(int i = 0; i < 500 && handler.isSuspended(); i++) {
+			Thread.sleep(10);
+		}
+		assertFalse(handler.isSuspended());
+		verify(channel).setReadable(true);
+		assertEquals(asList("connect", "a", "b"), events);
+	}
+
+	@Test
+	public void testOverflowDrop() throws Exception {
+		block = new CountDownLatch(1);
+		WebsocketServerHandler handler = handler("websocket.queueSize", 1, "websocket.maxQueueSize", 2);
+		for(String text : new String[] { "a", "b", "c", "d" }) {
+			send(handler, text);
+		}
+		assertEquals(2, executor.getDroppedCount());
+		assertEquals(2, handler.getWaiting());
+
+		block.countDown();
+		waitFor(3);
+		assertEquals(asList("connect", "a", "b"), events);
+		verify(channel, never()).close();
+	}
+
+	@Test
+	public void testOverflowClose() throws Exception {
+		block = new CountDownLatch(1);
+		WebsocketServerHandler handler = handler("websocket.queueSize", 1, "websocket.maxQueueSize", 2, "websocket.overflow", "close");
+		for(String text : new String[] { "a", "b", "c" }) {
+			send(handler, text);
+		}
+		verify(channel).close();
+		assertEquals(1, executor.getClosedCount());
+		assertEquals(0, executor.getDroppedCount());
+	}
+
+}
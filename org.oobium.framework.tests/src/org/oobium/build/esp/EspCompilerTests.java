@@ -247,7 +247,7 @@ public class EspCompilerTests {
 		assertEquals(
 				"StringBuilder sb$6 = new StringBuilder();\n" +
 				"sb$6.append(\"he\");\n" +
-				"sb$6.append(h(l));\n" +
+				"h(sb$6, l);\n" +
 				"sb$6.append(\"lo\");\n" +
 				"setTitle(sb$6);",
 				render("title he{l}lo"));
@@ -356,7 +356,7 @@ public class EspCompilerTests {
 				"__body__.append(\"<div data-model=\\\"\");\n" +
 				"__body__.append(includeScriptModel(member, 86));\n" +
 				"__body__.append(\"\\\"><div data-field=\\\"\");\n" +
-				"__body__.append(h(toJson(toMap(\"name\"))));\n" +
+				"h(__body__, toJson(toMap(\"name\")));\n" +
 				"__body__.append(\"\\\"></div></div>\");",
 				render("div(data-model: member) <- div(data-field: \"name\")"));
 
@@ -364,9 +364,9 @@ public class EspCompilerTests {
 				"__body__.append(\"<div data-model=\\\"\");\n" +
 				"__body__.append(includeScriptModel(member, 86));\n" +
 				"__body__.append(\"\\\"><div data-field=\\\"\");\n" +
-				"__body__.append(h(toJson(toMap(\"name\"))));\n" +
+				"h(__body__, toJson(toMap(\"name\")));\n" +
 				"__body__.append(\"\\\"><div data-field=\\\"\");\n" +
-				"__body__.append(h(toJson(toMap(\"age\"))));\n" +
+				"h(__body__, toJson(toMap(\"age\")));\n" +
 				"__body__.append(\"\\\"></div></div></div>\");",
 				render("div(data-model: member) <- div(data-field: \"name\") <- div(data-field: \"age\")"));
 
@@ -374,11 +374,11 @@ public class EspCompilerTests {
 				"__body__.append(\"<div data-model=\\\"\");\n" +
 				"__body__.append(includeScriptModel(member, 86));\n" +
 				"__body__.append(\"\\\"><div data-field=\\\"\");\n" +
-				"__body__.append(h(toJson(toMap(\"name\"))));\n" +
+				"h(__body__, toJson(toMap(\"name\")));\n" +
 				"__body__.append(\"\\\"><div data-model=\\\"\");\n" +
-				"__body__.append(includeScriptModel(account, 271));\n" +
+				"__body__.append(includeScriptModel(account, 264));\n" +
 				"__body__.append(\"\\\"><div data-field=\\\"\");\n" +
-				"__body__.append(h(toJson(toMap(\"value\"))));\n" +
+				"h(__body__, toJson(toMap(\"value\")));\n" +
 				"__body__.append(\"\\\"></div></div></div></div>\");",
 				render(
 						"div(data-model: member)\n" +
@@ -513,7 +513,7 @@ public class EspCompilerTests {
 	public void testScriptInDomEvent() throws Exception {
 		assertEquals(
 				"__body__.append(\"<div onclick=\\\"\");\n" +
-				"__body__.append(h(\"alert(\" + (exp) + \");\"));\n" +
+				"h(__body__, \"alert(\" + (exp) + \");\");\n" +
 				"__body__.append(\"\\\"></div>\");", 
 				render("div(onclick:\"alert(${exp});\""));
 	}
@@ -522,7 +522,7 @@ public class EspCompilerTests {
 	public void testScriptAttr() throws Exception {
 		assertEquals(
 				"__body__.append(\"<div onmouseover=\\\"\");\n" +
-				"__body__.append(h(\"alert('\" + (exp) + \"');\"));\n" +
+				"h(__body__, \"alert('\" + (exp) + \"');\");\n" +
 				"__body__.append(\"\\\"></div>\");", 
 				render("div(onmouseover:\"alert('${exp}');\""));
 	}
@@ -598,13 +598,13 @@ public class EspCompilerTests {
 	public void testStyleWithJava() throws Exception {
 		assertEquals(
 				"__body__.append(\"<div><style>.myClass{width:\");\n" +
-				"__body__.append(h(height * 2));\n" +
+				"h(__body__, height * 2);\n" +
 				"__body__.append(\"px}</style></div>\");",
 				render("div\n\tstyle\n\t\t.myClass { width: ${height * 2}px; }"));
 		
 		assertEquals(
 				"String pageWidth = \"860px\";\n__body__.append(\"<div><style>.myClass{width:\");\n" +
-				"__body__.append(h(pageWidth));\n" +
+				"h(__body__, pageWidth);\n" +
 				"__body__.append(\";color:red}</style></div>\");",
 				render("- String pageWidth = \"860px\";\ndiv\n\tstyle\n\t\t.myClass\n\t\t\twidth: ${pageWidth}\n\t\t\tcolor: red"));
 	}
@@ -637,13 +637,13 @@ public class EspCompilerTests {
 	public void testStyleInDomWithJava() throws Exception {
 		assertEquals(
 				"__body__.append(\"<div style=\\\"\");\n" +
-				"__body__.append(h(\"color: \" + var));\n" +
+				"h(__body__, \"color: \" + var);\n" +
 				"__body__.append(\"\\\"></div>\");",
 				render("div(style:\"color: $var\""));
 		
 		assertEquals(
 				"__body__.append(\"<div style=\\\"\");\n" +
-				"__body__.append(h(\"color: \" + (blue * 2)));\n" +
+				"h(__body__, \"color: \" + (blue * 2));\n" +
 				"__body__.append(\"\\\"></div>\");",
 				render("div(style:\"color: ${blue * 2}\""));
 	}
@@ -719,7 +719,7 @@ public class EspCompilerTests {
 	public void testHtmlDiv() throws Exception {
 		assertEquals(
 				"__body__.append(\"<div id=\\\"myDiv\\\" class=\\\"class1 class2\\\" attr1=\\\"\");\n" +
-				"__body__.append(h(someMethod(arg1, arg2)));\n" +
+				"h(__body__, someMethod(arg1, arg2));\n" +
 				"__body__.append(\"\\\" attr2=\\\"string\\\">text</div>\");",
 				render("div#myDiv.class1.class2(attr1: someMethod(arg1, arg2), attr2: \"string\") text"));
 
@@ -729,31 +729,31 @@ public class EspCompilerTests {
 
 		assertEquals(
 				"__body__.append(\"<div id=\\\"myDiv\\\" class=\\\"class1 class2\\\" attr1=\\\"\");\n" +
-				"__body__.append(h(value1));\n" +
+				"h(__body__, value1);\n" +
 				"__body__.append(\"\\\">text</div>\");",
 				render("div#myDiv.class1.class2(attr1:value1) text"));
 		
 		assertEquals(
 				"__body__.append(\"<div id=\\\"myDiv\\\" class=\\\"class1 class2\\\" attr1=\\\"\");\n" +
-				"__body__.append(h(\"value\" + \"1\"));\n" +
+				"h(__body__, \"value\" + \"1\");\n" +
 				"__body__.append(\"\\\">text</div>\");",
 				render("div#myDiv.class1.class2(attr1: \"value\" + \"1\") text"));
 		
 		assertEquals(
 				"__body__.append(\"<div id=\\\"myDiv\\\" class=\\\"class1 class2\\\" attr1=\\\"\");\n" +
-				"__body__.append(h(\"say \" + var + \" \" + (exp) + \" times\"));\n" +
+				"h(__body__, \"say \" + var + \" \" + (exp) + \" times\");\n" +
 				"__body__.append(\"\\\">text</div>\");",
 				render("div#myDiv.class1.class2(attr1:\"say $var ${exp} times\") text"));
 		
 		assertEquals(
 				"__body__.append(\"<div id=\\\"myDiv\\\" class=\\\"class1 class2\\\" attr1=\\\"\");\n" +
-				"__body__.append(h((var1) + \"\\n\" + (var2)));\n" +
+				"h(__body__, (var1) + \"\\n\" + (var2));\n" +
 				"__body__.append(\"\\\">text</div>\");",
 				render("div#myDiv.class1.class2(attr1:\"${var1}\\n${var2}\") text"));
 		
 		assertEquals(
 				"__body__.append(\"<div id=\\\"myDiv\\\" class=\\\"class1 class2\\\" attr1=\\\"\");\n" +
-				"__body__.append(h(\"say \" + var + \" \" + (10*i) + \" times\"));\n" +
+				"h(__body__, \"say \" + var + \" \" + (10*i) + \" times\");\n" +
 				"__body__.append(\"\\\">text</div>\");",
 				render("div#myDiv.class1.class2(attr1:\"say $var ${10*i} times\") text"));
 	}
@@ -781,7 +781,7 @@ public class EspCompilerTests {
 	public void testMarkupWithArrayLiteral() throws Exception {
 		assertEquals(
 				"__body__.append(\"<div attr=\\\"\");\n" +
-				"__body__.append(h(new String[] { \"1.0\", \"1.5\", \"2.0\" }));\n" +
+				"h(__body__, new String[] { \"1.0\", \"1.5\", \"2.0\" });\n" +
 				"__body__.append(\"\\\"></div>\");",
 				render("div(attr: new String[] { \"1.0\", \"1.5\", \"2.0\" })"));
 	}
@@ -876,25 +876,25 @@ public class EspCompilerTests {
 	public void testHtmlDivWithJavaPart() throws Exception {
 		assertEquals(
 				"__body__.append(\"<div id=\\\"\");\n" +
-				"__body__.append(h(var1));\n" +
+				"h(__body__, var1);\n" +
 				"__body__.append(\"Div\\\"></div>\");", 
 				render("div#{var1}Div"));
 		
 		assertEquals(
 				"__body__.append(\"<div class=\\\"a\");\n" +
-				"__body__.append(h(var2));\n" +
+				"h(__body__, var2);\n" +
 				"__body__.append(\"Class\\\"></div>\");", 
 				render("div.a{var2}Class"));
 		
 		assertEquals(
 				"__body__.append(\"<div id=\\\"\");\n" +
-				"__body__.append(h(var1));\n" +
+				"h(__body__, var1);\n" +
 				"__body__.append(\"Div\\\" class=\\\"a\");\n" +
-				"__body__.append(h(var2));\n" +
+				"h(__body__, var2);\n" +
 				"__body__.append(\"Class\\\" attr1=\\\"\");\n" +
-				"__body__.append(h(\"v\" + (var3) + \"1\"));\n" +
+				"h(__body__, \"v\" + (var3) + \"1\");\n" +
 				"__body__.append(\"\\\">t\");\n" +
-				"__body__.append(h(var4));\n" +
+				"h(__body__, var4);\n" +
 				"__body__.append(\"xt</div>\");",
 				render("div#{var1}Div.a{var2}Class(attr1:\"v${var3}1\") t{var4}xt"));
 	}
@@ -903,19 +903,19 @@ public class EspCompilerTests {
 	public void testJavaParts() throws Exception {
 		assertEquals(
 				"__body__.append(\"<div id=\\\"\");\n" +
-				"__body__.append(h(id));\n" +
+				"h(__body__, id);\n" +
 				"__body__.append(\"\\\"></div>\");", 
 				render("div#{id}"));
 		
 		assertEquals(
 				"__body__.append(\"<div id=\\\"\");\n" +
-				"__body__.append(h(nid));\n" +
+				"h(__body__, nid);\n" +
 				"__body__.append(\"\\\"></div>\");", 
 				render("div#{nid}"));
 		
 		assertEquals(
 				"__body__.append(\"<div id=\\\"\");\n" +
-				"__body__.append(h(n(id)));\n" +
+				"h(__body__, n(id));\n" +
 				"__body__.append(\"\\\"></div>\");", 
 				render("div#{n(id)}"));
 		
@@ -927,7 +927,7 @@ public class EspCompilerTests {
 		
 		assertEquals(
 				"__body__.append(\"<div id=\\\"\");\n" +
-				"__body__.append(h(id));\n" +
+				"h(__body__, id);\n" +
 				"__body__.append(\"\\\"></div>\");", 
 				render("div#{h id}"));
 		
@@ -945,7 +945,7 @@ public class EspCompilerTests {
 
 		assertEquals(
 				"__body__.append(\"<div>\");\n" +
-				"__body__.append(h(id));\n" +
+				"h(__body__, id);\n" +
 				"__body__.append(\"</div>\");", 
 				render("div {id}"));
 	}
@@ -961,13 +961,13 @@ public class EspCompilerTests {
 	public void testGStringInJavaPart() throws Exception {
 		assertEquals(
 				"__body__.append(\"<div class=\\\"\");\n" +
-				"__body__.append(h((clazz) + \" selected\"));\n" +
+				"h(__body__, (clazz) + \" selected\");\n" +
 				"__body__.append(\"\\\"></div>\");", 
 				render("div.{\"${clazz} selected\"}"));
 
 		assertEquals(
 				"__body__.append(\"<div class=\\\"\");\n" +
-				"__body__.append(h(isPath(p) ? (clazz) + \" selected\" : clazz));\n" +
+				"h(__body__, isPath(p) ? (clazz) + \" selected\" : clazz);\n" +
 				"__body__.append(\"\\\"></div>\");", 
 				render("div.{isPath(p) ? \"${clazz} selected\" : clazz}"));
 	}
@@ -977,7 +977,7 @@ public class EspCompilerTests {
 		assertFalse(
 				(
 					"__body__.append(\"<div style=\\\"\");\n" +
-					"__body__.append(h(\"display:\" + \"block\"));\n" +
+					"h(__body__, \"display:\" + \"block\");\n" +
 					"__body__.append(\"\\\"></div>\");"
 				)
 				.equals(
@@ -1096,15 +1096,15 @@ public class EspCompilerTests {
 		
 		assertEquals(
 				"__body__.append(\"<img height=\\\"\");\n" +
-				"__body__.append(h(h));\n" +
+				"h(__body__, h);\n" +
 				"__body__.append(\"\\\" width=\\\"\");\n" +
-				"__body__.append(h(h/2));\n" +
+				"h(__body__, h/2);\n" +
 				"__body__.append(\"\\\" src=\\\"/software/cdatetime.png\\\"></img>\");",
 				render("img(src:\"/software/cdatetime.png\", width:h/2, height:h)"));
 		
 		assertEquals(
 				"__body__.append(\"<img src=\\\"\");\n" +
-				"__body__.append(h(\"/\" + (image) + \".png\"));\n" +
+				"h(__body__, \"/\" + (image) + \".png\");\n" +
 				"__body__.append(\"\\\"></img>\");", 
 				render("img(src:\"/${image}.png\")"));
 	}
@@ -1121,13 +1121,13 @@ public class EspCompilerTests {
 
 		assertEquals(
 				"__body__.append(\"<a href=\\\"\");\n" +
-				"__body__.append(h(pathTo(something)));\n" +
+				"h(__body__, pathTo(something));\n" +
 				"__body__.append(\"\\\">something</a>\");", 
 				render("a(pathTo(something)) something"));
 
 		assertEquals(
 				"__body__.append(\"<a href=\\\"\");\n" +
-				"__body__.append(h(pathTo(something) + \"?test\"));\n" +
+				"h(__body__, pathTo(something) + \"?test\");\n" +
 				"__body__.append(\"\\\">something</a>\");", 
 				render("a(pathTo(something) + \"?test\") something"));
 
@@ -1288,7 +1288,7 @@ public class EspCompilerTests {
 		assertEquals(
 				"String formModelName$0 = \"member\";\n" +
 				"__body__.append(\"<input type=\\\"hidden\\\" name=\\\"\").append(formModelName$0).append(\"[id]\\\" value=\\\"\");\n" +
-				"__body__.append(h(member));\n" +
+				"h(__body__, member);\n" +
 				"__body__.append(\"\\\" />\");",
 			render("fields(member)"));
 
@@ -1630,7 +1630,7 @@ public class EspCompilerTests {
 				"__body__.append(\" for=\\\"\").append(formModelName$0).append(\"[\");\n" +
 				"__body__.append(f(firstName));\n" +
 				"__body__.append(\"]\\\">\");\n" +
-				"__body__.append(h(titleize(firstName)));\n" +
+				"h(__body__, titleize(firstName));\n" +
 				"if(member.isRequired(firstName)) {\n" +
 				"\t__body__.append(\"<span class=\\\"required\\\">*</span>\");\n" +
 				"}\n" +
@@ -1991,7 +1991,7 @@ public class EspCompilerTests {
 		assertEquals("__body__.append(\"<div>start:</div>\");", render("div start:\n\t+end")); // space required
 		assertEquals("__body__.append(\"<div>start:end</div>\");", render("div start:\n\t+ end"));
 		assertEquals("__body__.append(\"<div>start : end</div>\");", render("div start :\n\t+  end"));
-		assertEquals("__body__.append(\"<div>start:e\");\n__body__.append(h(n));\n__body__.append(\"d</div>\");", render("div start:\n\t+ e{n}d"));
+		assertEquals("__body__.append(\"<div>start:e\");\nh(__body__, n);\n__body__.append(\"d</div>\");", render("div start:\n\t+ e{n}d"));
 		assertEquals("__body__.append(\"<div>start:<code>src</code></div>\");", render("div start:\n\t+ <code>src</code>"));
 
 		// literal (no java parts)
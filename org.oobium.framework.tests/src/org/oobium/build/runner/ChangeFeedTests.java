@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.build.runner;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.oobium.build.workspace.Bundle;
+import org.oobium.build.workspace.Module;
+import org.oobium.build.workspace.Project;
+import org.oobium.utils.FileUtils;
+
+public class ChangeFeedTests {
+
+	private File dir;
+	private long past;
+
+	@Before
+	public void setup() {
+		dir = new File(System.getProperty("java.io.tmpdir"), "oobium-change-feed-" + System.nanoTime());
+		past = (System.currentTimeMillis() / 1000 - 60) * 1000; // well outside of the timestamp resolution
+	}
+
+	@After
+	public void teardown() {
+		FileUtils.deleteContents(dir);
+		dir.delete();
+	}
+
+	private Project load(String name, String type) throws IOException {
+		File project = new File(dir, name);
+		StringBuilder sb = new StringBuilder();
+		sb.append("Manifest-Version: 1.0\n");
+		sb.append("Bundle-SymbolicName: ").append(name).append('\n');
+		sb.append("Bundle-Version: 1.0.0\n");
+		if(type != null) {
+			sb.append("Oobium-Type: ").append(type).append('\n');
+		}
+		write(new File(project, "META-INF/MANIFEST.MF"), sb.toString(), past);
+		return Project.load(project);
+	}
+
+	private File write(File file, String contents, long modified) throws IOException {
+		file.getParentFile().mkdirs();
+		FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+		file.setLastModified(modified);
+		return file;
+	}
+
+	private void age(File dir) {
+		dir.setLastModified(past);
+		File[] children = dir.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				if(child.isDirectory()) {
+					age(child);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDebounce() throws Exception {
+		Bundle bundle = (Bundle) load("test.bundle", null);
+		write(new File(bundle.bin, "A.class"), "a", past);
+		age(bundle.file);
+
+		ChangeFeed feed = new ChangeFeed(asList(bundle), 200);
+		assertTrue(feed.poll().isEmpty());
+		assertFalse(feed.hasPending());
+
+		File a = write(new File(bundle.bin, "A.class"), "a2", past + 1000);
+		assertTrue(feed.poll().isEmpty());
+		assertTrue(feed.hasPending());
+
+		Thread.sleep(120);
+		File b = write(new File(bundle.bin, "B.class"), "b", System.currentTimeMillis());
+		assertTrue(feed.poll().isEmpty()); // the new change starts the wait over again
+		assertTrue(feed.hasPending());
+
+		Thread.sleep(120);
+		assertTrue(feed.poll().isEmpty());
+
+		Thread.sleep(120);
+		Map<Bundle, Set<File>> changes = feed.poll();
+		assertEquals(Collections.singleton(bundle), changes.keySet());
+		assertEquals(2, changes.get(bundle).size());
+		assertTrue(changes.get(bundle).containsAll(asList(a, b)));
+		assertFalse(feed.hasPending());
+		assertTrue(feed.poll().isEmpty());
+	}
+
+	@Test
+	public void testUnchangedDirectoryNotListed() throws Exception {
+		Bundle bundle = (Bundle) load("test.bundle", null);
+		File pkg = new File(bundle.bin, "pkg");
+		write(new File(pkg, "A.class"), "a", past);
+		age(bundle.file);
+
+		ChangeFeed feed = new ChangeFeed(asList(bundle), 0);
+
+		// a file added without the directory's time changing is not seen...
+		File b = write(new File(pkg, "B.class"), "b", past);
+		pkg.setLastModified(past);
+		assertTrue(feed.poll().isEmpty());
+
+		// ...until the directory is modified, and so listed again
+		pkg.setLastModified(past + 1000);
+		assertEquals(Collections.singleton(b), feed.poll().get(bundle));
+
+		// while files that are already known are checked on every scan
+		File a = write(new File(pkg, "A.class"), "a2", past + 2000);
+		pkg.setLastModified(past + 1000);
+		assertEquals(Collections.singleton(a), feed.poll().get(bundle));
+	}
+
+	@Test
+	public void testUncompiledEFile() throws Exception {
+		Module module = (Module) load("test.module", "module");
+		File esp = write(new File(module.views, "home/Show.esp"), "div hello", past);
+		File bin = write(module.getBinEFiles(esp)[0], "compiled", past);
+		age(module.file);
+
+		ChangeFeed feed = new ChangeFeed(asList((Bundle) module), 0);
+
+		write(esp, "div hello world", past + 2000);
+		assertTrue(feed.poll().isEmpty()); // held back until it has been compiled...
+		assertFalse(feed.hasPending()); // ...but not polled for as if it were still settling
+
+		write(bin, "compiled again", past + 3000);
+		Map<Bundle, Set<File>> changes = feed.poll();
+		assertEquals(Collections.singleton(esp), changes.get(module)); // and its class is not reported itself
+		assertFalse(feed.hasPending());
+
+		write(esp, "div hello again", past + 4000);
+		assertTrue(feed.poll().isEmpty());
+		esp.delete();
+		assertTrue(feed.poll().get(module).contains(esp)); // removed files are not waited on
+	}
+
+}
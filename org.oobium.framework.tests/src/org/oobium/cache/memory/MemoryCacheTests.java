@@ -0,0 +1,84 @@
+package org.oobium.cache.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MemoryCacheTests {
+
+	@Test
+	public void testGetAndPut() throws Exception {
+		MemoryCache cache = new MemoryCache(1024 * 1024, 4);
+		byte[] data = "hello".getBytes();
+		
+		assertNull(cache.get("a"));
+		assertTrue(cache.put("a", data, 0));
+		
+		MemoryCacheObject obj = cache.get("a");
+		assertNotNull(obj);
+		assertSame(data, obj.payload());
+		assertEquals("5", obj.contentLength());
+		assertNotNull(obj.lastModified());
+		
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+		MemoryCache cache = new MemoryCache(1024 * 1024, 4);
+		cache.put("a", new byte[10], 0);
+		cache.remove("a");
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.weight());
+	}
+	
+	@Test
+	public void testExpires() throws Exception {
+		MemoryCache cache = new MemoryCache(1024 * 1024, 1);
+		cache.put("a", new byte[10], 1);
+		Thread.sleep(5);
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+	}
+	
+	@Test
+	public void testTooLarge() throws Exception {
+		MemoryCache cache = new MemoryCache(1000, 1);
+		assertTrue(!cache.put("a", new byte[2000], 0));
+		assertNull(cache.get("a"));
+	}
+	
+	@Test
+	public void testEviction_ProtectsReadEntries() throws Exception {
+		MemoryCache cache = new MemoryCache(10 * 1000, 1);
+		cache.put("hot", new byte[500], 0);
+		assertNotNull(cache.get("hot")); // promoted to the protected area
+		for(int i = 0; i < 100; i++) {
+			cache.put("cold" + i, new byte[500], 0);
+		}
+		assertTrue(cache.weight() <= 10 * 1000);
+		assertTrue(cache.getEvictionCount() > 0);
+		assertNotNull(cache.get("hot"));
+		assertNull(cache.get("cold0"));
+	}
+
+	@Test
+	public void testService() throws Exception {
+		MemoryCacheService service = new MemoryCacheService(1024 * 1024, 0, 4, false);
+		service.set("key", "value".getBytes());
+		assertEquals("value", new String((byte[]) service.get("key").payload()));
+		service.expire("key");
+		assertNull(service.get("key"));
+		service.set("key", "value".getBytes());
+		service.expire();
+		assertNull(service.get("key"));
+	}
+	
+}
@@ -0,0 +1,199 @@
+package org.oobium.client;
+
+import static org.junit.Assert.*;
+import static org.oobium.utils.literal.Map;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpClientTests {
+
+	private ServerBootstrap server;
+	private Channel serverChannel;
+	private int port;
+	private AtomicInteger connections;
+
+	@Before
+	public void setup() throws Exception {
+		connections = new AtomicInteger();
+		server = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+		server.setPipelineFactory(new ChannelPipelineFactory() {
+			@Override
+			public ChannelPipeline getPipeline() throws Exception {
+				ChannelPipeline pipeline = Channels.pipeline();
+				pipeline.addLast("decoder", new HttpRequestDecoder());
+				pipeline.addLast("encoder", new HttpResponseEncoder());
+				pipeline.addLast("handler", new SimpleChannelUpstreamHandler() {
+					@Override
+					public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+						connections.incrementAndGet();
+					}
+					@Override
+					public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+						HttpRequest request = (HttpRequest) e.getMessage();
+						if(request.getUri().startsWith("/slow")) {
+							return; // never answer
+						}
+						String body = request.getMethod() + " " + request.getUri() + " " + request.getContent().toString(CharsetUtil.UTF_8);
+						HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+						response.setContent(ChannelBuffers.copiedBuffer(body, CharsetUtil.UTF_8));
+						response.setHeader(HttpHeaders.Names.CONTENT_LENGTH, response.getContent().readableBytes());
+						response.setHeader("id", "1");
+						ctx.getChannel().write(response);
+					}
+				});
+				return pipeline;
+			}
+		});
+		serverChannel = server.bind(new InetSocketAddress("localhost", 0));
+		port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+	}
+
+	@After
+	public void teardown() throws Exception {
+		HttpClient.closeAll();
+		serverChannel.close().awaitUninterruptibly();
+		server.releaseExternalResources();
+	}
+
+	@Test
+	public void testKeepAlive() throws Exception {
+		for(int i = 0; i < 20; i++) {
+			ClientResponse response = Client.client("localhost", port).get("/test/" + i);
+			assertTrue(response.isSuccess());
+			assertEquals("GET /test/" + i + " ", response.getBody());
+			assertEquals("1", response.getHeader("id"));
+		}
+		assertEquals(1, connections.get());
+	}
+
+	@Test
+	public void testPost() throws Exception {
+		ClientResponse response = Client.client("localhost", port).post("/models", Map("a", "b c"));
+		assertTrue(response.isSuccess());
+		assertEquals("POST /models a=b+c", response.getBody());
+	}
+
+	@Test
+	public void testAsync() throws Exception {
+		HttpClient client = HttpClient.getClient("localhost", port);
+		client.setMaxConnections(2);
+
+		final CountDownLatch latch = new CountDownLatch(50);
+		final List<ClientResponse> responses = new ArrayList<ClientResponse>();
+		for(int i = 0; i < 50; i++) {
+			HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/async/" + i);
+			client.request(request).addListener(new ResponseListener() {
+				@Override
+				public void onResponse(ClientResponse response) {
+					synchronized(responses) {
+						responses.add(response);
+					}
+					latch.countDown();
+				}
+			});
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		for(ClientResponse response : responses) {
+			assertTrue(response.isSuccess());
+		}
+		assertTrue(connections.get() <= 2);
+	}
+
+	@Test
+	public void testPipelining() throws Exception {
+		HttpClient client = HttpClient.getClient("localhost", port);
+		client.setMaxConnections(1);
+		client.setMaxPipelined(8);
+
+		ClientFuture[] futures = new ClientFuture[32];
+		for(int i = 0; i < futures.length; i++) {
+			futures[i] = client.request(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/pipelined/" + i));
+		}
+		for(int i = 0; i < futures.length; i++) {
+			assertEquals("GET /pipelined/" + i + " ", futures[i].get(10, TimeUnit.SECONDS).getBody());
+		}
+		assertEquals(1, connections.get());
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		HttpClient client = HttpClient.getClient("localhost", port);
+		ClientResponse response = client.request(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/slow"), 200).get(10, TimeUnit.SECONDS);
+		assertTrue(response.exceptionThrown());
+		assertTrue(response.getException() instanceof TimeoutException);
+
+		// the connection was closed; the next request uses a new one
+		response = client.request(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/fast")).get(10, TimeUnit.SECONDS);
+		assertTrue(response.isSuccess());
+		assertEquals(2, connections.get());
+	}
+
+	@Test
+	public void testConnectionRefused() throws Exception {
+		serverChannel.close().awaitUninterruptibly();
+		ClientResponse response = Client.client("localhost", port).get("/test");
+		assertTrue(response.exceptionThrown());
+	}
+
+	@Test
+	public void testDaemonThreads() throws Exception {
+		assertTrue(Client.client("localhost", port).get("/test").isSuccess());
+		List<Thread> threads = clientThreads();
+		assertFalse(threads.isEmpty());
+		for(Thread thread : threads) {
+			assertTrue(thread.getName(), thread.isDaemon());
+		}
+
+		HttpClient.closeAll();
+		for(int i = 0; i < 100 && !clientThreads().isEmpty(); i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, clientThreads().size());
+	}
+
+	// Netty renames the threads of its channel factories, so they can't be found by the names they were given
+	private List<Thread> clientThreads() {
+		List<Thread> threads = new ArrayList<Thread>();
+		for(Thread thread : Thread.getAllStackTraces().keySet()) {
+			String name = thread.getName();
+			if(name.startsWith("New I/O client") || name.startsWith("Hashed wheel timer")) {
+				threads.add(thread);
+			}
+		}
+		return threads;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.framework.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times a set of tasks that do the same work in different ways, and prints the time each one takes per
+ * operation, along with how many times faster than the first task it is:
+ * <pre>
+ * new Benchmark("10 routes")
+ *   .add("scan", new Task() { public void run(int i) { ... } })
+ *   .add("tree", new Task() { public void run(int i) { ... } })
+ *   .run();
+ * </pre>
+ * <p>Each task is warmed up, and then timed, in turn; the iteration number is passed in so that a task can
+ * cycle through its inputs. The *Benchmark classes that use it are plain JUnit classes that are left out of
+ * the OobiumTestSuite, since their output is only of use when they are run on their own.</p>
+ */
+public class Benchmark {
+
+	public static abstract class Task {
+		public abstract void run(int i) throws Exception;
+	}
+
+	private final String name;
+	private final List<String> labels;
+	private final List<Task> tasks;
+	private int warmup;
+	private int iterations;
+	private String unit;
+	private int units;
+
+	public Benchmark(String name) {
+		this.name = name;
+		this.labels = new ArrayList<String>();
+		this.tasks = new ArrayList<Task>();
+		this.warmup = 20000;
+		this.iterations = 200000;
+		this.unit = "op";
+		this.units = 1;
+	}
+
+	public Benchmark add(String label, Task task) {
+		labels.add(label);
+		tasks.add(task);
+		return this;
+	}
+
+	/**
+	 * Time each task, and print the results on a single line.
+	 * @return the time per operation (or unit) of each task, in nanoseconds
+	 */
+	public double[] run() throws Exception {
+		double[] times = new double[tasks.size()];
+		StringBuilder sb = new StringBuilder(String.format("%-18s:", name));
+		for(int t = 0; t < tasks.size(); t++) {
+			Task task = tasks.get(t);
+			for(int i = 0; i < warmup; i++) {
+				task.run(i);
+			}
+			long start = System.nanoTime();
+			for(int i = 0; i < iterations; i++) {
+				task.run(i);
+			}
+			times[t] = (double) (System.nanoTime() - start) / iterations / units;
+			if(t > 0) {
+				sb.append(',');
+			}
+			sb.append(String.format(" %s %8.2f ns/%s", labels.get(t), times[t], unit));
+			if(t > 0) {
+				sb.append(String.format(" (%.1fx)", times[0] / times[t]));
+			}
+		}
+		System.out.println(sb);
+		return times;
+	}
+
+	/**
+	 * Report the time per unit of work rather than per operation, such as per character of the input.
+	 * @param unit the name of the unit
+	 * @param units the number of units in each operation
+	 */
+	public Benchmark setUnit(String unit, int units) {
+		this.unit = unit;
+		this.units = units;
+		return this;
+	}
+
+	public Benchmark setIterations(int iterations) {
+		this.iterations = iterations;
+		return this;
+	}
+
+	public Benchmark setWarmup(int warmup) {
+		this.warmup = warmup;
+		return this;
+	}
+
+}
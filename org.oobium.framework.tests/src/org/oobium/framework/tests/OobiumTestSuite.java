@@ -4,55 +4,104 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.oobium.app.persist.PersistServicesTests;
+import org.oobium.app.response.StreamingResponseTests;
+import org.oobium.app.server.RequestExecutorTests;
+import org.oobium.app.server.ResponseCompressorTests;
+import org.oobium.app.server.StaticFileCacheTests;
+import org.oobium.app.server.WebsocketServerHandlerTests;
+import org.oobium.build.runner.ChangeFeedTests;
 import org.oobium.build.esp.EjsCompilerTests;
 import org.oobium.build.esp.EspCompilerTests;
 import org.oobium.build.views.dom.html_elements.InputTests;
 import org.oobium.build.workspace.BundleTests;
 import org.oobium.build.workspace.ModuleTests;
+import org.oobium.cache.memory.MemoryCacheTests;
+import org.oobium.client.HttpClientTests;
 import org.oobium.console.ParametersTests;
+import org.oobium.logging.LogHandlerTests;
+import org.oobium.mailer.MailQueueTests;
 import org.oobium.mailer.MailerTests;
+import org.oobium.persist.LoadContextTests;
+import org.oobium.persist.ModelCacheTests;
 import org.oobium.persist.ModelTests;
 import org.oobium.persist.SessionCacheTests;
 import org.oobium.persist.ValidatorTests;
+import org.oobium.persist.db.ConnectionPoolTests;
 import org.oobium.persist.db.FindAllTests;
+import org.oobium.persist.db.FindEachTests;
 import org.oobium.persist.db.FindTests;
 import org.oobium.persist.db.PaginatorTests;
 import org.oobium.persist.db.internal.DbPersistorUpdateTests;
 import org.oobium.persist.db.internal.QueryBuilderTests;
+import org.oobium.persist.db.internal.StatementCacheTests;
+import org.oobium.persist.http.HttpPersistServiceTests;
+import org.oobium.pipeline.service.AssetPipelineServiceTests;
+import org.oobium.pipeline.service.MinifierTests;
 import org.oobium.utils.CharStreamUtilsTests;
+import org.oobium.utils.DateUtilsTests;
 import org.oobium.utils.FileUtilsTests;
 import org.oobium.utils.SqlUtilsTests;
 import org.oobium.utils.StringUtilsTests;
 import org.oobium.utils.coercion.TypeCoercerTests;
+import org.oobium.utils.json.JsonReaderTests;
 import org.oobium.utils.json.JsonUtilsTests;
+import org.oobium.utils.json.JsonWriterTests;
 
 @RunWith(Suite.class)
 @SuiteClasses({
+	// org.oobium.app.tests
+	RequestExecutorTests.class,
+	StreamingResponseTests.class,
+	ResponseCompressorTests.class,
+	StaticFileCacheTests.class,
+	WebsocketServerHandlerTests.class,
 	// org.oobium.build.tests
 	EjsCompilerTests.class,
 	EspCompilerTests.class,
 	InputTests.class,
 	BundleTests.class,
 	ModuleTests.class,
+	// org.oobium.build.runner.tests
+	ChangeFeedTests.class,
+	// org.oobium.cache.memory.tests
+	MemoryCacheTests.class,
+	// org.oobium.client.tests
+	HttpClientTests.class,
 	// org.oobium.console.tests
 	ParametersTests.class,
+	// org.oobium.logging.tests
+	LogHandlerTests.class,
 	// org.oobium.mailer.tests
+	MailQueueTests.class,
 	MailerTests.class,
 	// org.oobium.persist.db.tests
 	SessionCacheTests.class,
+	ConnectionPoolTests.class,
 	FindAllTests.class,
+	FindEachTests.class,
 	FindTests.class,
 	DbPersistorUpdateTests.class,
 	QueryBuilderTests.class,
+	StatementCacheTests.class,
 	PaginatorTests.class,
+	// org.oobium.persist.http.tests
+	HttpPersistServiceTests.class,
 	// org.oobium.persist.tests
+	LoadContextTests.class,
+	ModelCacheTests.class,
 	ModelTests.class,
 	PersistServicesTests.class,
 	ValidatorTests.class,
+	// org.oobium.pipeline.service.tests
+	AssetPipelineServiceTests.class,
+	MinifierTests.class,
 	// org.oobium.utils.tests
 	TypeCoercerTests.class,
+	JsonReaderTests.class,
 	JsonUtilsTests.class,
+	JsonWriterTests.class,
 	CharStreamUtilsTests.class,
+	DateUtilsTests.class,
 	FileUtilsTests.class,
 	SqlUtilsTests.class,
 	StringUtilsTests.class
@@ -0,0 +1,235 @@
+package org.oobium.logging;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.oobium.logging.LogHandler.Policy;
+import org.osgi.framework.Bundle;
+import org.osgi.service.log.LogEntry;
+
+public class LogHandlerTests {
+
+	private File path;
+	private Bundle bundle;
+
+	@Before
+	public void setup() {
+		if(Activator.instance == null) {
+			new Activator();
+		}
+		path = new File(System.getProperty("java.io.tmpdir"), "oobium-log-" + System.nanoTime());
+		bundle = mock(Bundle.class);
+		when(bundle.getSymbolicName()).thenReturn("test.bundle");
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = path.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				file.delete();
+			}
+		}
+		path.delete();
+	}
+
+	private LogEntry entry(int level, String message) {
+		LogEntry entry = mock(LogEntry.class);
+		when(entry.getBundle()).thenReturn(bundle);
+		when(entry.getLevel()).thenReturn(level);
+		when(entry.getMessage()).thenReturn(message);
+		when(entry.getTime()).thenReturn(System.currentTimeMillis());
+		return entry;
+	}
+
+	/**
+	 * @return an entry that holds up the writer thread, once it gets to it, until the release latch is opened
+	 */
+	private LogEntry blocking(final CountDownLatch taken, final CountDownLatch release) {
+		LogEntry entry = entry(Logger.INFO, null);
+		when(entry.getMessage()).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				taken.countDown();
+				release.await();
+				return "blocked";
+			}
+		});
+		return entry;
+	}
+
+	private List<String> lines(File file) throws Exception {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		LogHandler handler = new LogHandler(path, "test", LogHandler.MB, 16, Policy.BLOCK, 10);
+		for(int i = 0; i < 500; i++) {
+			handler.logged(entry(Logger.INFO, "message " + i));
+		}
+		handler.close();
+
+		List<String> lines = lines(new File(path, "test.log"));
+		assertEquals(500, lines.size());
+		for(int i = 0; i < 500; i++) {
+			assertTrue(lines.get(i), lines.get(i).endsWith("(INFO)  test.bundle: message " + i));
+		}
+		assertEquals(0, handler.getDroppedCount());
+	}
+
+	@Test
+	public void testLevel() throws Exception {
+		LogHandler handler = new LogHandler(path, "test", LogHandler.MB, 16, Policy.BLOCK, 10);
+		handler.logged(entry(Logger.DEBUG, "not logged"));
+		handler.logged(entry(Logger.ERROR, "logged"));
+		handler.close();
+
+		List<String> lines = lines(new File(path, "test.log"));
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0).contains("(ERROR) test.bundle: logged"));
+	}
+
+	@Test
+	public void testRotate() throws Exception {
+		LogHandler handler = new LogHandler(path, "test", 1000, 16, Policy.BLOCK, 10);
+		for(int i = 0; i < 100; i++) {
+			handler.logged(entry(Logger.INFO, "message " + i));
+		}
+		handler.close();
+
+		assertTrue(new File(path, "test_001.log").exists());
+		assertTrue(new File(path, "test_002.log").exists());
+		assertTrue(new File(path, "test.log").length() <= 1000);
+	}
+
+	@Test
+	public void testClosed() throws Exception {
+		LogHandler handler = new LogHandler(path, "test", LogHandler.MB, 16, Policy.BLOCK, 10);
+		handler.close();
+		handler.logged(entry(Logger.ERROR, "ignored"));
+		assertEquals(0, new File(path, "test.log").length());
+	}
+
+	@Test
+	public void testDrop() throws Exception {
+		CountDownLatch taken = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		LogHandler handler = new LogHandler(path, "test", LogHandler.MB, 4, Policy.DROP, 10);
+		handler.logged(blocking(taken, release));
+		assertTrue(taken.await(5, TimeUnit.SECONDS));
+
+		for(int i = 0; i < 10; i++) {
+			handler.logged(entry(i < 8 ? Logger.INFO : Logger.ERROR, "message " + i));
+		}
+		assertEquals(6, handler.getDroppedCount()); // errors too
+
+		release.countDown();
+		handler.close();
+
+		List<String> lines = lines(new File(path, "test.log"));
+		assertEquals(6, lines.size());
+		assertTrue(lines.get(0), lines.get(0).endsWith("test.bundle: blocked"));
+		assertTrue(lines.get(1), lines.get(1).contains("discarded 6 log entries"));
+		for(int i = 0; i < 4; i++) {
+			assertTrue(lines.get(i + 2), lines.get(i + 2).endsWith("test.bundle: message " + i));
+		}
+	}
+
+	@Test
+	public void testDropBelowWarn() throws Exception {
+		CountDownLatch taken = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		final LogHandler handler = new LogHandler(path, "test", LogHandler.MB, 4, Policy.DROP_BELOW_WARN, 10);
+		handler.logged(blocking(taken, release));
+		assertTrue(taken.await(5, TimeUnit.SECONDS));
+
+		for(int i = 0; i < 7; i++) {
+			handler.logged(entry(Logger.INFO, "message " + i));
+		}
+		assertEquals(3, handler.getDroppedCount());
+
+		// a warning waits for room in the buffer, rather than being dropped
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				handler.logged(entry(Logger.WARNING, "warning"));
+			}
+		};
+		thread.start();
+		thread.join(200);
+		assertTrue(thread.isAlive());
+
+		release.countDown();
+		thread.join(5000);
+		assertFalse(thread.isAlive());
+		handler.close();
+		assertEquals(3, handler.getDroppedCount());
+
+		List<String> lines = lines(new File(path, "test.log"));
+		assertEquals(7, lines.size());
+		assertTrue(lines.get(0), lines.get(0).endsWith("test.bundle: blocked"));
+		assertTrue(lines.get(1), lines.get(1).contains("discarded 3 log entries"));
+		for(int i = 0; i < 4; i++) {
+			assertTrue(lines.get(i + 2), lines.get(i + 2).endsWith("test.bundle: message " + i));
+		}
+		assertTrue(lines.get(6), lines.get(6).endsWith("test.bundle: warning"));
+	}
+
+	@Test
+	public void testSyncInterval_Zero() throws Exception {
+		LogHandler handler = new LogHandler(path, "test", LogHandler.MB, 16, Policy.BLOCK, 0);
+		handler.logged(entry(Logger.INFO, "message"));
+		Thread.sleep(200);
+
+		// once the entry has been written and synced, the writer waits for the next one (rather than spinning)
+		assertEquals(1, lines(new File(path, "test.log")).size());
+		for(Thread thread : Thread.getAllStackTraces().keySet()) {
+			if("oobium-log-writer".equals(thread.getName())) {
+				assertEquals(Thread.State.WAITING, thread.getState());
+			}
+		}
+		handler.close();
+	}
+
+	@Test
+	public void testParsePolicy() throws Exception {
+		assertEquals(Policy.BLOCK, Policy.parse("block"));
+		assertEquals(Policy.DROP, Policy.parse("DROP"));
+		assertEquals(Policy.DROP_BELOW_WARN, Policy.parse("dropBelowWarn"));
+		assertEquals(Policy.DROP_BELOW_WARN, Policy.parse("drop_below_warn"));
+		assertEquals(Policy.DROP_BELOW_WARN, Policy.parse(null));
+	}
+
+	@Test
+	public void testTimestamp() throws Exception {
+		long time = System.currentTimeMillis();
+		String ts = LogFormatter.timestamp(time);
+		assertSame(ts, LogFormatter.timestamp(time));
+		assertFalse(ts.equals(LogFormatter.timestamp(time + 1)));
+	}
+
+}
@@ -0,0 +1,265 @@
+package org.oobium.mailer;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.oobium.utils.FileUtils;
+
+public class MailQueueTests {
+
+	/**
+	 * A local stand-in for an SMTP server: accepts every message, except for the number of DATA commands
+	 * that it is told to reject; records the subject of each message that it accepts.
+	 */
+	private static class Smtp extends Thread {
+		final ServerSocket server;
+		final List<String> subjects = Collections.synchronizedList(new ArrayList<String>());
+		final AtomicInteger connections = new AtomicInteger();
+		final AtomicInteger reject = new AtomicInteger();
+		Smtp() throws IOException {
+			server = new ServerSocket(0);
+			setDaemon(true);
+			start();
+		}
+		void close() throws IOException {
+			server.close();
+		}
+		int getPort() {
+			return server.getLocalPort();
+		}
+		@Override
+		public void run() {
+			while(!server.isClosed()) {
+				try {
+					final Socket socket = server.accept();
+					connections.incrementAndGet();
+					new Thread() {
+						public void run() {
+							try {
+								session(socket);
+							} catch(IOException e) {
+								// closed
+							}
+						};
+					}.start();
+				} catch(IOException e) {
+					// closed
+				}
+			}
+		}
+		void session(Socket socket) throws IOException {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+			out.print("220 localhost ESMTP\r\n");
+			out.flush();
+			String line;
+			while((line = in.readLine()) != null) {
+				String cmd = line.toUpperCase();
+				if(cmd.startsWith("DATA")) {
+					out.print("354 go ahead\r\n");
+					out.flush();
+					String subject = null;
+					while((line = in.readLine()) != null && !line.equals(".")) {
+						if(subject == null && line.startsWith("Subject: ")) {
+							subject = line.substring(9);
+						}
+					}
+					if(reject.getAndDecrement() > 0) {
+						out.print("451 try again later\r\n");
+					} else {
+						subjects.add(subject);
+						out.print("250 ok\r\n");
+					}
+				} else if(cmd.startsWith("QUIT")) {
+					out.print("221 bye\r\n");
+					out.flush();
+					socket.close();
+					return;
+				} else {
+					out.print("250 ok\r\n");
+				}
+				out.flush();
+			}
+		}
+	}
+
+	private static void waitFor(MailQueue queue, long sent) throws InterruptedException {
+		for(int i = 0; i < 500 && queue.getSentCount() < sent; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(sent, queue.getSentCount());
+	}
+
+
+	private Smtp smtp;
+	private File spool;
+	private List<MailQueue> queues;
+
+	@Before
+	public void setup() throws Exception {
+		smtp = new Smtp();
+		spool = new File(System.getProperty("java.io.tmpdir"), "oobium-mail-spool-" + System.nanoTime());
+		queues = new ArrayList<MailQueue>();
+	}
+
+	@After
+	public void teardown() throws Exception {
+		for(MailQueue queue : queues) {
+			queue.close();
+		}
+		smtp.close();
+		FileUtils.deleteContents(spool);
+		spool.delete();
+	}
+
+	private AbstractMailer mailer(Map<String, Object> properties, String subject) {
+		AbstractMailer mailer = new AbstractMailer() {
+		};
+		mailer.setProperties(properties);
+		mailer.setFrom("Oobium Support <support@oobium.com>");
+		mailer.setTo("bob@example.com");
+		mailer.setSubject(subject);
+		mailer.render("just a test here...");
+		queues.add(mailer.getQueue());
+		return mailer;
+	}
+
+	private Map<String, Object> properties() {
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put("mail.transport.protocol", "smtp");
+		properties.put("host", "localhost");
+		properties.put("port", smtp.getPort());
+		properties.put(MailQueue.THREADS, 1);
+		properties.put(MailQueue.RETRY_DELAY, 10);
+		return properties;
+	}
+
+	@Test
+	public void testSend() throws Exception {
+		mailer(properties(), "test 1").send();
+		mailer(properties(), "test 2").send();
+
+		assertEquals(asList("test 1", "test 2"), smtp.subjects);
+		assertEquals(1, smtp.connections.get());
+		assertEquals(1, queues.get(0).getOpenConnections());
+		assertSame(queues.get(0), queues.get(1));
+	}
+
+	@Test
+	public void testSendLater() throws Exception {
+		for(int i = 0; i < 5; i++) {
+			mailer(properties(), "test " + i).sendLater();
+		}
+
+		MailQueue queue = queues.get(0);
+		waitFor(queue, 5);
+		assertEquals(5, smtp.subjects.size());
+		assertEquals(1, smtp.connections.get());
+		assertEquals(0, queue.getQueueSize());
+	}
+
+	@Test
+	public void testMessagesPerConnection() throws Exception {
+		Map<String, Object> properties = properties();
+		properties.put(MailQueue.MESSAGES_PER_CONNECTION, 2);
+		for(int i = 0; i < 3; i++) {
+			mailer(properties, "test " + i).send();
+		}
+
+		assertEquals(3, smtp.subjects.size());
+		assertEquals(2, smtp.connections.get());
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		smtp.reject.set(2);
+		mailer(properties(), "test").sendLater();
+
+		MailQueue queue = queues.get(0);
+		waitFor(queue, 1);
+		assertEquals(asList("test"), smtp.subjects);
+		assertEquals(2, queue.getRetryCount());
+		assertEquals(0, queue.getFailedCount());
+	}
+
+	@Test
+	public void testGiveUp() throws Exception {
+		smtp.reject.set(10);
+		Map<String, Object> properties = properties();
+		properties.put(MailQueue.MAX_ATTEMPTS, 2);
+		properties.put(MailQueue.SPOOL, spool.getPath());
+		mailer(properties, "test").sendLater();
+
+		MailQueue queue = queues.get(0);
+		for(int i = 0; i < 500 && queue.getFailedCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, queue.getFailedCount());
+		assertEquals(1, queue.getRetryCount());
+		assertEquals(0, queue.getSpooled());
+		assertTrue(spool.list()[0].endsWith(".failed"));
+	}
+
+	@Test
+	public void testCloseAll() throws Exception {
+		Map<String, Object> properties = properties();
+		mailer(properties, "test 1").send();
+		properties.put(MailQueue.THREADS, 2);
+		mailer(properties, "test 2").sendLater();
+
+		MailQueue.closeAll();
+
+		assertNotSame(queues.get(0), queues.get(1));
+		assertTrue(queues.get(0).isClosed());
+		assertTrue(queues.get(1).isClosed());
+		assertEquals(0, queues.get(0).getOpenConnections());
+		assertNotSame(queues.get(0), mailer(properties(), "test 3").getQueue());
+	}
+
+	@Test
+	public void testSpool() throws Exception {
+		spool.mkdirs();
+		MimeMessage message = new MimeMessage(Session.getInstance(System.getProperties()));
+		message.setFrom(new InternetAddress("support@oobium.com"));
+		message.addRecipient(Message.RecipientType.TO, new InternetAddress("bob@example.com"));
+		message.setSubject("spooled");
+		message.setText("sent before a restart");
+		OutputStream out = new FileOutputStream(new File(spool, "1-1.eml"));
+		message.writeTo(out);
+		out.close();
+
+		Map<String, Object> properties = properties();
+		properties.put(MailQueue.SPOOL, spool.getPath());
+		mailer(properties, "queued").sendLater();
+
+		MailQueue queue = queues.get(0);
+		waitFor(queue, 2);
+		assertEquals(asList("spooled", "queued"), smtp.subjects);
+		assertEquals(0, spool.list().length);
+	}
+
+}
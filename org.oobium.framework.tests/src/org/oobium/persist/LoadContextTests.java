@@ -0,0 +1,193 @@
+package org.oobium.persist;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoadContextTests {
+
+	@ModelDescription(
+		attrs = { @Attribute(name="title", type=String.class) },
+		hasOne = { @Relation(name="author", type=Person.class) },
+		hasMany = { @Relation(name="comments", type=Comment.class, opposite="post") }
+	)
+	public static class Post extends Model {
+	}
+
+	@ModelDescription(
+		attrs = { @Attribute(name="text", type=String.class) },
+		hasOne = { @Relation(name="post", type=Post.class, opposite="comments") }
+	)
+	public static class Comment extends Model {
+	}
+
+	@ModelDescription(
+		attrs = { @Attribute(name="name", type=String.class) }
+	)
+	public static class Person extends Model {
+	}
+
+	/**
+	 * Records each retrieve, and loads the models as if they came from the datastore.
+	 */
+	private static class Service extends PersistAdapter {
+		final List<String> calls = new ArrayList<String>();
+		@Override
+		public void retrieve(Model... models) throws Exception {
+			calls.add("retrieve" + ids(models));
+			for(Model model : models) {
+				model.put("name", "person" + model.getId());
+			}
+		}
+		@Override
+		public void retrieve(Model model, String hasMany) throws Exception {
+			calls.add("retrieve" + ids(model) + ":" + hasMany);
+			model.put(hasMany, new ArrayList<Model>(0));
+		}
+		@Override
+		public void retrieve(Model[] models, String hasMany) throws Exception {
+			calls.add("retrieve" + ids(models) + ":" + hasMany);
+			for(Model model : models) {
+				model.put(hasMany, new ArrayList<Model>(0));
+			}
+		}
+	}
+
+	private static String ids(Model...models) {
+		List<Object> ids = new ArrayList<Object>();
+		for(Model model : models) {
+			ids.add(model.getId());
+		}
+		return ids.toString();
+	}
+
+	private static List<Post> posts(int count) {
+		List<Post> posts = new ArrayList<Post>();
+		for(int i = 1; i <= count; i++) {
+			Post post = new Post();
+			post.setId(i);
+			post.put("title", "post" + i);
+			posts.add(post);
+		}
+		return posts;
+	}
+
+	private static Person person(int id) {
+		Person person = new Person();
+		person.setId(id);
+		return person;
+	}
+
+
+	private Service service;
+
+	@Before
+	public void setup() {
+		service = new Service();
+		Model.setGlobalPersistService(service);
+	}
+
+	@After
+	public void teardown() {
+		LoadContext.setBatchSize(100);
+		Model.setGlobalPersistService(null);
+	}
+
+	@Test
+	public void testHasManyLoadedForAllSiblings() throws Exception {
+		List<Post> posts = posts(3);
+		LoadContext.share(posts);
+
+		for(Post post : posts) {
+			assertEquals(0, ((List<?>) post.get("comments")).size());
+		}
+		assertEquals(Arrays.asList("retrieve[1, 2, 3]:comments"), service.calls);
+	}
+
+	@Test
+	public void testHasManyBatchSize() throws Exception {
+		LoadContext.setBatchSize(2);
+		List<Post> posts = posts(3);
+		LoadContext.share(posts);
+
+		for(Post post : posts) {
+			post.get("comments");
+		}
+		assertEquals(Arrays.asList("retrieve[1, 2]:comments", "retrieve[3]:comments"), service.calls);
+	}
+
+	@Test
+	public void testHasManySkipsLoadedSiblings() throws Exception {
+		List<Post> posts = posts(3);
+		posts.get(1).put("comments", new ArrayList<Model>(0));
+		LoadContext.share(posts);
+
+		posts.get(2).get("comments");
+		assertEquals(Arrays.asList("retrieve[3, 1]:comments"), service.calls);
+	}
+
+	@Test
+	public void testNotShared() throws Exception {
+		List<Post> posts = posts(2);
+
+		for(Post post : posts) {
+			post.get("comments");
+		}
+		assertEquals(Arrays.asList("retrieve[1]:comments", "retrieve[2]:comments"), service.calls);
+	}
+
+	@Test
+	public void testRelatedLoadedTogether() throws Exception {
+		List<Post> posts = posts(3);
+		posts.get(0).put("author", person(5));
+		posts.get(1).put("author", person(6));
+		posts.get(2).put("author", person(5));
+		LoadContext.share(posts);
+
+		List<String> names = new ArrayList<String>();
+		for(Post post : posts) {
+			names.add(((Person) post.get("author")).get("name", String.class));
+		}
+		assertEquals(Arrays.asList("person5", "person6", "person5"), names);
+		assertEquals(Arrays.asList("retrieve[5, 6]"), service.calls);
+	}
+
+	@Test
+	public void testRelatedIds() throws Exception {
+		List<Post> posts = posts(2);
+		posts.get(0).put("author", 5);
+		posts.get(1).put("author", 6);
+		LoadContext.share(posts);
+
+		Person author = (Person) posts.get(1).get("author");
+		assertEquals(6, (int) author.getId(int.class));
+		assertEquals("person6", author.get("name"));
+		assertEquals("person5", ((Person) posts.get(0).get("author")).get("name"));
+		assertEquals(Arrays.asList("retrieve[6, 5]"), service.calls);
+	}
+
+	@Test
+	public void testCollectHasManyThrough() throws Exception {
+		List<Post> posts = posts(3);
+
+		ModelCollector.collectHasManyThrough(posts, "comments", Comment.class);
+		assertEquals(Arrays.asList("retrieve[1, 2, 3]:comments"), service.calls);
+	}
+
+	@Test
+	public void testQueryCounter() throws Exception {
+		QueryCounter.reset();
+		QueryCounter.increment();
+		QueryCounter.increment();
+		assertEquals(2, QueryCounter.getCount());
+		assertEquals(2, QueryCounter.reset());
+		assertEquals(0, QueryCounter.getCount());
+	}
+
+}
@@ -0,0 +1,149 @@
+package org.oobium.persist;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModelCacheTests {
+
+	@ModelDescription(
+		attrs = { @Attribute(name="name", type=String.class) },
+		hasOne = { @Relation(name="parent", type=Country.class) },
+		cacheSize = 2
+	)
+	public static class Country extends Model {
+	}
+
+	@ModelDescription(
+		attrs = { @Attribute(name="name", type=String.class) }
+	)
+	public static class Person extends Model {
+	}
+
+	private static Country country(int id, String name) {
+		Country country = new Country();
+		country.setId(id);
+		country.put("name", name);
+		return country;
+	}
+
+
+	@Before
+	public void setup() {
+		Model.setGlobalPersistService(mock(PersistService.class));
+		ModelCache.setCacheSize(Country.class, 2);
+	}
+
+	@After
+	public void teardown() {
+		ModelCache.clear();
+		Model.setGlobalPersistService(null);
+	}
+
+	@Test
+	public void testNotCached() throws Exception {
+		Person person = new Person();
+		person.setId(1);
+		ModelCache.put(person, ModelCache.getStamp(Person.class));
+
+		assertFalse(ModelCache.isCached(Person.class));
+		assertNull(ModelCache.getById(Person.class, 1));
+		assertEquals(0, ModelCache.getMisses(Person.class));
+	}
+
+	@Test
+	public void testGetById() throws Exception {
+		Country parent = country(1, "parent");
+		Country country = country(2, "child");
+		country.put("parent", parent);
+		ModelCache.put(country, ModelCache.getStamp(Country.class));
+
+		Country cached = ModelCache.getById(Country.class, "2");
+		assertNotNull(cached);
+		assertNotSame(country, cached);
+		assertEquals(2, (int) cached.getId(int.class));
+		assertEquals("child", cached.get("name"));
+		assertEquals(1, (int) ((Model) cached.get("parent", false)).getId(int.class));
+		assertNotSame(parent, cached.get("parent", false));
+
+		// each hit is a new model
+		cached.put("name", "changed");
+		assertEquals("child", ModelCache.getById(Country.class, 2).get("name"));
+
+		assertNull(ModelCache.getById(Country.class, 3));
+		assertEquals(2, ModelCache.getHits(Country.class));
+		assertEquals(1, ModelCache.getMisses(Country.class));
+	}
+
+	@Test
+	public void testGetByQuery() throws Exception {
+		List<Country> countries = Arrays.asList(country(1, "a"), country(2, "b"));
+		ModelCache.put(Country.class, "where name>?", new Object[] { "" }, countries, ModelCache.getStamp(Country.class));
+
+		List<Country> cached = ModelCache.getByQuery(Country.class, "where name>?", "");
+		assertEquals(2, cached.size());
+		assertEquals(1, (int) cached.get(0).getId(int.class));
+		assertEquals("b", cached.get(1).get("name"));
+
+		assertNull(ModelCache.getByQuery(Country.class, "where name>?", "a"));
+	}
+
+	@Test
+	public void testLeastRecentlyUsed() throws Exception {
+		ModelCache.put(country(1, "a"), ModelCache.getStamp(Country.class));
+		ModelCache.put(country(2, "b"), ModelCache.getStamp(Country.class));
+		ModelCache.getById(Country.class, 1);
+		ModelCache.put(country(3, "c"), ModelCache.getStamp(Country.class));
+
+		assertNotNull(ModelCache.getById(Country.class, 1));
+		assertNull(ModelCache.getById(Country.class, 2));
+		assertNotNull(ModelCache.getById(Country.class, 3));
+	}
+
+	@Test
+	public void testStaleStamp() throws Exception {
+		long stamp = ModelCache.getStamp(Country.class);
+		ModelCache.expire(Country.class, 1);
+		ModelCache.put(country(1, "a"), stamp);
+
+		assertNull(ModelCache.getById(Country.class, 1));
+	}
+
+	@Test
+	public void testObserverInvalidation() throws Exception {
+		Country country = country(1, "a");
+		ModelCache.put(country, ModelCache.getStamp(Country.class));
+		ModelCache.put(Country.class, null, null, Arrays.asList(country), ModelCache.getStamp(Country.class));
+
+		country.set("name", "b");
+		assertTrue(country.save());
+
+		assertNull(ModelCache.getById(Country.class, 1));
+		assertNull(ModelCache.getByQuery(Country.class, null));
+
+		country = new Country();
+		country.set("name", "c");
+		ModelCache.put(Country.class, null, null, Arrays.asList(country(1, "b")), ModelCache.getStamp(Country.class));
+		assertTrue(country.save());
+
+		assertNull(ModelCache.getByQuery(Country.class, null));
+	}
+
+	@Test
+	public void testSessionCacheFallback() throws Exception {
+		ModelCache.put(country(1, "a"), ModelCache.getStamp(Country.class));
+
+		Country country = SessionCache.getCacheById(Country.class, 1);
+		assertEquals("a", country.get("name"));
+		assertSame(country, SessionCache.getCacheById(Country.class, 1));
+
+		SessionCache.expireCache();
+	}
+
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist.db;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.oobium.framework.tests.Benchmark;
+import org.oobium.framework.tests.Benchmark.Task;
+import org.oobium.framework.tests.dyn.DynClasses;
+import org.oobium.framework.tests.dyn.DynModel;
+import org.oobium.persist.Model;
+
+/**
+ * Compares the time per row of creating and updating models one at a time with
+ * creating and updating them all in a single call (which uses batched statements).
+ */
+public class BatchBenchmark extends BaseDbTestCase {
+
+	private static final int ROWS = 1000;
+	private static final int WARMUP = 1;
+	private static final int ITERATIONS = 3;
+
+	private Model[] newModels(DynModel am, String prefix) throws Exception {
+		Model[] models = new Model[ROWS];
+		for(int i = 0; i < ROWS; i++) {
+			models[i] = am.newInstance();
+			models[i].set("name", prefix + i);
+			models[i].set("score", i);
+		}
+		return models;
+	}
+
+	@Test
+	public void testCreate() throws Exception {
+		final DynModel am = DynClasses.getModel(pkg, "AModel").addAttr("name", "String.class").addAttr("score", "Integer.class").timestamps();
+
+		migrate(am);
+
+		final Model[][] batch = new Model[1][];
+		new Benchmark("create " + ROWS)
+			.add("single", new Task() {
+				@Override
+				public void run(int i) throws Exception {
+					for(Model model : newModels(am, "single")) {
+						persistService.create(model);
+					}
+				}
+			})
+			.add("batch", new Task() {
+				@Override
+				public void run(int i) throws Exception {
+					batch[0] = newModels(am, "batch");
+					persistService.create(batch[0]);
+				}
+			})
+			.setWarmup(WARMUP)
+			.setIterations(ITERATIONS)
+			.setUnit("row", ROWS)
+			.run();
+
+		assertEquals(ROWS * 2 * (WARMUP + ITERATIONS), count("a_models"));
+		Model[] models = batch[0];
+		for(int i = 0; i < ROWS; i++) {
+			assertFalse(models[i].isNew());
+			assertEquals("batch" + i, persistService.executeQueryValue("SELECT name FROM a_models WHERE id=?", models[i].getId()));
+		}
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		DynModel am = DynClasses.getModel(pkg, "AModel").addAttr("name", "String.class").addAttr("score", "Integer.class").timestamps();
+
+		migrate(am);
+
+		final Model[] models = newModels(am, "created");
+		persistService.create(models);
+
+		new Benchmark("update " + ROWS)
+			.add("single", new Task() {
+				@Override
+				public void run(int i) throws Exception {
+					for(Model model : models) {
+						model.set("name", "single" + i + "-" + model.getId());
+						persistService.update(model);
+					}
+				}
+			})
+			.add("batch", new Task() {
+				@Override
+				public void run(int i) throws Exception {
+					for(Model model : models) {
+						model.set("name", "batch" + i + "-" + model.getId());
+					}
+					persistService.update(models);
+				}
+			})
+			.setWarmup(WARMUP)
+			.setIterations(ITERATIONS)
+			.setUnit("row", ROWS)
+			.run();
+
+		for(Model model : models) {
+			assertEquals("batch" + (ITERATIONS - 1) + "-" + model.getId(), persistService.executeQueryValue("SELECT name FROM a_models WHERE id=?", model.getId()));
+		}
+	}
+
+}
@@ -0,0 +1,232 @@
+package org.oobium.persist.db;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.oobium.logging.Logger;
+import org.oobium.persist.db.internal.StatementCache;
+
+public class ConnectionPoolTests {
+
+	private final List<PooledConnection> pooled = new ArrayList<PooledConnection>();
+	private final Map<PooledConnection, ConnectionEventListener> listeners = new HashMap<PooledConnection, ConnectionEventListener>();
+	private final List<Connection> connections = new ArrayList<Connection>();
+	private ConnectionPool pool;
+
+	private ConnectionPool createPool(Object...options) throws Exception {
+		ConnectionPoolDataSource ds = mock(ConnectionPoolDataSource.class);
+		when(ds.getPooledConnection()).thenAnswer(new Answer<PooledConnection>() {
+			@Override
+			public PooledConnection answer(InvocationOnMock invocation) throws Throwable {
+				final PooledConnection pc = mock(PooledConnection.class);
+				final Connection connection = mock(Connection.class);
+				when(connection.isValid(anyInt())).thenReturn(true);
+				when(pc.getConnection()).thenReturn(connection);
+				doAnswer(new Answer<Object>() {
+					@Override
+					public Object answer(InvocationOnMock invocation) throws Throwable {
+						listeners.put(pc, (ConnectionEventListener) invocation.getArguments()[0]);
+						return null;
+					}
+				}).when(pc).addConnectionEventListener(any(ConnectionEventListener.class));
+				pooled.add(pc);
+				connections.add(connection);
+				return pc;
+			}
+		});
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put("reapInterval", 0);
+		for(int i = 0; i < options.length; i += 2) {
+			properties.put((String) options[i], options[i+1]);
+		}
+		pool = new ConnectionPool("test", properties, ds, mock(Logger.class));
+		return pool;
+	}
+
+	@After
+	public void tearDown() {
+		if(pool != null) {
+			pool.dispose();
+		}
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		ConnectionPool pool = createPool();
+
+		Connection c1 = pool.getConnection();
+		assertEquals(1, pool.getActiveCount());
+		c1.close();
+		assertTrue(c1.isClosed());
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(1, pool.getIdleCount());
+
+		Connection c2 = pool.getConnection();
+		assertFalse(c2.isClosed());
+		assertEquals(1, pooled.size());
+		assertEquals(2, pool.getCheckoutCount());
+
+		// the logical connection is kept open across checkouts, and was returned recently - no need to validate
+		verify(pooled.get(0)).getConnection();
+		verify(connections.get(0), never()).close();
+		verify(connections.get(0), never()).isValid(anyInt());
+	}
+
+	@Test(expected=SQLException.class)
+	public void testClosedCheckout() throws Exception {
+		ConnectionPool pool = createPool();
+
+		Connection c1 = pool.getConnection();
+		c1.close();
+		c1.close(); // no-op
+		assertEquals(0, pool.getActiveCount());
+		c1.createStatement();
+	}
+
+	@Test
+	public void testRollbackOnCheckin() throws Exception {
+		ConnectionPool pool = createPool();
+
+		Connection c1 = pool.getConnection();
+		when(connections.get(0).getAutoCommit()).thenReturn(false);
+		c1.close();
+
+		verify(connections.get(0)).rollback();
+		verify(connections.get(0)).setAutoCommit(true);
+	}
+
+	@Test
+	public void testStatementCache() throws Exception {
+		ConnectionPool pool = createPool();
+
+		Connection c1 = pool.getConnection();
+		StatementCache cache = ConnectionPool.getStatementCache(c1);
+		PreparedStatement ps = mock(PreparedStatement.class);
+		when(connections.get(0).prepareStatement("SELECT 1")).thenReturn(ps);
+		cache.release(cache.prepare("SELECT 1"));
+		c1.close();
+		assertNull(ConnectionPool.getStatementCache(c1));
+
+		Connection c2 = pool.getConnection();
+		assertSame(cache, ConnectionPool.getStatementCache(c2));
+		assertSame(ps, cache.prepare("SELECT 1"));
+		assertEquals(1, cache.getHitCount());
+		verify(ps, never()).close();
+
+		pool.dispose();
+		verify(ps).close();
+	}
+
+	@Test
+	public void testStatementCacheDisabled() throws Exception {
+		ConnectionPool pool = createPool("statementCacheSize", 0);
+		assertNull(ConnectionPool.getStatementCache(pool.getConnection()));
+		assertNull(ConnectionPool.getStatementCache(mock(Connection.class)));
+	}
+
+	@Test
+	public void testLastInFirstOut() throws Exception {
+		ConnectionPool pool = createPool();
+
+		Connection c1 = pool.getConnection();
+		Connection c2 = pool.getConnection();
+		StatementCache s1 = ConnectionPool.getStatementCache(c1);
+		StatementCache s2 = ConnectionPool.getStatementCache(c2);
+		c1.close();
+		c2.close();
+
+		assertSame(s2, ConnectionPool.getStatementCache(pool.getConnection()));
+		assertSame(s1, ConnectionPool.getStatementCache(pool.getConnection()));
+		assertEquals(2, pooled.size());
+	}
+
+	@Test
+	public void testValidateIdle() throws Exception {
+		ConnectionPool pool = createPool("validationInterval", 0);
+
+		Connection c1 = pool.getConnection();
+		c1.close();
+		Thread.sleep(5);
+
+		when(connections.get(0).isValid(anyInt())).thenReturn(false);
+		pool.getConnection();
+
+		assertEquals(2, pooled.size());
+		verify(pooled.get(0)).close();
+		assertEquals(1, pool.getDestroyedCount());
+		assertEquals(2, pool.getCreatedCount());
+	}
+
+	@Test
+	public void testErrorDisposesConnection() throws Exception {
+		ConnectionPool pool = createPool("maxConnections", 1);
+
+		pool.getConnection();
+		PooledConnection pc = pooled.get(0);
+		listeners.get(pc).connectionErrorOccurred(new ConnectionEvent(pc, new SQLException("test")));
+
+		assertEquals(0, pool.getActiveCount());
+		verify(pc).close();
+
+		// the permit was returned
+		pool.getConnection();
+		assertEquals(2, pooled.size());
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		ConnectionPool pool = createPool("maxConnections", 1, "timeout", 1);
+
+		pool.getConnection();
+		try {
+			pool.getConnection();
+			fail("expected a timeout");
+		} catch(SQLException e) {
+			// expected
+		}
+		assertEquals(1, pool.getTimeoutCount());
+		assertEquals(1, pool.getActiveCount());
+	}
+
+	@Test
+	public void testMaxLifetime() throws Exception {
+		ConnectionPool pool = createPool("maxLifetime", 1);
+
+		Connection c1 = pool.getConnection();
+		Thread.sleep(1100);
+		c1.close();
+
+		assertEquals(0, pool.getIdleCount());
+		verify(pooled.get(0)).close();
+		pool.getConnection();
+		assertEquals(2, pooled.size());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testDisposed() throws Exception {
+		ConnectionPool pool = createPool();
+		pool.getConnection();
+		pool.dispose();
+		verify(pooled.get(0)).close();
+		assertTrue(pool.isDisposed());
+		pool.getConnection();
+	}
+
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.oobium.framework.tests.dyn.DynClasses;
+import org.oobium.framework.tests.dyn.DynModel;
+import org.oobium.persist.Model;
+import org.oobium.persist.ModelCursor;
+import org.oobium.persist.QueryCounter;
+import org.oobium.utils.SqlUtils;
+
+public class FindEachTests extends BaseDbTestCase {
+
+	private Object getName(Model model, String field) {
+		Collection<?> models = (Collection<?>) model.get(field, false);
+		assertEquals(1, models.size());
+		return ((Model) models.iterator().next()).get("name");
+	}
+
+	@Test
+	public void testFindEach() throws Exception {
+		DynModel am = DynClasses.getModel("AModel").addAttr("name", "String.class");
+
+		migrate(am);
+
+		for(int i = 1; i <= 5; i++) {
+			persistService.executeUpdate("INSERT INTO a_models(name) VALUES(?)", "nameA" + i);
+		}
+
+		persistService.setFetchSize(2);
+		QueryCounter.reset();
+
+		List<Object> names = new ArrayList<Object>();
+		for(Model model : persistService.findEach(am.getModelClass(), "order by id")) {
+			names.add(model.get("name"));
+		}
+
+		assertEquals(5, names.size());
+		assertEquals("nameA1", names.get(0));
+		assertEquals("nameA5", names.get(4));
+		assertEquals(1, QueryCounter.getCount()); // the chunks are read from the same result set
+	}
+
+	@Test
+	public void testFindEachEmpty() throws Exception {
+		DynModel am = DynClasses.getModel("AModel").addAttr("name", "String.class");
+
+		migrate(am);
+
+		ModelCursor<? extends Model> cursor = persistService.findEach(am.getModelClass(), "order by id");
+
+		assertFalse(cursor.iterator().hasNext());
+	}
+
+	@Test
+	public void testFindEachInclude() throws Exception {
+		DynModel am = DynClasses.getModel("AModel").addAttr("name", "String.class").addHasMany("bModels", "BModel.class");
+		DynModel bm = DynClasses.getModel("BModel").addAttr("name", "String.class");
+
+		migrate(am, bm);
+
+		for(int i = 1; i <= 5; i++) {
+			persistService.executeUpdate("INSERT INTO a_models(name) VALUES(?)", "nameA" + i);
+			persistService.executeUpdate("INSERT INTO b_models(name) VALUES(?)", "nameB" + i);
+			persistService.executeUpdate("INSERT INTO a_models__b_models___b_models__null(a,b) VALUES(?,?)", i, i);
+		}
+
+		persistService.setFetchSize(2);
+		QueryCounter.reset();
+
+		Iterator<? extends Model> iter = persistService.findEach(am.getModelClass(), "order by id include:bModels").iterator();
+
+		// the includes of each chunk are loaded when the chunk is read: 1 query for the cursor, plus 1 for each chunk
+		Model model = iter.next();
+		assertEquals(2, QueryCounter.getCount());
+		assertEquals("nameB1", getName(model, "bModels"));
+
+		iter.next();
+		assertEquals(2, QueryCounter.getCount());
+
+		model = iter.next();
+		assertEquals(3, QueryCounter.getCount());
+		assertEquals("nameB3", getName(model, "bModels"));
+
+		iter.next();
+		model = iter.next();
+		assertEquals(4, QueryCounter.getCount());
+		assertEquals("nameB5", getName(model, "bModels"));
+
+		assertFalse(iter.hasNext());
+		assertEquals(4, QueryCounter.getCount());
+	}
+
+	@Test
+	public void testFindEachClose() throws Exception {
+		DynModel am = DynClasses.getModel("AModel").addAttr("name", "String.class");
+
+		migrate(am);
+
+		for(int i = 1; i <= 5; i++) {
+			persistService.executeUpdate("INSERT INTO a_models(name) VALUES(?)", "nameA" + i);
+		}
+
+		persistService.setFetchSize(2);
+
+		ModelCursor<? extends Model> cursor = persistService.findEach(am.getModelClass(), "order by id");
+		Iterator<? extends Model> iter = cursor.iterator();
+		assertEquals("nameA1", iter.next().get("name"));
+
+		if(dbType == SqlUtils.DERBY) {
+			// Derby will not drop a table that an open result set depends on
+			try {
+				persistService.executeUpdate("DROP TABLE a_models");
+				fail("expected an SQLException");
+			} catch(SQLException e) {
+				// the cursor's statement is still open
+			}
+		}
+
+		cursor.close();
+		cursor.close(); // safe to call more than once
+
+		assertFalse(iter.hasNext());
+		persistService.executeUpdate("DROP TABLE a_models"); // the cursor's statement has been released
+	}
+
+	@Test
+	public void testFindEachIterateOnce() throws Exception {
+		DynModel am = DynClasses.getModel("AModel").addAttr("name", "String.class");
+
+		migrate(am);
+
+		ModelCursor<? extends Model> cursor = persistService.findEach(am.getModelClass(), "order by id");
+		cursor.iterator();
+		try {
+			cursor.iterator();
+			fail("expected an IllegalStateException");
+		} catch(IllegalStateException e) {
+			assertTrue(e.getMessage().contains("once"));
+		}
+		cursor.close();
+	}
+
+}
@@ -8,6 +8,7 @@ import org.junit.Test;
 import org.oobium.framework.tests.dyn.DynModel;
 import org.oobium.framework.tests.dyn.DynClasses;
 import org.oobium.persist.Model;
+import org.oobium.persist.ModelCache;
 
 public class UpdateTests extends BaseDbTestCase {
 
@@ -29,6 +30,41 @@ public class UpdateTests extends BaseDbTestCase {
 		assertEquals("joe", persistService.executeQueryValue("SELECT name from a_models where id=?", 1));
 	}
 	
+	@Test
+	public void testAttr_CachedInTransaction() throws Exception {
+		DynModel am = DynClasses.getModel(pkg, "AModel").addAttr("name", "String.class");
+
+		migrate(am);
+		
+		persistService.executeUpdate("INSERT INTO a_models(name) VALUES(?)", "bob");
+
+		Class<? extends Model> clazz = am.getModelClass();
+		ModelCache.setCacheSize(clazz, 10);
+		try {
+			persistService.setAutoCommit(false);
+			
+			Model a = am.newInstance();
+			a.setId(1);
+			a.set("name", "joe");
+			a.update();
+			
+			// another thread loads, and caches, the row that is still committed
+			Model b = am.newInstance();
+			b.setId(1);
+			b.put("name", "bob");
+			ModelCache.put(b, ModelCache.getStamp(clazz));
+
+			persistService.commit();
+			
+			assertFalse(a.getErrors().toString(), a.hasErrors());
+			assertNull(ModelCache.getById(clazz, 1));
+			assertEquals("joe", persistService.findById(clazz, 1).get("name"));
+		} finally {
+			persistService.setAutoCommit(true);
+			ModelCache.setCacheSize(clazz, 0);
+		}
+	}
+	
 	@Test
 	public void testHasOne() throws Exception {
 		DynModel am = DynClasses.getModel(pkg, "AModel").addHasOne("bModel", "BModel.class");
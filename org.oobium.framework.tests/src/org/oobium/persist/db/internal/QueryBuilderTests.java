@@ -113,6 +113,15 @@ public class QueryBuilderTests {
 		assertEquals(expected, query.getSql());
 	}
 	
+	@Test
+	public void testHasOneSqlIdIn() throws Exception {
+		String sql = "where id IN (1,2,3) include:a";
+		Query query = QueryBuilder.build(dbType, Start1.class, sql);
+		
+		String expected = "SELECT a.id a_id,a.a a_a,b.id b_id,b.b b_b,b.c b_c FROM start1s a LEFT JOIN a1s b ON a.a=b.id WHERE a.id IN (1,2,3)";
+		assertEquals(expected, query.getSql());
+	}
+	
 	@Test(expected=SQLException.class)
 	public void testHasOneSql5() throws Exception {
 		String sql = "limit 1 where a is not null";
@@ -0,0 +1,111 @@
+package org.oobium.persist.db.internal;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class StatementCacheTests {
+
+	private Connection connection() throws Exception {
+		Connection connection = mock(Connection.class);
+		when(connection.prepareStatement(anyString())).thenAnswer(new Answer<PreparedStatement>() {
+			@Override
+			public PreparedStatement answer(InvocationOnMock invocation) throws Throwable {
+				return mock(PreparedStatement.class);
+			}
+		});
+		when(connection.prepareStatement(anyString(), anyInt())).thenAnswer(new Answer<PreparedStatement>() {
+			@Override
+			public PreparedStatement answer(InvocationOnMock invocation) throws Throwable {
+				return mock(PreparedStatement.class);
+			}
+		});
+		return connection;
+	}
+
+	@Test
+	public void testTranslate() throws Exception {
+		SqlTranslation translation = SqlTranslation.translate("SELECT * FROM a WHERE b=#{1} AND c=#{0} OR d=#{10}");
+		assertEquals("SELECT * FROM a WHERE b=? AND c=? OR d=?", translation.sql);
+		assertArrayEquals(new int[] { 1, 0, 10 }, translation.indexes);
+
+		translation = SqlTranslation.translate("SELECT * FROM a");
+		assertEquals("SELECT * FROM a", translation.sql);
+		assertEquals(0, translation.indexes.length);
+	}
+
+	@Test
+	public void testTranslateCached() throws Exception {
+		String sql = "SELECT * FROM cached WHERE b=#{0}";
+		long hits = SqlTranslation.getHitCount();
+		SqlTranslation t1 = SqlTranslation.translate(sql);
+		SqlTranslation t2 = SqlTranslation.translate(sql);
+		assertSame(t1, t2);
+		assertEquals(hits + 1, SqlTranslation.getHitCount());
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		Connection connection = connection();
+		StatementCache cache = new StatementCache(connection, 10);
+
+		PreparedStatement ps1 = cache.prepare("SELECT 1");
+		cache.release(ps1);
+		PreparedStatement ps2 = cache.prepare("SELECT 1");
+		cache.release(ps2);
+
+		assertSame(ps1, ps2);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		verify(connection, times(1)).prepareStatement("SELECT 1");
+		verify(ps1, never()).close();
+		verify(ps1).clearParameters();
+
+		PreparedStatement ps3 = cache.prepare("SELECT 1", Statement.RETURN_GENERATED_KEYS);
+		assertNotSame(ps1, ps3);
+		verify(connection).prepareStatement("SELECT 1", Statement.RETURN_GENERATED_KEYS);
+	}
+
+	@Test
+	public void testInUse() throws Exception {
+		Connection connection = connection();
+		StatementCache cache = new StatementCache(connection, 10);
+
+		PreparedStatement ps1 = cache.prepare("SELECT 1");
+		PreparedStatement ps2 = cache.prepare("SELECT 1");
+		assertNotSame(ps1, ps2);
+
+		cache.release(ps2);
+		verify(ps2).close();
+		cache.release(ps1);
+		verify(ps1, never()).close();
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		Connection connection = connection();
+		StatementCache cache = new StatementCache(connection, 2);
+
+		PreparedStatement ps1 = cache.prepare("SELECT 1");
+		cache.release(ps1);
+		PreparedStatement ps2 = cache.prepare("SELECT 2");
+		cache.release(ps2);
+		PreparedStatement ps3 = cache.prepare("SELECT 3");
+
+		verify(ps1).close();
+		verify(ps2, never()).close();
+
+		cache.release(ps3);
+		cache.close();
+		verify(ps2).close();
+		verify(ps3).close();
+	}
+
+}
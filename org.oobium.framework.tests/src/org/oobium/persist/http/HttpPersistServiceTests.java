@@ -0,0 +1,247 @@
+package org.oobium.persist.http;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunkAggregator;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.oobium.client.HttpClient;
+import org.oobium.persist.Model;
+import org.oobium.persist.http.models.Comment;
+import org.oobium.persist.http.models.Post;
+import org.oobium.utils.json.JsonUtils;
+
+public class HttpPersistServiceTests {
+
+	private static ServerBootstrap server;
+	private static Channel serverChannel;
+	private static int port;
+	private static AtomicInteger requests;
+	private static AtomicInteger ids;
+
+	@BeforeClass
+	public static void setupServer() throws Exception {
+		requests = new AtomicInteger();
+		ids = new AtomicInteger();
+		server = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+		server.setPipelineFactory(new ChannelPipelineFactory() {
+			@Override
+			public ChannelPipeline getPipeline() throws Exception {
+				ChannelPipeline pipeline = Channels.pipeline();
+				pipeline.addLast("decoder", new HttpRequestDecoder());
+				pipeline.addLast("aggregator", new HttpChunkAggregator(1024*1024));
+				pipeline.addLast("encoder", new HttpResponseEncoder());
+				pipeline.addLast("handler", new SimpleChannelUpstreamHandler() {
+					@Override
+					public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+						HttpRequest request = (HttpRequest) e.getMessage();
+						HttpResponse response = handle(request);
+						if(response.getContent().readable()) {
+							response.setHeader(HttpHeaders.Names.CONTENT_TYPE, "application/json");
+						}
+						response.setHeader(HttpHeaders.Names.CONTENT_LENGTH, response.getContent().readableBytes());
+						ctx.getChannel().write(response);
+					}
+				});
+				return pipeline;
+			}
+		});
+		serverChannel = server.bind(new InetSocketAddress("localhost", 0));
+		port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+	}
+
+	@AfterClass
+	public static void teardownServer() throws Exception {
+		HttpClient.closeAll();
+		serverChannel.close().awaitUninterruptibly();
+		server.releaseExternalResources();
+	}
+
+	private static HttpResponse handle(HttpRequest request) {
+		String uri = request.getUri();
+		if(uri.startsWith("/api")) {
+			String post = Post.class.getName();
+			return response(HttpResponseStatus.OK, "{\"" + post + "\":{" +
+					"\"create\":{\"method\":\"POST\",\"path\":\"/posts\"}," +
+					"\"show\":{\"method\":\"GET\",\"path\":\"/posts/{id}\"}," +
+					"\"batch\":{\"method\":\"POST\",\"path\":\"/posts/batch\"}" +
+				"}}");
+		}
+		requests.incrementAndGet();
+		if(request.getMethod() == HttpMethod.POST && uri.equals("/posts")) {
+			HttpResponse response = response(HttpResponseStatus.CREATED, null);
+			response.setHeader("id", ids.incrementAndGet());
+			return response;
+		}
+		if(request.getMethod() == HttpMethod.POST && uri.equals("/posts/batch")) {
+			String body = request.getContent().toString(CharsetUtil.UTF_8);
+			Map<String, List<String>> params = new QueryStringDecoder("/?" + body).getParameters();
+			String action = params.get("action").get(0);
+			List<Object> list = JsonUtils.toList(params.get("requests").get(0));
+			StringBuilder sb = new StringBuilder("[");
+			for(Object o : list) {
+				Map<?, ?> map = (Map<?, ?>) o;
+				if(sb.length() > 1) sb.append(',');
+				if("create".equals(action)) {
+					sb.append("{\"status\":201,\"id\":\"").append(ids.incrementAndGet()).append("\"}");
+				} else if("show".equals(action)) {
+					Object id = map.get("id");
+					sb.append("{\"status\":200,\"body\":{\"id\":").append(id).append(",\"title\":\"post ").append(id).append("\"}}");
+				}
+			}
+			sb.append(']');
+			return response(HttpResponseStatus.OK, sb.toString());
+		}
+		return response(HttpResponseStatus.NOT_FOUND, null);
+	}
+
+	private static HttpResponse response(HttpResponseStatus status, String body) {
+		HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+		if(body != null) {
+			response.setContent(ChannelBuffers.copiedBuffer(body, CharsetUtil.UTF_8));
+		}
+		return response;
+	}
+
+
+	private HttpPersistService service;
+
+	@Before
+	public void setup() throws Exception {
+		requests.set(0);
+		service = new HttpPersistService("http://localhost:" + port + "/api");
+	}
+
+	@Test
+	public void testCreate_Batched() throws Exception {
+		Post[] posts = new Post[1000];
+		for(int i = 0; i < posts.length; i++) {
+			posts[i] = new Post();
+			posts[i].put("title", "post " + i);
+		}
+		service.create(posts);
+
+		assertEquals(10, requests.get());
+		for(Post post : posts) {
+			assertNotNull(post.getId());
+		}
+		assertFalse(posts[0].getId().equals(posts[999].getId()));
+	}
+
+	@Test
+	public void testCreate_NotBatched() throws Exception {
+		service.setBatchSize(1);
+		Post[] posts = new Post[10];
+		for(int i = 0; i < posts.length; i++) {
+			posts[i] = new Post();
+		}
+		service.create(posts);
+
+		assertEquals(10, requests.get());
+		for(Post post : posts) {
+			assertNotNull(post.getId());
+		}
+	}
+
+	private void assertCreateFails(String message, Model...models) throws Exception {
+		try {
+			service.create(models);
+			fail("expected an exception");
+		} catch(Exception e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+		}
+		Thread.sleep(100); // anything that had been sent would have arrived by now
+		assertEquals(0, requests.get()); // nothing is sent, so there is nothing to retry (or duplicate) later
+		for(Model model : models) {
+			assertTrue(model == null || model.getId() == null);
+		}
+	}
+
+	@Test
+	public void testCreate_CheckedBeforeSending() throws Exception {
+		service.setBatchSize(2); // so that the first batch is full before the last model is reached
+		assertCreateFails("cannot create null model", new Post(), new Post(), null);
+		assertCreateFails("no published route found", new Post(), new Post(), new Comment());
+
+		service.setBatchSize(1);
+		assertCreateFails("cannot create null model", new Post(), null);
+		assertCreateFails("no published route found", new Post(), new Comment());
+	}
+
+	@Test
+	public void testFindById_Coalesced() throws Exception {
+		assertEquals(0, service.getCoalesceWindow()); // off unless it is asked for
+		service.setCoalesceWindow(100);
+
+		final int count = 20;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(count);
+		final List<Post> posts = new ArrayList<Post>();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		for(int i = 0; i < count; i++) {
+			final int id = i + 1;
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						Post post = service.findById(Post.class, id);
+						synchronized(posts) {
+							posts.add(post);
+						}
+					} catch(Throwable e) {
+						synchronized(errors) {
+							errors.add(e);
+						}
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		if(!errors.isEmpty()) {
+			throw new AssertionError(errors.get(0)); // the first failure, as the cause
+		}
+
+		assertEquals(count, posts.size());
+		for(Post post : posts) {
+			assertEquals("post " + post.getId(), post.get("title"));
+		}
+		assertTrue("expected far fewer than " + count + " requests, but was " + requests.get(), requests.get() <= 3);
+	}
+
+}
@@ -12,6 +12,10 @@ import org.oobium.framework.tests.dyn.DynModel;
 import org.oobium.persist.Model;
 import org.oobium.persist.Text;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+
 public class CreateTests extends BaseMongoTestCase {
 
 	@Test
@@ -188,5 +192,77 @@ public class CreateTests extends BaseMongoTestCase {
 		assertTrue(((Map<?,?>) ((List<?>) persistService.find("a_models", a.getId()).get("bModels")).get(1)).containsKey("id"));
 		assertEquals(0, persistService.count(bm.getModelClass()));
 	}
+	
+	@Test
+	public void testCreateMany() throws Exception {
+		DynModel am = DynClasses.getModel(pkg, "AModel").addAttr("name", "String.class").addHasOne("bModel", "BModel.class");
+		DynModel bm = DynClasses.getModel(pkg, "BModel").addAttr("name", "String.class");
+
+		persistService.setBatchSize(2);
+		
+		Model b = bm.newInstance().set("name", "bob");
+		Model[] as = new Model[5];
+		for(int i = 0; i < as.length; i++) {
+			as[i] = am.newInstance().set("name", "a" + i).set("bModel", b);
+		}
+		persistService.create(as);
+		
+		assertNotNull(b.getId());
+		assertEquals(1, persistService.count(bm.getModelClass()));
+		assertEquals(5, persistService.count(am.getModelClass()));
+		for(int i = 0; i < as.length; i++) {
+			assertEquals("a" + i, persistService.find("a_models", as[i].getId()).get("name"));
+			assertEquals(b.getId(), persistService.find("a_models", as[i].getId()).get("bModel"));
+		}
+	}
+	
+	@Test
+	public void testCreateManyOrdered() throws Exception {
+		DynModel am = DynClasses.getModel(pkg, "AModel").addAttr("name", "String.class");
+
+		persistService.setWriteConcern(WriteConcern.SAFE);
+		persistService.getDB().getCollection("a_models").ensureIndex(new BasicDBObject("name", 1), "name", true);
+		persistService.insert("a_models", "name:?", "bob");
+		
+		Model a1 = am.newInstance().set("name", "joe");
+		Model a2 = am.newInstance().set("name", "bob");
+		Model a3 = am.newInstance().set("name", "sue");
+		try {
+			persistService.create(a1, a2, a3);
+			fail("expected a duplicate key error");
+		} catch(MongoException e) {
+			// expected
+		}
+		
+		assertEquals(2, persistService.count(am.getModelClass()));
+		assertNotNull(a1.getId());
+		assertNull(a2.getId());
+		assertNull(a3.getId());
+	}
+	
+	@Test
+	public void testCreateManyUnordered() throws Exception {
+		DynModel am = DynClasses.getModel(pkg, "AModel").addAttr("name", "String.class");
+
+		persistService.setWriteConcern(WriteConcern.SAFE);
+		persistService.setOrdered(false);
+		persistService.getDB().getCollection("a_models").ensureIndex(new BasicDBObject("name", 1), "name", true);
+		persistService.insert("a_models", "name:?", "bob");
+		
+		Model a1 = am.newInstance().set("name", "joe");
+		Model a2 = am.newInstance().set("name", "bob");
+		Model a3 = am.newInstance().set("name", "sue");
+		try {
+			persistService.create(a1, a2, a3);
+			fail("expected a duplicate key error");
+		} catch(MongoException e) {
+			// expected
+		}
+		
+		assertEquals(3, persistService.count(am.getModelClass()));
+		assertNotNull(a1.getId());
+		assertNull(a2.getId());
+		assertNotNull(a3.getId());
+	}
 
 }
@@ -45,4 +45,22 @@ public class DestroyTests extends BaseMongoTestCase {
 		assertEquals(1, persistService.count(am.getModelClass()));
 	}
 
+	@Test
+	public void testDestroyMany() throws Exception {
+		DynModel am = DynClasses.getModel(pkg, "AModel").addAttr("name", "String.class");
+
+		persistService.setBatchSize(2);
+		
+		Model[] models = new Model[5];
+		for(int i = 0; i < models.length; i++) {
+			models[i] = am.newInstance().setId(persistService.insert("a_models", "name:?", "a" + i));
+		}
+		persistService.insert("a_models", "name:?", "bob");
+		assertEquals(6, persistService.count(am.getModelClass()));
+
+		persistService.destroy(models);
+		
+		assertEquals(1, persistService.count(am.getModelClass()));
+	}
+
 }
@@ -197,4 +197,23 @@ public class UpdateTests extends BaseMongoTestCase {
 		assertEquals(bId1, persistService.find("a_models", aId2).get("bModel"));
 	}
 
+	@Test
+	public void testUpdateMany() throws Exception {
+		DynModel am = DynClasses.getModel(pkg, "AModel").addAttr("name", "String.class").addAttr("age", "int.class");
+
+		Model[] models = new Model[4];
+		for(int i = 0; i < models.length; i++) {
+			Object id = persistService.insert("a_models", "name:?,age:?", "a" + i, i);
+			models[i] = am.newInstance().setId(id).set("name", (i < 3) ? "joe" : "sue");
+		}
+
+		persistService.update(models);
+		
+		for(int i = 0; i < models.length; i++) {
+			Map<String, Object> data = persistService.find("a_models", models[i].getId());
+			assertEquals((i < 3) ? "joe" : "sue", data.get("name"));
+			assertEquals(i, data.get("age"));
+		}
+	}
+
 }
@@ -0,0 +1,212 @@
+package org.oobium.pipeline.service;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunkAggregator;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.oobium.app.http.MimeType;
+import org.oobium.client.HttpClient;
+import org.oobium.pipeline.PipelinedAsset;
+
+public class AssetPipelineServiceTests {
+
+	private static ServerBootstrap server;
+	private static Channel serverChannel;
+	private static int port;
+	private static AtomicInteger requests;
+
+	@BeforeClass
+	public static void setupServer() throws Exception {
+		requests = new AtomicInteger();
+		server = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+		server.setPipelineFactory(new ChannelPipelineFactory() {
+			@Override
+			public ChannelPipeline getPipeline() throws Exception {
+				ChannelPipeline pipeline = Channels.pipeline();
+				pipeline.addLast("decoder", new HttpRequestDecoder());
+				pipeline.addLast("aggregator", new HttpChunkAggregator(1024*1024));
+				pipeline.addLast("encoder", new HttpResponseEncoder());
+				pipeline.addLast("handler", new SimpleChannelUpstreamHandler() {
+					@Override
+					public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+						requests.incrementAndGet();
+						String uri = ((HttpRequest) e.getMessage()).getUri();
+						HttpResponse response;
+						if(uri.equals("/a.css")) {
+							response = response(HttpResponseStatus.OK, "a {\n  color: red;\n}\n");
+						} else if(uri.equals("/b.css")) {
+							response = response(HttpResponseStatus.OK, "/* b */\nb { margin: 0; }\n");
+						} else {
+							response = response(HttpResponseStatus.NOT_FOUND, "");
+						}
+						ctx.getChannel().write(response);
+					}
+				});
+				return pipeline;
+			}
+		});
+		serverChannel = server.bind(new InetSocketAddress("localhost", 0));
+		port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+	}
+
+	@AfterClass
+	public static void teardownServer() throws Exception {
+		HttpClient.closeAll();
+		serverChannel.close().awaitUninterruptibly();
+		server.releaseExternalResources();
+	}
+
+	private static HttpResponse response(HttpResponseStatus status, String body) {
+		HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+		response.setContent(ChannelBuffers.copiedBuffer(body, CharsetUtil.UTF_8));
+		response.setHeader(HttpHeaders.Names.CONTENT_TYPE, "text/css");
+		response.setHeader(HttpHeaders.Names.CONTENT_LENGTH, response.getContent().readableBytes());
+		return response;
+	}
+
+	private static void waitFor(PipelinedAsset asset) throws Exception {
+		for(int i = 0; i < 500 && !asset.ready(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(asset.ready());
+	}
+
+
+	private AssetPipelineService service;
+
+	@Before
+	public void setup() {
+		requests.set(0);
+		service = new AssetPipelineService();
+	}
+
+	@After
+	public void teardown() {
+		service.dispose();
+	}
+
+	private List<String> urls(String...paths) {
+		String[] urls = new String[paths.length];
+		for(int i = 0; i < paths.length; i++) {
+			urls[i] = "http://localhost:" + port + paths[i];
+		}
+		return Arrays.asList(urls);
+	}
+
+	@Test
+	public void testGetAsset() throws Exception {
+		PipelinedAsset asset = service.getAsset(MimeType.CSS, urls("/a.css", "/b.css"));
+		waitFor(asset);
+
+		assertEquals("a{color:red}\nb{margin:0}", new String((byte[]) asset.getPayload(), "UTF-8"));
+		assertEquals(24, asset.getLength());
+		assertFalse(asset.isFile());
+		assertTrue(asset.getLocation(), asset.getLocation().matches("/pipeline/[0-9a-f]{32}\\.css"));
+		assertEquals("\"" + asset.getLocation().substring(10, 42) + "\"", asset.getETag());
+		assertSame(asset, service.getAsset(asset.getLocation()));
+		assertSame(asset, service.getAsset(MimeType.CSS, urls("/a.css", "/b.css")));
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testGetAsset_Concurrent() throws Exception {
+		final int count = 20;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(count);
+		final PipelinedAsset[] assets = new PipelinedAsset[count];
+		final Throwable[] errors = new Throwable[count];
+		for(int i = 0; i < count; i++) {
+			final int index = i;
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						assets[index] = service.getAsset(MimeType.CSS, urls("/a.css", "/b.css"));
+					} catch(Throwable e) {
+						errors[index] = e;
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		for(Throwable error : errors) {
+			if(error != null) {
+				throw new AssertionError(error); // the first failure, as the cause
+			}
+		}
+		waitFor(assets[0]);
+
+		for(PipelinedAsset asset : assets) {
+			assertSame(assets[0], asset);
+		}
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testGetAsset_Failed() throws Exception {
+		service.setRetryDelay(200);
+		PipelinedAsset asset = service.getAsset(MimeType.CSS, urls("/a.css", "/missing.css"));
+		for(int i = 0; i < 500 && requests.get() < 2; i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(50);
+
+		assertFalse(asset.ready());
+		assertSame(asset, service.getAsset(MimeType.CSS, urls("/a.css", "/missing.css"))); // not until the retry delay has passed
+		assertEquals(2, requests.get());
+
+		Thread.sleep(200);
+		PipelinedAsset retry = service.getAsset(MimeType.CSS, urls("/a.css", "/missing.css"));
+		assertNotSame(asset, retry); // tried again
+		assertSame(retry, service.getAsset(MimeType.CSS, urls("/a.css", "/missing.css")));
+	}
+
+	@Test
+	public void testCreateAsset() throws Exception {
+		PipelinedAsset asset1 = service.getAsset(MimeType.CSS, urls("/a.css"));
+		waitFor(asset1);
+		PipelinedAsset asset2 = service.createAsset(MimeType.CSS, urls("/a.css"));
+		waitFor(asset2);
+
+		assertNotSame(asset1, asset2);
+		assertEquals(asset1.getLocation(), asset2.getLocation());
+		assertSame(asset2, service.getAsset(MimeType.CSS, urls("/a.css")));
+		assertEquals(2, requests.get());
+	}
+
+}
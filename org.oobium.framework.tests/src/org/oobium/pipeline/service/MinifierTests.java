@@ -0,0 +1,70 @@
+package org.oobium.pipeline.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MinifierTests {
+
+	@Test
+	public void testCss() throws Exception {
+		assertEquals("a{color:red}", Minifier.css("a {\n\tcolor: red;\n}\n"));
+		assertEquals("a,b{color:red;margin:0 auto}", Minifier.css("a , b { color:red ; margin: 0  auto; }"));
+		assertEquals("div p{}", Minifier.css("div   p  {  }"));
+	}
+
+	@Test
+	public void testCss_Comments() throws Exception {
+		assertEquals("a{color:red}", Minifier.css("/* comment */ a { /* another */ color: red; }"));
+		assertEquals("/*! license */\na{}", Minifier.css("/*! license */\na {}"));
+	}
+
+	@Test
+	public void testCss_Strings() throws Exception {
+		assertEquals("a:after{content:\"  /* not a comment */  \"}", Minifier.css("a:after { content: \"  /* not a comment */  \"; }"));
+		assertEquals("a{font-family:'Times  New'}", Minifier.css("a { font-family: 'Times  New'; }"));
+	}
+
+	@Test
+	public void testJs() throws Exception {
+		assertEquals("var a = 1;\nvar b = 2;", Minifier.js("  var a = 1;\n\n\n\tvar b = 2;  \n"));
+		assertEquals("var a = 1\nvar b = 2", Minifier.js("var a = 1\nvar b = 2")); // newlines are kept for semicolon insertion
+		assertEquals("if (a) {\nb();\n}", Minifier.js("if (a) {\r\n    b();\r\n}"));
+	}
+
+	@Test
+	public void testJs_Comments() throws Exception {
+		assertEquals("var a = 1;\nvar b = 2;", Minifier.js("var a = 1; // one\n// two\nvar b = 2;"));
+		assertEquals("var a = 1;\nvar b = 2;", Minifier.js("/*\n * header\n */\nvar a = 1; /* one */\nvar b = 2;"));
+		assertEquals("var a = b;", Minifier.js("var a = /* inline */ b;"));
+		assertEquals("/*! license */\nvar a;", Minifier.js("/*! license */\nvar a;"));
+	}
+
+	@Test
+	public void testJs_Strings() throws Exception {
+		assertEquals("var a = \"// not a comment\";", Minifier.js("var a = \"// not a comment\";"));
+		assertEquals("var a = '/* not \\' a comment */';", Minifier.js("var a = '/* not \\' a comment */';"));
+		assertEquals("var a = \"  spaces  \";", Minifier.js("var a =   \"  spaces  \";"));
+	}
+
+	@Test
+	public void testJs_Regex() throws Exception {
+		assertEquals("var a = /\\/\\/ [/*]/g;", Minifier.js("var a = /\\/\\/ [/*]/g;"));
+		assertEquals("s.replace(/\"/g, '');", Minifier.js("s.replace(/\"/g, '');"));
+		assertEquals("var a = b / c / d;", Minifier.js("var a = b / c / d; // divide"));
+	}
+
+	@Test
+	public void testJs_RegexAfterKeyword() throws Exception {
+		assertEquals("return /[/*]/.test(s);\nvar y = 2;", Minifier.js("return /[/*]/.test(s);\nvar y = 2; // */"));
+		assertEquals("if (typeof /a/ === 'object') throw /b/;", Minifier.js("if (typeof /a/ === 'object') throw /b/;"));
+		assertEquals("switch (a) {\ncase /c/.test(b): break;\n}", Minifier.js("switch (a) {\ncase /c/.test(b): break;\n}"));
+		assertEquals("if (a) b(); else /d/.exec(c);", Minifier.js("if (a) b(); else /d/.exec(c);"));
+		assertEquals("return\n/e/", Minifier.js("return\n/e/"));
+
+		// not keywords: divisions
+		assertEquals("var a = returns / 2;", Minifier.js("var a = returns / 2; // half"));
+		assertEquals("var a = b.in / 2;", Minifier.js("var a = b.in / 2; // half"));
+	}
+
+}
@@ -0,0 +1,60 @@
+package org.oobium.utils;
+
+import static org.junit.Assert.*;
+import static org.oobium.utils.DateUtils.httpDate;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class DateUtilsTests {
+
+	@Test
+	public void testHttpDateFormat() throws Exception {
+		assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", httpDate(784111777000L));
+		assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", httpDate(0));
+		assertEquals("Tue, 29 Feb 2000 23:59:59 GMT", httpDate(951868799999L));
+	}
+
+	@Test
+	public void testHttpDateFormat_SameAsSimpleDateFormat() throws Exception {
+		SimpleDateFormat sdf = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+		sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+		Random random = new Random(0);
+		for(int i = 0; i < 10000; i++) {
+			long time = (long) (random.nextDouble() * 4000000000000L);
+			assertEquals(sdf.format(new Date(time)), httpDate(time));
+		}
+	}
+
+	@Test
+	public void testHttpDateNow() throws Exception {
+		String now = httpDate();
+		assertSame(now, httpDate()); // cached for the current second (unless it just ticked over)
+		assertTrue(Math.abs(httpDate(now).getTime() - System.currentTimeMillis()) < 2000);
+	}
+
+	@Test
+	public void testHttpDateParse() throws Exception {
+		assertEquals(784111777000L, httpDate("Sun, 06 Nov 1994 08:49:37 GMT").getTime());
+		assertEquals(784111777000L, httpDate("Sunday, 06-Nov-94 08:49:37 GMT").getTime());
+		assertEquals(784111777000L, httpDate("Sun Nov  6 08:49:37 1994").getTime());
+		assertEquals(951868799000L, httpDate(httpDate(951868799999L)).getTime());
+	}
+
+	@Test(expected=ParseException.class)
+	public void testHttpDateParse_Invalid() throws Exception {
+		httpDate("Sun, 06 Nov 1994");
+	}
+
+	@Test(expected=ParseException.class)
+	public void testHttpDateParse_InvalidMonth() throws Exception {
+		httpDate("Sun, 06 Xyz 1994 08:49:37 GMT");
+	}
+
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.oobium.utils.StringUtils.htmlEscape;
+
+import org.junit.Test;
+import org.oobium.framework.tests.Benchmark;
+import org.oobium.framework.tests.Benchmark.Task;
+
+/**
+ * Compares the single pass {@link StringUtils#htmlEscape(Object)} and {@link StringUtils#htmlEscape(StringBuilder, Object)}
+ * against the chain of replaceAll calls that htmlEscape used to be, over values typical of a rendered page.
+ * <p>Each result is appended to a builder, as a view would. The "clean" values have nothing to escape,
+ * the "mixed" ones have a character or two, and "markup" is a single long value that is mostly tags.</p>
+ */
+public class HtmlEscapeBenchmark {
+
+	private static String replaceAll(Object obj) {
+		if(obj == null) {
+			return "";
+		} else {
+			return obj.toString().replaceAll("&", "&amp;").replaceAll(">", "&gt;").replaceAll("<", "&lt;").replaceAll("\"", "&quot;");
+		}
+	}
+
+	/**
+	 * Append the escaped values to a builder, the way that a view does; started over each time it gets long.
+	 */
+	private static abstract class Append extends Task {
+		final String[] values;
+		final StringBuilder sb = new StringBuilder(1024);
+		Append(String[] values) {
+			this.values = values;
+		}
+		@Override
+		public void run(int i) {
+			append(values[i % values.length]);
+			if(sb.length() > 16384) {
+				sb.setLength(0);
+			}
+		}
+		abstract void append(String value);
+	}
+
+	private void run(String name, String...values) throws Exception {
+		for(String value : values) {
+			assertEquals(replaceAll(value), htmlEscape(value));
+			assertEquals(replaceAll(value), htmlEscape(new StringBuilder(), value).toString());
+		}
+
+		new Benchmark(name)
+			.add("replaceAll", new Append(values) {
+				@Override
+				void append(String value) {
+					sb.append(replaceAll(value));
+				}
+			})
+			.add("single pass", new Append(values) {
+				@Override
+				void append(String value) {
+					sb.append(htmlEscape(value));
+				}
+			})
+			.add("into builder", new Append(values) {
+				@Override
+				void append(String value) {
+					htmlEscape(sb, value);
+				}
+			})
+			.run();
+	}
+
+	@Test
+	public void testClean() throws Exception {
+		run("clean", "John", "Smith", "john.smith@example.com", "/members/12/edit", "Member since 2010", "42");
+	}
+
+	@Test
+	public void testMixed() throws Exception {
+		run("mixed", "John", "Tom & Jerry", "/members?page=2&sort=name", "42", "Member since 2010", "a \"quoted\" title");
+	}
+
+	@Test
+	public void testMarkup() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 20; i++) {
+			sb.append("<p class=\"comment\">Comment ").append(i).append(" &mdash; posted by <b>user").append(i).append("</b></p>");
+		}
+		run("markup", sb.toString());
+	}
+
+}
@@ -11,8 +11,15 @@
 package org.oobium.utils;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 import static org.oobium.utils.SqlUtils.*;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Test;
 
 public class SqlUtilsTests {
@@ -62,4 +69,31 @@ public class SqlUtilsTests {
 		assertEquals("select * from a LIMIT 1 include:b", limit("select * from a include:b", 1));
 	}
 
+	@Test
+	public void testAsNestedFieldMapsLimit() throws Exception {
+		ResultSetMetaData meta = mock(ResultSetMetaData.class);
+		when(meta.getColumnCount()).thenReturn(2);
+		when(meta.getColumnLabel(1)).thenReturn("a_id");
+		when(meta.getColumnLabel(2)).thenReturn("a_name");
+		when(meta.getColumnType(1)).thenReturn(Types.INTEGER);
+		when(meta.getColumnType(2)).thenReturn(Types.VARCHAR);
+
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.getMetaData()).thenReturn(meta);
+		when(rs.next()).thenReturn(true, true, true, false);
+		when(rs.getObject(1)).thenReturn(1, 2, 3);
+		when(rs.getObject(2)).thenReturn("one", "two", "three");
+
+		List<Map<String, Map<String, Object>>> maps = asNestedFieldMaps(rs, 2);
+		assertEquals(2, maps.size());
+		assertEquals(1, maps.get(0).get("a").get("id"));
+		assertEquals("two", maps.get(1).get("a").get("name"));
+
+		maps = asNestedFieldMaps(rs, 2);
+		assertEquals(1, maps.size());
+		assertEquals("three", maps.get(0).get("a").get("name"));
+
+		assertTrue(asNestedFieldMaps(rs, 2).isEmpty());
+	}
+
 }
@@ -13,6 +13,7 @@ package org.oobium.utils;
 import static org.junit.Assert.*;
 import static org.oobium.utils.StringUtils.*;
 
+import java.io.StringWriter;
 import java.text.SimpleDateFormat;
 
 import org.junit.Test;
@@ -100,6 +101,30 @@ public class StringUtilsTests {
 	@Test
 	public void testHtmlEscape() throws Exception {
 		assertEquals("is a &gt; 0 &amp; a &lt; 10?", htmlEscape("is a > 0 & a < 10?"));
+		assertEquals("&quot;&amp;&amp;&quot;", htmlEscape("\"&&\""));
+		assertEquals("", htmlEscape(null));
+		assertEquals("10", htmlEscape(10));
+		
+		String s = "nothing to escape";
+		assertSame(s, htmlEscape(s));
+	}
+	
+	@Test
+	public void testHtmlEscapeInto() throws Exception {
+		StringBuilder sb = new StringBuilder("<p>");
+		assertSame(sb, htmlEscape(sb, "a < b & c"));
+		assertEquals("<p>a &lt; b &amp; c", sb.toString());
+
+		sb = new StringBuilder();
+		h(sb, new StringBuilder("\"quoted\""));
+		h(sb, null);
+		h(sb, 5);
+		assertEquals("&quot;quoted&quot;5", sb.toString());
+
+		StringWriter writer = new StringWriter();
+		htmlEscape((Appendable) writer, "x > y");
+		htmlEscape((Appendable) writer, "");
+		assertEquals("x &gt; y", writer.toString());
 	}
 	
 	@Test
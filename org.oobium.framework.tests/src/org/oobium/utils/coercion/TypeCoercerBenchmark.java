@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.utils.coercion;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.Test;
+import org.oobium.framework.tests.Benchmark;
+import org.oobium.framework.tests.Benchmark.Task;
+import org.oobium.utils.coercion.coercers.ArrayCoercer;
+import org.oobium.utils.coercion.coercers.BigDecimalCoercer;
+import org.oobium.utils.coercion.coercers.BooleanCoercer;
+import org.oobium.utils.coercion.coercers.CalendarCoercer;
+import org.oobium.utils.coercion.coercers.CollectionCoercer;
+import org.oobium.utils.coercion.coercers.DateCoercer;
+import org.oobium.utils.coercion.coercers.DoubleCoercer;
+import org.oobium.utils.coercion.coercers.EnumCoercer;
+import org.oobium.utils.coercion.coercers.FileCoercer;
+import org.oobium.utils.coercion.coercers.IntegerCoercer;
+import org.oobium.utils.coercion.coercers.JsonModelCoercer;
+import org.oobium.utils.coercion.coercers.LocaleCoercer;
+import org.oobium.utils.coercion.coercers.LongCoercer;
+import org.oobium.utils.coercion.coercers.MapCoercer;
+import org.oobium.utils.coercion.coercers.PrimitiveBooleanCoercer;
+import org.oobium.utils.coercion.coercers.PrimitiveDoubleCoercer;
+import org.oobium.utils.coercion.coercers.PrimitiveIntCoercer;
+import org.oobium.utils.coercion.coercers.PrimitiveLongCoercer;
+import org.oobium.utils.coercion.coercers.StringCoercer;
+import org.oobium.utils.coercion.coercers.TimeCoercer;
+import org.oobium.utils.coercion.coercers.TimeZoneCoercer;
+import org.oobium.utils.coercion.coercers.TimestampCoercer;
+import org.oobium.utils.coercion.TypeCoercerTests.Model1;
+
+/**
+ * Compares {@link TypeCoercer#coerce(Object, Class)}, with its cache of resolved coercion paths, against the
+ * lookup that it used to do on every call (under a read lock, walking the assignable types) - once for each
+ * of the coercers in org.oobium.utils.coercion.coercers.
+ * <p>Both sides end up calling the same coercer method, so the difference between them is the cost of finding
+ * that method: the coercion itself is counted on both sides, and outweighs the lookup for the costlier types.</p>
+ */
+public class TypeCoercerBenchmark {
+
+	/**
+	 * The way TypeCoercer used to resolve the coercer and method for each call.
+	 */
+	private static class Legacy {
+
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		private final Map<Class<?>, Coercer> coercers = new HashMap<Class<?>, Coercer>();
+		private final Map<Coercer, Map<Class<?>, Method>> methods = new HashMap<Coercer, Map<Class<?>, Method>>();
+		private final List<Class<?>> assignables = new ArrayList<Class<?>>();
+		private Coercer arrayCoercer;
+
+		Legacy(Coercer...coercers) {
+			for(Coercer coercer : coercers) {
+				Map<Class<?>, Method> map = new HashMap<Class<?>, Method>();
+				for(Method method : coercer.getClass().getMethods()) {
+					if("coerce".equals(method.getName())) {
+						Class<?>[] params = method.getParameterTypes();
+						if(params.length == 2 && params[1] == Class.class) {
+							map.put(params[0], method);
+						}
+					}
+				}
+				this.coercers.put(coercer.getType(), coercer);
+				this.methods.put(coercer, map);
+				if(coercer.handleSubTypes()) {
+					assignables.add(coercer.getType());
+				}
+				if(coercer.getType().isArray()) {
+					arrayCoercer = coercer;
+				}
+			}
+		}
+
+		Object coerce(Object object, Class<?> type) throws Exception {
+			if(type.isInstance(object)) {
+				return object;
+			}
+			Coercer coercer;
+			Method method;
+			lock.readLock().lock();
+			try {
+				coercer = coercers.get(type);
+				if(coercer == null) {
+					if(type.isArray()) {
+						coercer = arrayCoercer;
+					} else {
+						for(Class<?> clazz : assignables) {
+							if(clazz.isAssignableFrom(type)) {
+								coercer = coercers.get(clazz);
+							}
+						}
+					}
+				}
+				Map<Class<?>, Method> map = methods.get(coercer);
+				method = map.get(object.getClass());
+				if(method == null) {
+					method = map.get(Object.class);
+				}
+			} finally {
+				lock.readLock().unlock();
+			}
+			return method.invoke(coercer, object, type);
+		}
+
+	}
+
+	private final Legacy legacy = new Legacy(
+			new ArrayCoercer(), new BigDecimalCoercer(), new BooleanCoercer(), new CalendarCoercer(), new CollectionCoercer(),
+			new DateCoercer(), new DoubleCoercer(), new EnumCoercer(), new FileCoercer(), new IntegerCoercer(),
+			new JsonModelCoercer(), new LocaleCoercer(), new LongCoercer(), new MapCoercer(), new PrimitiveBooleanCoercer(),
+			new PrimitiveDoubleCoercer(), new PrimitiveIntCoercer(), new PrimitiveLongCoercer(), new StringCoercer(),
+			new TimeCoercer(), new TimestampCoercer(), new TimeZoneCoercer()
+		);
+
+	private void run(String name, final Object value, final Class<?> type) throws Exception {
+		Object expected = TypeCoercer.coerce(value, type);
+		Object actual = legacy.coerce(value, type);
+		assertEquals(expected.getClass(), actual.getClass());
+
+		new Benchmark(name)
+			.add("locked lookup", new Task() {
+				@Override
+				public void run(int i) throws Exception {
+					legacy.coerce(value, type);
+				}
+			})
+			.add("cached path", new Task() {
+				@Override
+				public void run(int i) {
+					TypeCoercer.coerce(value, type);
+				}
+			})
+			.run();
+	}
+
+	@Test
+	public void testCoercers() throws Exception {
+		Map<String, Object> calendar = new HashMap<String, Object>();
+		calendar.put("locale", "en_US");
+		calendar.put("z", "GMT");
+		calendar.put("y", 2010);
+		run("Array", asList("a", "b"), Object[].class);
+		run("BigDecimal", "12.5", BigDecimal.class);
+		run("Boolean", "true", Boolean.class);
+		run("Calendar", calendar, Calendar.class);
+		run("Collection", "[1,2,3]", List.class);
+		run("Date", 1234567L, Date.class);
+		run("Double", "1.5", Double.class);
+		run("Enum", "NEW", Thread.State.class);
+		run("File", "/tmp", File.class);
+		run("Integer", "42", Integer.class);
+		run("JsonModel", singletonMap("name", "bob"), Model1.class);
+		run("Locale", "en_US", Locale.class);
+		run("Long", "42", Long.class);
+		run("Map", "{a:1}", Map.class);
+		run("PrimitiveBoolean", "true", boolean.class);
+		run("PrimitiveDouble", 1, double.class);
+		run("PrimitiveInt", "42", int.class);
+		run("PrimitiveLong", 42, long.class);
+		run("String", 42, String.class);
+		run("Time", 1234L, Time.class);
+		run("Timestamp", 1234L, Timestamp.class);
+		run("TimeZone", "GMT", TimeZone.class);
+	}
+
+}
@@ -18,7 +18,10 @@ import static org.oobium.utils.json.JsonUtils.SERIALIZATION_TYPE_KEY;
 import static org.oobium.utils.StringUtils.*;
 
 import java.io.File;
+import java.lang.ref.WeakReference;
 import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Collection;
@@ -62,6 +65,61 @@ public class TypeCoercerTests {
 		public String toJson() { return data.toString(); }
 	}
 	
+	public static class Point {
+		final int x, y;
+		Point(int x, int y) { this.x = x; this.y = y; }
+	}
+	
+	public static class Unloadable {
+	}
+	
+	public static class PointCoercer implements Coercer {
+		public Point coerce(String s, Class<?> toType) {
+			String[] xy = s.split(",");
+			return new Point(Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+		}
+		public Object coerceNull(Class<?> toType) { return null; }
+		public Class<?> getType() { return Point.class; }
+		public boolean handleSubTypes() { return false; }
+	}
+	
+	@Test
+	public void testAddCoercer() throws Exception {
+		try {
+			coerce("1,2", Point.class);
+			fail("expected an UnsupportedOperationException");
+		} catch(UnsupportedOperationException e) {
+			// no coercer yet
+		}
+		
+		TypeCoercer.addCoercer(new PointCoercer());
+		
+		Point point = coerce("1,2", Point.class);
+		assertEquals(1, point.x);
+		assertEquals(2, point.y);
+		assertEquals(new Integer(3), coerce("3", Integer.class)); // existing coercers are still registered
+	}
+	
+	@Test
+	public void testClearCache() throws Exception {
+		URL location = Unloadable.class.getProtectionDomain().getCodeSource().getLocation();
+		ClassLoader loader = new URLClassLoader(new URL[] { location }, null);
+		Class<?> clazz = loader.loadClass(Unloadable.class.getName());
+		assertNotSame(Unloadable.class, clazz);
+		assertNotNull(coerce(clazz.newInstance(), String.class));
+
+		WeakReference<Class<?>> ref = new WeakReference<Class<?>>(clazz);
+		clazz = null;
+		loader = null;
+		TypeCoercer.clearCache();
+		for(int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(ref.get());
+		assertNotNull(coerce(new Unloadable(), String.class));
+	}
+	
 	@Test
 	public void testBigDecimal() throws Exception {
 		assertEquals(new BigDecimal(100.00d), coerce(100.00d, BigDecimal.class));
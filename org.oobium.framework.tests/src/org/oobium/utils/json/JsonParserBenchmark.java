@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.utils.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.oobium.framework.tests.Benchmark;
+import org.oobium.framework.tests.Benchmark.Task;
+import org.oobium.utils.json.JsonReader.Event;
+
+/**
+ * Times {@link JsonParser} over wide and deeply nested documents of about the same size (the time per
+ * character should not depend on the nesting), and compares building the tree against only pulling
+ * the events with a {@link JsonReader}.
+ * <p>The documents are up to about 20,000 characters long, so they are run far fewer times than the other
+ * benchmarks, and the times are per character of the input rather than per document.</p>
+ */
+public class JsonParserBenchmark {
+
+	private String wide(int count) {
+		StringBuilder sb = new StringBuilder("[");
+		for(int i = 0; i < count; i++) {
+			if(i > 0) sb.append(',');
+			sb.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i).append("\",\"price\":").append(i).append(".5,\"tags\":[\"a\",\"b\"]}");
+		}
+		return sb.append(']').toString();
+	}
+
+	private String nested(int depth) {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < depth; i++) {
+			sb.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i).append("\",\"child\":[");
+		}
+		for(int i = 0; i < depth; i++) {
+			sb.append("]}");
+		}
+		return sb.toString();
+	}
+
+	private void run(String name, final String json) throws Exception {
+		new Benchmark(name + " (" + json.length() + ")")
+			.setWarmup(2000)
+			.setIterations(2000)
+			.setUnit("char", json.length())
+			.add("parse", new Task() {
+				@Override
+				public void run(int i) {
+					assertNotNull(JsonUtils.toObject(json));
+				}
+			})
+			.add("events", new Task() {
+				@Override
+				public void run(int i) throws Exception {
+					JsonReader reader = new JsonReader(new StringReader(json));
+					while(reader.next() != Event.END_DOCUMENT) {
+						reader.getValue();
+					}
+				}
+			})
+			.run();
+	}
+
+	@Test
+	public void testWide() throws Exception {
+		String json = wide(200);
+		assertEquals(200, JsonUtils.toList(json).size());
+		run("wide", json);
+	}
+
+	@Test
+	public void testNested() throws Exception {
+		run("nested 10", nested(10));
+		run("nested 100", nested(100));
+		run("nested 500", nested(500));
+	}
+
+}
@@ -0,0 +1,189 @@
+package org.oobium.utils.json;
+
+import static org.junit.Assert.*;
+import static org.oobium.utils.json.JsonReader.Event.*;
+
+import java.io.StringReader;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.oobium.utils.json.JsonReader.Event;
+
+public class JsonReaderTests {
+
+	private void assertEvents(String json, Event...events) throws Exception {
+		JsonReader reader = new JsonReader(json);
+		for(Event event : events) {
+			assertEquals(event, reader.next());
+		}
+		assertEquals(END_DOCUMENT, reader.next());
+	}
+
+	@Test
+	public void testEvents() throws Exception {
+		assertEvents("");
+		assertEvents("{}", BEGIN_OBJECT, END_OBJECT);
+		assertEvents("{\"a\":1,\"b\":[true,null]}", BEGIN_OBJECT, NAME, VALUE, NAME, BEGIN_ARRAY, VALUE, VALUE, END_ARRAY, END_OBJECT);
+		assertEvents("a:b, c:[d]", NAME, VALUE, NAME, BEGIN_ARRAY, VALUE, END_ARRAY);
+		assertEvents("({a:b});", BEGIN_OBJECT, NAME, VALUE, END_OBJECT);
+		assertEvents("[1 /* 2, */, 3] // 4", BEGIN_ARRAY, VALUE, VALUE, END_ARRAY);
+	}
+
+	@Test
+	public void testValues() throws Exception {
+		JsonReader reader = new JsonReader("[1, 1.5, -2, 12345678901, true, false, null, 'c', '\\n', \"s\", 's\\'q', word, \"/Date(1000)/\"]");
+		assertEquals(BEGIN_ARRAY, reader.next());
+		reader.next(); assertEquals(1, reader.getValue());
+		reader.next(); assertEquals(1.5, reader.getValue());
+		reader.next(); assertEquals(-2, reader.getValue());
+		reader.next(); assertEquals(12345678901L, reader.getValue());
+		reader.next(); assertEquals(true, reader.getValue());
+		reader.next(); assertEquals(false, reader.getValue());
+		reader.next(); assertNull(reader.getValue());
+		reader.next(); assertEquals('c', reader.getValue());
+		reader.next(); assertEquals('\n', reader.getValue());
+		reader.next(); assertEquals("s", reader.getValue());
+		assertTrue(reader.isQuoted());
+		reader.next(); assertEquals("s'q", reader.getValue());
+		reader.next(); assertEquals("word", reader.getValue());
+		assertFalse(reader.isQuoted());
+		reader.next(); assertEquals(new Date(1000), reader.getValue());
+		assertEquals(END_ARRAY, reader.next());
+	}
+
+	@Test
+	public void testNames() throws Exception {
+		JsonReader reader = new JsonReader("{ 'a b' : 1, c.d: 2 }");
+		reader.next();
+		assertEquals(NAME, reader.next());
+		assertEquals("a b", reader.getName());
+		reader.next();
+		assertEquals(NAME, reader.next());
+		assertEquals("c.d", reader.getName());
+		assertEquals(VALUE, reader.next());
+		assertEquals(2, reader.getValue());
+		assertNull(reader.getName());
+	}
+
+	@Test
+	public void testPlaceholders() throws Exception {
+		JsonReader reader = new JsonReader("[?, \"?\", ?]");
+		reader.setValues("a", "b");
+		reader.next();
+		reader.next(); assertEquals("a", reader.getValue());
+		assertEquals("a", reader.getValue()); // only taken once
+		reader.next(); assertEquals("?", reader.getValue());
+		reader.next(); assertEquals("b", reader.getValue());
+	}
+
+	@Test
+	public void testRaw() throws Exception {
+		JsonReader reader = new JsonReader("{a:{b:c, d:[1,'}']} /* x */, e:'f', g:h:i}");
+		reader.next();
+		reader.next();
+		assertEquals("{b:c, d:[1,'}']}", reader.nextRaw());
+		reader.next();
+		assertEquals("f", reader.nextRaw());
+		reader.next();
+		assertEquals("h:i", reader.nextRaw());
+		assertNull(reader.nextRaw());
+		assertEquals(END_OBJECT, reader.next());
+	}
+
+	@Test
+	public void testSkipValue() throws Exception {
+		JsonReader reader = new JsonReader("{a:[1,[2,{b:3}]], c:4}");
+		reader.next();
+		reader.next();
+		reader.skipValue();
+		assertEquals(NAME, reader.next());
+		assertEquals("c", reader.getName());
+	}
+
+	@Test
+	public void testEscapedBackslash() throws Exception {
+		// ["a\\", "b\\\"c", {"k\\":'v\\'}] - only the escaped quotes are unescaped, the other escapes are left as they are
+		String json = "[\"a\\\\\", \"b\\\\\\\"c\", {\"k\\\\\":'v\\\\'}]";
+		for(JsonReader reader : new JsonReader[] { new JsonReader(json), new JsonReader(new StringReader(json)) }) {
+			assertEquals(BEGIN_ARRAY, reader.next());
+			reader.next(); assertEquals("a\\\\", reader.getValue());
+			reader.next(); assertEquals("b\\\\\"c", reader.getValue());
+			assertEquals(BEGIN_OBJECT, reader.next());
+			assertEquals(NAME, reader.next());
+			assertEquals("k\\\\", reader.getName());
+			reader.next(); assertEquals("v\\\\", reader.getValue());
+			assertEquals(END_OBJECT, reader.next());
+			assertEquals(END_ARRAY, reader.next());
+			assertEquals(END_DOCUMENT, reader.next());
+		}
+	}
+
+	@Test
+	public void testUnterminatedString() throws Exception {
+		assertEquals("[1, 2, , 3]", new JsonParser().toList(new JsonReader(new StringReader("[1,2,\"3]"))).toString());
+	}
+
+	@Test
+	public void testSeparators() throws Exception {
+		JsonReader reader = new JsonReader("[1,, ,2]");
+		reader.next();
+		reader.next();
+		assertEquals(0, reader.getSeparators());
+		assertEquals(VALUE, reader.peek());
+		assertEquals(3, reader.getSeparators());
+		reader.next();
+		assertEquals(0, reader.getSeparators());
+	}
+
+	@Test
+	public void testEmptySlots() throws Exception {
+		assertEquals("{a=[1, null, 2]}", JsonUtils.toMap("{a:[1,,2]}").toString());
+		assertEquals("[null, 1]", JsonUtils.toList("[,1]").toString());
+		assertEquals("[1]", JsonUtils.toList("[1,]").toString());
+		assertEquals("[1, null]", JsonUtils.toList("[1,,]").toString());
+		assertEquals("[null]", JsonUtils.toList("[,]").toString());
+		assertEquals("[1, null, null, 2]", JsonUtils.toList("[1,, ,2]").toString());
+		assertEquals("[1, null, 2]", JsonUtils.toObject("1,,2").toString());
+		assertEquals("[null, 1]", JsonUtils.toObject(",1").toString());
+		assertEquals("{a=null, b=1}", JsonUtils.toMap("{a:,b:1}", true).toString());
+		assertEquals("{a=x, b=2}", JsonUtils.toMap("{a:'x',,b:2}", true).toString());
+	}
+
+	@Test
+	public void testAdjacentValues() throws Exception {
+		assertEquals("{a=x}", JsonUtils.toMap("{a: 'x' 'y'}").toString());
+		assertEquals("{a=it}", JsonUtils.toMap("{ 'a' : 'it''s' }").toString());
+		assertEquals("{a=x, b=2}", JsonUtils.toMap("{a:'x' y:1, b:2}", true).toString());
+		assertEquals("{a=[1, 2]}", JsonUtils.toMap("{a:[1,2] b:3}").toString());
+		assertEquals("[a, c]", JsonUtils.toList("['a' 'b', 'c']").toString());
+		assertEquals("[{a=1}]", JsonUtils.toList("[{a:1} {b:2}]").toString());
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		StringBuilder sb = new StringBuilder("[");
+		for(int i = 0; i < 2000; i++) {
+			if(i > 0) sb.append(',');
+			sb.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i).append("\",\"tags\":[\"a\",\"b\"]}");
+		}
+		sb.append(']');
+
+		JsonParser parser = new JsonParser();
+		JsonReader reader = new JsonReader(new StringReader(sb.toString()));
+		assertEquals(BEGIN_ARRAY, reader.next());
+		int count = 0;
+		while(reader.peek() == BEGIN_OBJECT) {
+			Map<String, Object> map = parser.toMap(reader);
+			assertEquals(count, map.get("id"));
+			assertEquals("item " + count, map.get("name"));
+			assertEquals(2, ((List<?>) map.get("tags")).size());
+			count++;
+		}
+		assertEquals(2000, count);
+		assertEquals(END_ARRAY, reader.next());
+		assertEquals(END_DOCUMENT, reader.next());
+	}
+
+}
@@ -0,0 +1,97 @@
+package org.oobium.utils.json;
+
+import static org.junit.Assert.*;
+import static org.oobium.utils.json.JsonUtils.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JsonWriterTests {
+
+	private Map<String, Object> document() {
+		Map<String, Object> inner = new LinkedHashMap<String, Object>();
+		inner.put("name", "bob \"the\" builder");
+		inner.put("tags", Arrays.asList("a", 'b', 1, 2.5, null, true));
+		inner.put("empty", Collections.emptyMap());
+
+		List<Object> list = new ArrayList<Object>();
+		list.add(inner);
+		list.add(new int[] { 1, 2, 3 });
+		list.add(new ArrayList<Object>());
+
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("id", 10);
+		map.put("list", list);
+		map.put("quoted", "'already'");
+		return map;
+	}
+
+	private String write(Object value, boolean format) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		JsonWriter writer = new JsonWriter(sb);
+		writer.setFormat(format);
+		writer.value(value);
+		assertEquals(0, writer.getDepth());
+		return sb.toString();
+	}
+
+	@Test
+	public void testValue() throws Exception {
+		assertEquals("{\"id\":10,\"list\":[{\"name\":\"bob \\\"the\\\" builder\",\"tags\":[\"a\",'b',1,2.5,null,true],\"empty\":{}},[1,2,3],[]],\"quoted\":'already'}",
+				write(document(), false));
+	}
+
+	@Test
+	public void testFormat() throws Exception {
+		Map<String, Object> document = document();
+		assertEquals(format(toJson(document)), write(document, true));
+		assertEquals(format(toJson(Collections.emptyList())), write(Collections.emptyList(), true));
+	}
+
+	@Test
+	public void testStructure() throws Exception {
+		StringWriter out = new StringWriter();
+		JsonWriter writer = new JsonWriter(out);
+		writer.beginArray();
+		writer.beginObject().name("a").value(1).name("b").beginArray().value("x").value("y").endArray().endObject();
+		writer.value(null);
+		writer.rawValue("{\"raw\":true}");
+		writer.endArray().flush();
+		assertEquals("[{\"a\":1,\"b\":[\"x\",\"y\"]},null,{\"raw\":true}]", out.toString());
+	}
+
+	@Test
+	public void testWritable() throws Exception {
+		JsonWritable writable = new JsonWritable() {
+			@Override
+			public void writeJson(JsonWriter writer) throws IOException {
+				writer.beginObject().name("w").value(true).endObject();
+			}
+		};
+		assertEquals("[{\"w\":true},{\"w\":true}]", write(Arrays.asList(writable, writable), false));
+		assertEquals("{\"a\":{\"w\":true}}", write(Collections.singletonMap("a", writable), false));
+	}
+
+	@Test
+	public void testSkip() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		JsonWriter writer = new JsonWriter(sb);
+		writer.setSkip("a");
+		writer.value(Collections.singletonMap("a", "[1,2]"));
+		assertEquals("{\"a\":[1,2]}", sb.toString());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testUnbalanced() throws Exception {
+		new JsonWriter(new StringBuilder()).endObject();
+	}
+
+}
@@ -18,7 +18,6 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
-import org.osgi.service.log.LogListener;
 import org.osgi.service.log.LogReaderService;
 import org.osgi.service.log.LogService;
 import org.osgi.util.tracker.ServiceTracker;
@@ -49,7 +48,7 @@ public class Activator implements BundleActivator {
 	
 	private LogService[] loggerServices;
 	private List<LogReaderService> readerServices;
-	private LogListener logListener;
+	private LogHandler logListener;
 
 	public Activator() {
 		instance = this;
@@ -167,6 +166,7 @@ public class Activator implements BundleActivator {
 			readerServices.clear();
 			readerServices = null;
 		}
+		logListener.close();
 		logListener = null;
 
 		System.out.println("Oobium Logger stopped");
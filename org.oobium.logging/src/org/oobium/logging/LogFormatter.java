@@ -24,11 +24,40 @@ import java.util.Date;
 
 public class LogFormatter {
 
-	private static final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSZ");
+	private static class Timestamp {
+		final long time;
+		final String text;
+		Timestamp(long time, String text) {
+			this.time = time;
+			this.text = text;
+		}
+	}
+	
+	/**
+	 * SimpleDateFormat is not thread safe - give each thread its own
+	 */
+	private static final ThreadLocal<SimpleDateFormat> sdf = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSZ");
+		}
+	};
 
+	/**
+	 * the most recently formatted timestamp; messages logged within the same millisecond share it
+	 */
+	private static volatile Timestamp lastTimestamp = new Timestamp(-1, null);
+	
 	public static String format(String bundleName, int level, String message, Throwable exception) {
+		return format(System.currentTimeMillis(), bundleName, level, message, exception);
+	}
+	
+	/**
+	 * @param time the time the message was logged, in milliseconds since the epoch
+	 */
+	public static String format(long time, String bundleName, int level, String message, Throwable exception) {
 		StringBuilder sb = new StringBuilder();
-		sb.append(sdf.format(new Date()));
+		sb.append(timestamp(time));
 		switch(decode(level)) {
 		case ERROR:		sb.append(" (ERROR) "); break;
 		case WARNING: 	sb.append(" (WARN)  "); break;
@@ -85,6 +114,18 @@ public class LogFormatter {
 		}
 	}
 
+	/**
+	 * Format the given time; thread safe, and only formats once per millisecond.
+	 */
+	public static String timestamp(long time) {
+		Timestamp ts = lastTimestamp;
+		if(ts.time != time) {
+			ts = new Timestamp(time, sdf.get().format(new Date(time)));
+			lastTimestamp = ts;
+		}
+		return ts.text;
+	}
+
 //	public static String format(ServiceReference reference, int level, String message, Throwable exception) {
 //		Bundle bundle = (reference != null) ? reference.getBundle() : null;
 //		return format(bundle, level, message, exception);
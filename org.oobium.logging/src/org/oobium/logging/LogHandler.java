@@ -15,18 +15,86 @@ import static org.oobium.logging.Logger.WARNING;
 import static org.oobium.logging.LogFormatter.format;
 import static org.oobium.logging.LoggerImpl.decode;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.osgi.framework.Bundle;
 import org.osgi.service.log.LogEntry;
 import org.osgi.service.log.LogListener;
 
+/**
+ * Writes log entries to the console and to the log file.
+ * <p>Entries are not written on the thread that logged them: they are added to a bounded buffer and
+ * a single writer thread formats and writes them in batches. Writes to the file are buffered and synced
+ * to disk every {@link #SYS_PROP_SYNC_INTERVAL} milliseconds; rotation also happens on the writer thread.
+ * What happens when the buffer is full is set with {@link #SYS_PROP_POLICY}.</p>
+ */
 public class LogHandler implements LogListener {
 
+	/**
+	 * What to do with an entry when the buffer is full.
+	 */
+	public enum Policy {
+		/** wait for room in the buffer */
+		BLOCK,
+		/** discard the entry */
+		DROP,
+		/** discard the entry, unless it is a warning or an error, in which case wait for room */
+		DROP_BELOW_WARN;
+
+		public static Policy parse(String policy) {
+			if(policy != null) {
+				String s = policy.replace("_", "").replace("-", "");
+				for(Policy p : values()) {
+					if(p.name().replace("_", "").equalsIgnoreCase(s)) {
+						return p;
+					}
+				}
+				System.out.println("Unknown logging buffer policy: " + policy + ". Using default.");
+			}
+			return DROP_BELOW_WARN;
+		}
+	}
+	
+	private static class Entry {
+		final LogEntry log;
+		final boolean console;
+		final boolean file;
+		Entry(LogEntry log, boolean console, boolean file) {
+			this.log = log;
+			this.console = console;
+			this.file = file;
+		}
+	}
+	
+	/**
+	 * The maximum number of entries waiting to be written (default 8192)
+	 */
+	public static final String SYS_PROP_BUFFER_SIZE = "org.oobium.logging.buffer.size";
+	
+	/**
+	 * The {@link Policy} used when the buffer is full: "block", "drop" or "dropBelowWarn" (the default)
+	 */
+	public static final String SYS_PROP_POLICY = "org.oobium.logging.buffer.policy";
+
+	/**
+	 * The maximum number of milliseconds between syncs of the log file to disk (default 1000); 0 or less to
+	 * sync after every batch of entries
+	 */
+	public static final String SYS_PROP_SYNC_INTERVAL = "org.oobium.logging.file.syncInterval";
+	
 	/**
 	 * 1 kilobyte = 1024 bytes
 	 */
@@ -42,6 +110,10 @@ public class LogHandler implements LogListener {
 	 */
 	public static final long GB = 1024 * MB;
 
+	private static final Entry STOP = new Entry(null, false, false);
+	
+	private static final int BATCH_SIZE = 256;
+	
 	private static final NumberFormat nf = NumberFormat.getIntegerInstance();
 	static {
 		nf.setMaximumFractionDigits(0);
@@ -82,36 +154,110 @@ public class LogHandler implements LogListener {
 		}
 	}
 
-	private volatile boolean inited;
-	private String name;
-	private long max;
+	
+	private final File path;
+	private final String name;
+	private final long max;
+	private final Policy policy;
+	private final long syncInterval;
+	private final BlockingQueue<Entry> queue;
+	private final AtomicLong dropped;
+	private final Thread writerThread;
+	private final Thread shutdownHook;
+	private volatile boolean closed;
+
+	// only accessed by the writer thread (after construction)
 	private long count;
-	private FileWriter writer;
+	private FileOutputStream out;
+	private Writer writer;
 	private int fileCount;
+	private boolean dirty;
+	private long lastSync;
+	private long reported;
 
 	public LogHandler() {
-		this.inited = false;
-		if(LoggerImpl.getSystemFileLevel() != LoggerImpl.NEVER) {
-			this.name = getName();
-			this.max = getMax();
-			this.count = 0;
-			this.fileCount = 0;
+		this(new File("logs"),
+			(LoggerImpl.getSystemFileLevel() != LoggerImpl.NEVER) ? getName() : null,
+			getMax(),
+			Integer.getInteger(SYS_PROP_BUFFER_SIZE, 8192),
+			Policy.parse(System.getProperty(SYS_PROP_POLICY)),
+			Long.getLong(SYS_PROP_SYNC_INTERVAL, 1000)
+		);
+	}
+
+	/**
+	 * @param path the directory of the log files
+	 * @param name the name of the log file; null if not logging to a file
+	 */
+	public LogHandler(File path, String name, long max, int bufferSize, Policy policy, long syncInterval) {
+		this.path = path;
+		this.name = name;
+		this.max = max;
+		this.policy = policy;
+		this.syncInterval = syncInterval;
+		this.queue = new ArrayBlockingQueue<Entry>(bufferSize);
+		this.dropped = new AtomicLong();
+		if(name != null) {
 			init();
 		}
+		this.writerThread = new Thread("oobium-log-writer") {
+			@Override
+			public void run() {
+				write();
+			}
+		};
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+		this.shutdownHook = new Thread() {
+			@Override
+			public void run() {
+				close();
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
 	}
 
+	/**
+	 * Write out all entries that have been logged, and close the log file. Entries logged after this method
+	 * has been called are discarded.
+	 */
+	public synchronized void close() {
+		if(!closed) {
+			closed = true;
+			try {
+				queue.put(STOP);
+				writerThread.join(10000);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if(Thread.currentThread() != shutdownHook) {
+				try {
+					Runtime.getRuntime().removeShutdownHook(shutdownHook);
+				} catch(IllegalStateException e) {
+					// already shutting down
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of entries that were discarded because the buffer was full
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+	
 	private void init() {
 		try {
-			File path = new File("logs");
 			if(!path.exists() || !path.isDirectory()) {
 				path.mkdirs();
 			}
-			File file = new File("logs", name + ".log");
+			File file = new File(path, name + ".log");
 			if(file.exists()) {
 				count = file.length();
 			}
-			writer = new FileWriter(file, true);
-			String[] fnames = new File("logs").list(new FilenameFilter() {
+			open(file, true);
+			String[] fnames = path.list(new FilenameFilter() {
 				public boolean accept(File dir, String fname) {
 					return fname.startsWith(name + "_") && fname.endsWith(".log");
 				}
@@ -124,7 +270,6 @@ public class LogHandler implements LogListener {
 					// discard
 				}
 			}
-			inited = true;
 		} catch(IOException e) {
 			e.printStackTrace();
 		}
@@ -132,22 +277,26 @@ public class LogHandler implements LogListener {
 
 	@Override
 	public void logged(LogEntry log) {
+		if(closed) {
+			return;
+		}
 		Bundle bundle = log.getBundle();
 		int level = log.getLevel();
 		boolean isLoggingToConsole = LoggerImpl.isLoggingToConsole(bundle, level);
-		boolean isLoggingToFile = LoggerImpl.isLoggingToFile(bundle, level);
-		if(isLoggingToFile) {
-			while(!inited) {
-				Thread.yield();
-			}
-		}
+		boolean isLoggingToFile = (name != null) && LoggerImpl.isLoggingToFile(bundle, level);
 		if(isLoggingToConsole || isLoggingToFile) {
-			String message = format(bundle.getSymbolicName(), log.getLevel(), log.getMessage(), log.getException());
-			if(isLoggingToConsole) {
-				logToConsole(message, level);
-			}
-			if(isLoggingToFile) {
-				logToFile(message);
+			Entry entry = new Entry(log, isLoggingToConsole, isLoggingToFile);
+			if(!queue.offer(entry)) {
+				if(policy == Policy.BLOCK || (policy == Policy.DROP_BELOW_WARN && decode(level) <= WARNING)) {
+					try {
+						queue.put(entry);
+					} catch(InterruptedException e) {
+						dropped.incrementAndGet();
+						Thread.currentThread().interrupt();
+					}
+				} else {
+					dropped.incrementAndGet();
+				}
 			}
 		}
 	}
@@ -166,21 +315,26 @@ public class LogHandler implements LogListener {
 		}
 		try {
 			writer.write(message);
-			writer.flush();
+			dirty = true;
 		} catch(IOException e1) {
-			File file = new File("logs", name + ".log");
+			File file = new File(path, name + ".log");
 			if(file.exists()) {
 				count = file.length();
 			}
 			try {
-				writer = new FileWriter(file, true);
+				open(file, true);
 				writer.write(message);
-				writer.flush();
+				dirty = true;
 			} catch(IOException e2) {
 				e2.printStackTrace();
 			}
 		}
 	}
+
+	private void open(File file, boolean append) throws IOException {
+		out = new FileOutputStream(file, append);
+		writer = new BufferedWriter(new OutputStreamWriter(out), 64 * (int) KB);
+	}
 	
 	private void rotate() {
 		try {
@@ -188,15 +342,95 @@ public class LogHandler implements LogListener {
 			writer.close();
 			count = 0;
 			fileCount++;
-			File src = new File("logs", name + ".log");
-			File dst = new File("logs", name + "_" + nf.format(fileCount) + ".log");
+			File src = new File(path, name + ".log");
+			File dst = new File(path, name + "_" + nf.format(fileCount) + ".log");
 			if(!src.renameTo(dst)) {
 				System.out.println("!!! could not rename to " + dst);
 			}
-			writer = new FileWriter(src);
+			open(src, false);
 		} catch(IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Flush the written entries to the file and, if it is time, sync the file to disk.
+	 */
+	private void sync(boolean force) {
+		if(writer != null && dirty) {
+			try {
+				writer.flush();
+				long now = System.currentTimeMillis();
+				if(force || now - lastSync >= syncInterval) {
+					out.getFD().sync();
+					lastSync = now;
+					dirty = false;
+				}
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * The writer thread's loop: take entries off of the buffer in batches and write them out.
+	 */
+	private void write() {
+		List<Entry> batch = new ArrayList<Entry>(BATCH_SIZE);
+		boolean running = true;
+		while(running) {
+			try {
+				// wait for the next sync only if there is something to sync
+				Entry entry = dirty ? queue.poll(max(1, syncInterval), TimeUnit.MILLISECONDS) : queue.take();
+				if(entry != null) {
+					batch.add(entry);
+					queue.drainTo(batch, BATCH_SIZE - 1);
+				}
+			} catch(InterruptedException e) {
+				// just check the buffer again
+			}
+			for(Entry entry : batch) {
+				if(entry == STOP) {
+					running = false;
+					continue;
+				}
+				write(entry);
+			}
+			batch.clear();
+			long total = dropped.get();
+			if(total > reported) {
+				String message = format(null, WARNING, "log buffer full: discarded " + (total - reported) + " log entries", null);
+				logToConsole(message, WARNING);
+				if(writer != null) {
+					logToFile(message);
+				}
+				reported = total;
+			}
+			sync(!running);
+		}
+		if(writer != null) {
+			try {
+				writer.close();
+			} catch(IOException e) {
+				// discard
+			}
+		}
+	}
+	
+	private void write(Entry entry) {
+		try {
+			LogEntry log = entry.log;
+			Bundle bundle = log.getBundle();
+			String message = format(log.getTime(), (bundle != null) ? bundle.getSymbolicName() : null, log.getLevel(), log.getMessage(), log.getException());
+			if(entry.console) {
+				logToConsole(message, log.getLevel());
+			}
+			if(entry.file && writer != null) {
+				logToFile(message);
+			}
+		} catch(Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
 }
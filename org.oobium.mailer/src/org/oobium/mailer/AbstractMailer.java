@@ -35,7 +35,6 @@ import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Session;
 import javax.mail.Store;
-import javax.mail.Transport;
 import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
@@ -444,6 +443,50 @@ public abstract class AbstractMailer implements IUrlRouting {
 		}
 	}
 	
+	private MimeMessage createMessage(Session session) throws MessagingException {
+		MimeMessage message =  new MimeMessage(session);
+
+		message.setFrom(from);
+		message.setReplyTo(new Address[] { (replyTo == null) ? from : replyTo });
+
+		if(!blank(to)) {
+			for(Address recipient : to) {
+				message.addRecipient(Message.RecipientType.TO, recipient);
+			}
+		}
+
+		if(!blank(cc)) {
+			for(Address recipient : cc) {
+				message.addRecipient(Message.RecipientType.CC, recipient);
+			}
+		}
+
+		if(!blank(bcc)) {
+			for(Address recipient : bcc) {
+				message.addRecipient(Message.RecipientType.BCC, recipient);
+			}
+		}
+
+		message.setSubject(subject);
+		message.setContent(body, mimeType.acceptsType);
+		message.saveChanges();
+		
+		return message;
+	}
+	
+	/**
+	 * @return the queue (and pool of connections) for this mailer's mail.send configuration, which also
+	 * holds the metrics of the mail sent with it
+	 * @see MailQueue
+	 */
+	public MailQueue getQueue() {
+		return MailQueue.get(getProperties(Config.MAIL_SEND));
+	}
+	
+	/**
+	 * Send this mailer's message now, on the calling thread, over one of the connections pooled by its {@link MailQueue}.
+	 * @see #sendLater()
+	 */
 	public AbstractMailer send() {
 		if(app == null) {
 //			throw new IllegalStateException("app is null, cannot proceed");
@@ -455,72 +498,32 @@ public abstract class AbstractMailer implements IUrlRouting {
 		}
 
 		try {
-			Properties properties = getProperties(Config.MAIL_SEND);
-
-			String protocol;
-			String host;
-			
-			String service = (String) properties.remove("service");
-			if("gmail".equalsIgnoreCase(service)) {
-				protocol = (String) properties.getProperty("mail.transport.protocol", "smtps");
-				host = (String) properties.getProperty("host", "smtp.gmail.com");
-		        properties.put("mail.smtps.auth", "true");
-			} else {
-				protocol = (String) properties.getProperty("mail.transport.protocol");
-				host = (String) properties.getProperty("host");
-			}
-
-			if(blank(protocol)) {
-				throw new IllegalArgumentException("protocol cannot be null");
-			}
-			if(blank(host)) {
-				throw new IllegalArgumentException("host cannot be null");
-			}
-			
-			String user = (String) properties.remove("username");
-			String pass = (String) properties.remove("password");
-
-			Session mailSession = Session.getDefaultInstance(properties, null);
-			Transport transport = mailSession.getTransport(protocol);
-			
-			MimeMessage message =  new MimeMessage(mailSession);
-
-			message.setFrom(from);
-			message.setReplyTo(new Address[] { (replyTo == null) ? from : replyTo });
-
-			if(!blank(to)) {
-				for(Address recipient : to) {
-					message.addRecipient(Message.RecipientType.TO, recipient);
-				}
-			}
-
-			if(!blank(cc)) {
-				for(Address recipient : cc) {
-					message.addRecipient(Message.RecipientType.CC, recipient);
-				}
-			}
-
-			if(!blank(bcc)) {
-				for(Address recipient : bcc) {
-					message.addRecipient(Message.RecipientType.BCC, recipient);
-				}
-			}
-
-			message.setSubject(subject);
-			message.setContent(body, mimeType.acceptsType);
-
-			try {
-				transport.connect(host, user, pass);
-				transport.sendMessage(message, message.getAllRecipients());
-			} finally {
-				transport.close();
-			}
+			MailQueue queue = getQueue();
+			queue.send(createMessage(queue.getSession()));
 		} catch(MessagingException e) {
 			logger.warn("failed to send message", e);
 		}
 		return this;
 	}
 	
+	/**
+	 * Put this mailer's message on its {@link MailQueue}, to be sent by one of the queue's workers, and return
+	 * right away - rather than waiting on the mail server, as {@link #send()} does. Failed messages are retried.
+	 */
+	public AbstractMailer sendLater() {
+		if(!validate()) {
+			return this;
+		}
+
+		try {
+			MailQueue queue = getQueue();
+			queue.offer(createMessage(queue.getSession()));
+		} catch(MessagingException e) {
+			logger.warn("failed to queue message", e);
+		}
+		return this;
+	}
+	
 	/**
 	 * 
 	 * @param addresses
@@ -0,0 +1,540 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.mailer;
+
+import static org.oobium.utils.StringUtils.blank;
+import static org.oobium.utils.coercion.TypeCoercer.coerce;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import org.oobium.logging.LogProvider;
+import org.oobium.logging.Logger;
+
+/**
+ * The outbound mail of a single mail.send configuration: a pool of connected (and authenticated) transports,
+ * shared by {@link AbstractMailer#send()} and by the workers that send the messages queued by
+ * {@link AbstractMailer#sendLater()}.
+ * <p>Configured through the "queue" options of the mail.send properties (times are in milliseconds):</p>
+ * <ul>
+ *   <li><b>queue.threads</b>: the number of workers sending queued messages (default 2)</li>
+ *   <li><b>queue.messagesPerConnection</b>: the number of messages sent over a connection before it is closed
+ *   and replaced (default 100)</li>
+ *   <li><b>queue.maxIdleTime</b>: how long a connection may sit idle before it is closed (default 60000)</li>
+ *   <li><b>queue.maxAttempts</b>: the number of times a queued message is tried before it is given up on (default 5)</li>
+ *   <li><b>queue.retryDelay</b>: how long to wait before the first retry of a message; doubled for each
+ *   retry after that (default 30000)</li>
+ *   <li><b>queue.spool</b>: a directory that queued messages are written to until they have been sent, so that
+ *   they survive a restart; messages found there when the queue is created are sent (default none)</li>
+ * </ul>
+ * <p>The workers take messages off the queue one connection at a time: a worker keeps sending over the
+ * same connection for as long as there are messages waiting, so bulk mailings do not reconnect for each one.
+ * Messages that fail are put back on the queue, to be retried after the delay; messages that have been
+ * given up on are left in the spool directory (if any) with a ".failed" extension.</p>
+ */
+public class MailQueue {
+
+	public static final String THREADS = "queue.threads";
+	public static final String MESSAGES_PER_CONNECTION = "queue.messagesPerConnection";
+	public static final String MAX_IDLE_TIME = "queue.maxIdleTime";
+	public static final String MAX_ATTEMPTS = "queue.maxAttempts";
+	public static final String RETRY_DELAY = "queue.retryDelay";
+	public static final String SPOOL = "queue.spool";
+
+	private static final long VALIDATION_INTERVAL = 5000;
+
+	private static final Map<Properties, MailQueue> queues = new HashMap<Properties, MailQueue>();
+	private static final AtomicLong spoolCount = new AtomicLong();
+
+	/**
+	 * @return the queue for the given mail.send properties, creating it if this is the first time they are used
+	 */
+	public static synchronized MailQueue get(Properties properties) {
+		MailQueue queue = queues.get(properties);
+		if(queue == null) {
+			queue = new MailQueue(properties);
+			queues.put(queue.key, queue);
+		}
+		return queue;
+	}
+
+	/**
+	 * Close all of the queues that are open; called when the mailer bundle is stopped.
+	 * @see #close()
+	 */
+	public static void closeAll() {
+		List<MailQueue> open;
+		synchronized(MailQueue.class) {
+			open = new ArrayList<MailQueue>(queues.values());
+		}
+		for(MailQueue queue : open) {
+			queue.close();
+		}
+	}
+
+	private static class Connection {
+		final Transport transport;
+		long lastUsed;
+		int sent;
+		Connection(Transport transport) {
+			this.transport = transport;
+		}
+	}
+
+	private static class Envelope implements Delayed {
+		final MimeMessage message;
+		final long queued;
+		File file;
+		int attempts;
+		long due;
+		Envelope(MimeMessage message, long queued) {
+			this.message = message;
+			this.queued = queued;
+			this.due = queued;
+		}
+		@Override
+		public int compareTo(Delayed o) {
+			long d = due - ((Envelope) o).due;
+			return (d < 0) ? -1 : ((d > 0) ? 1 : 0);
+		}
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(due - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private class Worker extends Thread {
+		Worker(int id) {
+			super("oobium-mail-" + id);
+			setDaemon(true);
+		}
+		@Override
+		public void run() {
+			while(!closed) {
+				Envelope envelope;
+				try {
+					envelope = queue.take();
+				} catch(InterruptedException e) {
+					break;
+				}
+				Connection connection = null;
+				try {
+					connection = checkout();
+					do {
+						send(connection, envelope);
+						sent(envelope);
+					} while(connection.sent < messagesPerConnection && (envelope = queue.poll()) != null);
+				} catch(Exception e) {
+					failed(envelope, e);
+					close(connection);
+					connection = null;
+				} finally {
+					if(connection != null) {
+						checkin(connection);
+					}
+				}
+			}
+		}
+	}
+
+
+	private final Logger logger;
+	private final Properties key;
+	private final Session session;
+	private final String protocol;
+	private final String host;
+	private final int port;
+	private final String username;
+	private final String password;
+
+	private final int threads;
+	private final int messagesPerConnection;
+	private final long maxIdleTime;
+	private final int maxAttempts;
+	private final long retryDelay;
+	private final File spool;
+
+	private final DelayQueue<Envelope> queue;
+	private final BlockingDeque<Connection> idle;
+	private final List<Worker> workers;
+	private volatile boolean closed;
+
+	private final AtomicInteger open = new AtomicInteger();
+	private final AtomicInteger spooled = new AtomicInteger();
+	private final AtomicLong sentCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong retryCount = new AtomicLong();
+	private final AtomicLong latency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+	private final AtomicLong sendTime = new AtomicLong();
+	private final AtomicLong sendCount = new AtomicLong();
+
+	MailQueue(Properties properties) {
+		this.logger = LogProvider.getLogger(MailQueue.class);
+
+		this.key = new Properties();
+		this.key.putAll(properties);
+
+		Properties props = new Properties();
+		props.putAll(properties);
+
+		String service = (String) props.remove("service");
+		if("gmail".equalsIgnoreCase(service)) {
+			protocol = props.getProperty("mail.transport.protocol", "smtps");
+			host = props.getProperty("host", "smtp.gmail.com");
+			props.put("mail.smtps.auth", "true");
+		} else {
+			protocol = props.getProperty("mail.transport.protocol");
+			host = props.getProperty("host");
+		}
+		if(blank(protocol)) {
+			throw new IllegalArgumentException("protocol cannot be null");
+		}
+		if(blank(host)) {
+			throw new IllegalArgumentException("host cannot be null");
+		}
+
+		port = coerce(props.remove("port")).from(-1);
+		username = (String) props.remove("username");
+		password = (String) props.remove("password");
+
+		threads = Math.max(1, coerce(props.remove(THREADS)).from(2));
+		messagesPerConnection = Math.max(1, coerce(props.remove(MESSAGES_PER_CONNECTION)).from(100));
+		maxIdleTime = coerce(props.remove(MAX_IDLE_TIME)).from(60000L);
+		maxAttempts = Math.max(1, coerce(props.remove(MAX_ATTEMPTS)).from(5));
+		retryDelay = coerce(props.remove(RETRY_DELAY)).from(30000L);
+		String dir = (String) props.remove(SPOOL);
+		spool = blank(dir) ? null : new File(dir);
+
+		session = Session.getInstance(props, null);
+		queue = new DelayQueue<Envelope>();
+		idle = new LinkedBlockingDeque<Connection>();
+		workers = new ArrayList<Worker>(threads);
+
+		if(spool != null) {
+			loadSpool();
+		}
+	}
+
+	private Connection checkout() throws MessagingException {
+		Connection connection;
+		while((connection = idle.pollFirst()) != null) {
+			long idleTime = System.currentTimeMillis() - connection.lastUsed;
+			if(maxIdleTime > 0 && idleTime > maxIdleTime) {
+				close(connection);
+			}
+			else if(idleTime > VALIDATION_INTERVAL && !connection.transport.isConnected()) {
+				close(connection);
+			}
+			else {
+				return connection;
+			}
+		}
+		Transport transport = session.getTransport(protocol);
+		transport.connect(host, port, username, password);
+		open.incrementAndGet();
+		logger.debug("opened connection to {}://{} ({} open)", protocol, host, open.get());
+		return new Connection(transport);
+	}
+
+	private void checkin(Connection connection) {
+		if(closed || connection.sent >= messagesPerConnection || idle.size() >= threads) {
+			close(connection);
+		} else {
+			connection.lastUsed = System.currentTimeMillis();
+			idle.offerFirst(connection); // most recently used first, so that the rest go idle and are closed
+		}
+	}
+
+	/**
+	 * Stop the workers and close the pooled connections. Messages still on the queue are not sent, but remain
+	 * in the spool directory (if there is one) to be sent by the next queue that uses it.
+	 */
+	public void close() {
+		synchronized(MailQueue.class) {
+			closed = true;
+			if(queues.get(key) == this) {
+				queues.remove(key);
+			}
+		}
+		synchronized(workers) {
+			for(Worker worker : workers) {
+				worker.interrupt();
+			}
+			workers.clear();
+		}
+		Connection connection;
+		while((connection = idle.pollFirst()) != null) {
+			close(connection);
+		}
+	}
+
+	private void close(Connection connection) {
+		if(connection != null) {
+			try {
+				connection.transport.close();
+			} catch(MessagingException e) {
+				logger.debug("error closing connection: {}", e.getMessage());
+			}
+			open.decrementAndGet();
+		}
+	}
+
+	private void failed(Envelope envelope, Exception e) {
+		envelope.attempts++;
+		if(envelope.attempts < maxAttempts && !closed) {
+			long delay = retryDelay << Math.min(envelope.attempts - 1, 16);
+			logger.info("failed to send message (attempt {} of {}), retrying in {}ms: {}", envelope.attempts, maxAttempts, delay, e.getMessage());
+			retryCount.incrementAndGet();
+			envelope.due = System.currentTimeMillis() + delay;
+			queue.offer(envelope);
+		} else {
+			logger.warn("failed to send message, giving up after {} attempts", e, envelope.attempts);
+			failedCount.incrementAndGet();
+			if(envelope.file != null) {
+				File failed = new File(envelope.file.getPath().replaceFirst("\\.eml$", ".failed"));
+				if(!envelope.file.renameTo(failed)) {
+					logger.warn("could not move failed message to {}", failed);
+				}
+				spooled.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return the average time, in milliseconds, that queued messages waited before they were sent
+	 */
+	public long getAverageLatency() {
+		long count = sentCount.get();
+		return (count == 0) ? 0 : (latency.get() / count);
+	}
+
+	/**
+	 * @return the average time, in milliseconds, taken to send each message over an open connection
+	 */
+	public long getAverageSendTime() {
+		long count = sendCount.get();
+		return (count == 0) ? 0 : (sendTime.get() / count);
+	}
+
+	/**
+	 * @return the number of queued messages that were given up on, after maxAttempts tries
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * @return the longest time, in milliseconds, that a queued message waited before it was sent
+	 */
+	public long getMaxLatency() {
+		return maxLatency.get();
+	}
+
+	/**
+	 * @return the number of connections that are currently open, in use or idle
+	 */
+	public int getOpenConnections() {
+		return open.get();
+	}
+
+	/**
+	 * @return the number of messages that are waiting to be sent, including those waiting to be retried
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the number of times that a queued message has been put back on the queue to be retried
+	 */
+	public long getRetryCount() {
+		return retryCount.get();
+	}
+
+	/**
+	 * @return the number of queued messages that have been sent
+	 */
+	public long getSentCount() {
+		return sentCount.get();
+	}
+
+	/**
+	 * @return the session that messages for this queue are to be created with
+	 */
+	public Session getSession() {
+		return session;
+	}
+
+	/**
+	 * @return the number of queued messages that are held in the spool directory
+	 */
+	public int getSpooled() {
+		return spooled.get();
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	private void loadSpool() {
+		if(!spool.isDirectory() && !spool.mkdirs()) {
+			throw new IllegalStateException("could not create mail spool directory: " + spool);
+		}
+		File[] files = spool.listFiles();
+		if(files != null) {
+			Arrays.sort(files);
+			for(File file : files) {
+				if(file.getName().endsWith(".eml")) {
+					try {
+						InputStream in = new BufferedInputStream(new FileInputStream(file));
+						try {
+							Envelope envelope = new Envelope(new MimeMessage(session, in), file.lastModified());
+							envelope.file = file;
+							spooled.incrementAndGet();
+							queue.offer(envelope);
+						} finally {
+							in.close();
+						}
+					} catch(Exception e) {
+						logger.warn("could not load spooled message {}", e, file);
+					}
+				}
+			}
+			if(!queue.isEmpty()) {
+				logger.info("loaded {} spooled messages from {}", queue.size(), spool);
+				startWorkers();
+			}
+		}
+	}
+
+	/**
+	 * Put the given message on the queue, to be sent by one of the workers.
+	 * @throws MessagingException if the message cannot be written to the spool directory
+	 */
+	public void offer(MimeMessage message) throws MessagingException {
+		if(closed) {
+			throw new IllegalStateException("mail queue is closed");
+		}
+		Envelope envelope = new Envelope(message, System.currentTimeMillis());
+		if(spool != null) {
+			spool(envelope);
+		}
+		queue.offer(envelope);
+		startWorkers();
+	}
+
+	/**
+	 * Send the given message now, on the calling thread, over one of the pooled connections.
+	 */
+	public void send(MimeMessage message) throws MessagingException {
+		Connection connection = checkout();
+		try {
+			send(connection, new Envelope(message, System.currentTimeMillis()));
+		} catch(MessagingException e) {
+			close(connection);
+			connection = null;
+			throw e;
+		} finally {
+			if(connection != null) {
+				checkin(connection);
+			}
+		}
+	}
+
+	private void send(Connection connection, Envelope envelope) throws MessagingException {
+		long start = System.nanoTime();
+		connection.transport.sendMessage(envelope.message, envelope.message.getAllRecipients());
+		connection.sent++;
+		sendTime.addAndGet((System.nanoTime() - start) / 1000000);
+		sendCount.incrementAndGet();
+	}
+
+	private void sent(Envelope envelope) {
+		long wait = System.currentTimeMillis() - envelope.queued;
+		latency.addAndGet(wait);
+		for(long max = maxLatency.get(); wait > max && !maxLatency.compareAndSet(max, wait); max = maxLatency.get()) {
+			// try again
+		}
+		sentCount.incrementAndGet();
+		if(envelope.file != null) {
+			if(!envelope.file.delete()) {
+				logger.warn("could not delete spooled message {}", envelope.file);
+			}
+			spooled.decrementAndGet();
+		}
+	}
+
+	private void spool(Envelope envelope) throws MessagingException {
+		String name = envelope.queued + "-" + spoolCount.incrementAndGet();
+		File tmp = new File(spool, name + ".tmp");
+		File file = new File(spool, name + ".eml");
+		try {
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+			try {
+				envelope.message.writeTo(out);
+			} finally {
+				out.close();
+			}
+		} catch(IOException e) {
+			tmp.delete();
+			throw new MessagingException("could not spool message to " + file, e);
+		}
+		if(!tmp.renameTo(file)) {
+			tmp.delete();
+			throw new MessagingException("could not spool message to " + file);
+		}
+		envelope.file = file;
+		spooled.incrementAndGet();
+	}
+
+	private void startWorkers() {
+		synchronized(workers) {
+			while(!closed && workers.size() < threads) {
+				Worker worker = new Worker(workers.size() + 1);
+				workers.add(worker);
+				worker.start();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MailQueue {" + protocol + "://" + host + ", queued: " + getQueueSize() + ", sent: " + getSentCount() +
+				", failed: " + getFailedCount() + ", retried: " + getRetryCount() + ", connections: " + getOpenConnections() +
+				", latency: " + getAverageLatency() + "ms (max " + getMaxLatency() + "ms), send: " + getAverageSendTime() + "ms}";
+	}
+
+}
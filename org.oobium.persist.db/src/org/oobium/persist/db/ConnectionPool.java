@@ -4,7 +4,7 @@
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Contributors:
  *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
  ******************************************************************************/
@@ -12,14 +12,25 @@ package org.oobium.persist.db;
 
 import static org.oobium.utils.coercion.TypeCoercer.coerce;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
@@ -27,173 +38,457 @@ import javax.sql.ConnectionPoolDataSource;
 import javax.sql.PooledConnection;
 
 import org.oobium.logging.Logger;
+import org.oobium.persist.db.internal.StatementCache;
+import org.oobium.utils.Config.Mode;
 
+/**
+ * A pool of PooledConnections, configured with the following properties (times are in seconds):
+ * <ul>
+ *   <li><b>maxConnections</b>: the maximum number of connections that can be checked out at one time (default 10)</li>
+ *   <li><b>timeout</b>: how long to wait for a connection before giving up (default 30)</li>
+ *   <li><b>minIdle</b>: the number of idle connections the reaper tries to keep open (default 0)</li>
+ *   <li><b>maxIdleTime</b>: how long a connection may sit idle before it is closed (default 600; 0 to never close)</li>
+ *   <li><b>maxLifetime</b>: how long a connection may be used before it is closed and replaced (default 1800; 0 for no limit)</li>
+ *   <li><b>validationInterval</b>: how long a connection may be idle before it is validated on checkout (default 5)</li>
+ *   <li><b>leakThreshold</b>: how long a connection may be checked out before a warning, with the stack trace of
+ *   the checkout, is logged (default 30 in DEV mode, 0 - disabled - otherwise)</li>
+ *   <li><b>reapInterval</b>: how often idle, expired and leaked connections are looked for (default 30)</li>
+ *   <li><b>statementCacheSize</b>: the number of prepared statements cached for each connection (default 64; 0 to disable)</li>
+ * </ul>
+ * <p>Idle connections are kept on a lock-free stack, so the most recently used connection is handed out first
+ * and the rest are left to go idle and be reaped. The number of checked out connections is bounded by a
+ * (non-fair) Semaphore.</p>
+ * <p>Each pooled connection keeps a single logical connection open for its whole life; each checkout gets a
+ * Connection that delegates to it, and that checks it back in when closed (rolling back anything left uncommitted).
+ * So the statements prepared on it, and cached in its {@link #getStatementCache(Connection) StatementCache},
+ * survive from one checkout to the next; they are closed when the pooled connection is.</p>
+ */
 public class ConnectionPool {
 
+	private static final int IDLE = 0;
+	private static final int RESERVED = 1; // popped off the stack and being validated
+	private static final int IN_USE = 2;
+	private static final int REMOVED = 3;
+
+	private static ScheduledExecutorService reaper;
+	private static int reaperUsers;
+
+	private static synchronized ScheduledExecutorService acquireReaper() {
+		if(reaper == null) {
+			reaper = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "oobium-connection-reaper");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		reaperUsers++;
+		return reaper;
+	}
+
+	/**
+	 * @return the cache of prepared statements of the given connection, which must have been checked out of a
+	 * ConnectionPool (and not yet closed); null if it was not, or if the pool does not cache statements
+	 */
+	public static StatementCache getStatementCache(Connection connection) {
+		if(connection != null && Proxy.isProxyClass(connection.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(connection);
+			if(handler instanceof Checkout) {
+				return ((Checkout) handler).getStatementCache();
+			}
+		}
+		return null;
+	}
+
+	private static synchronized void releaseReaper() {
+		if(--reaperUsers <= 0 && reaper != null) {
+			reaper.shutdown();
+			reaper = null;
+			reaperUsers = 0;
+		}
+	}
+
+	private class Entry implements ConnectionEventListener {
+
+		final PooledConnection pc;
+		final long created;
+		final AtomicInteger state;
+		volatile long lastUsed;
+		volatile long checkedOut;
+		volatile Throwable checkoutTrace;
+		volatile boolean leakReported;
+		volatile Connection connection; // the logical connection, kept open across checkouts
+		StatementCache statements; // only used by the thread that has the entry checked out
+
+		Entry(PooledConnection pc, long now) {
+			this.pc = pc;
+			this.created = now;
+			this.lastUsed = now;
+			this.state = new AtomicInteger(RESERVED);
+			pc.addConnectionEventListener(this);
+		}
+
+		void closeStatements() {
+			if(statements != null) {
+				statements.close();
+				statements = null;
+			}
+		}
+
+		@Override
+		public void connectionClosed(ConnectionEvent event) {
+			// the logical connection was closed out from under its checkout: it is opened again on the next one
+		}
+
+		@Override
+		public void connectionErrorOccurred(ConnectionEvent event) {
+			destroy(this);
+		}
+
+		boolean isExpired(long now) {
+			return maxLifetime > 0 && (now - created) > maxLifetime;
+		}
+
+		/**
+		 * @return the logical connection, opening it (and dropping the statements of the last one) if it is not open
+		 */
+		Connection open() throws SQLException {
+			Connection connection = this.connection;
+			if(connection == null || connection.isClosed()) {
+				closeStatements();
+				this.connection = connection = pc.getConnection();
+			}
+			return connection;
+		}
+
+	}
+
+	/**
+	 * The Connection handed out for a single checkout of an entry: delegates to the entry's logical connection,
+	 * until it is closed - which checks the entry back in, rather than closing the logical connection.
+	 */
+	private class Checkout implements InvocationHandler {
+
+		final Entry entry;
+		volatile boolean closed;
+
+		Checkout(Entry entry) {
+			this.entry = entry;
+		}
+
+		StatementCache getStatementCache() {
+			if(closed || statementCacheSize < 1) {
+				return null;
+			}
+			if(entry.statements == null) {
+				entry.statements = new StatementCache(entry.connection, statementCacheSize);
+			}
+			return entry.statements;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if(args == null) {
+				if("close".equals(name)) {
+					if(!closed) {
+						closed = true;
+						release(entry);
+					}
+					return null;
+				}
+				if("isClosed".equals(name)) {
+					return closed || entry.connection.isClosed();
+				}
+				if("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				}
+				if("toString".equals(name)) {
+					return String.valueOf(entry.connection);
+				}
+			} else if(args.length == 1 && "equals".equals(name)) {
+				return proxy == args[0];
+			}
+			if(closed) {
+				throw new SQLException("connection is closed");
+			}
+			try {
+				return method.invoke(entry.connection, args);
+			} catch(InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+	}
+
+	private static class Node {
+		final Entry entry;
+		Node next;
+		Node(Entry entry) {
+			this.entry = entry;
+		}
+	}
+
+
 	protected String client;
 	protected Logger logger;
 	private ConnectionPoolDataSource ds;
-	private Set<PooledConnection> connections;
-	private Stack<PooledConnection> pool;
-	private Semaphore semaphore;
-	private int timeout; // in seconds
-	private ConnectionEventListener connectionListener;
-
-	private boolean skipValidityCheck;
-	
+	private volatile boolean disposed;
+
+	private final Set<Entry> entries;
+	private final AtomicReference<Node> idle; // the top of the lock-free stack of idle connections
+	private final Semaphore semaphore;
+	private final int maxConnections;
+	private final int timeout; // in seconds
+	private final int minIdle;
+	private final long maxIdleTime; // the rest are in milliseconds
+	private final long maxLifetime;
+	private final long validationInterval;
+	private final long leakThreshold;
+	private final int statementCacheSize;
+
+	private final boolean skipValidityCheck;
+	private ScheduledFuture<?> reapTask;
+
+	private final AtomicInteger active;
+	private final AtomicLong checkouts;
+	private final AtomicLong timeouts;
+	private final AtomicLong waitNanos;
+	private final AtomicLong created;
+	private final AtomicLong destroyed;
+	private final AtomicLong leaks;
+
 	public ConnectionPool(String client, Map<String, Object> properties, ConnectionPoolDataSource dataSource, Logger logger) {
 		this.client = client;
 		this.logger = logger;
 		this.ds = dataSource;
 
-		if(dataSource.getClass().getCanonicalName().contains(".postgresql.")) {
-			skipValidityCheck = true;
-		}
-		
+		skipValidityCheck = dataSource.getClass().getCanonicalName().contains(".postgresql.");
+
 		int maxConnections = coerce(properties.get("maxConnections")).to(int.class);
-		if(maxConnections < 1) {
-			maxConnections = 10;
-		}
+		this.maxConnections = (maxConnections < 1) ? 10 : maxConnections;
 
-		this.connections = new HashSet<PooledConnection>();
-		
 		int timeout = coerce(properties.get("timeout")).to(int.class);
 		this.timeout = (timeout < 1) ? 30 : timeout;
-		
-		pool = new Stack<PooledConnection>();
-		semaphore = new Semaphore(maxConnections, true);
-		
-		connectionListener = new ConnectionEventListener() {
-			@Override
-			public void connectionClosed(ConnectionEvent event) {
-				PooledConnection pc = (PooledConnection) event.getSource();
-				addConnection(pc);
-			}
-			@Override
-			public void connectionErrorOccurred(ConnectionEvent event) {
-				PooledConnection pc = (PooledConnection) event.getSource();
-				disposeConnection(pc);
-			}
-		};
-	}
-	
-	/**
-	 * adds a connection back to the pool (also stops listening to it)
-	 * @param connection
-	 */
-	private synchronized void addConnection(PooledConnection connection) {
-		connection.removeConnectionEventListener(connectionListener);
+
+		this.minIdle = Math.min(this.maxConnections, coerce(properties.get("minIdle")).from(0));
+		this.maxIdleTime = coerce(properties.get("maxIdleTime")).from(600) * 1000L;
+		this.maxLifetime = coerce(properties.get("maxLifetime")).from(1800) * 1000L;
+		this.validationInterval = coerce(properties.get("validationInterval")).from(5) * 1000L;
+		this.leakThreshold = coerce(properties.get("leakThreshold")).from(Mode.isDEV() ? 30 : 0) * 1000L;
+		this.statementCacheSize = coerce(properties.get("statementCacheSize")).from(64);
+
+		entries = Collections.newSetFromMap(new ConcurrentHashMap<Entry, Boolean>());
+		idle = new AtomicReference<Node>();
+		semaphore = new Semaphore(this.maxConnections);
+
+		active = new AtomicInteger();
+		checkouts = new AtomicLong();
+		timeouts = new AtomicLong();
+		waitNanos = new AtomicLong();
+		created = new AtomicLong();
+		destroyed = new AtomicLong();
+		leaks = new AtomicLong();
+
+		int reapInterval = coerce(properties.get("reapInterval")).from(30);
+		if(reapInterval > 0) {
+			reapTask = acquireReaper().scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					reap();
+				}
+			}, reapInterval, reapInterval, TimeUnit.SECONDS);
+		}
+	}
+
+	private void push(Entry entry) {
+		Node node = new Node(entry);
+		do {
+			node.next = idle.get();
+		} while(!idle.compareAndSet(node.next, node));
+	}
+
+	/**
+	 * @return an idle entry, now RESERVED, or null if there are no idle entries
+	 */
+	private Entry pop() {
+		while(true) {
+			Node node = idle.get();
+			if(node == null) {
+				return null;
+			}
+			if(idle.compareAndSet(node, node.next)) {
+				if(node.entry.state.compareAndSet(IDLE, RESERVED)) {
+					return node.entry;
+				}
+				// else, it was removed by the reaper: discard it
+			}
+		}
+	}
+
+	/**
+	 * returns a connection to the pool
+	 */
+	private void checkin(Entry entry) {
+		if(!entry.state.compareAndSet(IN_USE, IDLE)) {
+			return; // already removed, or not checked out (closed during validation)
+		}
+		long now = System.currentTimeMillis();
+		entry.lastUsed = now;
+		entry.checkoutTrace = null;
+		active.decrementAndGet();
+		if(disposed || entry.isExpired(now)) {
+			if(entry.state.compareAndSet(IDLE, REMOVED)) {
+				close(entry);
+			}
+		} else {
+			push(entry);
+		}
 		semaphore.release();
-		pool.push(connection);
 	}
 
 	/**
 	 * closes and removes the connection
 	 */
-	private synchronized void disposeConnection(PooledConnection connection) {
-		connection.removeConnectionEventListener(connectionListener);
-		connections.remove(connection);
-		semaphore.release();
+	private void destroy(Entry entry) {
+		int previous = entry.state.getAndSet(REMOVED);
+		if(previous != REMOVED) {
+			if(previous == IN_USE) {
+				active.decrementAndGet();
+				semaphore.release();
+			}
+			close(entry);
+		}
+	}
+
+	private void close(Entry entry) {
+		entry.pc.removeConnectionEventListener(entry);
+		entries.remove(entry);
+		destroyed.incrementAndGet();
+		entry.closeStatements();
 		try {
-			connection.close();
+			entry.pc.close();
 		} catch(SQLException e) {
-			logger.debug("could not dispose connection");
+			Logger logger = this.logger;
+			if(logger != null) {
+				logger.debug("could not close connection");
+			}
 		}
 	}
-	
+
 	/**
 	 * Closes all connections and clears the pool.
 	 */
-	public synchronized void close() {
-		if(client != null) { // in case it has been disposed
-			if(!connections.isEmpty()) {
-				for(PooledConnection connection : connections) {
-					try {
-						connection.close();
-					} catch(SQLException e) {
-						logger.debug("could not close connection");
-					}
-				}
-			}
-			semaphore.release(pool.size());
-			connections.clear();
-			pool.clear();
+	public void close() {
+		if(!disposed) {
+			closeAll();
 		}
 	}
 
+	private void closeAll() {
+		idle.set(null);
+		for(Entry entry : entries) {
+			destroy(entry);
+		}
+	}
+
+	private Entry createEntry() throws SQLException {
+		Entry entry = new Entry(ds.getPooledConnection(), System.currentTimeMillis());
+		entries.add(entry);
+		created.incrementAndGet();
+		return entry;
+	}
+
 	public boolean isDisposed() {
-		return client == null;
+		return disposed;
 	}
-	
+
 	/**
-	 * Closes all connections, clears the pool, and nulls out all fields.
+	 * Closes all connections, clears the pool, and stops its reaper.
 	 */
-	public synchronized void dispose() {
-		if(client != null) { // allow multiple calls
-			if(!connections.isEmpty()) {
-				for(PooledConnection connection : connections) {
-					try {
-						connection.close();
-					} catch(SQLException e) {
-						logger.debug("could not close connection during dispose");
-					}
-				}
+	public void dispose() {
+		synchronized(this) {
+			if(disposed) { // allow multiple calls
+				return;
 			}
-			connections.clear();
-			pool.clear();
-			
-			client = null;
-			logger = null;
-			ds = null;
-			connections = null;
-			pool = null;
-			semaphore = null;
-			connectionListener = null;
+			disposed = true;
 		}
-	}
-
-	private synchronized Connection doGetConnection() throws SQLException {
-		if(isDisposed()) {
-			throw new IllegalStateException("ConnectionPool is disposed");
+		if(reapTask != null) {
+			reapTask.cancel(false);
+			reapTask = null;
+			releaseReaper();
 		}
-
-		PooledConnection pc;
-		if(pool.isEmpty()) {
-			pc = ds.getPooledConnection();
-			connections.add(pc);
-		} else {
-			pc = pool.pop();
+		closeAll();
+		if(logger.isLoggingDebug()) {
+			logger.debug(toString());
 		}
-		pc.addConnectionEventListener(connectionListener);
-		try {
-			Connection connection = pc.getConnection();
-			if(skipValidityCheck || connection.isValid(1)) {
-				return connection;
+		client = null;
+		ds = null;
+	}
+
+	private Connection doGetConnection() throws SQLException {
+		while(true) {
+			if(disposed) {
+				throw new IllegalStateException("ConnectionPool is disposed");
 			}
-			// fall through
-		} catch(SQLException e) {
-			if(logger.isLoggingDebug()) {
-				logger.debug(e);
-			} else {
-				logger.info(e.getLocalizedMessage());
+			long now = System.currentTimeMillis();
+			Entry entry = pop();
+			boolean fresh = (entry == null);
+			if(fresh) {
+				entry = createEntry();
+			} else if(entry.isExpired(now)) {
+				destroy(entry);
+				continue;
+			}
+			try {
+				Connection connection = entry.open();
+				if(fresh || skipValidityCheck || (now - entry.lastUsed) < validationInterval || connection.isValid(1)) {
+					entry.checkedOut = now;
+					entry.leakReported = false;
+					if(leakThreshold > 0) {
+						entry.checkoutTrace = new Throwable("connection checked out by " + Thread.currentThread().getName());
+					}
+					entry.state.set(IN_USE);
+					active.incrementAndGet();
+					checkouts.incrementAndGet();
+					return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new Checkout(entry));
+				}
+				// fall through
+			} catch(SQLException e) {
+				if(logger.isLoggingDebug()) {
+					logger.debug(e);
+				} else {
+					logger.info(e.getLocalizedMessage());
+				}
+				if(fresh) {
+					destroy(entry);
+					throw e;
+				}
+				// fall through
 			}
-			// fall through
+			destroy(entry);
 		}
-		disposeConnection(pc);
-		return doGetConnection();
 	}
-	
+
 	public Connection getConnection() throws SQLException {
-		if(pool == null) {
+		if(disposed) {
 			throw new IllegalStateException("ConnectionPool is disposed");
 		}
 
+		long start = System.nanoTime();
 		try {
 			if(!semaphore.tryAcquire(timeout, TimeUnit.SECONDS)) {
+				timeouts.incrementAndGet();
+				logger.warn("timed out trying to obtain a database connection: {}", this);
 				throw new SQLException("timed out trying to obtain a database connection");
 			}
 		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
 			throw new SQLException("Interupted while waiting for a database connection");
+		} finally {
+			waitNanos.addAndGet(System.nanoTime() - start);
 		}
 
 		boolean failed = true;
@@ -208,8 +503,139 @@ public class ConnectionPool {
 		}
 	}
 
+	/**
+	 * @return the number of connections currently checked out
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	/**
+	 * @return the total number of connections checked out since the pool was created
+	 */
+	public long getCheckoutCount() {
+		return checkouts.get();
+	}
+
+	public long getCreatedCount() {
+		return created.get();
+	}
+
 	protected ConnectionPoolDataSource getDataSource() {
 		return ds;
 	}
-	
+
+	public long getDestroyedCount() {
+		return destroyed.get();
+	}
+
+	/**
+	 * @return the number of open connections that are not checked out
+	 */
+	public int getIdleCount() {
+		return Math.max(0, entries.size() - active.get());
+	}
+
+	/**
+	 * @return the number of times a connection was found to be checked out for longer than the leak threshold
+	 */
+	public long getLeakCount() {
+		return leaks.get();
+	}
+
+	/**
+	 * @return the number of times a request for a connection timed out
+	 */
+	public long getTimeoutCount() {
+		return timeouts.get();
+	}
+
+	/**
+	 * @return the average time, in milliseconds, spent waiting for a connection
+	 */
+	public double getAverageWaitTime() {
+		long count = checkouts.get() + timeouts.get();
+		return (count == 0) ? 0 : (waitNanos.get() / (double) count / 1000000);
+	}
+
+	/**
+	 * @return the approximate number of threads waiting for a connection
+	 */
+	public int getWaitingCount() {
+		return semaphore.getQueueLength();
+	}
+
+	/**
+	 * Close connections that have been idle too long (leaving at least minIdle), or have passed their maximum
+	 * lifetime, warn about connections that have been checked out longer than the leak threshold, and open
+	 * new connections until there are at least minIdle.
+	 */
+	void reap() {
+		if(disposed) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		int idleCount = getIdleCount();
+		for(Entry entry : entries) {
+			int state = entry.state.get();
+			if(state == IDLE) {
+				boolean expired = entry.isExpired(now);
+				if(expired || (maxIdleTime > 0 && idleCount > minIdle && (now - entry.lastUsed) > maxIdleTime)) {
+					if(entry.state.compareAndSet(IDLE, REMOVED)) {
+						close(entry);
+						idleCount--;
+					}
+				}
+			}
+			else if(state == IN_USE && leakThreshold > 0 && !entry.leakReported) {
+				long held = now - entry.checkedOut;
+				Throwable trace = entry.checkoutTrace;
+				if(held > leakThreshold && trace != null) {
+					entry.leakReported = true;
+					leaks.incrementAndGet();
+					logger.warn("possible connection leak: connection has been checked out for {}ms", trace, held);
+				}
+			}
+		}
+		while(!disposed && getIdleCount() < minIdle && entries.size() < maxConnections) {
+			try {
+				Entry entry = createEntry();
+				entry.state.set(IDLE);
+				push(entry);
+			} catch(SQLException e) {
+				logger.warn("could not open idle connection: {}", e.getLocalizedMessage());
+				break;
+			}
+		}
+		if(logger.isLoggingTrace()) {
+			logger.trace(toString());
+		}
+	}
+
+	/**
+	 * Roll back anything left uncommitted by a checkout and check its entry back in; destroy the entry if that fails.
+	 */
+	private void release(Entry entry) {
+		try {
+			Connection connection = entry.connection;
+			if(!connection.isClosed() && !connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+		} catch(SQLException e) {
+			logger.debug("could not reset connection: {}", e.getLocalizedMessage());
+			destroy(entry);
+			return;
+		}
+		checkin(entry);
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPool {client: " + client + ", active: " + active.get() + ", idle: " + getIdleCount() + ", max: " + maxConnections +
+				", waiting: " + getWaitingCount() + ", checkouts: " + checkouts.get() + ", timeouts: " + timeouts.get() +
+				", avgWait: " + String.format("%.2f", getAverageWaitTime()) + "ms, created: " + created.get() +
+				", destroyed: " + destroyed.get() + ", leaks: " + leaks.get() + "}";
+	}
+
 }
@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,12 +35,16 @@ import org.oobium.logging.LogProvider;
 import org.oobium.logging.Logger;
 import org.oobium.persist.Model;
 import org.oobium.persist.ModelAdapter;
+import org.oobium.persist.ModelCache;
+import org.oobium.persist.ModelCursor;
 import org.oobium.persist.PersistClient;
 import org.oobium.persist.PersistService;
 import org.oobium.persist.ServiceInfo;
 import org.oobium.persist.db.internal.Conversion;
 import org.oobium.persist.db.internal.DbPersistor;
 import org.oobium.persist.db.internal.LoggingConnection;
+import org.oobium.persist.db.internal.SqlTranslation;
+import org.oobium.persist.db.internal.StatementCache;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
@@ -53,6 +59,8 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 	private static final ThreadLocal<String> threadClient = new ThreadLocal<String>();
 	private static final ThreadLocal<Connection> threadConnection = new ThreadLocal<Connection>();
 	private static final ThreadLocal<Boolean> threadAutoCommit = new ThreadLocal<Boolean>();
+	private static final ThreadLocal<StatementCache> threadStatements = new ThreadLocal<StatementCache>();
+	private static final ThreadLocal<List<Model>> threadExpired = new ThreadLocal<List<Model>>();
 
 	private static final int CREATE = 0;
 	private static final int DESTROY = 1;
@@ -77,6 +85,8 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 
 	private final ReadWriteLock lock;
 
+	private int fetchSize = Integer.getInteger("org.oobium.persist.db.fetchSize", 100);
+
 	private static String logPath;
 	private static FileWriter logWriter;
 
@@ -158,6 +168,7 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 	
 	@Override
 	public void closeSession() {
+		releaseStatements();
 		Connection connection = threadConnection.get();
 		if(connection != null) {
 			boolean closed;
@@ -174,6 +185,7 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 				} catch(Exception e) {
 					// discard
 				}
+				threadExpired.set(null);
 				try {
 					connection.close();
 				} catch(Exception e) {
@@ -190,6 +202,7 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 		Connection connection = getConnection(false);
 		if(connection != null) {
 			connection.commit();
+			expireCommitted();
 		}
 	}
 	
@@ -204,7 +217,7 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 			Connection connection = getConnection();
 			int dbType = getDbType(connection);
 			Conversion conversion = Conversion.run(dbType, clazz, query, values);
-			DbPersistor persistor = new DbPersistor(connection, dbType);
+			DbPersistor persistor = getPersistor(connection, dbType);
 			return persistor.count(clazz, conversion.getSql(), conversion.getValues());
 		}
 		return count(clazz);
@@ -219,7 +232,7 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 			query = conversion.getSql();
 			values = conversion.getValues();
 		}
-		DbPersistor persistor = new DbPersistor(connection, dbType);
+		DbPersistor persistor = getPersistor(connection, dbType);
 		return persistor.count(clazz, query, values);
 	}
 
@@ -254,6 +267,37 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 		handleCrud(DESTROY, models);
 	}
 	
+	private <T extends Model> T doFind(Class<T> clazz, String query, Object...values) throws Exception {
+		Connection connection = getConnection();
+		int dbType = getDbType(connection);
+		if(isMapQuery(query)) {
+			Conversion conversion = Conversion.run(dbType, clazz, query, values);
+			query = conversion.getSql();
+			values = conversion.getValues();
+		}
+		DbPersistor persistor = getPersistor(connection, dbType);
+		return persistor.find(clazz, query, values);
+	}
+
+	private <T extends Model> List<T> doFindAll(Class<T> clazz, String query, Object...values) throws Exception {
+		Connection connection = getConnection();
+		int dbType = getDbType(connection);
+		if(isMapQuery(query)) {
+			Conversion conversion = Conversion.run(dbType, clazz, query, values);
+			query = conversion.getSql();
+			values = conversion.getValues();
+		}
+		DbPersistor persistor = getPersistor(connection, dbType);
+		return persistor.findAll(clazz, query, values);
+	}
+
+	private <T extends Model> T doFindById(Class<T> clazz, Object id) throws Exception {
+		Connection connection = getConnection();
+		// TODO always an int for now?
+		DbPersistor persistor = getPersistor(connection);
+		return persistor.find(clazz, coerce(id).to(int.class));
+	}
+
 	private void doRemoveDatabase(String client) {
 		Database database = databases.get(client);
 		if(database != null) {
@@ -276,34 +320,46 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 
 	public List<Map<String, Object>> executeQuery(String sql, Object...values) throws SQLException {
 		Connection connection = getConnection();
-		DbPersistor persistor = new DbPersistor(connection);
+		DbPersistor persistor = getPersistor(connection);
 		return persistor.executeQuery(sql, values);
 	}
 	
 	public List<List<Object>> executeQueryLists(String sql, Object...values) throws SQLException {
 		Connection connection = getConnection();
-		DbPersistor persistor = new DbPersistor(connection);
+		DbPersistor persistor = getPersistor(connection);
 		return persistor.executeQueryLists(sql, values);
 	}
 
 	public Object executeQueryValue(String sql, Object...values) throws SQLException {
 		Connection connection = getConnection();
-		DbPersistor persistor = new DbPersistor(connection);
+		DbPersistor persistor = getPersistor(connection);
 		return persistor.executeQueryValue(sql, values);
 	}
 	
 	public List<Object> executeQueryValues(String sql, Object...values) throws SQLException {
 		Connection connection = getConnection();
-		DbPersistor persistor = new DbPersistor(connection);
+		DbPersistor persistor = getPersistor(connection);
 		return persistor.executeQueryValues(sql, values);
 	}
 	
 	public int executeUpdate(String sql, Object... values) throws SQLException {
 		Connection connection = getConnection();
-		DbPersistor persistor = new DbPersistor(connection);
+		DbPersistor persistor = getPersistor(connection);
 		return persistor.executeUpdate(sql, values);
 	}
 	
+	/**
+	 * Expire, again, the models changed by the transaction that was just committed: they were expired when
+	 * they were changed, but until the commit other threads could still load (and cache) their old rows.
+	 */
+	private void expireCommitted() {
+		List<Model> models = threadExpired.get();
+		if(models != null) {
+			threadExpired.set(null);
+			ModelCache.expire(models.toArray(new Model[models.size()]));
+		}
+	}
+	
 	@Override
 	public <T extends Model> T find(Class<T> clazz, Map<String, Object> query, Object... values) throws Exception {
 		return findByMapQuery(clazz, query, values, true);
@@ -311,15 +367,21 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 	
 	@Override
 	public <T extends Model> T find(Class<T> clazz, String query, Object...values) throws Exception {
-		Connection connection = getConnection();
-		int dbType = getDbType(connection);
-		if(isMapQuery(query)) {
-			Conversion conversion = Conversion.run(dbType, clazz, query, values);
-			query = conversion.getSql();
-			values = conversion.getValues();
+		if(!ModelCache.isCached(clazz)) {
+			return doFind(clazz, query, values);
 		}
-		DbPersistor persistor = new DbPersistor(connection, dbType);
-		return persistor.find(clazz, query, values);
+		String key = "find:" + query; // not the same result as findAll(clazz, query)
+		List<T> cached = ModelCache.getByQuery(clazz, key, values);
+		if(cached != null) {
+			return cached.isEmpty() ? null : cached.get(0);
+		}
+		long stamp = ModelCache.getStamp(clazz);
+		T model = doFind(clazz, query, values);
+		if(getAutoCommit()) {
+			List<T> list = (model != null) ? Collections.singletonList(model) : Collections.<T>emptyList();
+			ModelCache.put(clazz, key, values, list, stamp);
+		}
+		return model;
 	}
 
 	@Override
@@ -334,6 +396,28 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 	
 	@Override
 	public <T extends Model> List<T> findAll(Class<T> clazz, String query, Object...values) throws Exception {
+		if(!ModelCache.isCached(clazz)) {
+			return doFindAll(clazz, query, values);
+		}
+		List<T> models = ModelCache.getByQuery(clazz, query, values);
+		if(models == null) {
+			long stamp = ModelCache.getStamp(clazz);
+			models = doFindAll(clazz, query, values);
+			if(getAutoCommit()) {
+				ModelCache.put(clazz, query, values, models, stamp);
+			}
+		}
+		return models;
+	}
+
+	/**
+	 * Find the models as they are iterated over, reading (and creating) them in chunks of the fetch size.
+	 * The returned cursor uses this thread's connection, so it must be iterated to the end, or closed,
+	 * before the session is closed.
+	 * @see #setFetchSize(int)
+	 */
+	@Override
+	public <T extends Model> ModelCursor<T> findEach(Class<T> clazz, String query, Object...values) throws Exception {
 		Connection connection = getConnection();
 		int dbType = getDbType(connection);
 		if(isMapQuery(query)) {
@@ -341,16 +425,24 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 			query = conversion.getSql();
 			values = conversion.getValues();
 		}
-		DbPersistor persistor = new DbPersistor(connection, dbType);
-		return persistor.findAll(clazz, query, values);
+		DbPersistor persistor = getPersistor(connection, dbType);
+		return persistor.findEach(clazz, fetchSize, query, values);
 	}
 	
 	@Override
 	public <T extends Model> T findById(Class<T> clazz, Object id) throws Exception {
-		Connection connection = getConnection();
-		// TODO always an int for now?
-		DbPersistor persistor = new DbPersistor(connection);
-		return persistor.find(clazz, coerce(id).to(int.class));
+		if(!ModelCache.isCached(clazz)) {
+			return doFindById(clazz, id);
+		}
+		T model = ModelCache.getById(clazz, id);
+		if(model == null) {
+			long stamp = ModelCache.getStamp(clazz);
+			model = doFindById(clazz, id);
+			if(getAutoCommit()) {
+				ModelCache.put(model, stamp);
+			}
+		}
+		return model;
 	}
 
 	@Override
@@ -391,7 +483,7 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 				Connection connection = getConnection();
 				int dbType = getDbType(connection);
 				Conversion conversion = Conversion.run(dbType, clazz, query, values);
-				DbPersistor persistor = new DbPersistor(connection, dbType);
+				DbPersistor persistor = getPersistor(connection, dbType);
 				if(all) {
 					return (E) persistor.findAll(clazz, conversion.getSql(), conversion.getValues());
 				} else {
@@ -422,13 +514,19 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 		try {
 			Connection connection = threadConnection.get();
 			if(connection != null && connection.isClosed()) {
+				releaseStatements();
 				connection = null;
 			}
 			if(connection == null && create) {
 				Database db = getDatabase();
 				connection = db.getConnection();
 				connection.setAutoCommit(getAutoCommit());
-				connection = checkLoggingConnection(connection);
+				StatementCache statements = ConnectionPool.getStatementCache(connection);
+				Connection logging = checkLoggingConnection(connection);
+				if(logging == connection) {
+					threadStatements.set(statements);
+				} // else, statements prepared on the pooled connection would not be logged
+				connection = logging;
 				threadConnection.set(connection);
 			}
 			return connection;
@@ -461,6 +559,18 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 		}
 	}
 	
+	private DbPersistor getPersistor(Connection connection) {
+		return getPersistor(connection, getDbType(connection));
+	}
+	
+	private DbPersistor getPersistor(Connection connection, int dbType) {
+		return new DbPersistor(connection, dbType, threadStatements.get());
+	}
+	
+	public int getFetchSize() {
+		return fetchSize;
+	}
+	
 	@Override
 	public ServiceInfo getInfo() {
 		return info;
@@ -480,7 +590,7 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 		}
 		
 		Connection connection = getConnection();
-		DbPersistor persistor = new DbPersistor(connection);
+		DbPersistor persistor = getPersistor(connection);
 		if(task == RETRIEVE) {
 			persistor.retrieve(models);
 		} else {
@@ -499,10 +609,18 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 				}
 				if(getAutoCommit()) {
 					connection.commit();
+				} else {
+					List<Model> expired = threadExpired.get();
+					if(expired == null) {
+						threadExpired.set(expired = new ArrayList<Model>());
+					}
+					expired.addAll(Arrays.asList(models));
 				}
+				ModelCache.expire(models);
 			} catch(Exception e) {
 				connection.rollback();
 				threadAutoCommit.set(null);
+				threadExpired.set(null);
 				logger.warn("transaction was rolledback", e);
 				if(e instanceof SQLException) {
 					throw (SQLException) e;
@@ -536,6 +654,20 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 		threadAutoCommit.set(true);
 	}
 	
+	/**
+	 * Let go of the statement cache of this thread's connection; it stays open, with the pooled connection.
+	 */
+	private void releaseStatements() {
+		StatementCache statements = threadStatements.get();
+		if(statements != null) {
+			if(logger.isLoggingDebug()) {
+				logger.debug(statements.toString());
+				logger.debug(SqlTranslation.getStatistics());
+			}
+			threadStatements.set(null);
+		}
+	}
+	
 	private void removeDatabase(String client) {
 		lock.writeLock().lock();
 		try {
@@ -580,7 +712,7 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 			retrieve(model);
 		} else {
 			Connection connection = getConnection();
-			DbPersistor persistor = new DbPersistor(connection);
+			DbPersistor persistor = getPersistor(connection);
 			Matcher m = includePattern.matcher(options);
 			if(m.matches()) {
 				persistor.retrieve(model, options.substring(m.end(1)).trim());
@@ -591,13 +723,49 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 		}
 	}
 
+	/**
+	 * Retrieve all or parts of the given models, as specified with the given options parameter, in the same way
+	 * as {@link #retrieve(Model, String)} - but with a single query for each class of model, rather than one for each model.
+	 * @param models the models upon which to perform the retrieval; cannot be null
+	 * @param options a String or null
+	 */
+	@Override
+	public void retrieve(Model[] models, String options) throws Exception {
+		if(options == null || options.length() == 0) {
+			retrieve(models);
+		} else if(models.length == 1) {
+			retrieve(models[0], options);
+		} else if(models.length > 1) {
+			Connection connection = getConnection();
+			DbPersistor persistor = getPersistor(connection);
+			Matcher m = includePattern.matcher(options);
+			if(m.matches()) {
+				persistor.retrieve(models, options.substring(m.end(1)).trim());
+			}
+			else {
+				persistor.retrieveFields(models, options);
+			}
+		}
+	}
+
 	public void rollback() throws SQLException {
 		Connection connection = getConnection(false);
 		if(connection != null) {
 			connection.rollback();
 		}
+		threadExpired.set(null);
 	}
 
+	/**
+	 * Set the number of rows that a cursor returned by {@link #findEach(Class, String, Object...)} reads at a time.
+	 * <p>Defaults to the "org.oobium.persist.db.fetchSize" system property, or 100 if it is not set.
+	 * Note that PostgreSQL only streams results when auto-commit is off, and MySQL only
+	 * with the "useCursorFetch=true" connection property; otherwise the driver reads them all up front.</p>
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+	
 	public void setAutoCommit(boolean autoCommit) throws SQLException {
 		boolean changed = false;
 		if(getAutoCommit()) {
@@ -615,6 +783,9 @@ public abstract class DbPersistService implements BundleActivator, PersistServic
 			Connection connection = getConnection(false);
 			if(connection != null) {
 				connection.setAutoCommit(autoCommit);
+				if(autoCommit) {
+					expireCommitted(); // turning auto-commit on commits the open transaction
+				}
 			}
 		}
 	}
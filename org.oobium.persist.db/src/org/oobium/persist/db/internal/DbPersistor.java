@@ -40,9 +40,12 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -52,7 +55,9 @@ import org.oobium.logging.LogProvider;
 import org.oobium.logging.Logger;
 import org.oobium.persist.Model;
 import org.oobium.persist.ModelAdapter;
+import org.oobium.persist.ModelCursor;
 import org.oobium.persist.PersistService;
+import org.oobium.persist.QueryCounter;
 import org.oobium.persist.Relation;
 import org.oobium.persist.db.DbPersistService;
 import org.oobium.utils.SqlUtils;
@@ -67,6 +72,16 @@ public class DbPersistor {
 
 	private static final Logger logger = LogProvider.getLogger(DbPersistService.class);
 
+	/**
+	 * The maximum number of rows in a single batched INSERT or UPDATE (system property "org.oobium.persist.db.batchSize")
+	 */
+	private static final int BATCH_SIZE = Integer.getInteger("org.oobium.persist.db.batchSize", 100);
+
+	/**
+	 * The maximum number of parameters in a single statement (the lowest limit of the supported databases: PostgreSQL's)
+	 */
+	private static final int MAX_PARAMETERS = Short.MAX_VALUE;
+
 	private static String join(String starter, Object[] segments, String closer, String separator) {
 		Object[] oa = new Object[segments.length];
 		for(int i = 0; i < segments.length; i++) {
@@ -82,14 +97,23 @@ public class DbPersistor {
 
 	private final Connection connection;
 	private final int dbType;
+	private final StatementCache statements;
 	
 	public DbPersistor(Connection connection) {
 		this(connection, getDbType(connection));
 	}
 	
 	public DbPersistor(Connection connection, int dbType) {
+		this(connection, dbType, null);
+	}
+	
+	/**
+	 * @param statements the cache of the given connection's prepared statements; may be null
+	 */
+	public DbPersistor(Connection connection, int dbType, StatementCache statements) {
 		this.connection = connection;
 		this.dbType = dbType;
+		this.statements = statements;
 	}
 
 	private void addDeferredToCreate(Model model, Map<Model, List<String>> map) throws NoSuchFieldException {
@@ -149,6 +173,52 @@ public class DbPersistor {
 		}
 	}
 
+	private void appendInsert(StringBuilder sb, String table, List<Cell> cells) {
+		sb.append("INSERT INTO ").append(table).append('(');
+		for(Iterator<Cell> iter = cells.iterator(); iter.hasNext();) {
+			sb.append(safeSqlWord(dbType, iter.next().column));
+			if(iter.hasNext()) {
+				sb.append(",");
+			}
+		}
+		sb.append(") VALUES");
+	}
+
+	private void appendSet(StringBuilder sb, String table, List<Cell> cells, List<Cell> params) {
+		sb.append("UPDATE ").append(table).append(" SET ");
+		for(Iterator<Cell> iter = cells.iterator(); iter.hasNext();) {
+			Cell cell = iter.next();
+			if(isUpdatedDateTimeField(cell) && cell.value instanceof Long) {
+				sb.append(cell.column).append('=').append(cell.value);
+			} else {
+				sb.append(safeSqlWord(dbType, cell.column)).append("=?");
+				params.add(cell);
+			}
+			if(iter.hasNext()) {
+				sb.append(",");
+			}
+		}
+	}
+	
+	private void appendValues(StringBuilder sb, List<Cell> cells, List<Cell> params) {
+		sb.append('(');
+		for(Iterator<Cell> iter = cells.iterator(); iter.hasNext();) {
+			Cell cell = iter.next();
+			if(cell.isQuery) {
+				sb.append(cell.query());
+			} else if(isDateTimeField(cell) && cell.value instanceof Long) {
+				sb.append(cell.value);
+			} else {
+				sb.append("?");
+				params.add(cell);
+			}
+			if(iter.hasNext()) {
+				sb.append(",");
+			}
+		}
+		sb.append(')');
+	}
+
 	public int count(Class<? extends Model> clazz, String sql, Object... values) throws SQLException {
 		if(logger.isLoggingDebug()) {
 			logger.debug("start count: " + clazz.getCanonicalName() + join(", " + sql + " <- [", values, "]", ", "));
@@ -166,6 +236,7 @@ public class DbPersistor {
 		String query = sb.toString();
 		logger.trace(query);
 		
+		QueryCounter.increment();
 		Statement s = null;
 		ResultSet rs = null;
 		try {
@@ -190,10 +261,40 @@ public class DbPersistor {
 		return -1;
 	}
 
+	/**
+	 * Create the given models. When more than one model is given, runs of consecutive models that only
+	 * have attributes and keys to existing models are grouped by class and column shape and inserted
+	 * together (see {@link #doCreateBatch(String, List)}); all other models are created one at a time,
+	 * in their given order.
+	 */
 	public void create(Model[] models) throws SQLException, NoSuchFieldException {
+		if(models.length == 1) {
+			doCreate(models[0]);
+			return;
+		}
+		Map<String, List<Model>> batches = new LinkedHashMap<String, List<Model>>();
+		Map<Model, List<Cell>> rows = new IdentityHashMap<Model, List<Cell>>(); // a new model's hashCode changes when its id is set
+		long now = System.currentTimeMillis();
 		for(Model model : models) {
-			doCreate(model);
+			if(!model.isNew() || rows.containsKey(model)) {
+				throw new SQLException("model has already been created");
+			}
+			if(isBatchCreatable(model)) {
+				List<Cell> cells = getCreateCells(model, now);
+				String key = getBatchKey(model, cells);
+				List<Model> batch = batches.get(key);
+				if(batch == null) {
+					batches.put(key, batch = new ArrayList<Model>());
+				}
+				batch.add(model);
+				rows.put(model, cells);
+			} else {
+				// anything it depends upon may be in the pending batches: flush them first to keep the given order
+				doCreateBatches(batches, rows);
+				doCreate(model);
+			}
 		}
+		doCreateBatches(batches, rows);
 	}
 
 	private void handleDependentDelete(ModelAdapter adapter, Model model, String field) throws SQLException {
@@ -343,30 +444,9 @@ public class DbPersistor {
 
 	private int doCreate(String table, List<Cell> cells) throws SQLException {
 		StringBuilder sb = new StringBuilder();
-		sb.append("INSERT INTO ").append(table).append('(');
-		for(Iterator<Cell> iter = cells.iterator(); iter.hasNext();) {
-			sb.append(safeSqlWord(dbType, iter.next().column));
-			if(iter.hasNext()) {
-				sb.append(",");
-			}
-		}
-		sb.append(") VALUES(");
-		for(Iterator<Cell> iter = cells.iterator(); iter.hasNext();) {
-			Cell cell = iter.next();
-			if(cell.isQuery) {
-				sb.append(cell.query());
-				iter.remove();
-			} else if(isDateTimeField(cell) && cell.value instanceof Long) {
-				iter.remove();
-				sb.append(cell.value);
-			} else {
-				sb.append("?");
-			}
-			if(iter.hasNext()) {
-				sb.append(",");
-			}
-		}
-		sb.append(')');
+		appendInsert(sb, table, cells);
+		List<Cell> params = new ArrayList<Cell>();
+		appendValues(sb, cells, params);
 
 		String sql = sb.toString();
 		logger.trace(sql);
@@ -374,12 +454,8 @@ public class DbPersistor {
 		PreparedStatement ps = null;
 		ResultSet rs = null;
 		try {
-			ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-			for(int i = 0; i < cells.size(); i++) {
-				Cell cell = cells.get(i);
-				logger.trace("  {} -> {}", safeSqlWord(dbType, cell.column), cell.value);
-				setObject(ps, i + 1, cell.value, cell.type);
-			}
+			ps = prepare(sql, Statement.RETURN_GENERATED_KEYS);
+			setCellValues(ps, 0, params);
 			ps.executeUpdate();
 
 			rs = ps.getGeneratedKeys();
@@ -387,13 +463,125 @@ public class DbPersistor {
 			logger.trace("  {} <- {}", ID, id);
 			return id;
 		} finally {
+			if(rs != null) {
+				rs.close();
+			}
 			if(ps != null) {
+				release(ps);
+			}
+		}
+	}
+	
+	/**
+	 * Insert a batch of rows, all with the same columns, into the given table and return their generated ids, in order.
+	 * <p>MySQL and PostgreSQL insert up to {@link #BATCH_SIZE} rows with each multi-row INSERT statement, and both return all of the
+	 * generated keys of that statement. Derby only returns a generated key for a single row insert, so its rows are inserted
+	 * one at a time, but with a single PreparedStatement.</p>
+	 */
+	private int[] doCreateBatch(String table, List<List<Cell>> rows) throws SQLException {
+		int[] ids = new int[rows.size()];
+		if(dbType == SqlUtils.DERBY) {
+			StringBuilder sb = new StringBuilder();
+			appendInsert(sb, table, rows.get(0));
+			List<Cell> params = new ArrayList<Cell>();
+			appendValues(sb, rows.get(0), params);
+
+			String sql = sb.toString();
+			logger.trace(sql);
+
+			PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			try {
+				for(int i = 0; i < ids.length; i++) {
+					if(i > 0) {
+						params = getParams(rows.get(i));
+					}
+					setCellValues(ps, 0, params);
+					ps.executeUpdate();
+					ResultSet rs = ps.getGeneratedKeys();
+					try {
+						ids[i] = (rs.next()) ? rs.getInt(1) : -1;
+					} finally {
+						rs.close();
+					}
+				}
+			} finally {
 				ps.close();
 			}
-			if(rs != null) {
-				rs.close();
+		} else {
+			int size = BATCH_SIZE;
+			int columns = rows.get(0).size();
+			if(columns > 0 && size * columns > MAX_PARAMETERS) {
+				size = Math.max(1, MAX_PARAMETERS / columns);
+			}
+			for(int start = 0; start < ids.length; start += size) {
+				int end = Math.min(start + size, ids.length);
+				StringBuilder sb = new StringBuilder();
+				appendInsert(sb, table, rows.get(start));
+				List<Cell> params = new ArrayList<Cell>();
+				for(int i = start; i < end; i++) {
+					if(i > start) {
+						sb.append(',');
+					}
+					appendValues(sb, rows.get(i), params);
+				}
+
+				String sql = sb.toString();
+				logger.trace(sql);
+
+				PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+				try {
+					setCellValues(ps, 0, params);
+					ps.executeUpdate();
+					ResultSet rs = ps.getGeneratedKeys();
+					try {
+						int i = start;
+						while(i < end && rs.next()) {
+							ids[i++] = rs.getInt(1);
+						}
+						if(i != end) {
+							throw new SQLException("expected " + (end - start) + " generated keys from " + table + ", but received " + (i - start));
+						}
+					} finally {
+						rs.close();
+					}
+				} finally {
+					ps.close();
+				}
+			}
+		}
+		if(logger.isLoggingTrace()) {
+			logger.trace("  " + ID + " <- " + Arrays.toString(ids));
+		}
+		return ids;
+	}
+
+	private void doCreateBatches(Map<String, List<Model>> batches, Map<Model, List<Cell>> rows) throws SQLException {
+		for(List<Model> batch : batches.values()) {
+			if(batch.size() == 1) {
+				Model model = batch.get(0);
+				model.setId(doCreate(tableName(getModelClass(model)), rows.get(model)));
+				if(model.isNew()) {
+					throw new SQLException("could not create record for " + model);
+				}
+			} else {
+				logger.debug("start doCreateBatch {} ({})", getModelClass(batch.get(0)).getSimpleName(), batch.size());
+				List<List<Cell>> cells = new ArrayList<List<Cell>>(batch.size());
+				for(Model model : batch) {
+					cells.add(rows.get(model));
+				}
+				int[] ids = doCreateBatch(tableName(getModelClass(batch.get(0))), cells);
+				for(int i = 0; i < ids.length; i++) {
+					Model model = batch.get(i);
+					model.setId(ids[i]);
+					if(model.isNew()) {
+						throw new SQLException("could not create record for " + model);
+					}
+				}
+				logger.debug("end doCreateBatch");
 			}
 		}
+		batches.clear();
+		rows.clear();
 	}
 	
 	private void doCreateDeferred(Model model, List<String> deferredMany) throws NoSuchFieldException, SQLException {
@@ -445,54 +633,8 @@ public class DbPersistor {
 	
 	private void doCreateModel(Model model) throws SQLException, NoSuchFieldException {
 		if(model.isNew()) {
-			ModelAdapter adapter = ModelAdapter.getAdapter(model);
-			String table = tableName(adapter.getModelClass());
-
-			boolean needsCreatedAt, needsCreatedOn, needsUpdatedAt, needsUpdatedOn;
-			needsCreatedAt = needsUpdatedAt = adapter.isTimeStamped();
-			needsCreatedOn = needsUpdatedOn = adapter.isDateStamped();
-			
-			List<Cell> cells = new ArrayList<Cell>();
-			for(String field : adapter.getAttributeFields()) {
-				if(model.isSet(field) && !adapter.isVirtual(field)) {
-					String name = columnName(field);
-					if(needsCreatedAt && name.equals(createdAt.column)) needsCreatedAt = false;
-					if(needsCreatedOn && name.equals(createdOn.column)) needsCreatedOn = false;
-					if(needsUpdatedAt && name.equals(updatedAt.column)) needsUpdatedAt = false;
-					if(needsUpdatedOn && name.equals(updatedOn.column)) needsUpdatedOn = false;
-					int type = getSqlType(adapter.getClass(field));
-					Object val = model.get(field);
-					cells.add(new Cell(name, type, val));
-				}
-			}
-			
-			for(String field : adapter.getHasOneFields()) {
-				if(adapter.isOneToOne(field)) {
-					if(adapter.hasKey(field)) {
-						Cell cell = createCell(model, field);
-						if(cell.value != null) {
-							String column = safeSqlWord(dbType, cell.column);
-							exec("UPDATE " + table + " SET " + column + "=null WHERE " + column + "=" + cell.value);
-						}
-						cells.add(cell);
-					} // else, skip it
-				}
-				else if(!adapter.isThrough(field)/* && (!adapter.isOneToOne(field) || adapter.hasKey(field))*/) {
-					cells.add(createCell(model, field));
-				}
-			}
-			
-			if(needsCreatedAt || needsCreatedOn || needsUpdatedAt || needsUpdatedOn) {
-				long now = System.currentTimeMillis();
-				if(needsCreatedAt) cells.add(createdAt.withValue(now));
-				if(needsCreatedOn) cells.add(createdOn.withValue(now));
-				if(needsUpdatedAt) cells.add(updatedAt.withValue(now));
-				if(needsUpdatedOn) cells.add(updatedOn.withValue(now));
-			}
-			
-			if(cells.isEmpty()) {
-				throw new SQLException("can not create an empty model: " + model);
-			}
+			String table = tableName(getModelClass(model));
+			List<Cell> cells = getCreateCells(model, System.currentTimeMillis());
 			
 			int id = doCreate(table, cells);
 			model.setId(id);
@@ -503,6 +645,71 @@ public class DbPersistor {
 		}
 	}
 	
+	private List<Cell> getCreateCells(Model model, long now) throws SQLException {
+		ModelAdapter adapter = ModelAdapter.getAdapter(model);
+		String table = tableName(adapter.getModelClass());
+
+		boolean needsCreatedAt, needsCreatedOn, needsUpdatedAt, needsUpdatedOn;
+		needsCreatedAt = needsUpdatedAt = adapter.isTimeStamped();
+		needsCreatedOn = needsUpdatedOn = adapter.isDateStamped();
+		
+		List<Cell> cells = new ArrayList<Cell>();
+		for(String field : adapter.getAttributeFields()) {
+			if(model.isSet(field) && !adapter.isVirtual(field)) {
+				String name = columnName(field);
+				if(needsCreatedAt && name.equals(createdAt.column)) needsCreatedAt = false;
+				if(needsCreatedOn && name.equals(createdOn.column)) needsCreatedOn = false;
+				if(needsUpdatedAt && name.equals(updatedAt.column)) needsUpdatedAt = false;
+				if(needsUpdatedOn && name.equals(updatedOn.column)) needsUpdatedOn = false;
+				int type = getSqlType(adapter.getClass(field));
+				Object val = model.get(field);
+				cells.add(new Cell(name, type, val));
+			}
+		}
+		
+		for(String field : adapter.getHasOneFields()) {
+			if(adapter.isOneToOne(field)) {
+				if(adapter.hasKey(field)) {
+					Cell cell = createCell(model, field);
+					if(cell.value != null) {
+						String column = safeSqlWord(dbType, cell.column);
+						exec("UPDATE " + table + " SET " + column + "=null WHERE " + column + "=" + cell.value);
+					}
+					cells.add(cell);
+				} // else, skip it
+			}
+			else if(!adapter.isThrough(field)/* && (!adapter.isOneToOne(field) || adapter.hasKey(field))*/) {
+				cells.add(createCell(model, field));
+			}
+		}
+		
+		if(needsCreatedAt || needsCreatedOn || needsUpdatedAt || needsUpdatedOn) {
+			if(needsCreatedAt) cells.add(createdAt.withValue(now));
+			if(needsCreatedOn) cells.add(createdOn.withValue(now));
+			if(needsUpdatedAt) cells.add(updatedAt.withValue(now));
+			if(needsUpdatedOn) cells.add(updatedOn.withValue(now));
+		}
+		
+		if(cells.isEmpty()) {
+			throw new SQLException("can not create an empty model: " + model);
+		}
+		
+		return cells;
+	}
+	
+	/**
+	 * Prepare a statement, from the statement cache if there is one; it must be given back with {@link #release(PreparedStatement)}.
+	 */
+	private PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+		if(statements != null) {
+			return statements.prepare(sql, autoGeneratedKeys);
+		}
+		if(autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS) {
+			return connection.prepareStatement(sql, autoGeneratedKeys);
+		}
+		return connection.prepareStatement(sql);
+	}
+	
 	private int exec(String sql) throws SQLException {
 		logger.trace(sql);
 		Statement s = null;
@@ -545,6 +752,7 @@ public class DbPersistor {
 	}
 
 	private Statement doExecuteQuery(String sql, Object...values) throws SQLException {
+		QueryCounter.increment();
 		int limit = -1;
 		int ix = sql.toLowerCase().indexOf(" limit ");
 		if(ix != -1) {
@@ -674,40 +882,85 @@ public class DbPersistor {
 
 	private int doUpdate(String table, int id, List<Cell> cells) throws SQLException {
 		StringBuilder sb = new StringBuilder();
-		sb.append("UPDATE ").append(table).append(" SET ");
-		for(Iterator<Cell> iter = cells.iterator(); iter.hasNext();) {
-			Cell cell = iter.next();
-			if(isUpdatedDateTimeField(cell) && cell.value instanceof Long) {
-				iter.remove();
-				sb.append(cell.column).append('=').append(cell.value);
-			} else {
-				sb.append(safeSqlWord(dbType, cell.column)).append("=?");
-			}
-			if(iter.hasNext()) {
-				sb.append(",");
+		List<Cell> params = new ArrayList<Cell>();
+		appendSet(sb, table, cells, params);
+		sb.append(" WHERE id=?");
+
+		String sql = sb.toString();
+		logger.trace(sql);
+
+		PreparedStatement ps = null;
+		try {
+			ps = prepare(sql, Statement.NO_GENERATED_KEYS);
+			int ix = setCellValues(ps, 0, params);
+			ps.setInt(ix + 1, id);
+			logger.trace("  {} -> {}", ID, id);
+			return ps.executeUpdate();
+		} finally {
+			if(ps != null) {
+				release(ps);
 			}
 		}
-		sb.append(" WHERE id=").append(id);
+	}
+
+	/**
+	 * Update a batch of rows, all with the same columns, using a single PreparedStatement and JDBC batches of up to {@link #BATCH_SIZE} rows.
+	 * @return the update counts, in the order of the given ids
+	 */
+	private int[] doUpdateBatch(String table, int[] ids, List<List<Cell>> rows) throws SQLException {
+		StringBuilder sb = new StringBuilder();
+		List<Cell> params = new ArrayList<Cell>();
+		appendSet(sb, table, rows.get(0), params);
+		sb.append(" WHERE id=?");
 
 		String sql = sb.toString();
 		logger.trace(sql);
 
-		PreparedStatement ps = null;
+		int[] results = new int[ids.length];
+		PreparedStatement ps = connection.prepareStatement(sql);
 		try {
-			ps = connection.prepareStatement(sql);
-			for(int i = 0; i < cells.size(); i++) {
-				Cell cell = cells.get(i);
-				setObject(ps, i + 1, cell.value, cell.type);
-				if(logger.isLoggingTrace()) {
-					logger.trace("  " + safeSqlWord(dbType, cell.column) + " -> " + cell.value);
+			int start = 0;
+			for(int i = 0; i < ids.length; i++) {
+				if(i > 0) {
+					params = getParams(rows.get(i));
+				}
+				int ix = setCellValues(ps, 0, params);
+				ps.setInt(ix + 1, ids[i]);
+				logger.trace("  {} -> {}", ID, ids[i]);
+				ps.addBatch();
+				if((i + 1 - start) == BATCH_SIZE || i == ids.length - 1) {
+					int[] counts = ps.executeBatch();
+					System.arraycopy(counts, 0, results, start, counts.length);
+					start = i + 1;
 				}
 			}
-			return ps.executeUpdate();
 		} finally {
-			if(ps != null) {
-				ps.close();
+			ps.close();
+		}
+		return results;
+	}
+
+	private void doUpdateBatches(Map<String, List<Model>> batches, Map<Model, List<Cell>> rows) throws SQLException {
+		for(List<Model> batch : batches.values()) {
+			logger.debug("start doUpdateBatch {} ({})", getModelClass(batch.get(0)).getSimpleName(), batch.size());
+			int[] ids = new int[batch.size()];
+			List<List<Cell>> cells = new ArrayList<List<Cell>>(batch.size());
+			for(int i = 0; i < ids.length; i++) {
+				Model model = batch.get(i);
+				ids[i] = model.getId(int.class);
+				cells.add(rows.get(model));
 			}
+			int[] results = doUpdateBatch(tableName(getModelClass(batch.get(0))), ids, cells);
+			for(int i = 0; i < results.length; i++) {
+				// some drivers only report SUCCESS_NO_INFO for batched statements
+				if(results[i] < 1 && results[i] != Statement.SUCCESS_NO_INFO) {
+					throw new SQLException("could not update " + batch.get(i).asSimpleString() + " (does not exist in database)");
+				}
+			}
+			logger.debug("end doUpdateBatch");
 		}
+		batches.clear();
+		rows.clear();
 	}
 
 	/**
@@ -874,6 +1127,7 @@ public class DbPersistor {
 			logger.debug("start executeQueryValue: " + sql + join(" [", values, "]", ", "));
 		}
 
+		QueryCounter.increment();
 		Statement s = null;
 		try {
 			ResultSet rs;
@@ -905,6 +1159,7 @@ public class DbPersistor {
 			logger.debug("start executeQueryValues: " + sql + join(" [", values, "]", ", "));
 		}
 
+		QueryCounter.increment();
 		Statement s = null;
 		try {
 			ResultSet rs;
@@ -937,7 +1192,7 @@ public class DbPersistor {
 				if(logger.isLoggingDebug()) {
 					logger.debug("start executeUpdate(insert): " + sql + join(" [", values, "]", ", "));
 				}
-				ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+				ps = prepare(sql, Statement.RETURN_GENERATED_KEYS);
 				setStatementValues(ps, values);
 				ps.executeUpdate();
 				rs = ps.getGeneratedKeys();
@@ -946,16 +1201,16 @@ public class DbPersistor {
 				if(logger.isLoggingDebug()) {
 					logger.debug("start executeUpdate: " + sql + join(" [", values, "]", ", "));
 				}
-				ps = connection.prepareStatement(sql);
+				ps = prepare(sql, Statement.NO_GENERATED_KEYS);
 				setStatementValues(ps, values);
 				return ps.executeUpdate();
 			}
 		} finally {
 			logger.debug("end executeUpdate");
-			if(ps != null)
-				ps.close();
 			if(rs != null)
 				rs.close();
+			if(ps != null)
+				release(ps);
 		}
 	}
 	
@@ -968,7 +1223,7 @@ public class DbPersistor {
 			return null;
 		}
 
-		T result = find(clazz, "where id=" + id);
+		T result = find(clazz, "where id=?", id);
 
 		logger.debug("end find");
 		return result;
@@ -980,7 +1235,7 @@ public class DbPersistor {
 		}
 
 		QueryProcessor<T> processor = QueryProcessor.create(dbType, clazz, limit(sql, 1), values);
-		List<T> list = processor.process(connection);
+		List<T> list = processor.process(connection, statements);
 
 		T result = list.isEmpty() ? null : list.get(0);
 
@@ -994,12 +1249,46 @@ public class DbPersistor {
 		}
 
 		QueryProcessor<T> processor = QueryProcessor.create(dbType, clazz, sql, values);
-		List<T> list = processor.process(connection);
+		List<T> list = processor.process(connection, statements);
 
 		logger.debug("end findAll");
 		return list;
 	}
 
+	public <T extends Model> ModelCursor<T> findEach(Class<T> clazz, int fetchSize, String sql, Object...values) throws SQLException {
+		if(logger.isLoggingDebug()) {
+			logger.debug("start findEach: " + clazz.getCanonicalName() + ", " + sql + join(" <- [", values, "]", ", "));
+		}
+
+		QueryProcessor<T> processor = QueryProcessor.create(dbType, clazz, sql, values);
+		return processor.cursor(connection, statements, fetchSize); // logs "end findEach" when it is closed
+	}
+
+	/**
+	 * Get the key used to group models whose rows can be written with the same SQL statement: their class,
+	 * their columns, and any values that are written into the SQL itself rather than set as parameters.
+	 */
+	private String getBatchKey(Model model, List<Cell> cells) {
+		StringBuilder sb = new StringBuilder(getModelClass(model).getName());
+		for(Cell cell : cells) {
+			sb.append(',').append(cell.column);
+			if(cell.isQuery) {
+				sb.append('=').append(cell.query());
+			} else if(isDateTimeField(cell) && cell.value instanceof Long) {
+				sb.append('=').append(cell.value);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the class of the given model's table: its adapter's model class, which is not necessarily
+	 * the model's own class (a subclass or proxy, for example)
+	 */
+	private Class<? extends Model> getModelClass(Model model) {
+		return ModelAdapter.getAdapter(model).getModelClass();
+	}
+
 	private String getField(Object o) {
 		if(o instanceof String) {
 			return (String) o;
@@ -1010,6 +1299,106 @@ public class DbPersistor {
 		throw new IllegalArgumentException("only expecting String or Map, not: " + o);
 	}
 
+	private String[] getFieldNames(String fields) {
+		List<Object> fieldList = toList(fields);
+		String[] fieldNames = new String[fieldList.size()];
+		for(int i = 0; i < fieldNames.length; i++) {
+			fieldNames[i] = getField(fieldList.get(i));
+		}
+		return fieldNames;
+	}
+
+	private List<Cell> getParams(List<Cell> cells) {
+		List<Cell> params = new ArrayList<Cell>(cells.size());
+		for(Cell cell : cells) {
+			if(!cell.isQuery && !(isDateTimeField(cell) && cell.value instanceof Long)) {
+				params.add(cell);
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * Get the cells of a model that {@link #isBatchUpdatable(Model)}
+	 */
+	private List<Cell> getUpdateCells(Model model, long now) {
+		ModelAdapter adapter = ModelAdapter.getAdapter(model);
+
+		boolean needsUpdatedAt, needsUpdatedOn;
+		needsUpdatedAt = adapter.isTimeStamped();
+		needsUpdatedOn = adapter.isDateStamped();
+
+		List<Cell> cells = new ArrayList<Cell>();
+		for(String field : adapter.getFields()) {
+			if(model.isSet(field) && !adapter.isVirtual(field) && !adapter.isThrough(field)) {
+				if(adapter.hasOne(field)) {
+					Model fModel = (Model) model.get(field);
+					cells.add(new Cell(columnName(field), Types.INTEGER, (fModel != null) ? fModel.getId(Integer.class) : null));
+				} else if(adapter.hasAttribute(field)) {
+					String name = columnName(field);
+					if(!name.equals(createdAt.column) && !name.equals(createdOn.column)) {
+						if(needsUpdatedAt && name.equals(updatedAt.column)) needsUpdatedAt = false;
+						if(needsUpdatedOn && name.equals(updatedOn.column)) needsUpdatedOn = false;
+						cells.add(new Cell(name, getSqlType(adapter.getClass(field)), model.get(field)));
+					}
+				}
+			}
+		}
+
+		if(needsUpdatedAt) cells.add(updatedAt.withValue(now));
+		if(needsUpdatedOn) cells.add(updatedOn.withValue(now));
+
+		return cells;
+	}
+
+	/**
+	 * A model can be created in a batch if it has no relations that need to be created or updated along with it:
+	 * it may only have attributes and keys to models that already exist.
+	 */
+	private boolean isBatchCreatable(Model model) {
+		ModelAdapter adapter = ModelAdapter.getAdapter(model);
+		for(String field : adapter.getHasOneFields()) {
+			if(model.isSet(field)) {
+				Model one = (Model) model.get(field);
+				if(one != null && (one.isNew() || adapter.isOneToOne(field))) {
+					return false;
+				}
+			}
+		}
+		for(String field : adapter.getHasManyFields()) {
+			if(model.isSet(field) && !((Collection<?>) model.get(field)).isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A model can be updated in a batch if only its attributes and its keys to models that already exist have been set.
+	 */
+	private boolean isBatchUpdatable(Model model) {
+		if(model.isEmpty() || model.getId(int.class) < 1) {
+			return false;
+		}
+		ModelAdapter adapter = ModelAdapter.getAdapter(model);
+		for(String field : adapter.getFields()) {
+			if(model.isSet(field) && !adapter.isVirtual(field) && !adapter.isThrough(field)) {
+				if(adapter.hasOne(field)) {
+					if(adapter.isOneToOne(field)) {
+						return false;
+					}
+					Model one = (Model) model.get(field);
+					if(one != null && one.isNew()) {
+						return false;
+					}
+				} else if(adapter.hasMany(field)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	private boolean isCreatedDateTimeField(Cell cell) {
 		return CREATED_AT.equals(cell.column) || CREATED_ON.equals(cell.column);
 	}
@@ -1030,35 +1419,12 @@ public class DbPersistor {
 			return;
 		} else if(models.length == 1) {
 			QueryProcessor<?> processor = QueryProcessor.create(dbType, models[0].getClass(), "where id=?", models[0].getId());
-			List<?> list = processor.process(connection);
+			List<?> list = processor.process(connection, statements);
 			if(!list.isEmpty()) {
 				setFields(models[0], ((Model) list.get(0)).getAll());
 			}
 		} else {
-			Map<Class<? extends Model>, Map<Integer, Model>> map = new HashMap<Class<? extends Model>, Map<Integer,Model>>();
-			for(Model model : models) {
-				Class<? extends Model> clazz = model.getClass();
-				int id = model.getId(int.class);
-				Map<Integer, Model> ids = map.get(clazz);
-				if(ids == null) {
-					map.put(clazz, ids = new HashMap<Integer, Model>());
-				}
-				ids.put(id, model);
-			}
-			for(Entry<Class<? extends Model>, Map<Integer, Model>> entry : map.entrySet()) {
-				Class<? extends Model> clazz = entry.getKey();
-				Map<Integer, Model> modelMap = entry.getValue();
-				Set<Integer> ids = modelMap.keySet();
-				
-				if(logger.isLoggingDebug()) {
-					logger.debug("retrieving data from database: " + clazz.getCanonicalName() + StringUtils.join(", id IN (", ids, ")", ", "));
-				}
-
-				QueryProcessor<? extends Model> processor = QueryProcessor.create(dbType, clazz, StringUtils.join("id IN (", ids, ")", ","));
-				for(Model model : processor.process(connection)) {
-					setFields(modelMap.get(model.getId()), model.getAll());
-				}
-			}
+			retrieveAll(models, null, null);
 		}
 		logger.debug("end retrieve");
 	}
@@ -1067,7 +1433,7 @@ public class DbPersistor {
 		logger.debug("start retrieve: {}, include: {}", model, include);
 
 		QueryProcessor<?> processor = QueryProcessor.create(dbType, model.getClass(), "where id=? include:?", model.getId(), include);
-		List<?> list = processor.process(connection);
+		List<?> list = processor.process(connection, statements);
 		if(!list.isEmpty()) {
 			setFields(model, ((Model) list.get(0)).getAll());
 		}
@@ -1075,22 +1441,105 @@ public class DbPersistor {
 		logger.debug("end retrieve");
 	}
 
+	/**
+	 * Retrieve the given models, and the given include, with one query for each class of model (rather than one for each model).
+	 */
+	public void retrieve(Model[] models, String include) throws SQLException {
+		if(logger.isLoggingDebug()) {
+			logger.debug(join("start retrieve: [", models, "]", ", ") + ", include: " + include);
+		}
+		retrieveAll(models, include, null);
+		logger.debug("end retrieve");
+	}
+
+	/**
+	 * Retrieve the given models, along with the given include, with one query for each class of model.
+	 * @param include the include; may be null
+	 * @param fields the names of the fields to set in the given models; null to set them all
+	 */
+	private void retrieveAll(Model[] models, String include, String[] fields) throws SQLException {
+		Map<Class<? extends Model>, Map<Integer, Model>> map = new HashMap<Class<? extends Model>, Map<Integer,Model>>();
+		for(Model model : models) {
+			Class<? extends Model> clazz = model.getClass();
+			int id = model.getId(int.class);
+			Map<Integer, Model> ids = map.get(clazz);
+			if(ids == null) {
+				map.put(clazz, ids = new HashMap<Integer, Model>());
+			}
+			ids.put(id, model);
+		}
+		for(Entry<Class<? extends Model>, Map<Integer, Model>> entry : map.entrySet()) {
+			Class<? extends Model> clazz = entry.getKey();
+			Map<Integer, Model> modelMap = entry.getValue();
+			Set<Integer> ids = modelMap.keySet();
+			
+			if(logger.isLoggingDebug()) {
+				logger.debug("retrieving data from database: " + clazz.getCanonicalName() + StringUtils.join(", id IN (", ids, ")", ", "));
+			}
+
+			String sql = StringUtils.join("where id IN (", ids, ")", ",");
+			QueryProcessor<? extends Model> processor;
+			if(include == null) {
+				processor = QueryProcessor.create(dbType, clazz, sql);
+			} else {
+				processor = QueryProcessor.create(dbType, clazz, sql + " include:?", include);
+			}
+			for(Model model : processor.process(connection, statements)) {
+				Model target = modelMap.get(model.getId(int.class));
+				if(fields == null) {
+					setFields(target, model.getAll());
+				} else {
+					setFields(target, model.getAll(), fields);
+				}
+			}
+		}
+	}
+
 	public void retrieveFields(Model model, String fields) throws SQLException {
 		logger.debug("start retrieve: {}, fields: {}", model, fields);
 
 		QueryProcessor<?> processor = QueryProcessor.create(dbType, model.getClass(), "where id=? include:?", model.getId(), fields);
-		List<?> list = processor.process(connection);
+		List<?> list = processor.process(connection, statements);
 		if(!list.isEmpty()) {
-			List<Object> fieldList = toList(fields);
-			String[] fieldNames = new String[fieldList.size()];
-			for(int i = 0; i < fieldNames.length; i++) {
-				fieldNames[i] = getField(fieldList.get(i));
-			}
-			setFields(model, ((Model) list.get(0)).getAll(), fieldNames);
+			setFields(model, ((Model) list.get(0)).getAll(), getFieldNames(fields));
 		}
 
 		logger.debug("end retrieve");
 	}
+
+	/**
+	 * Retrieve the given fields of the given models, with one query for each class of model (rather than one for each model).
+	 * The models' other fields are left as they are.
+	 */
+	public void retrieveFields(Model[] models, String fields) throws SQLException {
+		if(logger.isLoggingDebug()) {
+			logger.debug(join("start retrieve: [", models, "]", ", ") + ", fields: " + fields);
+		}
+		retrieveAll(models, fields, getFieldNames(fields));
+		logger.debug("end retrieve");
+	}
+	
+	private void release(PreparedStatement ps) throws SQLException {
+		if(statements != null) {
+			statements.release(ps);
+		} else {
+			ps.close();
+		}
+	}
+	
+	/**
+	 * @return the index of the last parameter set
+	 */
+	private int setCellValues(PreparedStatement ps, int offset, List<Cell> params) throws SQLException {
+		for(int i = 0; i < params.size(); i++) {
+			Cell cell = params.get(i);
+			setObject(ps, offset + i + 1, cell.value, cell.type);
+			if(logger.isLoggingTrace()) {
+				logger.trace("  " + safeSqlWord(dbType, cell.column) + " -> " + cell.value);
+			}
+		}
+		return offset + params.size();
+	}
 	
 	private void setStatementValues(PreparedStatement ps, Object[] values) throws SQLException {
 		for(int i = 0; i < values.length; i++) {
@@ -1098,10 +1547,38 @@ public class DbPersistor {
 		}
 	}
 
+	/**
+	 * Update the given models. When more than one model is given, runs of consecutive models in which only attributes
+	 * and keys to existing models have been set are grouped by class and column shape and updated together
+	 * (see {@link #doUpdateBatch(String, int[], List)}); all other models are updated one at a time, in their given order.
+	 */
 	public void update(Model[] models) throws SQLException, NoSuchFieldException {
+		if(models.length == 1) {
+			doUpdate(models[0]);
+			return;
+		}
+		Map<String, List<Model>> batches = new LinkedHashMap<String, List<Model>>();
+		Map<Model, List<Cell>> rows = new HashMap<Model, List<Cell>>();
+		long now = System.currentTimeMillis();
 		for(Model model : models) {
-			doUpdate(model);
+			if(isBatchUpdatable(model) && !rows.containsKey(model)) {
+				List<Cell> cells = getUpdateCells(model, now);
+				if(cells.isEmpty()) {
+					continue; // nothing to update
+				}
+				String key = getBatchKey(model, cells);
+				List<Model> batch = batches.get(key);
+				if(batch == null) {
+					batches.put(key, batch = new ArrayList<Model>());
+				}
+				batch.add(model);
+				rows.put(model, cells);
+			} else {
+				doUpdateBatches(batches, rows);
+				doUpdate(model);
+			}
 		}
+		doUpdateBatches(batches, rows);
 	}
 
 }
@@ -11,7 +11,6 @@
 package org.oobium.persist.db.internal;
 
 import static org.oobium.persist.db.internal.Utils.ID;
-import static org.oobium.persist.db.internal.Utils.valuePattern;
 import static org.oobium.persist.db.internal.Utils.*;
 import static org.oobium.utils.SqlUtils.asNestedFieldMaps;
 import static org.oobium.utils.SqlUtils.setObject;
@@ -21,20 +20,148 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
+import java.util.NoSuchElementException;
 
 import org.oobium.logging.LogProvider;
 import org.oobium.logging.Logger;
+import org.oobium.persist.CursorException;
+import org.oobium.persist.LoadContext;
 import org.oobium.persist.Model;
+import org.oobium.persist.ModelCursor;
+import org.oobium.persist.QueryCounter;
 import org.oobium.persist.db.DbPersistService;
 
 public class QueryProcessor<E extends Model> {
 
+	private class Cursor implements ModelCursor<E>, Iterator<E> {
+
+		private final Connection connection;
+		private final int fetchSize;
+		private PreparedStatement ps;
+		private ResultSet rs;
+		private Iterator<E> chunk;
+		private boolean iterated;
+		
+		Cursor(Connection connection, int fetchSize) throws SQLException {
+			this.connection = connection;
+			this.fetchSize = fetchSize;
+			
+			String sql = query.getSql();
+			Object[] values = query.getValues();
+			if(logger.isLoggingDebug()) {
+				logger.debug("open cursor: " + sql);
+			}
+			
+			SqlTranslation translation = SqlTranslation.translate(sql);
+			try {
+				// not cached: the statement stays open for as long as the cursor does
+				ps = connection.prepareStatement(translation.sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				ps.setFetchSize(fetchSize);
+				for(int i = 0; i < values.length && i < translation.indexes.length; i++) {
+					setObject(ps, i + 1, values[translation.indexes[i]]);
+				}
+				QueryCounter.increment();
+				rs = ps.executeQuery();
+			} catch(SQLException e) {
+				close();
+				throw e;
+			}
+		}
+		
+		@Override
+		public void close() {
+			chunk = null;
+			if(rs != null) {
+				try {
+					rs.close();
+				} catch(SQLException e) {
+					// discard
+				}
+				rs = null;
+			}
+			if(ps != null) {
+				try {
+					ps.close();
+				} catch(SQLException e) {
+					// discard
+				}
+				ps = null;
+				logger.debug("end findEach");
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if(chunk != null && chunk.hasNext()) {
+				return true;
+			}
+			if(rs == null) {
+				close();
+				return false;
+			}
+			try {
+				List<E> models = nextChunk();
+				if(models.isEmpty()) {
+					close();
+					return false;
+				}
+				chunk = models.iterator();
+				return true;
+			} catch(SQLException e) {
+				close();
+				throw new CursorException(e);
+			}
+		}
+		
+		@Override
+		public Iterator<E> iterator() {
+			if(iterated) {
+				throw new IllegalStateException("a cursor can only be iterated once");
+			}
+			iterated = true;
+			return this;
+		}
+		
+		@Override
+		public E next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return chunk.next();
+		}
+		
+		@SuppressWarnings("unchecked")
+		private List<E> nextChunk() throws SQLException {
+			List<Map<String, Map<String, Object>>> results = asNestedFieldMaps(rs, fetchSize);
+			if(results.size() < fetchSize) {
+				// exhausted - free up the statement before the includes are loaded
+				rs.close();
+				rs = null;
+			}
+			modelCache = new HashMap<String, Model>();
+			List<E> objects = createModels(query, results);
+			LoadContext.share(objects);
+			if(!objects.isEmpty() && query.hasChildren()) {
+				for(Query child : query.getChildren()) {
+					processQuery(connection, query, child, objects);
+				}
+			}
+			return objects;
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+	}
+	
+
 	private static final Logger logger = LogProvider.getLogger(DbPersistService.class);
 
 	public static <T extends Model> QueryProcessor<T> create(int dbType, Class<T> clazz, String sql, Object...values) throws SQLException {
@@ -69,6 +196,7 @@ public class QueryProcessor<E extends Model> {
 	}
 
 	private Map<String, Model> modelCache;
+	private StatementCache statements;
 	
 	private <T extends Model> T createModel(Class<T> clazz, Map<String, Object> data) throws NoSuchFieldException, SQLException {
 		try {
@@ -158,47 +286,56 @@ public class QueryProcessor<E extends Model> {
 			logger.debug("start executeQuery: " + sql);
 		}
 
-		StringBuilder sb = new StringBuilder(sql);
-		int[] ixs = new int[values.length];
+		int[] ixs;
 		if(values.length > 0) {
-			Arrays.fill(ixs, -1);
-		
-			Matcher matcher = valuePattern.matcher(sb);
-			for(int i = 0; matcher.find(); i++) {
-				ixs[i] = Integer.parseInt(matcher.group(1));
-				sb.replace(matcher.start(), matcher.end(), "?");
-				matcher = valuePattern.matcher(sb);
-			}
+			SqlTranslation translation = SqlTranslation.translate(sql);
+			sql = translation.sql;
+			ixs = translation.indexes;
+		} else {
+			ixs = new int[0];
 		}
 		
 		PreparedStatement ps = null;
 		ResultSet rs = null;
 		try {
-			ps = connection.prepareStatement(sb.toString());
-			for(int i = 0; i < values.length && ixs[i] != -1; i++) {
+			ps = (statements != null) ? statements.prepare(sql) : connection.prepareStatement(sql);
+			for(int i = 0; i < values.length && i < ixs.length; i++) {
 				setObject(ps, i + 1, values[ixs[i]]);
 				if(logger.isLoggingTrace()) {
 					logger.trace((i + 1) + " <- " + values[ixs[i]]);
 				}
 			}
 
+			QueryCounter.increment();
 			rs = ps.executeQuery();
 
 			List<Map<String, Map<String, Object>>> results = asNestedFieldMaps(rs);
 			return results;
 		} finally {
 			logger.debug("end executeQuery");
-			if(ps != null) {
-				ps.close();
-			}
 			if(rs != null) {
 				rs.close();
 			}
+			if(ps != null) {
+				if(statements != null) {
+					statements.release(ps);
+				} else {
+					ps.close();
+				}
+			}
 		}
 	}
 
 	public List<E> process(Connection connection) throws SQLException {
+		return process(connection, null);
+	}
+	
+	/**
+	 * @param statements the cache of the connection's prepared statements; may be null
+	 */
+	public List<E> process(Connection connection, StatementCache statements) throws SQLException {
 		try {
+			this.statements = statements;
 			modelCache = new HashMap<String, Model>();
 			List<E> objects = processQuery(connection, query);
 			return objects;
@@ -208,11 +345,30 @@ public class QueryProcessor<E extends Model> {
 		}
 	}
 	
+	/**
+	 * Open a cursor that reads the results of this processor's query in chunks of, at most, the given fetch size.
+	 * The models of each chunk (along with their includes) are created only as the cursor reaches them, so only
+	 * a single chunk is held in memory at a time.
+	 * <p>The connection must stay open, and must not be used by another thread, until the cursor has been closed.
+	 * Note that whether the database actually streams the results, rather than reading them all when
+	 * the query is executed, depends upon the driver: Derby honors the fetch size, PostgreSQL only does when
+	 * the connection is not in auto-commit mode, and MySQL requires the "useCursorFetch=true" connection property.</p>
+	 * @param statements the cache of the connection's prepared statements, used for the includes; may be null
+	 */
+	public ModelCursor<E> cursor(Connection connection, StatementCache statements, int fetchSize) throws SQLException {
+		if(fetchSize < 1) {
+			throw new IllegalArgumentException("fetchSize must be greater than 0");
+		}
+		this.statements = statements;
+		return new Cursor(connection, fetchSize);
+	}
+	
 	@SuppressWarnings("unchecked")
 	private List<E> processQuery(Connection connection, Query query) throws SQLException {
 		String sql = query.getSql();
 		List<Map<String, Map<String, Object>>> results = executeQuery(connection, sql, query.getValues());
 		List<E> objects = createModels(query, results);
+		LoadContext.share(objects);
 		if(!objects.isEmpty() && query.hasChildren()) {
 			for(Query child : query.getChildren()) {
 				processQuery(connection, query, child, objects);
@@ -229,6 +385,7 @@ public class QueryProcessor<E extends Model> {
 		if(sql != null) {
 			List<Map<String, Map<String, Object>>> results = executeQuery(connection, sql, query.getValues());
 			List<E> objects = createModels(query, results);
+			LoadContext.share(objects);
 			if(!objects.isEmpty() && query.hasChildren()) {
 				for(Query child : query.getChildren()) {
 					processQuery(connection, query, child, objects);
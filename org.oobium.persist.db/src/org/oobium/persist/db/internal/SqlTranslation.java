@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist.db.internal;
+
+import static org.oobium.persist.db.internal.Utils.valuePattern;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+
+/**
+ * An SQL query whose value place holders (#{n}) have been replaced with JDBC parameters (?),
+ * along with the index of the value that goes into each parameter.
+ * <p>Translations are kept in a bounded, least recently used, cache (its size is set with the
+ * system property "org.oobium.persist.db.sqlCacheSize"; default 500) so that the same query
+ * is only parsed once.</p>
+ */
+public class SqlTranslation {
+
+	private static final int maxSize = Integer.getInteger("org.oobium.persist.db.sqlCacheSize", 500);
+
+	private static final Map<String, SqlTranslation> cache = new LinkedHashMap<String, SqlTranslation>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SqlTranslation> eldest) {
+			return size() > maxSize;
+		}
+	};
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	public static void clear() {
+		synchronized(cache) {
+			cache.clear();
+		}
+	}
+
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	public static String getStatistics() {
+		long h = hits.get();
+		long m = misses.get();
+		long total = h + m;
+		int size;
+		synchronized(cache) {
+			size = cache.size();
+		}
+		return "SqlTranslation cache {entries: " + size + ", hits: " + h + ", misses: " + m + ", hitRate: " + ((total == 0) ? 0 : ((h * 100) / total)) + "%}";
+	}
+
+	public static SqlTranslation translate(String sql) {
+		SqlTranslation translation;
+		synchronized(cache) {
+			translation = cache.get(sql);
+		}
+		if(translation != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			translation = new SqlTranslation(sql);
+			if(maxSize > 0) {
+				synchronized(cache) {
+					cache.put(sql, translation);
+				}
+			}
+		}
+		return translation;
+	}
+
+
+	public final String sql;
+	public final int[] indexes;
+
+	private SqlTranslation(String sql) {
+		StringBuilder sb = new StringBuilder(sql.length());
+		int[] ixs = new int[8];
+		int count = 0;
+		int pos = 0;
+		Matcher matcher = valuePattern.matcher(sql);
+		while(matcher.find()) {
+			if(count == ixs.length) {
+				ixs = Arrays.copyOf(ixs, count * 2);
+			}
+			ixs[count++] = Integer.parseInt(matcher.group(1));
+			sb.append(sql, pos, matcher.start()).append('?');
+			pos = matcher.end();
+		}
+		sb.append(sql, pos, sql.length());
+		this.sql = sb.toString();
+		this.indexes = Arrays.copyOf(ixs, count);
+	}
+
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist.db.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, least recently used, cache of the PreparedStatements of a single connection.
+ * <p>A statement obtained with one of the prepare methods must be given back with {@link #release(PreparedStatement)},
+ * instead of being closed, when it is no longer in use (its ResultSets must still be closed). A statement is never
+ * handed out twice at the same time: if its SQL is already in use, a new, uncached, statement is prepared.</p>
+ * <p>Like its connection, a StatementCache is not thread safe; it must be closed before its connection is closed.</p>
+ */
+public class StatementCache {
+
+	private static final AtomicLong totalHits = new AtomicLong();
+	private static final AtomicLong totalMisses = new AtomicLong();
+
+	public static long getTotalHitCount() {
+		return totalHits.get();
+	}
+
+	public static long getTotalMissCount() {
+		return totalMisses.get();
+	}
+
+
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statements;
+	private final Map<PreparedStatement, String> inUse;
+	private long hits;
+	private long misses;
+
+	public StatementCache(Connection connection, final int maxSize) {
+		this.connection = connection;
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if(size() > maxSize) {
+					PreparedStatement ps = eldest.getValue();
+					if(!inUse.containsKey(ps)) {
+						close(ps);
+					} // else, it will be closed when released
+					return true;
+				}
+				return false;
+			}
+		};
+		this.inUse = new IdentityHashMap<PreparedStatement, String>();
+	}
+
+	/**
+	 * Close all of the cached statements.
+	 */
+	public void close() {
+		for(PreparedStatement ps : statements.values()) {
+			close(ps);
+		}
+		statements.clear();
+		inUse.clear();
+	}
+
+	private void close(PreparedStatement ps) {
+		try {
+			ps.close();
+		} catch(SQLException e) {
+			// discard
+		}
+	}
+
+	public long getHitCount() {
+		return hits;
+	}
+
+	public long getMissCount() {
+		return misses;
+	}
+
+	public PreparedStatement prepare(String sql) throws SQLException {
+		return prepare(sql, Statement.NO_GENERATED_KEYS);
+	}
+
+	/**
+	 * @param autoGeneratedKeys either Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+	 */
+	public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+		String key = (autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS) ? ("+" + sql) : sql;
+		PreparedStatement ps = statements.get(key);
+		if(ps != null) {
+			if(!inUse.containsKey(ps)) {
+				hits++;
+				totalHits.incrementAndGet();
+				ps.clearParameters();
+				inUse.put(ps, key);
+				return ps;
+			}
+			// already in use further up the stack: give this caller its own, uncached, statement
+			return doPrepare(sql, autoGeneratedKeys);
+		}
+		misses++;
+		totalMisses.incrementAndGet();
+		ps = doPrepare(sql, autoGeneratedKeys);
+		statements.put(key, ps);
+		inUse.put(ps, key);
+		return ps;
+	}
+
+	private PreparedStatement doPrepare(String sql, int autoGeneratedKeys) throws SQLException {
+		if(autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS) {
+			return connection.prepareStatement(sql, autoGeneratedKeys);
+		}
+		return connection.prepareStatement(sql);
+	}
+
+	/**
+	 * Give back a statement obtained from one of the prepare methods, closing it if it is not (or no longer) cached.
+	 */
+	public void release(PreparedStatement ps) {
+		String key = inUse.remove(ps);
+		if(key == null || statements.get(key) != ps) {
+			close(ps);
+		}
+	}
+
+	@Override
+	public String toString() {
+		long total = hits + misses;
+		return "StatementCache {statements: " + statements.size() + ", hits: " + hits + ", misses: " + misses +
+				", hitRate: " + ((total == 0) ? 0 : ((hits * 100) / total)) + "%}";
+	}
+
+}
@@ -60,7 +60,18 @@ public class Utils {
 	}
 
 	public static int getDbType(Connection connection) {
-		String name = connection.getClass().getCanonicalName();
+		int type = getDbType(connection.getClass().getCanonicalName());
+		if(type == -1) {
+			// it's a proxy (a pooled connection's checkout, or a PGConnection's), whose toString is the wrapped connection's
+			type = getDbType(connection.toString());
+			if(type == -1) {
+				throw new IllegalArgumentException("unknown database type: " + connection.getClass().getCanonicalName());
+			}
+		}
+		return type;
+	}
+	
+	private static int getDbType(String name) {
 		if(name.contains(".mysql.")) {
 			return SqlUtils.MYSQL;
 		}
@@ -70,10 +81,7 @@ public class Utils {
 		if(name.contains(".derby.")) {
 			return SqlUtils.DERBY;
 		}
-		if(connection.toString().contains(".postgresql.")) { // it's a proxy wrapping a PGConnection
-			return SqlUtils.POSTGRESQL;
-		}
-		throw new IllegalArgumentException("unknown database type: " + name);
+		return -1;
 	}
 	
 	public static Object getObject(Class<? extends Model> clazz, int id) throws InstantiationException, IllegalAccessException, NoSuchFieldException {
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist.http;
+
+import static org.oobium.app.http.MimeType.JSON;
+import static org.oobium.persist.http.PathBuilder.path;
+import static org.oobium.utils.coercion.TypeCoercer.coerce;
+import static org.oobium.utils.json.JsonUtils.toJson;
+import static org.oobium.utils.json.JsonUtils.toList;
+import static org.oobium.utils.literal.Map;
+import static org.oobium.utils.literal.e;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.oobium.app.http.Action;
+import org.oobium.client.Client;
+import org.oobium.client.ClientFuture;
+import org.oobium.client.ClientResponse;
+import org.oobium.persist.http.HttpApiService.Route;
+
+/**
+ * A single request to a model's batch route, carrying any number of create, update, destroy, show or
+ * showAll requests for models of one type. The response is split back up into a {@link ClientResponse}
+ * for each of the requests, so that they can be handled just as if they had been sent one at a time.
+ */
+class Batch {
+
+	private final Route route;
+	private final String path;
+	private final Action action;
+	private final List<Map<String, ?>> requests;
+	private boolean sent;
+	private ClientFuture future;
+	private Exception exception;
+	private ClientResponse[] responses;
+
+	Batch(Route route, Class<?> clazz, Action action) {
+		this.route = route;
+		this.path = path(route.path, clazz);
+		this.action = action;
+		this.requests = new ArrayList<Map<String, ?>>();
+	}
+
+	/**
+	 * @return the index of the given request in this batch, for use with {@link #get(int)}
+	 */
+	int add(Map<String, ?> params) {
+		requests.add(params);
+		return requests.size() - 1;
+	}
+
+	/**
+	 * Wait for the response to this batch and get the part of it for the request at the given index.
+	 */
+	synchronized ClientResponse get(int index) throws Exception {
+		while(!sent) {
+			wait();
+		}
+		if(exception != null) {
+			throw exception;
+		}
+		if(responses == null) {
+			responses = split(future.get());
+		}
+		return responses[index];
+	}
+
+	void send() {
+		ClientFuture future = null;
+		Exception exception = null;
+		try {
+			Client client = Client.client(route.url);
+			client.setAccepts(JSON.acceptsType);
+			future = client.requestAsync(route.method, path, Map(
+					e("action", action.name()),
+					e("requests", toJson(requests))
+				));
+		} catch(Exception e) {
+			exception = e;
+		}
+		synchronized(this) {
+			this.future = future;
+			this.exception = exception;
+			this.sent = true;
+			notifyAll();
+		}
+	}
+
+	int size() {
+		return requests.size();
+	}
+
+	private ClientResponse[] split(ClientResponse response) throws Exception {
+		ClientResponse[] responses = new ClientResponse[requests.size()];
+		if(!response.isSuccess()) {
+			if(response.exceptionThrown()) {
+				throw new Exception(response.getException().getLocalizedMessage());
+			}
+			// the batch as a whole failed (not published by the controller, for example): so did each request
+			for(int i = 0; i < responses.length; i++) {
+				responses[i] = response;
+			}
+			return responses;
+		}
+		List<Object> list = toList(response.getBody());
+		for(int i = 0; i < responses.length; i++) {
+			if(i < list.size() && list.get(i) instanceof Map) {
+				Map<?, ?> map = (Map<?, ?>) list.get(i);
+				HttpResponseStatus status = HttpResponseStatus.valueOf(coerce(map.get("status")).to(int.class));
+				Map<String, String> headers = null;
+				if(map.get("id") != null) {
+					headers = Map("id", String.valueOf(map.get("id")));
+				}
+				Object body = map.get("body");
+				responses[i] = ClientResponse.create(status, headers, (body instanceof String || body == null) ? (String) body : toJson(body));
+			} else {
+				responses[i] = ClientResponse.notFound();
+			}
+		}
+		return responses;
+	}
+
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist.http;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.oobium.app.http.Action;
+import org.oobium.client.ClientResponse;
+import org.oobium.persist.http.HttpApiService.Route;
+
+/**
+ * Collects the show and showAll requests made for a model type within a short window of each other
+ * (by different threads, or by different parts of one request on the server) and sends them together,
+ * as a single {@link Batch}. Each caller blocks until the batch's response arrives, and is then handed
+ * its own part of it.
+ */
+class Coalescer {
+
+	private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "http persist coalescer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+
+	private final Map<String, Batch> batches;
+	private long window;
+	private int batchSize;
+
+	Coalescer(long window, int batchSize) {
+		this.batches = new HashMap<String, Batch>();
+		this.window = window;
+		this.batchSize = batchSize;
+	}
+
+	private void flush(String key, Batch batch) {
+		synchronized(this) {
+			if(batches.get(key) != batch) {
+				return; // already sent, because it filled up
+			}
+			batches.remove(key);
+		}
+		batch.send();
+	}
+
+	ClientResponse request(Route route, Class<?> clazz, Action action, Map<String, ?> params) throws Exception {
+		String key = clazz.getName() + ":" + action.name();
+		Batch batch;
+		int index;
+		boolean full = false;
+		synchronized(this) {
+			batch = batches.get(key);
+			if(batch == null) {
+				batch = new Batch(route, clazz, action);
+				batches.put(key, batch);
+				schedule(key, batch);
+			}
+			index = batch.add(params);
+			if(batch.size() >= batchSize) {
+				batches.remove(key);
+				full = true;
+			}
+		}
+		if(full) {
+			batch.send();
+		}
+		return batch.get(index);
+	}
+
+	private void schedule(final String key, final Batch batch) {
+		scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				flush(key, batch);
+			}
+		}, window, TimeUnit.MILLISECONDS);
+	}
+
+	synchronized void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	synchronized void setWindow(long window) {
+		this.window = window;
+	}
+
+}
@@ -1,5 +1,6 @@
 package org.oobium.persist.http;
 
+import static org.oobium.app.http.Action.batch;
 import static org.oobium.app.http.Action.create;
 import static org.oobium.app.http.Action.destroy;
 import static org.oobium.app.http.Action.show;
@@ -23,13 +24,17 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import org.jboss.netty.handler.codec.http.websocket.WebSocketFrame;
+import org.oobium.app.http.Action;
 import org.oobium.client.Client;
+import org.oobium.client.ClientFuture;
 import org.oobium.client.ClientResponse;
 import org.oobium.client.websockets.Websocket;
 import org.oobium.client.websockets.WebsocketListener;
 import org.oobium.client.websockets.Websockets;
+import org.oobium.persist.ListCursor;
 import org.oobium.persist.Model;
 import org.oobium.persist.ModelAdapter;
+import org.oobium.persist.ModelCursor;
 import org.oobium.persist.PersistService;
 import org.oobium.persist.RemotePersistService;
 import org.oobium.persist.ServiceInfo;
@@ -38,7 +43,27 @@ import org.oobium.utils.json.JsonUtils;
 
 public class HttpPersistService extends RemotePersistService implements PersistService {
 
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	public static final long DEFAULT_COALESCE_WINDOW = 0;
+
+	/**
+	 * The request for a single model, checked and ready to be sent.
+	 */
+	private static class Prepared {
+		final Route route;
+		final String path;
+		final Map<String, String> params;
+		Prepared(Route route, String path, Map<String, String> params) {
+			this.route = route;
+			this.path = path;
+			this.params = params;
+		}
+	}
+	
 	private final HttpApiService api;
+	private final Coalescer coalescer;
+	private int batchSize;
+	private long coalesceWindow;
 	private Websocket socket;
 	private WebsocketListener socketListener;
 	
@@ -81,6 +106,9 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 
 	public HttpPersistService(String discoveryUrl, boolean global) {
 		this.api = HttpApiService.getInstance();
+		this.batchSize = DEFAULT_BATCH_SIZE;
+		this.coalesceWindow = DEFAULT_COALESCE_WINDOW;
+		this.coalescer = new Coalescer(coalesceWindow, batchSize);
 		if(discoveryUrl != null) {
 			setDiscoveryUrl(discoveryUrl);
 		}
@@ -182,7 +210,7 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 		throw new UnsupportedOperationException("not yet implemented");
 	}
 	
-	private void create(Model model) throws Exception {
+	private Prepared create(Model model) throws Exception {
 		if(model == null) {
 			throw new Exception("cannot create null model");
 		}
@@ -192,37 +220,35 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 			throw new Exception("no published route found for " + model.getClass() + ": create");
 		}
 		
-		try {
-			Client client = Client.client(request.url);
-			client.setAccepts(JSON.acceptsType);
+		String path = path(request.path, model);
+		Map<String, String> params = getParams(model);
+		
+		return new Prepared(request, path, params);
+	}
 
-			String path = path(request.path, model);
-			Map<String, String> params = getParams(model);
-			
-			ClientResponse response = client.request(request.method, path, params);
+	@Override
+	public void create(Model... models) throws Exception {
+		ClientResponse[] responses = send(create, models);
+		Exception exception = null;
+		for(int i = 0; i < models.length; i++) {
+			ClientResponse response = responses[i];
 			if(response.isSuccess()) {
 				int id = coerce(response.getHeader("id")).to(int.class);
-				model.setId(id);
+				models[i].setId(id);
 			}
 			else if(response.isConflict()) {
-				setErrors(model, response);
+				setErrors(models[i], response);
 			}
-			else if(response.exceptionThrown()) {
-				throw new Exception(response.getException().getLocalizedMessage());
+			else if(response.exceptionThrown() && exception == null) {
+				exception = new Exception(response.getException().getLocalizedMessage());
 			}
-		} catch(MalformedURLException e) {
-			throw new IllegalStateException("malformed URL should have been caught earlier!");
 		}
-	}
-
-	@Override
-	public void create(Model... models) throws Exception {
-		for(Model model : models) {
-			create(model);
+		if(exception != null) {
+			throw exception;
 		}
 	}
 	
-	private void destroy(Model model) throws Exception {
+	private Prepared destroy(Model model) throws Exception {
 		if(model == null) {
 			throw new Exception("cannot destroy null model");
 		}
@@ -232,32 +258,30 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 			throw new Exception("no published route found for " + model.getClass() + ": destroy");
 		}
 		
-		try {
-			Client client = Client.client(request.url);
-			client.setAccepts(JSON.acceptsType);
-			
-			String path = path(request.path, model);
-			
-			ClientResponse response = client.request(request.method, path);
+		String path = path(request.path, model);
+		
+		return new Prepared(request, path, null);
+	}
+	
+	@Override
+	public void destroy(Model... models) throws Exception {
+		ClientResponse[] responses = send(destroy, models);
+		Exception exception = null;
+		for(int i = 0; i < models.length; i++) {
+			ClientResponse response = responses[i];
 			if(response.isSuccess()) {
-				model.setId(null);
-				model.clear();
+				models[i].setId(null);
+				models[i].clear();
 			}
 			else if(response.isConflict()) {
-				setErrors(model, response);
+				setErrors(models[i], response);
 			}
-			else if(response.exceptionThrown()) {
-				throw new Exception(response.getException().getLocalizedMessage());
+			else if(response.exceptionThrown() && exception == null) {
+				exception = new Exception(response.getException().getLocalizedMessage());
 			}
-		} catch(MalformedURLException e) {
-			throw new IllegalStateException("malformed URL should have been caught earlier!");
 		}
-	}
-	
-	@Override
-	public void destroy(Model... models) throws Exception {
-		for(Model model : models) {
-			destroy(model);
+		if(exception != null) {
+			throw exception;
 		}
 	}
 	
@@ -297,38 +321,42 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 			throw new Exception("no published route found for " + clazz + ": show");
 		}
 		
-		try {
-			Client client = Client.client(request.url);
-			client.setAccepts(JSON.acceptsType);
+		T model = coerce(id).to(clazz);
+		String path = path(request.path, model);
 
-			T model = coerce(id).to(clazz);
-			String path = path(request.path, model);
-
-			Map<String, ?> params = null;
-			if(include != null) {
-				if(include.startsWith("include")) {
-					int ix = include.indexOf(':');
-					if(ix != -1) {
-						include = include.substring(ix+1);
-						params = Map("include", include);
-					}
-				} else {
+		Map<String, ?> params = null;
+		if(include != null) {
+			if(include.startsWith("include")) {
+				int ix = include.indexOf(':');
+				if(ix != -1) {
+					include = include.substring(ix+1);
 					params = Map("include", include);
 				}
-			}
-			
-			ClientResponse response = client.request(request.method, path, params);
-			if(response.isSuccess()) {
-				model.putAll(response.getBody());
-				return model;
 			} else {
-				if(response.exceptionThrown()) {
-					throw new Exception(response.getException().getLocalizedMessage());
-				}
-				return null;
+				params = Map("include", include);
 			}
-		} catch(MalformedURLException e) {
-			throw new IllegalStateException("malformed URL should have been caught earlier!");
+		}
+		
+		ClientResponse response;
+		Route batchRequest = (coalesceWindow > 0) ? api.getRoute(clazz, batch) : null;
+		if(batchRequest != null) {
+			Map<String, Object> batchParams = new HashMap<String, Object>();
+			if(params != null) {
+				batchParams.putAll(params);
+			}
+			batchParams.put("id", id);
+			response = coalescer.request(batchRequest, clazz, show, batchParams);
+		} else {
+			response = send(request, path, params).get();
+		}
+		if(response.isSuccess()) {
+			model.putAll(response.getBody());
+			return model;
+		} else {
+			if(response.exceptionThrown()) {
+				throw new Exception(response.getException().getLocalizedMessage());
+			}
+			return null;
 		}
 	}
 	
@@ -353,35 +381,33 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 			throw new Exception("no published route found for " + clazz + ": showAll");
 		}
 		
-		try {
-			Client client = Client.client(request.url);
-			client.setAccepts(JSON.acceptsType);
+		String path = path(request.path, clazz);
+		
+		Map<String, Object> params = null;
+		if(query != null) {
+			params = Map( e("query", query), e("values", values) );
+		}
 
-			String path = path(request.path, clazz);
-			
-			ClientResponse response;
-			if(query == null) {
-				response = client.request(request.method, path);
-			} else {
-				Map<String, Object> map = Map( e("query", query), e("values", values) );
-				response = client.request(request.method, path, map);
+		ClientResponse response;
+		Route batchRequest = (coalesceWindow > 0) ? api.getRoute(clazz, batch) : null;
+		if(batchRequest != null) {
+			response = coalescer.request(batchRequest, clazz, showAll, (params != null) ? params : new HashMap<String, Object>(0));
+		} else {
+			response = send(request, path, params).get();
+		}
+		if(response.isSuccess()) {
+			List<Object> list = toList(response.getBody());
+			List<T> models = new ArrayList<T>();
+			for(Object o : list) {
+				T model = coerce(o).to(clazz);
+				models.add(model);
 			}
-			if(response.isSuccess()) {
-				List<Object> list = toList(response.getBody());
-				List<T> models = new ArrayList<T>();
-				for(Object o : list) {
-					T model = coerce(o).to(clazz);
-					models.add(model);
-				}
-				return models;
-			} else {
-				if(response.exceptionThrown()) {
-					throw new Exception(response.getException().getLocalizedMessage());
-				}
-				throw new Exception("could not retrieve data from the server\nstatus: " + response.getStatus() + "\ncontent: " + response.getBody());
+			return models;
+		} else {
+			if(response.exceptionThrown()) {
+				throw new Exception(response.getException().getLocalizedMessage());
 			}
-		} catch(MalformedURLException e) {
-			throw new IllegalStateException("malformed URL should have been caught earlier!");
+			throw new Exception("could not retrieve data from the server\nstatus: " + response.getStatus() + "\ncontent: " + response.getBody());
 		}
 	}
 	
@@ -390,6 +416,32 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 		return findAll(clazz, toMap(query), values);
 	}
 	
+	@Override
+	public <T extends Model> ModelCursor<T> findEach(Class<T> clazz, String query, Object... values) throws Exception {
+		return new ListCursor<T>(findAll(clazz, query, values));
+	}
+	
+	private Map<String, String> getBatchParams(Action action, Model model) {
+		switch(action) {
+		case create:
+			return getParams(model);
+		case update:
+			Map<String, String> params = getParams(model);
+			params.put("id", coerce(model.getId()).to(String.class));
+			return params;
+		default:
+			return Map("id", coerce(model.getId()).to(String.class));
+		}
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	public long getCoalesceWindow() {
+		return coalesceWindow;
+	}
+	
 	@Override
 	public ServiceInfo getInfo() {
 		return info;
@@ -443,7 +495,7 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 		}
 	}
 	
-	private void retrieve(Model model) throws Exception{
+	private Prepared retrieve(Model model) throws Exception{
 		if(model == null) {
 			throw new Exception("cannot retrieve null model");
 		}
@@ -453,27 +505,25 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 			throw new Exception("no published route found for " + model.getClass() + ": show");
 		}
 		
-		try {
-			Client client = Client.client(request.url);
-			client.setAccepts(JSON.acceptsType);
-			
-			String path = path(request.path, model);
-			
-			ClientResponse response = client.request(request.method, path);
-			if(response.isSuccess()) {
-				model.putAll(response.getBody());
-			} else if(response.exceptionThrown()) {
-				throw new Exception(response.getException().getLocalizedMessage());
-			}
-		} catch(MalformedURLException e) {
-			throw new IllegalStateException("malformed URL should have been caught earlier!");
-		}
+		String path = path(request.path, model);
+		
+		return new Prepared(request, path, null);
 	}
 	
 	@Override
 	public void retrieve(Model... models) throws Exception {
-		for(Model model : models) {
-			retrieve(model);
+		ClientResponse[] responses = send(show, models);
+		Exception exception = null;
+		for(int i = 0; i < models.length; i++) {
+			ClientResponse response = responses[i];
+			if(response.isSuccess()) {
+				models[i].putAll(response.getBody());
+			} else if(response.exceptionThrown() && exception == null) {
+				exception = new Exception(response.getException().getLocalizedMessage());
+			}
+		}
+		if(exception != null) {
+			throw exception;
 		}
 	}
 
@@ -488,34 +538,140 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 			throw new Exception("no published route found for " + model.getClass() + ": showAll:" + field);
 		}
 		
-		try {
-			Client client = Client.client(request.url);
-			client.setAccepts(JSON.acceptsType);
-			
-			String path = path(request.path, model, field);
+		String path = path(request.path, model, field);
+		
+		ClientResponse response = send(request, path, null).get();
+		if(response.isSuccess()) {
+			ModelAdapter adapter = ModelAdapter.getAdapter(model);
+			Class<? extends Model> type = adapter.getHasManyMemberClass(field);
 			
-			ClientResponse response = client.request(request.method, path);
-			if(response.isSuccess()) {
-				ModelAdapter adapter = ModelAdapter.getAdapter(model);
-				Class<? extends Model> type = adapter.getHasManyMemberClass(field);
-				
-				Object o = toObject(response.getBody());
-				if(o instanceof List) {
-					List<Object> list = new ArrayList<Object>();
-					for(Object e : (List<?>) o) {
-						Model m = coerce(e).to(type);
-						list.add(m);
+			Object o = toObject(response.getBody());
+			if(o instanceof List) {
+				List<Object> list = new ArrayList<Object>();
+				for(Object e : (List<?>) o) {
+					Model m = coerce(e).to(type);
+					list.add(m);
+				}
+				model.put(field, list);
+			}
+		} else if(response.exceptionThrown()) {
+			throw new Exception(response.getException().getLocalizedMessage());
+		}
+	}
+
+	@Override
+	public void retrieve(Model[] models, String field) throws Exception {
+		// there is no published route for the field of several models: one request each
+		for(Model model : models) {
+			retrieve(model, field);
+		}
+	}
+
+	/**
+	 * Send a request for each of the given models and wait for all of the responses. Models whose type has
+	 * a published batch route are sent {@link #getBatchSize()} at a time, in a single request to that route;
+	 * the rest are sent one at a time. Every model is checked, and its request prepared, before any of them
+	 * are sent, so that a model that can't be sent (null, or without a published route) fails the call while
+	 * nothing has been sent yet - rather than after the models before it were saved on the server, without
+	 * their responses ever being read.
+	 * @return the response for each model, in the same order as the given models
+	 */
+	private ClientResponse[] send(Action action, Model[] models) throws Exception {
+		Prepared[] prepared = new Prepared[models.length];
+		Batch[] batches = new Batch[models.length];
+		int[] indexes = new int[models.length];
+
+		List<Batch> all = new ArrayList<Batch>();
+		Map<Class<?>, Batch> open = new HashMap<Class<?>, Batch>();
+		for(int i = 0; i < models.length; i++) {
+			Model model = models[i];
+			Batch batch = null;
+			if(model != null && models.length > 1 && batchSize > 1) {
+				batch = open.get(model.getClass());
+				if(batch == null) {
+					Route request = api.getRoute(model, Action.batch);
+					if(request != null) {
+						batch = new Batch(request, model.getClass(), action);
+						open.put(model.getClass(), batch);
+						all.add(batch);
 					}
-					model.put(field, list);
 				}
-			} else if(response.exceptionThrown()) {
-				throw new Exception(response.getException().getLocalizedMessage());
 			}
+			if(batch == null) {
+				switch(action) {
+				case create:	prepared[i] = create(model);	break;
+				case update:	prepared[i] = update(model);	break;
+				case destroy:	prepared[i] = destroy(model);	break;
+				default:		prepared[i] = retrieve(model);	break;
+				}
+			} else {
+				batches[i] = batch;
+				indexes[i] = batch.add(getBatchParams(action, model));
+				if(batch.size() >= batchSize) {
+					open.remove(model.getClass());
+				}
+			}
+		}
+
+		for(Batch batch : all) {
+			batch.send();
+		}
+		ClientFuture[] futures = new ClientFuture[models.length];
+		for(int i = 0; i < models.length; i++) {
+			if(prepared[i] != null) {
+				futures[i] = send(prepared[i].route, prepared[i].path, prepared[i].params);
+			}
+		}
+		
+		ClientResponse[] responses = new ClientResponse[models.length];
+		for(int i = 0; i < models.length; i++) {
+			responses[i] = (batches[i] != null) ? batches[i].get(indexes[i]) : futures[i].get();
+		}
+		return responses;
+	}
+
+	/**
+	 * Send a request on one of the pooled, keep-alive connections to the route's host without waiting
+	 * for the response, so that several requests (for several models) can be outstanding at once.
+	 */
+	private ClientFuture send(Route request, String path, Map<String, ?> params) {
+		try {
+			Client client = Client.client(request.url);
+			client.setAccepts(JSON.acceptsType);
+			return client.requestAsync(request.method, path, params);
 		} catch(MalformedURLException e) {
 			throw new IllegalStateException("malformed URL should have been caught earlier!");
 		}
 	}
 
+	/**
+	 * Set the largest number of models to send in a single request to a batch route, when saving, destroying,
+	 * or retrieving several models at once, and when coalescing calls to the find methods.
+	 * A size of 1 turns batching off; the default is {@value #DEFAULT_BATCH_SIZE}. Servers will not run
+	 * batches of more than {@code HttpController.MAX_BATCH_SIZE} requests.
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be greater than 0");
+		}
+		this.batchSize = batchSize;
+		coalescer.setBatchSize(batchSize);
+	}
+	
+	/**
+	 * Set the window, in milliseconds, in which calls to {@link #findById(Class, Object)} (and find and findAll)
+	 * for a model type, that has a published batch route, are collected and then sent together in a single request.
+	 * Each call waits up to this long before its request is sent, so coalescing is off unless it is set here:
+	 * the default window is {@value #DEFAULT_COALESCE_WINDOW}, and a window of 0 turns coalescing off.
+	 */
+	public void setCoalesceWindow(long millis) {
+		if(millis < 0) {
+			throw new IllegalArgumentException("window cannot be negative");
+		}
+		this.coalesceWindow = millis;
+		coalescer.setWindow(millis);
+	}
+	
 	public void setDiscoveryUrl(String url) {
 		api.setDiscoveryUrl(url);
 	}
@@ -531,7 +687,7 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 		}
 	}
 	
-	private void update(Model model) throws Exception {
+	private Prepared update(Model model) throws Exception {
 		if(model == null) {
 			throw new Exception("cannot update null model");
 		}
@@ -541,29 +697,27 @@ public class HttpPersistService extends RemotePersistService implements PersistS
 			throw new Exception("no published route found for " + model.getClass() + ": update");
 		}
 		
-		try {
-			Client client = Client.client(request.url);
-			client.setAccepts(JSON.acceptsType);
-			
-			String path = path(request.path, model);
-			Map<String, String> params = getParams(model);
-			
-			ClientResponse response = client.request(request.method, path, params);
-			if(response.isConflict()) {
-				setErrors(model, response);
-			}
-			else if(response.exceptionThrown()) {
-				throw new Exception(response.getException().getLocalizedMessage());
-			}
-		} catch(MalformedURLException e) {
-			throw new IllegalStateException("malformed URL should have been caught earlier!");
-		}
+		String path = path(request.path, model);
+		Map<String, String> params = getParams(model);
+		
+		return new Prepared(request, path, params);
 	}
 	
 	@Override
 	public void update(Model... models) throws Exception {
-		for(Model model : models) {
-			update(model);
+		ClientResponse[] responses = send(update, models);
+		Exception exception = null;
+		for(int i = 0; i < models.length; i++) {
+			ClientResponse response = responses[i];
+			if(response.isConflict()) {
+				setErrors(models[i], response);
+			}
+			else if(response.exceptionThrown() && exception == null) {
+				exception = new Exception(response.getException().getLocalizedMessage());
+			}
+		}
+		if(exception != null) {
+			throw exception;
 		}
 	}
 
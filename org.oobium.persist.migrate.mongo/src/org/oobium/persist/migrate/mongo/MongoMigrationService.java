@@ -1,5 +1,8 @@
 package org.oobium.persist.migrate.mongo;
 
+import java.util.List;
+import java.util.Map;
+
 import org.oobium.logging.Logger;
 import org.oobium.persist.PersistService;
 import org.oobium.persist.PersistServiceProvider;
@@ -29,6 +32,15 @@ public class MongoMigrationService extends AbstractMigrationService {
 		persistor.dropDatabase(client);
 	}
 
+	/**
+	 * Insert the given documents into the given collection in batches, rather than one at a time; for
+	 * migrations that load large amounts of data. See {@link MongoPersistService#insert(String, List)}.
+	 * @return the _ids of the inserted documents, in the same order
+	 */
+	public List<Object> insert(String collection, List<Map<String, Object>> documents) throws Exception {
+		return persistor.insert(collection, documents);
+	}
+	
 	@Override
 	public void setPersistServices(PersistServiceProvider provider) {
 		PersistService service = provider.get("org.oobium.persist.mongo");
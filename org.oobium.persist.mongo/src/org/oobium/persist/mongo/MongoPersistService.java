@@ -7,22 +7,32 @@ import static org.oobium.utils.json.JsonUtils.toMap;
 import static org.oobium.utils.literal.Dictionary;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.bson.types.ObjectId;
 import org.oobium.logging.LogProvider;
 import org.oobium.logging.Logger;
+import org.oobium.persist.CursorException;
+import org.oobium.persist.LoadContext;
 import org.oobium.persist.Model;
 import org.oobium.persist.ModelAdapter;
+import org.oobium.persist.ModelCursor;
 import org.oobium.persist.PersistClient;
 import org.oobium.persist.PersistService;
+import org.oobium.persist.QueryCounter;
 import org.oobium.persist.ServiceInfo;
 import org.oobium.persist.mongo.internal.ObjectIdCoercer;
 import org.oobium.utils.StringUtils;
@@ -39,6 +49,8 @@ import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
 
 /**
  * A {@link PersistService} for MongoDB.
@@ -71,6 +83,11 @@ public class MongoPersistService implements BundleActivator, PersistService {
 
 	private final ReadWriteLock lock;
 
+	private int fetchSize = Integer.getInteger("org.oobium.persist.mongo.fetchSize", 100);
+	private int batchSize = Integer.getInteger("org.oobium.persist.mongo.batchSize", 100);
+	private boolean ordered = !"false".equals(System.getProperty("org.oobium.persist.mongo.ordered"));
+	private WriteConcern writeConcern = valueOf(System.getProperty("org.oobium.persist.mongo.writeConcern"));
+
 	public MongoPersistService() {
 		logger = LogProvider.getLogger(MongoPersistService.class);
 		databases = new HashMap<String, Database>();
@@ -125,6 +142,66 @@ public class MongoPersistService implements BundleActivator, PersistService {
 		threadClient.set(null);
 	}
 	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	public int getFetchSize() {
+		return fetchSize;
+	}
+	
+	/**
+	 * @return the write concern given to each write; null if the collection's own is used
+	 */
+	public WriteConcern getWriteConcern() {
+		return writeConcern;
+	}
+	
+	public boolean isOrdered() {
+		return ordered;
+	}
+	
+	/**
+	 * Set the maximum number of documents written by a single insert, update or remove, when creating,
+	 * updating or destroying several models at once.
+	 * <p>Defaults to the "org.oobium.persist.mongo.batchSize" system property, or 100 if it is not set.</p>
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be greater than 0");
+		}
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Set the number of documents that a cursor returned by {@link #findEach(Class, String, Object...)}
+	 * reads from the server in each batch.
+	 * <p>Defaults to the "org.oobium.persist.mongo.fetchSize" system property, or 100 if it is not set.</p>
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+	
+	/**
+	 * Set whether {@link #create(Model...)} stops at the first document that fails to be inserted (ordered), or
+	 * goes on to insert the rest (unordered) - in both cases, the first error is thrown once it is done.
+	 * <p>Defaults to ordered, unless the "org.oobium.persist.mongo.ordered" system property is "false".</p>
+	 */
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+	
+	/**
+	 * Set the write concern given to each insert, update and remove. Note that errors are only
+	 * reported by write concerns that wait for the server's response (SAFE and above).
+	 * <p>Defaults to the write concern named by the "org.oobium.persist.mongo.writeConcern" system property
+	 * (NONE, NORMAL, SAFE, FSYNC_SAFE or REPLICAS_SAFE), or to the collection's own if it is not set.</p>
+	 * @param writeConcern the write concern; null to use the collection's own
+	 */
+	public void setWriteConcern(WriteConcern writeConcern) {
+		this.writeConcern = writeConcern;
+	}
+	
 	@Override
 	public long count(Class<? extends Model> clazz) throws Exception {
 		return count(clazz, (Map<String, Object>) null);
@@ -150,6 +227,7 @@ public class MongoPersistService implements BundleActivator, PersistService {
 		query.remove("$limit");
 		query.remove("$order");
 
+		QueryCounter.increment();
 		return c.count(new BasicDBObject(query));
 	}
 	
@@ -158,23 +236,124 @@ public class MongoPersistService implements BundleActivator, PersistService {
 		return count(clazz, toMap(query, values), new Object[0]);
 	}
 	
+	/**
+	 * Add the models to be inserted along with the given model (the new models that it references with a hasOne
+	 * key, including those of its embedded models) to the given order, after the models that they reference in turn.
+	 * @return the depth of the given model: 0 if it references no new models, otherwise one more than the deepest
+	 * of the new models that it references
+	 */
+	private int addToCreate(Model model, Map<Model, Integer> depths, List<Model> order) throws Exception {
+		Integer depth = depths.get(model);
+		if(depth != null) {
+			return (depth < 0) ? 0 : depth; // -1 is a cycle, which is fine as all of the ids are given out up front
+		}
+		depths.put(model, -1);
+		List<Model> references = new ArrayList<Model>();
+		addReferences(model, references);
+		int max = -1;
+		for(Model reference : references) {
+			if(reference.getPersistor() == model.getPersistor()) {
+				max = Math.max(max, addToCreate(reference, depths, order));
+			} else {
+				reference.getPersistor().create(reference);
+			}
+		}
+		depths.put(model, max + 1);
+		order.add(model);
+		return max + 1;
+	}
+	
+	private void addReferences(Model model, List<Model> references) {
+		ModelAdapter adapter = ModelAdapter.getAdapter(model);
+		for(String field : model.getAll().keySet()) {
+			if(adapter.hasOne(field) && adapter.hasKey(field)) {
+				Model m = (Model) model.get(field);
+				if(m != null) {
+					if(adapter.isEmbedded(field)) {
+						addReferences(m, references);
+					} else if(m.isNew()) {
+						references.add(m);
+					}
+				}
+			}
+			else if(adapter.hasMany(field) && adapter.isEmbedded(field) && adapter.getEmbedded(field) == null) {
+				for(Object o : (Collection<?>) model.get(field)) {
+					addReferences((Model) o, references);
+				}
+			}
+		}
+	}
+	
 	@Override
 	public void create(Model... models) throws Exception {
-		DB db = getDB();
+		create(getDB(), models, System.currentTimeMillis());
+	}
+
+	/**
+	 * Insert the given models, and the new models that they reference, with one insert for each batch of
+	 * models of the same collection - referenced models first, in order of their depth.
+	 * <p>All of the models are given their ids up front, so that the documents referencing them can be built
+	 * before they are inserted; models that end up not being inserted have their ids cleared again.
+	 * Referenced models are inserted directly, as the given models are, without their own callbacks.</p>
+	 */
+	private void create(DB db, Model[] models, long now) throws Exception {
+		Map<Model, Integer> depths = new IdentityHashMap<Model, Integer>();
+		List<Model> order = new ArrayList<Model>();
 		for(Model model : models) {
-			logger.debug("start doCreate {}", model.asSimpleString());
-			ModelAdapter adapter = ModelAdapter.getAdapter(model);
-			DBCollection c = db.getCollection(tableName(adapter.getModelClass()));
-			Map<String, Object> data = getData(model, false, true);
-			logger.trace(String.valueOf(data));
-			DBObject dbo = new BasicDBObject(data);
-			c.insert(dbo);
-			model.setId(dbo.get("_id"));
-			logger.debug("end doCreate");
+			if(model.isNew()) {
+				addToCreate(model, depths, order);
+			}
+		}
+		if(order.isEmpty()) {
+			return;
+		}
+
+		List<List<Model>> levels = new ArrayList<List<Model>>();
+		for(Model model : order) {
+			int depth = depths.get(model);
+			while(levels.size() <= depth) {
+				levels.add(new ArrayList<Model>());
+			}
+			levels.get(depth).add(model);
+			model.setId(new ObjectId());
+		}
+
+		Set<Model> created = Collections.newSetFromMap(new IdentityHashMap<Model, Boolean>());
+		MongoException error = null;
+		try {
+			for(List<Model> level : levels) {
+				for(Entry<String, List<Model>> entry : groupByCollection(level).entrySet()) {
+					DBCollection c = db.getCollection(entry.getKey());
+					List<Model> list = entry.getValue();
+					for(int i = 0; i < list.size(); i += batchSize) {
+						List<Model> batch = list.subList(i, Math.min(i + batchSize, list.size()));
+						MongoException e = insert(c, batch, now, created);
+						if(e != null) {
+							if(ordered) {
+								throw e;
+							}
+							if(error == null) {
+								error = e;
+							}
+						}
+					}
+				}
+			}
+		} finally {
+			if(created.size() < order.size()) {
+				for(Model model : order) {
+					if(!created.contains(model)) {
+						model.setId(null);
+					}
+				}
+			}
+		}
+		if(error != null) {
+			throw error;
 		}
 	}
 
-	private Map<String, Object> getData(Model model, boolean includeId, boolean isCreate) {
+	private Map<String, Object> getData(Model model, boolean includeId, boolean isCreate, long date) {
 		ModelAdapter adapter = ModelAdapter.getAdapter(model);
 		Map<String, Object> data = model.getAll();
 		for(Iterator<String> iter = data.keySet().iterator(); iter.hasNext(); ) {
@@ -186,10 +365,9 @@ public class MongoPersistService implements BundleActivator, PersistService {
 				Model m = (Model) model.get(field);
 				if(m != null) {
 					if(adapter.isEmbedded(field)) {
-						data.put(field, getData(m, true, isCreate));
+						data.put(field, getData(m, true, isCreate, date));
 					} else {
-						if(m.isNew()) m.create();
-						data.put(field, m.getId());
+						data.put(field, m.getId()); // new models have been created beforehand
 					}
 				}
 				continue;
@@ -203,7 +381,7 @@ public class MongoPersistService implements BundleActivator, PersistService {
 						Map<String, Object> map;
 						String[] fields = adapter.getEmbedded(field);
 						if(fields == null) {
-							map = getData(m, true, isCreate);
+							map = getData(m, true, isCreate, date);
 						} else {
 							map = new HashMap<String, Object>();
 							for(String f : fields) {
@@ -226,7 +404,6 @@ public class MongoPersistService implements BundleActivator, PersistService {
 			data.put("id", model.getId());
 		}
 		if(adapter.isTimeStamped() || adapter.isDateStamped()) {
-			long date = System.currentTimeMillis();
 			if(adapter.isDateStamped()) {
 				if(isCreate) {
 					if(data.get(createdOn) == null) {
@@ -262,12 +439,16 @@ public class MongoPersistService implements BundleActivator, PersistService {
 	@Override
 	public void destroy(Model... models) throws Exception {
 		DB db = getDB();
-		for(Model model : models) {
-			logger.debug("start doDestroy {}", model.asSimpleString());
-			DBCollection c = db.getCollection(tableName(model));
-			BasicDBObject dbo = new BasicDBObject("_id", model.getId(ObjectId.class));
-			c.remove(dbo);
-			logger.debug("end doDestroy");
+		for(Entry<String, List<Model>> entry : groupByCollection(Arrays.asList(models)).entrySet()) {
+			DBCollection c = db.getCollection(entry.getKey());
+			List<Model> list = entry.getValue();
+			for(int i = 0; i < list.size(); i += batchSize) {
+				List<Model> batch = list.subList(i, Math.min(i + batchSize, list.size()));
+				logger.debug("start doDestroy {} from {}", batch.size(), c.getName());
+				c.remove(new BasicDBObject("_id", idQuery(batch)), getWriteConcern(c));
+				QueryCounter.increment();
+				logger.debug("end doDestroy");
+			}
 		}
 	}
 	
@@ -314,6 +495,7 @@ public class MongoPersistService implements BundleActivator, PersistService {
 		
 		cursor.limit(1);
 
+		QueryCounter.increment();
 		if(cursor.hasNext()) {
 			return getModel(clazz, cursor.next().toMap());
 		}
@@ -329,6 +511,7 @@ public class MongoPersistService implements BundleActivator, PersistService {
 	public Map<String, Object> find(String collection, Object id) throws Exception {
 		DB db = getDB();
 		DBCollection c = db.getCollection(collection);
+		QueryCounter.increment();
 		DBObject dbo = c.findOne(coerce(id).to(ObjectId.class));
 		return (dbo != null) ? dbo.toMap() : null;
 	}
@@ -338,6 +521,7 @@ public class MongoPersistService implements BundleActivator, PersistService {
 		DB db = getDB();
 		DBCollection c = db.getCollection(collection);
 		DBObject dbo = new BasicDBObject(toMap(jsonQuery, values));
+		QueryCounter.increment();
 		dbo = c.findOne(dbo);
 		return (dbo != null) ? dbo.toMap() : null;
 	}
@@ -349,6 +533,16 @@ public class MongoPersistService implements BundleActivator, PersistService {
 	
 	@Override
 	public <T extends Model> List<T> findAll(Class<T> clazz, Map<String, Object> query, Object... values) throws Exception {
+		DBCursor cursor = findCursor(clazz, query, values);
+		List<T> models = new ArrayList<T>();
+		while(cursor.hasNext()) {
+			models.add(getModel(clazz, cursor.next().toMap()));
+		}
+		LoadContext.share(models);
+		return models;
+	}
+
+	private DBCursor findCursor(Class<? extends Model> clazz, Map<String, Object> query, Object... values) throws Exception {
 		if(query == null) query = new HashMap<String, Object>(0);
 
 		DB db = getDB();
@@ -388,11 +582,8 @@ public class MongoPersistService implements BundleActivator, PersistService {
 			}
 		}
 
-		List<T> models = new ArrayList<T>();
-		while(cursor.hasNext()) {
-			models.add(getModel(clazz, cursor.next().toMap()));
-		}
-		return models;
+		QueryCounter.increment();
+		return cursor;
 	}
 
 	@Override
@@ -400,11 +591,63 @@ public class MongoPersistService implements BundleActivator, PersistService {
 		return findAll(clazz, toMap(query, values), new Object[0]);
 	}
 
+	/**
+	 * Find the models as they are iterated over, reading them from the server in batches of the fetch size.
+	 * @see #setFetchSize(int)
+	 */
+	@Override
+	public <T extends Model> ModelCursor<T> findEach(final Class<T> clazz, String query, Object... values) throws Exception {
+		final DBCursor cursor = findCursor(clazz, toMap(query, values), new Object[0]);
+		cursor.batchSize(fetchSize);
+		return new ModelCursor<T>() {
+			private boolean iterated;
+			@Override
+			public void close() {
+				cursor.close();
+			}
+			@Override
+			public Iterator<T> iterator() {
+				if(iterated) {
+					throw new IllegalStateException("a cursor can only be iterated once");
+				}
+				iterated = true;
+				return new Iterator<T>() {
+					@Override
+					public boolean hasNext() {
+						if(cursor.hasNext()) {
+							return true;
+						}
+						cursor.close();
+						return false;
+					}
+					@SuppressWarnings("unchecked")
+					@Override
+					public T next() {
+						try {
+							return getModel(clazz, cursor.next().toMap());
+						} catch(RuntimeException e) {
+							cursor.close();
+							throw e;
+						} catch(Exception e) {
+							cursor.close();
+							throw new CursorException(e);
+						}
+					}
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
 	@Override
 	public <T extends Model> T findById(Class<T> clazz, Object id) throws Exception {
 		DB db = getDB();
 		DBCollection c = db.getCollection(tableName(clazz));
 		
+		QueryCounter.increment();
 		DBObject o = c.findOne(coerce(id).to(ObjectId.class));
 		return (o != null) ? getModel(clazz, o.toMap()) : null;
 	}
@@ -473,6 +716,94 @@ public class MongoPersistService implements BundleActivator, PersistService {
 		return coerce(data).to(clazz);
 	}
 
+	private WriteConcern getWriteConcern(DBCollection c) {
+		return (writeConcern != null) ? writeConcern : c.getWriteConcern();
+	}
+	
+	private Map<String, List<Model>> groupByCollection(List<Model> models) {
+		Map<String, List<Model>> map = new LinkedHashMap<String, List<Model>>();
+		for(Model model : models) {
+			String collection = tableName(ModelAdapter.getAdapter(model).getModelClass());
+			List<Model> list = map.get(collection);
+			if(list == null) {
+				map.put(collection, list = new ArrayList<Model>());
+			}
+			list.add(model);
+		}
+		return map;
+	}
+	
+	/**
+	 * @return the query value that matches the _ids of the given models: the single id itself, or an $in of all of them
+	 */
+	private Object idQuery(List<Model> models) {
+		if(models.size() == 1) {
+			return models.get(0).getId(ObjectId.class);
+		}
+		List<Object> ids = new ArrayList<Object>(models.size());
+		for(Model model : models) {
+			ids.add(model.getId(ObjectId.class));
+		}
+		return new BasicDBObject("$in", ids);
+	}
+	
+	/**
+	 * Insert the given batch of models, which have all been given their ids, with a single insert, and add
+	 * the models that were inserted to the given set.
+	 * <p>If the insert fails: when ordered, the batch is checked to see which documents made it in before the
+	 * failure; when unordered, the documents that did not make it in are inserted one at a time, so that as many
+	 * of them as possible are inserted.</p>
+	 * @return the (first) error, if there was one; null otherwise
+	 */
+	private MongoException insert(DBCollection c, List<Model> batch, long now, Set<Model> created) {
+		logger.debug("start doCreate {} in {}", batch.size(), c.getName());
+		List<DBObject> dbos = new ArrayList<DBObject>(batch.size());
+		for(Model model : batch) {
+			Map<String, Object> data = getData(model, false, true, now);
+			logger.trace(String.valueOf(data));
+			DBObject dbo = new BasicDBObject(data);
+			dbo.put("_id", model.getId());
+			dbos.add(dbo);
+		}
+		WriteConcern concern = getWriteConcern(c);
+		try {
+			c.insert(dbos, concern);
+			QueryCounter.increment();
+			created.addAll(batch);
+			logger.debug("end doCreate");
+			return null;
+		} catch(MongoException e) {
+			logger.debug("failed doCreate {}", e.getMessage());
+			Set<Object> inserted = new HashSet<Object>();
+			DBCursor cursor = c.find(new BasicDBObject("_id", idQuery(batch)), new BasicDBObject("_id", 1));
+			QueryCounter.increment();
+			try {
+				while(cursor.hasNext()) {
+					inserted.add(cursor.next().get("_id"));
+				}
+			} finally {
+				cursor.close();
+			}
+			MongoException error = e;
+			for(int i = 0; i < batch.size(); i++) {
+				Model model = batch.get(i);
+				if(inserted.contains(model.getId())) {
+					created.add(model);
+				}
+				else if(!ordered) {
+					try {
+						c.insert(dbos.get(i), concern);
+						QueryCounter.increment();
+						created.add(model);
+					} catch(MongoException e2) {
+						logger.debug("failed doCreate {}: {}", model.asSimpleString(), e2.getMessage());
+					}
+				}
+			}
+			return error;
+		}
+	}
+	
 	public Object insert(String collection, String json, Object...values) throws Exception {
 		DB db = getDB();
 		DBCollection c = db.getCollection(collection);
@@ -481,6 +812,33 @@ public class MongoPersistService implements BundleActivator, PersistService {
 		return dbo.get("_id");
 	}
 	
+	/**
+	 * Insert the given documents into the given collection, in batches of up to {@link #getBatchSize()} documents
+	 * with a single insert each, rather than one at a time.
+	 * @return the _ids of the inserted documents, in the same order
+	 */
+	public List<Object> insert(String collection, List<Map<String, Object>> documents) throws Exception {
+		DB db = getDB();
+		DBCollection c = db.getCollection(collection);
+		WriteConcern concern = getWriteConcern(c);
+		List<Object> ids = new ArrayList<Object>(documents.size());
+		for(int i = 0; i < documents.size(); i += batchSize) {
+			List<Map<String, Object>> batch = documents.subList(i, Math.min(i + batchSize, documents.size()));
+			List<DBObject> dbos = new ArrayList<DBObject>(batch.size());
+			for(Map<String, Object> document : batch) {
+				DBObject dbo = new BasicDBObject(document);
+				if(dbo.get("_id") == null) {
+					dbo.put("_id", new ObjectId());
+				}
+				dbos.add(dbo);
+				ids.add(dbo.get("_id"));
+			}
+			c.insert(dbos, concern);
+			QueryCounter.increment();
+		}
+		return ids;
+	}
+	
 	@Override
 	public boolean isSessionOpen() {
 		return threadClient.get() != null;
@@ -504,23 +862,107 @@ public class MongoPersistService implements BundleActivator, PersistService {
 		}
 	}
 
+	/**
+	 * Retrieve the given models, with a single query for each collection.
+	 */
 	@Override
 	@SuppressWarnings("unchecked")
 	public void retrieve(Model... models) throws Exception {
 		DB db = getDB();
+		Map<String, Map<String, Model>> collections = new LinkedHashMap<String, Map<String, Model>>();
 		for(Model model : models) {
-			DBCollection c = db.getCollection(tableName(model));
-			DBObject o = c.findOne(model.getId(ObjectId.class));
-			if(o != null) {
-				model.putAll(o.toMap());
+			String collection = tableName(model);
+			Map<String, Model> map = collections.get(collection);
+			if(map == null) {
+				collections.put(collection, map = new LinkedHashMap<String, Model>());
+			}
+			map.put(String.valueOf(model.getId(ObjectId.class)), model);
+		}
+		for(Entry<String, Map<String, Model>> entry : collections.entrySet()) {
+			DBCollection c = db.getCollection(entry.getKey());
+			Map<String, Model> map = entry.getValue();
+			QueryCounter.increment();
+			if(map.size() == 1) {
+				Model model = map.values().iterator().next();
+				DBObject o = c.findOne(model.getId(ObjectId.class));
+				if(o != null) {
+					model.putAll(o.toMap());
+				}
+			} else {
+				List<ObjectId> ids = new ArrayList<ObjectId>(map.size());
+				for(Model model : map.values()) {
+					ids.add(model.getId(ObjectId.class));
+				}
+				DBCursor cursor = c.find(new BasicDBObject("_id", new BasicDBObject("$in", ids)));
+				while(cursor.hasNext()) {
+					Map<String, Object> data = cursor.next().toMap();
+					Model model = map.get(String.valueOf(data.remove("_id")));
+					if(model != null) {
+						model.putAll(data);
+					}
+				}
 			}
 		}
 	}
 	
 	@Override
 	public void retrieve(Model model, String hasMany) throws Exception {
-		// TODO retrieve(Model model, String hasMany)
-		throw new UnsupportedOperationException("not yet implemented: MongoPersistService#retrieve(Model model, String hasMany)");
+		retrieve(new Model[] { model }, hasMany);
+	}
+	
+	/**
+	 * Retrieve the given relation of each of the given models, with a single query. Only relations whose
+	 * key is held by the related models (the many side of a one to many, or a one to one that is held
+	 * by the other model) are supported; embedded relations are retrieved along with the models themselves.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void retrieve(Model[] models, String hasMany) throws Exception {
+		if(models.length == 0) {
+			return;
+		}
+		ModelAdapter adapter = ModelAdapter.getAdapter(models[0]);
+		boolean many = adapter.isManyToOne(hasMany);
+		if(!many && !(adapter.isOneToOne(hasMany) && !adapter.hasKey(hasMany))) {
+			// TODO retrieve many to many relations
+			throw new UnsupportedOperationException("not yet implemented: MongoPersistService#retrieve(" + adapter.getModelClass().getSimpleName() + ", " + hasMany + ")");
+		}
+		Class<? extends Model> type = adapter.getRelationClass(hasMany);
+		String opposite = adapter.getOpposite(hasMany);
+
+		List<ObjectId> ids = new ArrayList<ObjectId>(models.length);
+		for(Model model : models) {
+			ids.add(model.getId(ObjectId.class));
+		}
+		
+		DB db = getDB();
+		DBCollection c = db.getCollection(tableName(type));
+		QueryCounter.increment();
+		DBCursor cursor = c.find(new BasicDBObject(opposite, new BasicDBObject("$in", ids)));
+		
+		Map<String, List<Model>> related = new HashMap<String, List<Model>>();
+		List<Model> all = new ArrayList<Model>();
+		while(cursor.hasNext()) {
+			Map<String, Object> data = cursor.next().toMap();
+			String id = String.valueOf(data.get(opposite));
+			Model model = getModel(type, data);
+			List<Model> list = related.get(id);
+			if(list == null) {
+				related.put(id, list = new ArrayList<Model>());
+			}
+			list.add(model);
+			all.add(model);
+		}
+		LoadContext.share(all);
+		
+		for(Model model : models) {
+			List<Model> list = related.get(String.valueOf(model.getId(ObjectId.class)));
+			if(many) {
+				model.put(hasMany, (list != null) ? list : new ArrayList<Model>(0));
+			} else {
+				model.put(hasMany, (list != null) ? list.get(0) : null);
+			}
+		}
 	}
 	
 	public void start(BundleContext context) throws Exception {
@@ -578,16 +1020,63 @@ public class MongoPersistService implements BundleActivator, PersistService {
 	@Override
 	public void update(Model... models) throws Exception {
 		DB db = getDB();
+		long now = System.currentTimeMillis();
+
+		List<Model> references = new ArrayList<Model>();
 		for(Model model : models) {
-			logger.debug("start doUpdate: {}", model.asSimpleString());
-			DBCollection c = db.getCollection(tableName(model));
-			DBObject q = new BasicDBObject("_id", model.getId(ObjectId.class));
-			Map<String, Object> data = getData(model, false, false);
-			logger.trace(String.valueOf(data));
-			DBObject dbo = new BasicDBObject("$set", data);
-			c.update(q, dbo);
-			logger.debug("end doUpdate");
+			List<Model> list = new ArrayList<Model>();
+			addReferences(model, list);
+			for(Model reference : list) {
+				if(reference.getPersistor() == model.getPersistor()) {
+					references.add(reference);
+				} else {
+					reference.getPersistor().create(reference);
+				}
+			}
+		}
+		if(!references.isEmpty()) {
+			create(db, references.toArray(new Model[references.size()]), now);
+		}
+
+		for(Entry<String, List<Model>> entry : groupByCollection(Arrays.asList(models)).entrySet()) {
+			DBCollection c = db.getCollection(entry.getKey());
+			WriteConcern concern = getWriteConcern(c);
+
+			// models that are given the same data (such as a status set on each of them) are updated together
+			Map<Map<String, Object>, List<Model>> updates = new LinkedHashMap<Map<String, Object>, List<Model>>();
+			for(Model model : entry.getValue()) {
+				Map<String, Object> data = getData(model, false, false, now);
+				List<Model> list = updates.get(data);
+				if(list == null) {
+					updates.put(data, list = new ArrayList<Model>());
+				}
+				list.add(model);
+			}
+
+			for(Entry<Map<String, Object>, List<Model>> update : updates.entrySet()) {
+				DBObject dbo = new BasicDBObject("$set", update.getKey());
+				List<Model> list = update.getValue();
+				for(int i = 0; i < list.size(); i += batchSize) {
+					List<Model> batch = list.subList(i, Math.min(i + batchSize, list.size()));
+					logger.debug("start doUpdate {} in {}", batch.size(), c.getName());
+					logger.trace(String.valueOf(update.getKey()));
+					c.update(new BasicDBObject("_id", idQuery(batch)), dbo, false, batch.size() > 1, concern);
+					QueryCounter.increment();
+					logger.debug("end doUpdate");
+				}
+			}
+		}
+	}
+	
+	private static WriteConcern valueOf(String writeConcern) {
+		if(writeConcern == null) {
+			return null;
+		}
+		WriteConcern concern = WriteConcern.valueOf(writeConcern);
+		if(concern == null) {
+			throw new IllegalArgumentException("unknown write concern: " + writeConcern);
 		}
+		return concern;
 	}
 
 }
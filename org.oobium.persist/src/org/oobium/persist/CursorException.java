@@ -0,0 +1,24 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist;
+
+/**
+ * Thrown by the iterator of a {@link ModelCursor} when the next model cannot be loaded.
+ */
+public class CursorException extends RuntimeException {
+
+	private static final long serialVersionUID = -2954097146391462270L;
+
+	public CursorException(Throwable cause) {
+		super(cause);
+	}
+
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link ModelCursor} over a list that has already been loaded; for services that have no way to stream their results.
+ */
+public class ListCursor<T extends Model> implements ModelCursor<T> {
+
+	private List<T> list;
+	
+	public ListCursor(List<T> list) {
+		this.list = list;
+	}
+	
+	@Override
+	public void close() {
+		list = null;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		if(list == null) {
+			return Collections.<T>emptyList().iterator();
+		}
+		return list.iterator();
+	}
+	
+}
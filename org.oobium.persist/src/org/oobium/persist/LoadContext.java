@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist;
+
+import static org.oobium.utils.coercion.TypeCoercer.coerce;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The models that were loaded together, by a single query, so that their relations can be loaded together too.
+ * <p>When a relation that has not been loaded is used on one of the models (a hasMany, or a hasOne that is held by
+ * the other model), it is retrieved for all of the models in the context that have not loaded it yet, with a single
+ * call to {@link PersistService#retrieve(Model[], String)} - rather than once for each model, as a view iterating over
+ * a list would otherwise do.</p>
+ * <p>Related models that are only known by their id (the value of a hasOne field that was not included) get a
+ * context of their own, the first time the field is used: loading any one of them loads all of them, with a single
+ * call to {@link PersistService#retrieve(Model...)}.</p>
+ * <p>Persist services put the results of each query into a context with {@link #share(Collection)}. At most
+ * {@link #getBatchSize()} models are loaded at a time.</p>
+ */
+public class LoadContext {
+
+	private static volatile int batchSize = Integer.getInteger("org.oobium.persist.loadBatchSize", 100);
+
+	/**
+	 * @return the maximum number of models whose relations are loaded at a time
+	 */
+	public static int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Set the maximum number of models whose relations are loaded at a time (the size of the "IN (...)" of a query).
+	 * Defaults to the "org.oobium.persist.loadBatchSize" system property, or 100 if it is not set.
+	 * @param size the batch size; 1 turns batching off
+	 */
+	public static void setBatchSize(int size) {
+		if(size < 1) {
+			throw new IllegalArgumentException("batch size must be greater than 0: " + size);
+		}
+		batchSize = size;
+	}
+
+	/**
+	 * Put the given models, which were loaded by a single query, into a new load context. Models that are new,
+	 * or that are already in a context, are left out; nothing is done unless at least two models are left.
+	 * @param models the models; other objects in the collection are ignored
+	 */
+	public static void share(Collection<?> models) {
+		if(models != null && models.size() > 1) {
+			List<Model> list = new ArrayList<Model>(models.size());
+			for(Object o : models) {
+				if(o instanceof Model) {
+					Model model = (Model) o;
+					if(model.loadContext == null && !model.isNew()) {
+						list.add(model);
+					}
+				}
+			}
+			if(list.size() > 1) {
+				new LoadContext(list, false);
+			}
+		}
+	}
+
+
+	private final List<Model> models;
+	private final List<Model> unloaded;
+	private Map<String, LoadContext> related;
+
+	private LoadContext(List<Model> models, boolean unloaded) {
+		this.models = models;
+		this.unloaded = unloaded ? new ArrayList<Model>(models) : new ArrayList<Model>(0);
+		for(Model model : models) {
+			model.loadContext = this;
+		}
+	}
+
+	private static void addUnloaded(List<Model> list, Model model) {
+		if(model.loadContext == null && model.isEmpty() && !model.isNew()) {
+			list.add(model);
+		}
+	}
+
+	private static boolean contains(List<Model> list, Model model) {
+		for(Model m : list) {
+			if(m == model) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the models to retrieve the given field of: the given model, followed by the other models in this
+	 * context that have the same class and persist service and have not got the field yet; at most batchSize models
+	 */
+	synchronized Model[] getBatch(Model model, String field, PersistService service) {
+		int size = batchSize;
+		List<Model> batch = new ArrayList<Model>(Math.min(size, models.size()));
+		batch.add(model);
+		for(Iterator<Model> iter = models.iterator(); iter.hasNext() && batch.size() < size; ) {
+			Model sibling = iter.next();
+			if(sibling != model && sibling.getClass() == model.getClass() && !sibling.isSet(field) && !sibling.isNew()
+					&& sibling.getPersistor() == service) {
+				batch.add(sibling);
+			}
+		}
+		return batch.toArray(new Model[batch.size()]);
+	}
+
+	/**
+	 * @return the models to load along with the given model: the given model, followed by the other models in this
+	 * context that have the same class and persist service and have not been loaded yet (only one for each id); at
+	 * most batchSize models. Null if the given model is not waiting to be loaded.
+	 */
+	synchronized Model[] getUnloaded(Model model, PersistService service) {
+		if(!contains(unloaded, model)) {
+			return null;
+		}
+		int size = batchSize;
+		Set<Model> batch = new LinkedHashSet<Model>();
+		batch.add(model);
+		for(Iterator<Model> iter = unloaded.iterator(); iter.hasNext() && batch.size() < size; ) {
+			Model sibling = iter.next();
+			if(sibling.getClass() == model.getClass() && !sibling.isNew() && sibling.getPersistor() == service) {
+				batch.add(sibling); // a set: models that are equal (have the same id) are only loaded once
+			}
+		}
+		return batch.toArray(new Model[batch.size()]);
+	}
+
+	/**
+	 * Mark the given models as loaded; other models in this context that are equal to one of them
+	 * (have the same id) are given its fields, and marked as loaded too.
+	 */
+	synchronized void setLoaded(Model[] batch) {
+		for(Iterator<Model> iter = unloaded.iterator(); iter.hasNext(); ) {
+			Model model = iter.next();
+			for(Model loaded : batch) {
+				if(model == loaded) {
+					iter.remove();
+					break;
+				}
+				if(model.equals(loaded)) {
+					model.putAll(loaded.getAll());
+					iter.remove();
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Share a new context between the related models, held by the given hasOne field of the models in this context,
+	 * that have not been loaded yet. Only done the first time for each field.
+	 * <p>Fields that still hold the id of the related model (rather than the model itself) are given a model
+	 * with that id first - but without loading the opposite field of the new model, as {@link Model#set(String, Object)}
+	 * would when the opposite field is a hasMany.</p>
+	 */
+	synchronized void shareRelated(Model model, String field, Class<? extends Model> type) {
+		String key = model.getClass().getName() + ":" + field;
+		if(related == null) {
+			related = new HashMap<String, LoadContext>();
+		} else if(related.containsKey(key)) {
+			return;
+		}
+		String opposite = ModelAdapter.getAdapter(model.getClass()).getOpposite(field);
+		boolean hasOne = opposite != null && ModelAdapter.getAdapter(type).hasOne(opposite);
+		List<Model> list = new ArrayList<Model>();
+		for(Model sibling : models) {
+			if(sibling.getClass() == model.getClass()) {
+				Object value = sibling.peek(field);
+				if(value instanceof Model) {
+					addUnloaded(list, (Model) value);
+				} else if(value != null) {
+					Model relation = coerce(value).to(type); // only the id
+					if(relation != null) {
+						sibling.put(field, relation);
+						addUnloaded(list, relation);
+						if(hasOne) {
+							relation.put(opposite, sibling);
+						}
+					}
+				}
+			}
+		}
+		related.put(key, (list.size() > 1) ? new LoadContext(list, true) : null);
+	}
+
+}
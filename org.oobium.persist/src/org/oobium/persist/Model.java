@@ -17,6 +17,7 @@ import static org.oobium.utils.coercion.TypeCoercer.coerce;
 import static org.oobium.utils.json.JsonUtils.toList;
 import static org.oobium.utils.literal.Map;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -36,9 +37,11 @@ import org.oobium.utils.StringUtils;
 import org.oobium.utils.coercion.TypeCoercer;
 import org.oobium.utils.json.JsonModel;
 import org.oobium.utils.json.JsonUtils;
+import org.oobium.utils.json.JsonWritable;
+import org.oobium.utils.json.JsonWriter;
 
 
-public abstract class Model implements JsonModel {
+public abstract class Model implements JsonModel, JsonWritable {
 
 	private static final ThreadLocal<Logger> logService = new ThreadLocal<Logger>();
 	private static final ThreadLocal<PersistServiceProvider> persistServiceProvider = new ThreadLocal<PersistServiceProvider>();
@@ -168,6 +171,15 @@ public abstract class Model implements JsonModel {
 		return json;
 	}
 
+	/**
+	 * Write the given models, and the relations specified by the include parameter, directly
+	 * to the given writer, rather than first converting them to a JSON String.
+	 * @see #toJson(Collection, String, Object...)
+	 */
+	public static void toJson(JsonWriter writer, Collection<? extends Model> models, String include, Object...values) throws IOException {
+		ModelJsonBuilder.writeJson(writer, models, include, values);
+	}
+
 	
 	protected final Logger logger;
 	private final Map<String, Object> fields;
@@ -181,6 +193,12 @@ public abstract class Model implements JsonModel {
 	 */
 	Object destroyed;
 
+	/**
+	 * The models that were loaded along with this one, if any.
+	 * @see LoadContext
+	 */
+	LoadContext loadContext;
+
 	public Model() {
 		logger = getLogger();
 		fields = new HashMap<String, Object>();
@@ -676,7 +694,8 @@ public abstract class Model implements JsonModel {
 	 * <p>If the field is a model field (it is specified in the @{@link ModelDescription} class annotation),
 	 * then this method will return the data in the Type specified, performing any coercion as necessary.
 	 * <p>If load is true, and the model is not new, then the field will be resolved if it 
-	 * is not already resolved.</p>
+	 * is not already resolved. If the model was loaded along with others (see {@link LoadContext}),
+	 * then the field is resolved for those that have not resolved it yet, at the same time.</p>
 	 * @param field the name of the field to be returned
 	 * @param load true to make sure the field is resolved, false otherwise
 	 * @return the value of the field
@@ -699,6 +718,9 @@ public abstract class Model implements JsonModel {
 			if(type == null) {
 				return fields.get(field);
 			} else {
+				if(loadContext != null && Model.class.isAssignableFrom(type)) {
+					loadContext.shareRelated(this, field, type.asSubclass(Model.class));
+				}
 				Object value = fields.get(field);
 				if(value == null || type.isAssignableFrom(value.getClass())) { // TODO also check if correct type for primitive
 					return value;
@@ -732,7 +754,13 @@ public abstract class Model implements JsonModel {
 						if(p == null) {
 							throw new IllegalStateException("no persist service set");
 						}
-						p.retrieve(this, field);
+						LoadContext context = loadContext;
+						Model[] batch = (context != null) ? context.getBatch(this, field, p) : null;
+						if(batch != null && batch.length > 1) {
+							p.retrieve(batch, field);
+						} else {
+							p.retrieve(this, field);
+						}
 					}
 					else if(adapter.isManyToOne(field)) {
 						if(fp == null) {
@@ -1095,7 +1123,15 @@ public abstract class Model implements JsonModel {
 	
 	public final boolean load() {
 		try {
-			getPersistor().retrieve(this);
+			PersistService p = getPersistor();
+			LoadContext context = loadContext;
+			Model[] batch = (context != null) ? context.getUnloaded(this, p) : null;
+			if(batch != null) {
+				p.retrieve(batch);
+				context.setLoaded(batch);
+			} else {
+				p.retrieve(this);
+			}
 			return true;
 		} catch(Exception e) {
 			logger.warn("failed to load {}", e, asSimpleString());
@@ -1710,6 +1746,11 @@ public abstract class Model implements JsonModel {
 		return json;
 	}
 
+	@Override
+	public void writeJson(JsonWriter writer) throws IOException {
+		ModelJsonBuilder.writeJson(writer, this, null);
+	}
+
 	@Override
 	public String toString() {
 		return asSimpleString();
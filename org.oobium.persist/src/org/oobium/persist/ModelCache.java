@@ -0,0 +1,419 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.oobium.logging.LogProvider;
+import org.oobium.logging.Logger;
+
+/**
+ * A process-wide, second-level cache of models, shared by all threads (unlike the {@link SessionCache},
+ * which only lives as long as a single request).
+ * <p>Caching is opt-in and configured per model class, with {@link ModelDescription#cacheSize()} (or
+ * {@link #setCacheSize(Class, int)}). Each cached class has its own region, holding up to cacheSize
+ * models by id and up to cacheSize query results; the least recently used entries are dropped first.</p>
+ * <p>The cache holds a copy of each model's fields, never the model itself: each hit creates a new
+ * model, so changes made to it are not seen by other threads until it is saved. Related models are
+ * held by id only, and hasMany fields are not held at all - they are loaded as usual when first used.</p>
+ * <p>A region is invalidated by an {@link Observer} whenever a model of its class is created, updated
+ * or destroyed: the model's own entry is removed, along with <i>all</i> of the region's query results.
+ * Changes that do not go through a model (raw SQL, or another process sharing the database) are not
+ * seen, so only cache types whose data is changed through this application.</p>
+ * <p>To avoid caching a model that was changed while it was being loaded, persist services get the
+ * region's stamp with {@link #getStamp(Class)} <i>before</i> loading, and pass it to the put methods,
+ * which do nothing if the region has since been invalidated.</p>
+ */
+public class ModelCache {
+
+	private static final Logger logger = LogProvider.getLogger(ModelCache.class);
+
+	/**
+	 * The id and type of a related model, in place of the model itself.
+	 */
+	private static class Ref {
+		final Class<? extends Model> type;
+		final Object id;
+		Ref(Model model) {
+			this.type = model.getClass();
+			this.id = model.getId();
+		}
+	}
+
+	private static class Lru<V> extends LinkedHashMap<String, V> {
+		private static final long serialVersionUID = 1L;
+		private final int size;
+		Lru(int size) {
+			super(16, 0.75f, true);
+			this.size = size;
+		}
+		@Override
+		protected boolean removeEldestEntry(Entry<String, V> eldest) {
+			return size() > size;
+		}
+	}
+
+	/**
+	 * The cache for a single model class. All access is synchronized on the region.
+	 */
+	private static class Region {
+		final int size;
+		final Lru<Map<String, Object>> models;
+		final Lru<List<Map<String, Object>>> queries;
+		final AtomicLong hits;
+		final AtomicLong misses;
+		final Invalidator invalidator;
+		long stamp;
+		Region(Class<? extends Model> clazz, int size) {
+			this.size = size;
+			this.models = new Lru<Map<String, Object>>(size);
+			this.queries = new Lru<List<Map<String, Object>>>(size);
+			this.hits = new AtomicLong();
+			this.misses = new AtomicLong();
+			this.invalidator = (size > 0) ? new Invalidator(clazz) : null;
+		}
+		synchronized void expire(Object id) {
+			stamp++;
+			if(id != null) {
+				models.remove(String.valueOf(id));
+			}
+			queries.clear();
+		}
+	}
+
+	private static class Invalidator extends Observer<Model> {
+		Invalidator(Class<? extends Model> modelClass) {
+			super(modelClass);
+		}
+		@Override
+		protected void afterCreate(Model model) {
+			expire(modelClass, model.getId());
+		}
+		@Override
+		protected void afterDestroy(Object id) {
+			expire(modelClass, id);
+		}
+		@Override
+		protected void afterUpdate(Model model) {
+			expire(modelClass, model.getId());
+		}
+	}
+
+
+	private static final Map<Class<?>, Region> regions = new ConcurrentHashMap<Class<?>, Region>();
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Remove all entries, from all regions, and reset the hit and miss counts.
+	 */
+	public static void clear() {
+		for(Region region : regions.values()) {
+			synchronized(region) {
+				region.expire(null);
+				region.models.clear();
+			}
+			region.hits.set(0);
+			region.misses.set(0);
+		}
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * Remove all models, and all query results, of the given type from the cache.
+	 */
+	public static void expire(Class<? extends Model> clazz) {
+		Region region = regions.get(clazz);
+		if(region != null) {
+			synchronized(region) {
+				region.expire(null);
+				region.models.clear();
+			}
+		}
+	}
+
+	/**
+	 * Remove the model with the given id, and all query results for its type, from the cache.
+	 */
+	public static void expire(Class<? extends Model> clazz, Object id) {
+		Region region = regions.get(clazz);
+		if(region != null) {
+			region.expire(id);
+		}
+	}
+
+	/**
+	 * Remove the given models, and all query results for their types, from the cache.
+	 */
+	public static void expire(Model...models) {
+		for(Model model : models) {
+			expire(model.getClass(), model.getId());
+		}
+	}
+
+	/**
+	 * @return a new model, created from the cached fields of the model with the given id; or null
+	 * if the model is not in the cache (or the class is not cached)
+	 */
+	public static <T extends Model> T getById(Class<T> clazz, Object id) {
+		Region region = region(clazz);
+		if(region.size > 0 && id != null) {
+			Map<String, Object> fields;
+			synchronized(region) {
+				fields = region.models.get(String.valueOf(id));
+			}
+			if(fields != null) {
+				hit(region);
+				return restore(clazz, id, fields);
+			}
+			miss(region);
+		}
+		return null;
+	}
+
+	/**
+	 * @return a list of new models, created from the cached result of the given query; or null
+	 * if the result is not in the cache (or the class is not cached)
+	 */
+	public static <T extends Model> List<T> getByQuery(Class<T> clazz, String query, Object...values) {
+		Region region = region(clazz);
+		if(region.size > 0) {
+			List<Map<String, Object>> list;
+			synchronized(region) {
+				list = region.queries.get(key(query, values));
+			}
+			if(list != null) {
+				hit(region);
+				List<T> models = new ArrayList<T>(list.size());
+				for(Map<String, Object> fields : list) {
+					models.add(restore(clazz, fields.get("id"), fields));
+				}
+				return models;
+			}
+			miss(region);
+		}
+		return null;
+	}
+
+	public static int getCacheSize(Class<? extends Model> clazz) {
+		return region(clazz).size;
+	}
+
+	/**
+	 * @return the total number of hits, for all model classes
+	 */
+	public static long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of hits (by id and by query) for the given model class
+	 */
+	public static long getHits(Class<? extends Model> clazz) {
+		Region region = regions.get(clazz);
+		return (region != null) ? region.hits.get() : 0;
+	}
+
+	/**
+	 * @return the total number of misses, for all model classes
+	 */
+	public static long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of misses (by id and by query) for the given model class
+	 */
+	public static long getMisses(Class<? extends Model> clazz) {
+		Region region = regions.get(clazz);
+		return (region != null) ? region.misses.get() : 0;
+	}
+
+	/**
+	 * Get the stamp to pass to {@link #put(Model, long)}, or {@link #put(Class, String, Object[], List, long)},
+	 * for models that are about to be loaded.
+	 */
+	public static long getStamp(Class<? extends Model> clazz) {
+		Region region = region(clazz);
+		synchronized(region) {
+			return region.stamp;
+		}
+	}
+
+	private static void hit(Region region) {
+		region.hits.incrementAndGet();
+		hits.incrementAndGet();
+	}
+
+	public static boolean isCached(Class<? extends Model> clazz) {
+		return region(clazz).size > 0;
+	}
+
+	private static String key(String query, Object[] values) {
+		return (values == null || values.length == 0) ? String.valueOf(query) : (query + "|" + Arrays.deepToString(values));
+	}
+
+	private static void miss(Region region) {
+		region.misses.incrementAndGet();
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * Put the result of the given query into the cache, unless the region has been invalidated since
+	 * the given stamp was taken, or the class is not cached.
+	 */
+	public static void put(Class<? extends Model> clazz, String query, Object[] values, List<? extends Model> models, long stamp) {
+		Region region = region(clazz);
+		if(region.size > 0 && models != null) {
+			List<Map<String, Object>> list = new ArrayList<Map<String, Object>>(models.size());
+			for(Model model : models) {
+				Map<String, Object> fields = snapshot(model);
+				fields.put("id", model.getId());
+				list.add(fields);
+			}
+			synchronized(region) {
+				if(region.stamp == stamp) {
+					region.queries.put(key(query, values), list);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Put the given model into the cache, unless the region has been invalidated since
+	 * the given stamp was taken, or the model's class is not cached.
+	 */
+	public static void put(Model model, long stamp) {
+		if(model == null || model.isNew()) {
+			return;
+		}
+		Region region = region(model.getClass());
+		if(region.size > 0) {
+			Map<String, Object> fields = snapshot(model);
+			synchronized(region) {
+				if(region.stamp == stamp) {
+					region.models.put(String.valueOf(model.getId()), fields);
+				}
+			}
+		}
+	}
+
+	private static Region region(Class<? extends Model> clazz) {
+		Region region = regions.get(clazz);
+		if(region == null) {
+			ModelDescription description = clazz.getAnnotation(ModelDescription.class);
+			region = region(clazz, (description != null) ? description.cacheSize() : ModelDescription.DEFAULT_CACHE_SIZE);
+		}
+		return region;
+	}
+
+	private static synchronized Region region(Class<? extends Model> clazz, int size) {
+		Region region = regions.get(clazz);
+		if(region == null || region.size != size) {
+			if(region != null && region.invalidator != null) {
+				Observer.removeObserver(region.invalidator);
+			}
+			region = new Region(clazz, size);
+			if(region.invalidator != null) {
+				Observer.addObserver(region.invalidator);
+				if(logger.isLoggingDebug()) {
+					logger.debug("caching up to {} models of {}", size, clazz.getSimpleName());
+				}
+			}
+			regions.put(clazz, region);
+		}
+		return region;
+	}
+
+	static synchronized void removeRegion(Class<?> clazz) {
+		regions.remove(clazz);
+	}
+
+	private static <T extends Model> T restore(Class<T> clazz, Object id, Map<String, Object> cached) {
+		try {
+			T model = clazz.newInstance();
+			model.setId(id);
+			Map<String, Object> fields = new HashMap<String, Object>(cached.size());
+			for(Entry<String, Object> entry : cached.entrySet()) {
+				Object value = entry.getValue();
+				if(value instanceof Ref) {
+					Ref ref = (Ref) value;
+					Model related = ref.type.newInstance();
+					related.setId(ref.id);
+					value = related;
+				} else if(value instanceof Date) {
+					value = ((Date) value).clone();
+				}
+				fields.put(entry.getKey(), value);
+			}
+			fields.remove("id");
+			model.putAll(fields);
+			return model;
+		} catch(Exception e) {
+			throw new IllegalStateException("could not create cached " + clazz.getSimpleName(), e);
+		}
+	}
+
+	/**
+	 * Set the maximum number of models (and query results) to cache for the given class, overriding
+	 * its {@link ModelDescription#cacheSize()}. Everything currently cached for the class is dropped.
+	 * @param size the maximum number of models to cache; 0 to turn caching off for the class
+	 */
+	public static void setCacheSize(Class<? extends Model> clazz, int size) {
+		if(size < 0) {
+			throw new IllegalArgumentException("size cannot be negative: " + size);
+		}
+		Region region = regions.get(clazz);
+		if(region != null && region.size == size) {
+			expire(clazz);
+		} else {
+			region(clazz, size);
+		}
+	}
+
+	private static Map<String, Object> snapshot(Model model) {
+		Map<String, Object> fields = model.getAll();
+		for(Iterator<Entry<String, Object>> iter = fields.entrySet().iterator(); iter.hasNext(); ) {
+			Entry<String, Object> entry = iter.next();
+			Object value = entry.getValue();
+			if(value instanceof Model) {
+				Model related = (Model) value;
+				if(related.isNew()) {
+					iter.remove();
+				} else {
+					entry.setValue(new Ref(related));
+				}
+			} else if(value instanceof Collection) {
+				iter.remove(); // hasMany: loaded again when first used
+			} else if(value instanceof Date) {
+				entry.setValue(((Date) value).clone());
+			}
+		}
+		return fields;
+	}
+
+	private ModelCache() {
+		// static class
+	}
+
+}
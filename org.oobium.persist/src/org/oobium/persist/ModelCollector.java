@@ -7,6 +7,7 @@ public class ModelCollector {
 
 	@SuppressWarnings("unchecked")
 	public static <T extends Model> List<T> collectHasManyThrough(List<?> models, String field, Class<T> type) {
+		LoadContext.share(models); // so that the field is loaded for all of them at once
 		List<T> list = new ArrayList<T>();
 		for(Object o : models) {
 			if(o instanceof Model) {
@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist;
+
+/**
+ * The models of a query, loaded as they are iterated over rather than all at once.
+ * <p>A cursor can only be iterated once, and holds on to its underlying resources (such as a database
+ * cursor) until it has been iterated to the end or is closed; callers that may stop early must call {@link #close()}.
+ * Problems reading the next model are thrown from the iterator as a {@link CursorException}.</p>
+ */
+public interface ModelCursor<T extends Model> extends Iterable<T> {
+
+	/**
+	 * Release the resources held by this cursor; safe to call more than once.
+	 */
+	public abstract void close();
+	
+}
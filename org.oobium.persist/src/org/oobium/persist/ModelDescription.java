@@ -32,6 +32,7 @@ public @interface ModelDescription {
 	public static final boolean DEFAULT_ALLOW_DELETE = true;
 	public static final boolean DEFAULT_ALLOW_UPDATE = true;
 	public static final boolean DEFAULT_EMBEDDED = false;
+	public static final int DEFAULT_CACHE_SIZE = 0;
 	
 	
 	Attribute[] attrs() default {};
@@ -61,5 +62,15 @@ public @interface ModelDescription {
 	 * @see Relation#embed()
 	 */
 	boolean embedded() default DEFAULT_EMBEDDED;
+
+	/**
+	 * The maximum number of models of this type to keep in the shared, process-wide {@link ModelCache},
+	 * which is checked before the database when finding models by id or by query. Models that are used
+	 * far more often than they are changed (reference tables, settings) are good candidates.
+	 * The least recently used entries are dropped when the cache is full.
+	 * <p>Default is 0: models of this type are not cached</p>
+	 * @see ModelCache
+	 */
+	int cacheSize() default DEFAULT_CACHE_SIZE;
 	
 }
@@ -11,21 +11,21 @@
 package org.oobium.persist;
 
 import static org.oobium.persist.ModelAdapter.getAdapter;
-import static org.oobium.utils.json.JsonUtils.toJson;
 import static org.oobium.utils.json.JsonUtils.toObject;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.oobium.utils.json.JsonWriter;
 
 class ModelJsonBuilder {
 
@@ -33,38 +33,57 @@ class ModelJsonBuilder {
 	public static final Pattern valuePattern = Pattern.compile("#\\{(\\d+)\\}");
 
 	static String buildJson(Collection<? extends Model> models) {
-		Model[] ma = models.toArray(new Model[models.size()]);
-		ModelJsonBuilder builder = new ModelJsonBuilder();
-		return builder.build(ma);
+		return buildJson(models, null);
 	}
 	
 	static String buildJson(Collection<? extends Model> models, String include, Object...values) {
-		Model[] ma = models.toArray(new Model[models.size()]);
-		ModelJsonBuilder builder = new ModelJsonBuilder();
-		if(include != null && include.length() > 0) {
-			builder.setInclude(include, values);
+		StringBuilder sb = new StringBuilder();
+		try {
+			writeJson(new JsonWriter(sb), models, include, values);
+		} catch(IOException e) {
+			// not thrown by a StringBuilder
+			throw new IllegalStateException(e);
 		}
-		return builder.build(ma);
+		return sb.toString();
 	}
 	
 	static String buildJson(Model model) {
-		ModelJsonBuilder builder = new ModelJsonBuilder();
-		return builder.build(model);
+		return buildJson(model, null);
 	}
 	
 	static String buildJson(Model model, String include, Object...values) {
-		ModelJsonBuilder builder = new ModelJsonBuilder();
+		StringBuilder sb = new StringBuilder();
+		try {
+			writeJson(new JsonWriter(sb), model, include, values);
+		} catch(IOException e) {
+			// not thrown by a StringBuilder
+			throw new IllegalStateException(e);
+		}
+		return sb.toString();
+	}
+	
+	static void writeJson(JsonWriter writer, Collection<? extends Model> models, String include, Object...values) throws IOException {
+		ModelJsonBuilder builder = new ModelJsonBuilder(writer);
+		if(include != null && include.length() > 0) {
+			builder.setInclude(include, values);
+		}
+		builder.build(models);
+	}
+	
+	static void writeJson(JsonWriter writer, Model model, String include, Object...values) throws IOException {
+		ModelJsonBuilder builder = new ModelJsonBuilder(writer);
 		if(include != null && include.length() > 0) {
 			builder.setInclude(include, values);
 		}
-		return builder.build(model);
+		builder.build(model);
 	}
 	
 
+	private final JsonWriter writer;
 	List<Object> includes;
 
-	private ModelJsonBuilder() {
-		// private constructor
+	private ModelJsonBuilder(JsonWriter writer) {
+		this.writer = writer;
 	}
 
 	private void addIncludes(ModelAdapter adapter) {
@@ -185,72 +204,78 @@ class ModelJsonBuilder {
 		return false;
 	}
 
-	private void build(List<Object> list, Iterable<?> value, Object include) {
+	private void build(Iterable<?> value, Object include) throws IOException {
+		writer.beginArray();
 		for(Object item : value) {
-			handleItem(list, item, include);
+			handleItem(item, include);
 		}
+		writer.endArray();
 	}
 
-	private void build(Map<String, Object> map, Map<?,?> value, Object include) {
+	private void build(Map<?,?> value, Object include) throws IOException {
+		writer.beginObject();
 		for(Entry<?, ?> entry : value.entrySet()) {
 			String field = String.valueOf(entry.getKey());
-			handleField(map, field, entry.getValue(), include);
+			handleField(field, entry.getValue(), include);
 		}
+		writer.endObject();
 	}
 
-	private void build(Map<String, Object> map, Model model, Object include) {
-		map.put("_type", model.getClass().getName());
-		map.put("id", model.isNew() ? null : model.getId());
+	private void build(Model model, Object include) throws IOException {
+		writer.beginObject();
+		writer.name("_type").value(model.getClass().getName());
+		writer.name("id").value(model.isNew() ? null : model.getId());
 		if(model.hasErrors()) {
-			map.put("errors", model.getErrorsList());
+			writer.name("errors").value(model.getErrorsList());
 		}
 		if(include != null) {
 			ModelAdapter adapter = ModelAdapter.getAdapter(model);
 			for(String field : model.getAll().keySet()) {
 				if(adapter.isJson(field)) {
-					handleField(map, field, model.get(field), include);
+					handleField(field, model.get(field), include);
 				}
 			}
 		}
+		writer.endObject();
 	}
 	
-	private String build(Model model) {
+	private void build(Model model) throws IOException {
 		if(model == null) {
-			return "null";
+			writer.rawValue("null");
+			return;
 		}
 		if(includes == null) {
 			includes = new ArrayList<Object>(0);
 		}
-		Map<String, Object> map = new LinkedHashMap<String, Object>();
 		ModelAdapter adapter = ModelAdapter.getAdapter(model.getClass());
 		addIncludes(adapter);
-		build(map, model, includes);
-		return toJson(map);
+		build(model, includes);
 	}
 	
-	private String build(Model[] models) {
-		if(models == null || models.length == 0) {
-			return "[]";
+	private void build(Collection<? extends Model> models) throws IOException {
+		if(models == null || models.isEmpty()) {
+			writer.rawValue("[]");
+			return;
 		}
 		if(includes == null) {
 			includes = new ArrayList<Object>(0);
 		}
-		ModelAdapter adapter = ModelAdapter.getAdapter(models[0].getClass());
+		ModelAdapter adapter = ModelAdapter.getAdapter(models.iterator().next().getClass());
 		addIncludes(adapter);
-		List<Map<String, Object>> list = new ArrayList<Map<String,Object>>();
+		writer.beginArray();
 		for(Model model : models) {
-			Map<String, Object> map = new LinkedHashMap<String, Object>();
-			build(map, model, includes);
-			list.add(map);
+			build(model, includes);
 		}
-		return toJson(list);
+		writer.endArray();
 	}
 
-	private void buildArray(List<Object> list, Object value, Object include) {
+	private void buildArray(Object value, Object include) throws IOException {
+		writer.beginArray();
 		for(int i = 0; i < Array.getLength(value); i++) {
 			Object item = Array.get(value, i);
-			handleItem(list, item, include);
+			handleItem(item, include);
 		}
+		writer.endArray();
 	}
 
 	private boolean contains(List<?> list, Object object) {
@@ -305,171 +330,159 @@ class ModelJsonBuilder {
 		return includes;
 	}
 	
-	private void handleArray(Map<String, Object> map, String field, Object value, Object include) {
+	private void handleArray(String field, Object value, Object include) throws IOException {
 		if(include instanceof List<?>) {
 			Object inc = getInclude((List<?>) include, field);
 			if(inc instanceof String) {
-				includeArray(map, field, value, inc);
+				includeArray(field, value, inc);
 				return;
 			}
 			if(inc instanceof Map<?,?>) {
-				includeArray(map, field, value, ((Map<?,?>) inc).values().iterator().next());
+				includeArray(field, value, ((Map<?,?>) inc).values().iterator().next());
 				return;
 			}
 		} else if(include instanceof Map<?,?>) {
 			Entry<?,?> e = ((Map<?,?>) include).entrySet().iterator().next();
 			if(field.equals(e.getKey())) {
-				includeArray(map, field, value, e.getValue());
+				includeArray(field, value, e.getValue());
 				return;
 			}
 		} else if(field.equals(include)) {
-			includeArray(map, field, value, null);
+			includeArray(field, value, null);
 			return;
 		}
 	}
 
-	private void handleField(Map<String, Object> map, String field, Object object, Object include) {
+	private void handleField(String field, Object object, Object include) throws IOException {
 		if(object == null) {
-			map.put(field, null);
+			writer.name(field).value(null);
 		}
 		else if(object instanceof Model) {
-			handleModel(map, field, (Model) object, include);
+			handleModel(field, (Model) object, include);
 		}
 		else if(object instanceof Map) {
-			handleMap(map, field, (Map<?,?>) object, include);
+			handleMap(field, (Map<?,?>) object, include);
 		}
 		else if(object instanceof Iterable) {
-			handleIterable(map, field, (Iterable<?>) object, include);
+			handleIterable(field, (Iterable<?>) object, include);
 		}
 		else if(object.getClass().isArray()) {
-			handleArray(map, field, object, include);
+			handleArray(field, object, include);
 		}
 		else if(object instanceof Date) {
-			map.put(field, "/Date(" + ((Date) object).getTime() + ")/");
+			writer.name(field).value("/Date(" + ((Date) object).getTime() + ")/");
 		}
 		else {
-			map.put(field, object);
+			writer.name(field).value(object);
 		}
 	}
 	
-	private void handleItem(List<Object> list, Object object, Object include) {
+	private void handleItem(Object object, Object include) throws IOException {
 		if(object == null) {
-			list.add(null);
+			writer.value(null);
 		}
 		else if(object instanceof Model) {
-			Map<String, Object> m = new LinkedHashMap<String, Object>();
-			build(m, (Model) object, include);
-			list.add(m);
+			build((Model) object, include);
 		}
 		else if(object instanceof Map) {
-			Map<String, Object> m = new LinkedHashMap<String, Object>();
-			build(m, (Map<?,?>) object, include);
-			list.add(m);
+			build((Map<?,?>) object, include);
 		}
 		else if(object instanceof Iterable) {
-			List<Object> l = new ArrayList<Object>();
-			build(l, (Iterable<?>) object, include);
-			list.add(l);
+			build((Iterable<?>) object, include);
 		}
 		else if(object.getClass().isArray()) {
-			List<Object> l = new ArrayList<Object>();
-			buildArray(l, object, include);
-			list.add(l);
+			buildArray(object, include);
 		}
 		else {
-			list.add(object);
+			writer.value(object);
 		}
 	}
 	
-	private void handleIterable(Map<String, Object> map, String field, Iterable<?> value, Object include) {
+	private void handleIterable(String field, Iterable<?> value, Object include) throws IOException {
 		if(include instanceof List<?>) {
 			Object inc = getInclude((List<?>) include, field);
 			if(inc instanceof String) {
-				include(map, field, value, inc);
+				include(field, value, inc);
 				return;
 			}
 			if(inc instanceof Map<?,?>) {
-				include(map, field, value, ((Map<?,?>) inc).values().iterator().next());
+				include(field, value, ((Map<?,?>) inc).values().iterator().next());
 				return;
 			}
 		} else if(include instanceof Map<?,?>) {
 			Entry<?,?> e = ((Map<?,?>) include).entrySet().iterator().next();
 			if(field.equals(e.getKey())) {
-				include(map, field, value, e.getValue());
+				include(field, value, e.getValue());
 				return;
 			}
 		} else if(field.equals(include)) {
-			include(map, field, value, null);
+			include(field, value, null);
 			return;
 		}
 	}
 	
-	private void handleMap(Map<String, Object> map, String field, Map<?,?> value, Object include) {
+	private void handleMap(String field, Map<?,?> value, Object include) throws IOException {
 		if(include instanceof List<?>) {
 			Object inc = getInclude((List<?>) include, field);
 			if(inc instanceof String) {
-				include(map, field, value, inc);
+				include(field, value, inc);
 				return;
 			}
 			if(inc instanceof Map<?,?>) {
-				include(map, field, value, ((Map<?,?>) inc).values().iterator().next());
+				include(field, value, ((Map<?,?>) inc).values().iterator().next());
 				return;
 			}
 		} else if(include instanceof Map<?,?>) {
 			Entry<?,?> e = ((Map<?,?>) include).entrySet().iterator().next();
 			if(field.equals(e.getKey())) {
-				include(map, field, value, e.getValue());
+				include(field, value, e.getValue());
 				return;
 			}
 		} else if(field.equals(include)) {
-			include(map, field, value, null);
+			include(field, value, null);
 			return;
 		}
 	}
 	
-	private void handleModel(Map<String, Object> map, String field, Model model, Object include) {
+	private void handleModel(String field, Model model, Object include) throws IOException {
 		if(include instanceof List<?>) {
 			Object inc = getInclude((List<?>) include, field);
 			if(inc instanceof String) {
-				include(map, field, model, inc);
+				include(field, model, inc);
 				return;
 			}
 			if(inc instanceof Map<?,?>) {
-				include(map, field, model, ((Map<?,?>) inc).values().iterator().next());
+				include(field, model, ((Map<?,?>) inc).values().iterator().next());
 				return;
 			}
 		} else if(include instanceof Map<?,?>) {
 			Entry<?,?> e = ((Map<?,?>) include).entrySet().iterator().next();
 			if(field.equals(e.getKey())) {
-				include(map, field, model, e.getValue());
+				include(field, model, e.getValue());
 				return;
 			}
 		}
-		include(map, field, model, null);
+		include(field, model, null);
 	}
 	
-	private void include(Map<String, Object> map, String field, Iterable<?> value, Object include) {
-		List<Object> list = new ArrayList<Object>();
-		build(list, value, include);
-		map.put(field, list);
+	private void include(String field, Iterable<?> value, Object include) throws IOException {
+		writer.name(field);
+		build(value, include);
 	}
 
-	private void include(Map<String, Object> map, String field, Map<?,?> value, Object include) {
-		Map<String, Object> m = new LinkedHashMap<String, Object>();
-		build(m, value, include);
-		map.put(field, m);
+	private void include(String field, Map<?,?> value, Object include) throws IOException {
+		writer.name(field);
+		build(value, include);
 	}
 	
-	private void include(Map<String, Object> map, String field, Model value, Object include) {
-		Map<String, Object> m = new LinkedHashMap<String, Object>();
-		build(m, value, include);
-		map.put(field, m);
+	private void include(String field, Model value, Object include) throws IOException {
+		writer.name(field);
+		build(value, include);
 	}
 	
-	private void includeArray(Map<String, Object> map, String field, Object value, Object include) {
-		List<Object> list = new ArrayList<Object>();
-		buildArray(list, value, include);
-		map.put(field, list);
+	private void includeArray(String field, Object value, Object include) throws IOException {
+		writer.name(field);
+		buildArray(value, include);
 	}
 	
 	private boolean isWildcard(Object s) {
@@ -99,6 +99,11 @@ public class NullPersistService implements PersistService {
 		throw new NullPersistServiceException(msg);
 	}
 	
+	@Override
+	public <T extends Model> ModelCursor<T> findEach(Class<T> clazz, String query, Object... values) throws NullPersistServiceException {
+		throw new NullPersistServiceException(msg);
+	}
+	
 	@Override
 	public ServiceInfo getInfo() {
 		return new ServiceInfo() {
@@ -154,6 +159,11 @@ public class NullPersistService implements PersistService {
 		throw new NullPersistServiceException(msg);
 	}
 
+	@Override
+	public void retrieve(Model[] models, String hasMany) throws NullPersistServiceException {
+		throw new NullPersistServiceException(msg);
+	}
+
 	@Override
 	public void update(Model...models) throws NullPersistServiceException {
 		throw new NullPersistServiceException(msg);
@@ -92,6 +92,7 @@ public class Observer<T extends Model> {
 				}
 			}
 			removeSocketListener(clazz.asSubclass(Model.class));
+			ModelCache.removeRegion(clazz);
 		} else if(Observer.class.isAssignableFrom(clazz)) {
 			for(Iterator<List<Observer<?>>> observersIter = observerMap.values().iterator(); observersIter.hasNext(); ) {
 				List<Observer<?>> observers = observersIter.next();
@@ -268,6 +269,13 @@ public class Observer<T extends Model> {
 		modelClass = findModelClass(getClass());
 	}
 
+	/**
+	 * For observers created by the framework itself, which may be observing any given model class.
+	 */
+	Observer(Class<? extends Model> modelClass) {
+		this.modelClass = modelClass;
+	}
+
 	protected void afterCreate(T model) {
 		// subclasses to implement if necessary
 	}
@@ -93,6 +93,11 @@ public class PersistAdapter implements PersistService {
 		return null;
 	}
 
+	@Override
+	public <T extends Model> ModelCursor<T> findEach(Class<T> clazz, String where, Object... values) throws Exception {
+		return new ListCursor<T>(findAll(clazz, where, values));
+	}
+
 	@Override
 	public ServiceInfo getInfo() {
 		// subclasses to override if necessary
@@ -120,6 +125,13 @@ public class PersistAdapter implements PersistService {
 		// subclasses to override if necessary
 	}
 
+	@Override
+	public void retrieve(Model[] models, String hasMany) throws Exception {
+		for(Model model : models) {
+			retrieve(model, hasMany);
+		}
+	}
+
 	@Override
 	public void update(Model... models) throws Exception {
 		// subclasses to override if necessary
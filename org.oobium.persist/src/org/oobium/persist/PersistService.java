@@ -46,6 +46,13 @@ public interface PersistService {
 
     public abstract void retrieve(Model model, String include) throws Exception;
 
+	/**
+	 * Retrieve the given field (or fields) of each of the given models, in the same way as {@link #retrieve(Model, String)},
+	 * but with a single query for all of them where possible. Used by {@link LoadContext} to load a relation for all of
+	 * the models that were loaded together, instead of one at a time.
+	 */
+    public abstract void retrieve(Model[] models, String include) throws Exception;
+
     public abstract void update(Model...models) throws Exception;
 
 	public abstract void destroy(Model...models) throws Exception;
@@ -68,6 +75,14 @@ public interface PersistService {
 
 	public abstract <T extends Model> List<T> findAll(Class<T> clazz, String query, Object...values) throws Exception;
 	
+	/**
+	 * Find all models of the given class that match the given query, loading them as they are iterated over
+	 * instead of all at once. The query is in the same form as for {@link #findAll(Class, String, Object...)}.
+	 * <p>The returned cursor must be iterated, and closed if not iterated to the end, while the session that
+	 * created it is still open.</p>
+	 */
+	public abstract <T extends Model> ModelCursor<T> findEach(Class<T> clazz, String query, Object...values) throws Exception;
+	
 	public abstract <T extends Model> T findById(Class<T> clazz, Object id) throws Exception;
 	
 	public abstract <T extends Model> T findById(Class<T> clazz, Object id, String include) throws Exception;
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.persist;
+
+/**
+ * A per-thread count of the queries sent to the datastore by the persist services; the app resets it at the
+ * start of each request, so that the number of queries made by each request can be logged.
+ */
+public class QueryCounter {
+
+	private static final ThreadLocal<int[]> count = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	/**
+	 * @return the number of queries made on the current thread since it was last reset
+	 */
+	public static int getCount() {
+		return count.get()[0];
+	}
+
+	/**
+	 * Count a query made on the current thread. Called by the persist services, once for each query
+	 * that they send to the datastore.
+	 */
+	public static void increment() {
+		count.get()[0]++;
+	}
+
+	/**
+	 * Reset the count for the current thread.
+	 * @return the number of queries made since it was last reset
+	 */
+	public static int reset() {
+		int[] a = count.get();
+		int c = a[0];
+		a[0] = 0;
+		return c;
+	}
+
+	private QueryCounter() {
+		// static methods only
+	}
+
+}
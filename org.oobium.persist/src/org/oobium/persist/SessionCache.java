@@ -16,6 +16,10 @@ import java.util.Map;
 
 import org.oobium.persist.Model;
 
+/**
+ * A per-thread cache of models, expired at the end of each request by {@link #expireCache()}.
+ * Misses fall through to the process-wide {@link ModelCache}, for model types that are cached there.
+ */
 public class SessionCache {
 
 	// {modelClass}:{modelId} -> model
@@ -46,8 +50,15 @@ public class SessionCache {
 			Map<String, Model> cache = cachedModels.get();
 			if(cache != null) {
 				Object object = cache.get(clazz.getCanonicalName() + ":" + id);
-				return clazz.cast(object);
+				if(object != null) {
+					return clazz.cast(object);
+				}
+			}
+			T model = ModelCache.getById(clazz, id);
+			if(model != null) {
+				setCache(model);
 			}
+			return model;
 		}
 		return null;
 	}
@@ -55,12 +66,19 @@ public class SessionCache {
 	@SuppressWarnings("unchecked")
 	public static <T extends Model> List<T> getCacheByQuery(Class<T> clazz, String query) {
 		if(clazz != null) {
-			Map<String, Model> cache = cachedModels.get();
+			Map<String, List<? extends Model>> cache = cachedQueries.get();
 			if(cache != null) {
 				String key = clazz.getCanonicalName() + ":" + query;
 				Object object = cache.get(key);
-				return (List<T>) object;
+				if(object != null) {
+					return (List<T>) object;
+				}
+			}
+			List<T> models = ModelCache.getByQuery(clazz, query);
+			if(models != null) {
+				setCache(clazz, query, models);
 			}
+			return models;
 		}
 		return null;
 	}
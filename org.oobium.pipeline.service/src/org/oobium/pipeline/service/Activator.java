@@ -26,6 +26,7 @@ public class Activator implements BundleActivator {
 
 	public void stop(BundleContext bundleContext) throws Exception {
 		Activator.context = null;
+		service.dispose();
 		service = null;
 	}
 
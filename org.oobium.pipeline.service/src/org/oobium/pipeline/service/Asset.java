@@ -1,35 +1,74 @@
 package org.oobium.pipeline.service;
 
-import java.io.File;
-
 import org.oobium.app.http.MimeType;
 import org.oobium.pipeline.PipelinedAsset;
 
+/**
+ * A pipelined asset, held in memory once it is ready.
+ * <p>Its location is fingerprinted with the hash of its content ("/pipeline/&lt;hash&gt;.js"), so that it
+ * can be cached by clients forever: when the content changes, so does the location.</p>
+ */
 public class Asset implements PipelinedAsset {
 
+	public static final String PATH = "/pipeline/";
+	
+	
 	private final MimeType type;
 	
 	private String location;
-	private File file;
-	private boolean ready;
+	private String etag;
+	private byte[] content;
+	private long lastModified;
+	private volatile boolean ready;
+	private volatile long retryAt;
 	
 	public Asset(MimeType type) {
 		this.type = type;
 	}
 	
+	@Override
+	public String getETag() {
+		return etag;
+	}
+	
+	@Override
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	@Override
+	public long getLength() {
+		return (content != null) ? content.length : 0;
+	}
+
 	@Override
 	public String getLocation() {
 		return location;
 	}
 
+	@Override
+	public MimeType getMimeType() {
+		return type;
+	}
+	
+	/**
+	 * @return the content of this asset, as a byte[]
+	 */
 	@Override
 	public Object getPayload() {
-		return file;
+		return content;
 	}
 	
 	@Override
 	public boolean isFile() {
-		return true;
+		return false;
+	}
+	
+	/**
+	 * @return true if this asset could not be built, and it is now time to try building it again
+	 */
+	boolean isRetryDue(long now) {
+		return retryAt != 0 && now >= retryAt;
 	}
 	
 	@Override
@@ -37,39 +76,26 @@ public class Asset implements PipelinedAsset {
 		return ready;
 	}
 
-	public void setFile(File file) {
-		this.file = file;
-		String name = file.getName();
-		boolean gz = name.endsWith(".gz");
-		if(gz) {
-			name = name.substring(0, name.length()-3);
-		}
-		StringBuilder sb = new StringBuilder();
-		sb.append('/').append(name);
-		String version = "-" + file.length(); // TODO use MD5 hash
-		int ix = sb.lastIndexOf(".");
-		if(ix == -1) {
-			sb.append(version);
-		} else {
-			sb.insert(ix, version);
-		}
-		location = sb.toString();
-		ready = true;
-	}
-
-	@Override
-	public long getLastModified() {
-		return file.lastModified();
+	/**
+	 * Set the content of this asset, and mark it as ready.
+	 * @param content the minified content
+	 * @param hash the hex encoded hash of the content, used for both the location and the etag
+	 */
+	void setContent(byte[] content, String hash) {
+		this.content = content;
+		this.etag = "\"" + hash + "\"";
+		this.location = PATH + hash + "." + type.extension();
+		this.lastModified = System.currentTimeMillis();
+		this.ready = true; // volatile write: publishes the fields above
 	}
 
-	@Override
-	public long getLength() {
-		return file.length();
+	/**
+	 * Mark this asset as failed; it will never be ready, but is kept until the given time so that its
+	 * components are not requested again on every render.
+	 * @param retryAt the time after which it is to be built again
+	 */
+	void setFailed(long retryAt) {
+		this.retryAt = retryAt;
 	}
 
-	@Override
-	public MimeType getMimeType() {
-		return type;
-	}
-	
 }
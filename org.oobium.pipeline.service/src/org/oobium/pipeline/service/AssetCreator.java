@@ -1,16 +1,51 @@
 package org.oobium.pipeline.service;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import static org.jboss.netty.handler.codec.http.HttpMethod.GET;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
 
 import org.oobium.app.http.MimeType;
 import org.oobium.client.Client;
+import org.oobium.client.ClientFuture;
 import org.oobium.client.ClientResponse;
+import org.oobium.logging.LogProvider;
+import org.oobium.logging.Logger;
 
+/**
+ * Builds a single {@link Asset} from a list of component URLs.
+ * <p>All of the components are requested at once; their responses are then minified (CSS and JavaScript only)
+ * and joined, in the order they were given, and the asset is fingerprinted with the MD5 hash of the result.</p>
+ */
 public class AssetCreator implements Runnable {
 
+	private static final Logger logger = LogProvider.getLogger(AssetCreator.class);
+	
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	
+	static String hash(byte[] content) throws Exception {
+		byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+		char[] hex = new char[digest.length * 2];
+		for(int i = 0; i < digest.length; i++) {
+			hex[i*2] = HEX[(digest[i] >> 4) & 0xf];
+			hex[i*2+1] = HEX[digest[i] & 0xf];
+		}
+		return new String(hex);
+	}
+	
+	static String minify(MimeType type, String content) {
+		if(type == MimeType.CSS) {
+			return Minifier.css(content);
+		}
+		if(type == MimeType.JS) {
+			return Minifier.js(content);
+		}
+		return content;
+	}
+	
+	
 	private final AssetPipelineService service;
 	private final Asset asset;
 	private final MimeType type;
@@ -30,29 +65,39 @@ public class AssetCreator implements Runnable {
 	@Override
 	public void run() {
 		try {
-			File file = File.createTempFile("pipelined_asset-", "." + type.extension() + ".gz");
-			System.out.println("file: " + file);
-			GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+			List<ClientFuture> futures = new ArrayList<ClientFuture>(urls.size());
 			for(String url : urls) {
-				System.out.println("downloading: " + url);
+				logger.debug("downloading: {}", url);
 				Client client = Client.client(url);
-				ClientResponse response = client.get();
-				if(response.isSuccess()) {
-					out.write(response.getContent());
-					System.out.println("downloaded: " + url);
-				} else {
+				futures.add(client.requestAsync(GET, client.getPath(), null));
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			for(int i = 0; i < futures.size(); i++) {
+				ClientResponse response = futures.get(i).get();
+				if(!response.isSuccess()) {
 					if(response.exceptionThrown()) {
-						response.getException().printStackTrace();
+						logger.warn("could not download {}", response.getException(), urls.get(i));
 					} else {
-						System.err.println("error: " + response.getContent());
+						logger.warn("could not download {}: {}", urls.get(i), response.getStatus());
 					}
+					service.failed(asset);
+					return;
+				}
+				String content = minify(type, new String(response.getContent(), "UTF-8"));
+				if(out.size() > 0) {
+					out.write('\n');
 				}
+				out.write(content.getBytes("UTF-8"));
 			}
-			out.close();
-			asset.setFile(file);
+			
+			byte[] content = out.toByteArray();
+			asset.setContent(content, hash(content));
 			service.addAsset(asset);
+			logger.debug("created {} ({} bytes) from {}", asset.getLocation(), content.length, urls);
 		} catch(Exception e) {
-			e.printStackTrace();
+			logger.warn("could not create pipelined asset from {}", e, urls);
+			service.failed(asset);
 		}
 	}
 
@@ -1,55 +1,113 @@
 package org.oobium.pipeline.service;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.oobium.app.http.MimeType;
 import org.oobium.pipeline.AssetPipeline;
 import org.oobium.pipeline.PipelinedAsset;
 import org.oobium.utils.StringUtils;
 
+/**
+ * Creates, and holds, pipelined assets.
+ * <p>Lookups do not lock: both maps are concurrent, and an asset is only added by location once it is ready.
+ * Each list of components is built once - an asset that is still being built is handed to all callers
+ * (not ready) until it is, rather than being built again for each of them. Builds run on a small pool of
+ * daemon threads; if one fails, the asset is kept (never ready) for the retry delay, so that its components
+ * are not requested again on every render, and is then built again on the next request for it.</p>
+ */
 public class AssetPipelineService implements AssetPipeline {
 
-	private Map<String, PipelinedAsset> assetsByLocation;
-	private Map<String, PipelinedAsset> assetsByKey;
+	public static final long RETRY_DELAY = 30000;
+	
+
+	private final ConcurrentMap<String, PipelinedAsset> assetsByLocation;
+	private final ConcurrentMap<String, PipelinedAsset> assetsByKey;
+	private final ExecutorService executor;
+	private volatile long retryDelay;
 	
 	public AssetPipelineService() {
-		assetsByKey = new HashMap<String, PipelinedAsset>();
-		assetsByLocation = new HashMap<String, PipelinedAsset>();
+		assetsByKey = new ConcurrentHashMap<String, PipelinedAsset>();
+		assetsByLocation = new ConcurrentHashMap<String, PipelinedAsset>();
+		executor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "asset pipeline");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		retryDelay = RETRY_DELAY;
 	}
 	
 	void addAsset(Asset asset) {
-		synchronized(assetsByLocation) {
-			assetsByLocation.put(asset.getLocation(), asset);
+		assetsByLocation.put(asset.getLocation(), asset);
+	}
+	
+	void failed(Asset asset) {
+		asset.setFailed(System.currentTimeMillis() + retryDelay);
+	}
+	
+	private Asset build(String key, MimeType type, List<String> assets, PipelinedAsset current) {
+		AssetCreator creator = new AssetCreator(this, type, assets);
+		Asset asset = creator.getAsset();
+		if(current == null) {
+			if(assetsByKey.putIfAbsent(key, asset) != null) {
+				return null; // lost the race; use the winner's asset
+			}
+		} else {
+			if(!assetsByKey.replace(key, current, asset)) {
+				return null;
+			}
 		}
+		executor.execute(creator);
+		return asset;
 	}
 	
+	/**
+	 * Create the asset for the given list of components, even if it has already been created (the
+	 * current asset, if any, continues to be served from its location until the new one is ready).
+	 */
 	@Override
 	public PipelinedAsset createAsset(MimeType type, List<String> assets) {
-		synchronized(assets) {
-			AssetCreator creator = new AssetCreator(this, type, assets);
-			assetsByKey.put(getKey(type, assets), creator.getAsset());
-			new Thread(creator).start();
-			return creator.getAsset();
+		String key = getKey(type, assets);
+		while(true) {
+			PipelinedAsset current = assetsByKey.get(key);
+			Asset asset = build(key, type, assets, current);
+			if(asset != null) {
+				return asset;
+			}
 		}
 	}
 	
 	@Override
 	public PipelinedAsset deleteAsset(MimeType type, List<String> assets) {
-		return null; // TODO
+		PipelinedAsset asset = assetsByKey.remove(getKey(type, assets));
+		if(asset != null && asset.ready()) {
+			assetsByLocation.remove(asset.getLocation(), asset);
+		}
+		return asset;
 	}
 
+	/**
+	 * Stop building assets; the assets that are already built are still available.
+	 */
+	public void dispose() {
+		executor.shutdownNow();
+	}
+	
 	@Override
 	public PipelinedAsset getAsset(MimeType type, List<String> assets) {
 		String key = getKey(type, assets);
 		PipelinedAsset asset = assetsByKey.get(key);
-		if(asset == null) {
-			synchronized(assets) {
+		while(asset == null || ((Asset) asset).isRetryDue(System.currentTimeMillis())) {
+			asset = build(key, type, assets, asset); // a failed asset is replaced, if no one else has already
+			if(asset == null) {
 				asset = assetsByKey.get(key);
-				if(asset == null) {
-					asset = createAsset(type, assets);
-				}
 			}
 		}
 		return asset;
@@ -64,4 +122,12 @@ public class AssetPipelineService implements AssetPipeline {
 		return type.name + "::" + StringUtils.join(assets, ':');
 	}
 
+	/**
+	 * Set how long an asset that could not be built is kept before it is built again.
+	 * @param retryDelay the delay, in milliseconds; defaults to {@link #RETRY_DELAY}
+	 */
+	public void setRetryDelay(long retryDelay) {
+		this.retryDelay = retryDelay;
+	}
+
 }
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.pipeline.service;
+
+/**
+ * Conservative minification of the CSS and JavaScript that goes into a pipelined asset.
+ * <p>Comments are removed (except for "/*!" comments, which are usually licenses) and whitespace is
+ * collapsed, but nothing is renamed or rewritten. JavaScript keeps its line breaks, so that automatic
+ * semicolon insertion still works as it did.</p>
+ */
+public class Minifier {
+
+	/**
+	 * the keywords that a regular expression literal can follow (an operand, not an operator, comes next)
+	 */
+	private static final String[] REGEX_KEYWORDS = { "return", "typeof", "case", "in", "do", "else", "void", "throw", "delete" };
+
+	/**
+	 * @return the given CSS with comments removed, runs of whitespace collapsed, and the whitespace around
+	 * braces, semicolons and commas (and after colons) removed altogether (strings are left as they are)
+	 */
+	public static String css(String css) {
+		StringBuilder sb = new StringBuilder(css.length());
+		int len = css.length();
+		boolean space = false;
+		for(int i = 0; i < len; i++) {
+			char c = css.charAt(i);
+			if(c == '/' && i + 1 < len && css.charAt(i + 1) == '*') {
+				int end = css.indexOf("*/", i + 2);
+				end = (end == -1) ? len : end + 2;
+				if(i + 2 < len && css.charAt(i + 2) == '!') {
+					sb.append(css, i, end).append('\n');
+				}
+				i = end - 1;
+			}
+			else if(c == '"' || c == '\'') {
+				if(space) {
+					appendCssSpace(sb);
+					space = false;
+				}
+				i = appendString(css, i, sb);
+			}
+			else if(Character.isWhitespace(c)) {
+				space = true;
+			}
+			else {
+				if(c == '{' || c == '}' || c == ';' || c == ',') {
+					trimSpace(sb);
+					if(c == '}' && sb.length() > 0 && sb.charAt(sb.length() - 1) == ';') {
+						sb.setLength(sb.length() - 1);
+					}
+					sb.append(c);
+					space = false;
+					while(i + 1 < len && Character.isWhitespace(css.charAt(i + 1))) i++;
+				} else {
+					if(space) {
+						appendCssSpace(sb);
+						space = false;
+					}
+					sb.append(c);
+				}
+			}
+		}
+		return sb.toString().trim();
+	}
+
+	/**
+	 * @return the given JavaScript with comments removed, and each line trimmed (blank lines are dropped).
+	 * Strings and regular expression literals are left as they are.
+	 */
+	public static String js(String js) {
+		StringBuilder sb = new StringBuilder(js.length());
+		int len = js.length();
+		boolean space = false;
+		char last = '\n'; // the last significant (non-whitespace, non-comment) character
+		for(int i = 0; i < len; i++) {
+			char c = js.charAt(i);
+			if(c == '/' && i + 1 < len && js.charAt(i + 1) == '*') {
+				int end = js.indexOf("*/", i + 2);
+				end = (end == -1) ? len : end + 2;
+				if(i + 2 < len && js.charAt(i + 2) == '!') {
+					sb.append(js, i, end).append('\n');
+				} else if(js.substring(i, end).indexOf('\n') != -1) {
+					newline(sb);
+				} else {
+					space = true;
+				}
+				i = end - 1;
+			}
+			else if(c == '/' && i + 1 < len && js.charAt(i + 1) == '/') {
+				while(i + 1 < len && js.charAt(i + 1) != '\n') i++;
+			}
+			else if(c == '\n' || c == '\r') {
+				newline(sb);
+				space = false;
+			}
+			else if(Character.isWhitespace(c)) {
+				space = true;
+			}
+			else {
+				if(space) {
+					appendSpace(sb);
+					space = false;
+				}
+				if(c == '"' || c == '\'') {
+					i = appendString(js, i, sb);
+				}
+				else if(c == '/' && isRegexStart(sb, last)) {
+					i = appendRegex(js, i, sb);
+				}
+				else {
+					sb.append(c);
+				}
+				last = c;
+			}
+		}
+		trimSpace(sb);
+		while(sb.length() > 0 && sb.charAt(sb.length() - 1) == '\n') {
+			sb.setLength(sb.length() - 1);
+		}
+		return sb.toString();
+	}
+
+	private static void appendCssSpace(StringBuilder sb) {
+		// a space is not needed after these (but is before a colon: "a :hover" is not "a:hover")
+		int length = sb.length();
+		if(length > 0 && "{};,:".indexOf(sb.charAt(length - 1)) == -1) {
+			appendSpace(sb);
+		}
+	}
+
+	private static void appendSpace(StringBuilder sb) {
+		int length = sb.length();
+		if(length > 0) {
+			char c = sb.charAt(length - 1);
+			if(c != ' ' && c != '\n') {
+				sb.append(' ');
+			}
+		}
+	}
+
+	/**
+	 * Append the regular expression literal starting at the given index (which is its opening slash).
+	 * @return the index of its closing slash
+	 */
+	private static int appendRegex(String s, int start, StringBuilder sb) {
+		int len = s.length();
+		boolean inClass = false;
+		sb.append('/');
+		for(int i = start + 1; i < len; i++) {
+			char c = s.charAt(i);
+			sb.append(c);
+			if(c == '\\' && i + 1 < len) {
+				sb.append(s.charAt(++i));
+			} else if(c == '[') {
+				inClass = true;
+			} else if(c == ']') {
+				inClass = false;
+			} else if(c == '/' && !inClass) {
+				return i;
+			} else if(c == '\n') {
+				return i; // not a regex after all; nothing has been dropped
+			}
+		}
+		return len - 1;
+	}
+
+	/**
+	 * Append the string literal starting at the given index (which is its opening quote).
+	 * @return the index of its closing quote
+	 */
+	private static int appendString(String s, int start, StringBuilder sb) {
+		char quote = s.charAt(start);
+		int len = s.length();
+		sb.append(quote);
+		for(int i = start + 1; i < len; i++) {
+			char c = s.charAt(i);
+			sb.append(c);
+			if(c == '\\' && i + 1 < len) {
+				sb.append(s.charAt(++i));
+			} else if(c == quote || c == '\n') {
+				return i;
+			}
+		}
+		return len - 1;
+	}
+
+	/**
+	 * A slash starts a regular expression, rather than being a division, if it follows an operator or
+	 * punctuation - or one of the {@link #REGEX_KEYWORDS}, which is checked for in what has been output so far.
+	 */
+	private static boolean isRegexStart(StringBuilder sb, char last) {
+		if("(,=:[!&|?{};+-*%<>~^\n".indexOf(last) != -1) {
+			return true;
+		}
+		if(Character.isJavaIdentifierPart(last)) {
+			int end = sb.length();
+			while(end > 0 && Character.isWhitespace(sb.charAt(end - 1))) end--;
+			int start = end;
+			while(start > 0 && Character.isJavaIdentifierPart(sb.charAt(start - 1))) start--;
+			if(start > 0 && sb.charAt(start - 1) == '.') {
+				return false; // a property that happens to share a keyword's name: a.in / 2
+			}
+			String word = sb.substring(start, end);
+			for(String keyword : REGEX_KEYWORDS) {
+				if(keyword.equals(word)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static void newline(StringBuilder sb) {
+		trimSpace(sb);
+		int length = sb.length();
+		if(length > 0 && sb.charAt(length - 1) != '\n') {
+			sb.append('\n');
+		}
+	}
+
+	private static void trimSpace(StringBuilder sb) {
+		int length = sb.length();
+		while(length > 0 && sb.charAt(length - 1) == ' ') {
+			length--;
+		}
+		sb.setLength(length);
+	}
+
+	private Minifier() {
+		// static methods only
+	}
+
+}
@@ -4,6 +4,11 @@ import org.oobium.app.http.MimeType;
 
 public interface PipelinedAsset {
 
+	/**
+	 * @return the quoted entity tag of this asset's content, or null if it is not ready
+	 */
+	public abstract String getETag();
+	
 	public abstract long getLastModified();
 	
 	public abstract long getLength();
@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.oobium.persist.Model;
+import org.oobium.persist.ModelCursor;
 import org.oobium.persist.PersistService;
 import org.oobium.persist.ServiceInfo;
 import org.oobium.persist.db.derby.embedded.DerbyEmbeddedPersistService;
@@ -104,6 +105,11 @@ public class TestPersistService implements PersistService {
 		return service.findAll(clazz, where, values);
 	}
 	
+	@Override
+	public <T extends Model> ModelCursor<T> findEach(Class<T> clazz, String where, Object... values) throws Exception {
+		return service.findEach(clazz, where, values);
+	}
+	
 	@Override
 	public ServiceInfo getInfo() {
 		return service.getInfo();
@@ -129,6 +135,11 @@ public class TestPersistService implements PersistService {
 		service.retrieve(model, hasMany);
 	}
 
+	@Override
+	public void retrieve(Model[] models, String hasMany) throws Exception {
+		service.retrieve(models, hasMany);
+	}
+
 	@Override
 	public void update(Model... models) throws Exception {
 		service.update(models);
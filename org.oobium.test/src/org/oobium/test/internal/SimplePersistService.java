@@ -11,6 +11,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.oobium.persist.Model;
 import org.oobium.persist.ModelAdapter;
+import org.oobium.persist.ModelCursor;
 import org.oobium.persist.PersistService;
 import org.oobium.persist.ServiceInfo;
 
@@ -135,6 +136,11 @@ public class SimplePersistService implements PersistService {
 		throw new UnsupportedOperationException("Stub this method to use: when(persistor.findAll(anyClass(), anyString(), anyVararg()).thenReturn(...))");
 	}
 
+	@Override
+	public <T extends Model> ModelCursor<T> findEach(Class<T> clazz, String where, Object... values) throws Exception {
+		throw new UnsupportedOperationException("Stub this method to use: when(persistor.findEach(anyClass(), anyString(), anyVararg()).thenReturn(...))");
+	}
+
 	private <T> T get(Class<T> modelClass, Object id) {
 		Map<Object, Map<String, Object>> models = db.get(modelClass);
 		if(models != null) {
@@ -222,6 +228,11 @@ public class SimplePersistService implements PersistService {
 		throw new UnsupportedOperationException("not yet implemented");
 	}
 
+	@Override
+	public void retrieve(Model[] models, String hasMany) throws Exception {
+		throw new UnsupportedOperationException("not yet implemented");
+	}
+
 	private void store(Model model) {
 		LinkedHashMap<Object, Map<String, Object>> models = db.get(model.getClass());
 		if(models == null) {
@@ -16,22 +16,27 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
-import java.util.Locale;
-import java.util.TimeZone;
 
 public class DateUtils {
 
-	private static final SimpleDateFormat basicDate			= new SimpleDateFormat("MM/dd/yyyy");
-	private static final SimpleDateFormat httpDate_1123		= new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
-	private static final SimpleDateFormat httpDate_850		= new SimpleDateFormat("EEEE, dd-MMM-yy HH:mm:ss z", Locale.US);
-	private static final SimpleDateFormat httpDate_ASCTIME	= new SimpleDateFormat("EEE, MM  dd HH:mm:ss yyyy", Locale.US);
-	static {
-		TimeZone tz = TimeZone.getTimeZone("GMT");
-		httpDate_1123.setTimeZone(tz);
-		httpDate_850.setTimeZone(tz);
-		httpDate_ASCTIME.setTimeZone(tz);
+	private static final String[] httpDays = { "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" };
+	private static final String[] httpMonths = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+	/**
+	 * The formatted date of the current second, shared by every response created during that second.
+	 * It is immutable, so there is nothing to synchronize - a race only formats it twice.
+	 */
+	private static class HttpNow {
+		final long second;
+		final String date;
+		HttpNow(long second) {
+			this.second = second;
+			this.date = httpDate(second * 1000);
+		}
 	}
 
+	private static volatile HttpNow httpNow = new HttpNow(0);
+
 	private static Date add(Date date, int field, int amount) {
 		Calendar cal = Calendar.getInstance();
 		cal.setTime(date);
@@ -102,7 +107,7 @@ public class DateUtils {
 	
 	public static Date getDate(String date) throws ParseException {
 		try {
-			return basicDate.parse(date);
+			return new SimpleDateFormat("MM/dd/yyyy").parse(date);
 		} catch(Exception e) {
 			throw new ParseException("could not parse date: " + date + " using pattern: MM/dd/yyyy", -1);
 		}
@@ -284,38 +289,196 @@ public class DateUtils {
 		return sdf.format(hoursFromNow(amount));
 	}
 	
+	private static long daysFromCivil(int year, int month, int day) {
+		// month is 1-12; see http://howardhinnant.github.io/date_algorithms.html
+		year -= (month <= 2) ? 1 : 0;
+		long era = (year >= 0 ? year : year - 399) / 400;
+		long yoe = year - era * 400;
+		long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+	private static int digits(String s, int index) {
+		char c1 = s.charAt(index);
+		char c2 = s.charAt(index + 1);
+		if(c1 < '0' || c1 > '9' || c2 < '0' || c2 > '9') {
+			return -1;
+		}
+		return (c1 - '0') * 10 + (c2 - '0');
+	}
+
+	/**
+	 * @return the current date, formatted as an RFC 1123 HTTP date, such as
+	 * "Sun, 06 Nov 1994 08:49:37 GMT". The string is only formatted once per second.
+	 */
 	public static String httpDate() {
-		return httpDate(new Date());
+		long second = System.currentTimeMillis() / 1000;
+		HttpNow now = httpNow;
+		if(now.second != second) {
+			httpNow = now = new HttpNow(second);
+		}
+		return now.date;
 	}
 
+	/**
+	 * @return the given date, formatted as an RFC 1123 HTTP date, such as "Sun, 06 Nov 1994 08:49:37 GMT"
+	 */
 	public static String httpDate(Date date) {
-		return httpDate_1123.format(date);
+		return httpDate(date.getTime());
 	}
 
+	/**
+	 * Format the given time as an RFC 1123 HTTP date, such as "Sun, 06 Nov 1994 08:49:37 GMT".
+	 * Safe to call from any thread (it does not use a shared SimpleDateFormat).
+	 */
 	public static String httpDate(long dateInMillis) {
-		return httpDate_1123.format(new Date(dateInMillis));
-	}
-	
+		long seconds = dateInMillis / 1000;
+		if(dateInMillis % 1000 < 0) {
+			seconds--;
+		}
+		long days = seconds / 86400;
+		int secs = (int) (seconds % 86400);
+		if(secs < 0) {
+			secs += 86400;
+			days--;
+		}
+
+		// civil date from days; see http://howardhinnant.github.io/date_algorithms.html
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+		int dow = (int) ((days + 4) % 7); // 1970-01-01 was a Thursday
+		if(dow < 0) {
+			dow += 7;
+		}
+
+		StringBuilder sb = new StringBuilder(29);
+		sb.append(httpDays[dow]).append(',').append(' ');
+		pad(sb, day).append(' ');
+		sb.append(httpMonths[month - 1]).append(' ');
+		sb.append(year).append(' ');
+		pad(sb, secs / 3600).append(':');
+		pad(sb, (secs / 60) % 60).append(':');
+		pad(sb, secs % 60).append(" GMT");
+		return sb.toString();
+	}
+
+	/**
+	 * Parse an HTTP date in any of the three formats allowed by RFC 2616:
+	 * <ul>
+	 * <li>RFC 1123: Sun, 06 Nov 1994 08:49:37 GMT</li>
+	 * <li>RFC 850: Sunday, 06-Nov-94 08:49:37 GMT</li>
+	 * <li>asctime: Sun Nov  6 08:49:37 1994</li>
+	 * </ul>
+	 * Safe to call from any thread (it does not use a shared SimpleDateFormat).
+	 * @throws ParseException if the date is not in one of the above formats
+	 */
 	public static Date httpDate(String date) throws ParseException {
-		try {
-			try {
-				return httpDate_1123.parse(date);
-			} catch(ParseException e1) {
-				try {
-					return httpDate_850.parse(date);
-				} catch(ParseException e2) {
-					try {
-						return httpDate_ASCTIME.parse(date);
-					} catch(ParseException e3) {
-						throw e1;
+		long time = httpTime(date);
+		if(time == Long.MIN_VALUE) {
+			throw new ParseException("could not parse http date: " + date, -1);
+		}
+		return new Date(time);
+	}
+
+	private static long httpTime(String s) {
+		if(s == null) {
+			return Long.MIN_VALUE;
+		}
+		int day = -1, month = -1, year = -1, hour = -1, minute = -1, second = -1;
+		int len = s.length();
+		int i = 0;
+		while(i < len) {
+			char c = s.charAt(i);
+			if(Character.isLetter(c)) {
+				int start = i;
+				while(i < len && Character.isLetter(s.charAt(i))) i++;
+				String word = s.substring(start, i);
+				if(word.length() == 3 && month == -1 && (month = httpMonth(word)) != -1) {
+					continue;
+				}
+				if("GMT".equals(word) || "UTC".equals(word) || "UT".equals(word)) {
+					continue;
+				}
+				if(day == -1 && year == -1 && httpDay(word)) { // the day of week comes first
+					continue;
+				}
+				return Long.MIN_VALUE;
+			}
+			else if(c >= '0' && c <= '9') {
+				int start = i;
+				int n = 0;
+				while(i < len && (c = s.charAt(i)) >= '0' && c <= '9') {
+					n = n * 10 + (c - '0');
+					i++;
+				}
+				if(i < len && s.charAt(i) == ':' && hour == -1) {
+					hour = n;
+					if(i + 5 < len && s.charAt(i + 3) == ':') {
+						minute = digits(s, i + 1);
+						second = digits(s, i + 4);
+						i += 6;
+					} else {
+						return Long.MIN_VALUE;
 					}
 				}
+				else if(day == -1 && (i - start) <= 2) {
+					day = n;
+				}
+				else if(year == -1) {
+					year = ((i - start) <= 2) ? ((n < 70) ? 2000 + n : 1900 + n) : n;
+				}
+				else {
+					return Long.MIN_VALUE;
+				}
 			}
-		} catch(Exception e) {
-			throw new ParseException("could not parse http date: " + date, -1);
+			else {
+				i++;
+			}
+		}
+		if(day < 1 || day > 31 || month == -1 || year == -1 || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+			return Long.MIN_VALUE;
 		}
+		long days = daysFromCivil(year, month + 1, day);
+		return ((days * 86400) + (hour * 3600) + (minute * 60) + second) * 1000;
 	}
-	
+
+	private static boolean httpDay(String word) {
+		if(word.length() >= 3) {
+			String abbr = word.substring(0, 3);
+			for(String day : httpDays) {
+				if(day.equals(abbr)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static int httpMonth(String word) {
+		for(int i = 0; i < httpMonths.length; i++) {
+			if(httpMonths[i].equals(word)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static StringBuilder pad(StringBuilder sb, int value) {
+		if(value < 10) {
+			sb.append('0');
+		}
+		return sb.append(value);
+	}
+
 	public static int minute(Date date) {
 		Calendar cal = Calendar.getInstance();
 		cal.setTime(date);
@@ -330,51 +330,67 @@ public class SqlUtils {
 		return new ArrayList<List<Object>>(0);
 	}
 
-	public static List<Map<String, Map<String, Object>>> asNestedFieldMaps(ResultSet rs) throws SQLException {
-		try {
-			List<Map<String, Map<String, Object>>> maps = new ArrayList<Map<String,Map<String,Object>>>();
-			List<String> columns = new ArrayList<String>();
-			ResultSetMetaData meta = rs.getMetaData();
-			for(int i = 1; i <= meta.getColumnCount(); i++) {
-				columns.add(meta.getColumnLabel(i));
+	private static final Comparator<String> aliasComparator = new Comparator<String>() {
+		public int compare(String o1, String o2) {
+			if(o1.equals(o2)) {
+				return 0;
 			}
-			while(rs.next()) {
-				Map<String, Map<String, Object>> row = new TreeMap<String, Map<String,Object>>(new Comparator<String>() {
-					public int compare(String o1, String o2) {
-						if(o1.equals(o2)) {
-							return 0;
-						}
-						int i1 = 0;
-						for(int i = 0; i < o1.length(); i++) {
-							i1 += o1.charAt(i);
-						}
-						int i2 = 0;
-						for(int i = 0; i < o2.length(); i++) {
-							i2 += o2.charAt(i);
-						}
-						return (i1 > i2) ? 1 : -1;
-					};
-				});
-				for(int i = 0; i < columns.size(); i++) {
-					String column = columns.get(i);
-					String[] sa = column.trim().split("\\s*_\\s*", 2);
-					String key = sa[0].toLowerCase();
-					String var = varName(sa[1]);
-					int type = meta.getColumnType(i+1);
-					if(!row.containsKey(key)) {
-						row.put(key, new HashMap<String, Object>());
-					}
-					row.get(key).put(var, getValue(type, rs, i+1));
-				}
-				maps.add(row);
+			int i1 = 0;
+			for(int i = 0; i < o1.length(); i++) {
+				i1 += o1.charAt(i);
 			}
-			return maps;
+			int i2 = 0;
+			for(int i = 0; i < o2.length(); i++) {
+				i2 += o2.charAt(i);
+			}
+			return (i1 > i2) ? 1 : -1;
+		};
+	};
+	
+	private static Map<String, Map<String, Object>> asNestedFieldMap(ResultSet rs, ResultSetMetaData meta, List<String> columns) throws SQLException {
+		Map<String, Map<String, Object>> row = new TreeMap<String, Map<String,Object>>(aliasComparator);
+		for(int i = 0; i < columns.size(); i++) {
+			String column = columns.get(i);
+			String[] sa = column.trim().split("\\s*_\\s*", 2);
+			String key = sa[0].toLowerCase();
+			String var = varName(sa[1]);
+			int type = meta.getColumnType(i+1);
+			if(!row.containsKey(key)) {
+				row.put(key, new HashMap<String, Object>());
+			}
+			row.get(key).put(var, getValue(type, rs, i+1));
+		}
+		return row;
+	}
+	
+	public static List<Map<String, Map<String, Object>>> asNestedFieldMaps(ResultSet rs) throws SQLException {
+		try {
+			return asNestedFieldMaps(rs, -1);
 		} catch(Exception e) {
 			logger.warn(e);
 		}
 		return new ArrayList<Map<String,Map<String,Object>>>(0);
 	}
 	
+	/**
+	 * Read, at most, the next <code>limit</code> rows of the given ResultSet as maps of table aliases
+	 * to maps of their field values. Reading stops early only when the ResultSet is exhausted, so an
+	 * empty list means there are no more rows.
+	 * @param limit the maximum number of rows to read; or -1 to read all remaining rows
+	 */
+	public static List<Map<String, Map<String, Object>>> asNestedFieldMaps(ResultSet rs, int limit) throws SQLException {
+		List<Map<String, Map<String, Object>>> maps = new ArrayList<Map<String,Map<String,Object>>>((limit > 0) ? limit : 10);
+		List<String> columns = new ArrayList<String>();
+		ResultSetMetaData meta = rs.getMetaData();
+		for(int i = 1; i <= meta.getColumnCount(); i++) {
+			columns.add(meta.getColumnLabel(i));
+		}
+		while((limit < 0 || maps.size() < limit) && rs.next()) {
+			maps.add(asNestedFieldMap(rs, meta, columns));
+		}
+		return maps;
+	}
+	
 	private static Object getValue(int type, ResultSet resultSet, int columnIndex) throws SQLException {
 		switch(type) {
 		case Types.BLOB:		return resultSet.getBytes(columnIndex);
@@ -611,16 +611,104 @@ public class StringUtils {
 		return htmlEscape(obj);
 	}
 	
+	public static StringBuilder h(StringBuilder sb, Object obj) {
+		return htmlEscape(sb, obj);
+	}
+	
 	public static String hasserName(String variable) {
 		return "has" + camelCase(variable);
 	}
 	
+	private static String htmlEntity(char c) {
+		switch(c) {
+		case '&': return "&amp;";
+		case '>': return "&gt;";
+		case '<': return "&lt;";
+		case '"': return "&quot;";
+		default:  return null;
+		}
+	}
+	
+	/**
+	 * Escape the HTML special characters (&amp;, &gt;, &lt; and &quot;) of the given object's String value.
+	 * @return the escaped String; the object's String value itself if nothing needed to be escaped,
+	 * or an empty String if the object is null
+	 */
 	public static String htmlEscape(Object obj) {
 		if(obj == null) {
 			return "";
-		} else {
-			return obj.toString().replaceAll("&", "&amp;").replaceAll(">", "&gt;").replaceAll("<", "&lt;").replaceAll("\"", "&quot;");
 		}
+		String s = obj.toString();
+		for(int i = 0; i < s.length(); i++) {
+			if(htmlEntity(s.charAt(i)) != null) {
+				StringBuilder sb = new StringBuilder(s.length() + 16);
+				sb.append(s, 0, i);
+				htmlEscape(sb, s, i);
+				return sb.toString();
+			}
+		}
+		return s;
+	}
+	
+	/**
+	 * Escape the HTML special characters of the given object's String value directly into the given
+	 * StringBuilder, without creating an intermediate String (unless the object is not a CharSequence).
+	 * Nothing is appended if the object is null.
+	 * @return the given StringBuilder
+	 */
+	public static StringBuilder htmlEscape(StringBuilder sb, Object obj) {
+		if(obj != null) {
+			htmlEscape(sb, (obj instanceof CharSequence) ? (CharSequence) obj : obj.toString(), 0);
+		}
+		return sb;
+	}
+	
+	private static void htmlEscape(StringBuilder sb, CharSequence s, int start) {
+		int len = s.length();
+		int run = start;
+		for(int i = start; i < len; i++) {
+			String entity = htmlEntity(s.charAt(i));
+			if(entity != null) {
+				if(run < i) {
+					sb.append(s, run, i);
+				}
+				sb.append(entity);
+				run = i + 1;
+			}
+		}
+		if(run < len) {
+			sb.append(s, run, len);
+		}
+	}
+	
+	/**
+	 * Escape the HTML special characters of the given object's String value directly into the given Appendable.
+	 * Nothing is appended if the object is null.
+	 * @return the given Appendable
+	 */
+	public static Appendable htmlEscape(Appendable out, Object obj) throws IOException {
+		if(out instanceof StringBuilder) {
+			return htmlEscape((StringBuilder) out, obj);
+		}
+		if(obj != null) {
+			CharSequence s = (obj instanceof CharSequence) ? (CharSequence) obj : obj.toString();
+			int len = s.length();
+			int run = 0;
+			for(int i = 0; i < len; i++) {
+				String entity = htmlEntity(s.charAt(i));
+				if(entity != null) {
+					if(run < i) {
+						out.append(s, run, i);
+					}
+					out.append(entity);
+					run = i + 1;
+				}
+			}
+			if(run < len) {
+				out.append(s, run, len);
+			}
+		}
+		return out;
 	}
 
 	/**
@@ -18,7 +18,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.oobium.utils.coercion.coercers.ArrayCoercer;
 import org.oobium.utils.coercion.coercers.BigDecimalCoercer;
@@ -43,24 +43,129 @@ import org.oobium.utils.coercion.coercers.TimeCoercer;
 import org.oobium.utils.coercion.coercers.TimeZoneCoercer;
 import org.oobium.utils.coercion.coercers.TimestampCoercer;
 
-
+/**
+ * Coerces objects from one type into another, using the registered {@link Coercer}s.
+ * <p>The coercer and method to use for each pair of source and target classes are resolved once, on first use,
+ * and held in a concurrent cache - after that a coercion is a pair of map lookups and a method call, and takes
+ * no locks. The registered coercers are held in an immutable registry that {@link #addCoercer(Coercer)}
+ * replaces as a whole (copy-on-write), along with the cache.</p>
+ * <p>The cache holds on to the classes that it has seen, so it is bounded (it is cleared when it fills up),
+ * and {@link #clearCache()} is called when a module is stopped so that its classes can be unloaded.</p>
+ */
 public class TypeCoercer {
 
 	private static final String EMPTY_STRING = "";
 	private static final String NULL_STRING = "null";
-	
-	private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
-	private static final Map<Class<?>, Coercer> coercers;
-	private static final Map<Coercer, Map<Class<?>, Method>> methods;
-	
-	private static final List<Class<?>> assignables;
-	private static Coercer arrayCoercer;
+	/**
+	 * The number of classes a cache may hold before it is cleared.
+	 */
+	private static final int MAX_CACHE_SIZE = 1024;
+
+	/**
+	 * The coercer and method resolved for a source and target class.
+	 */
+	private static class Path {
+		final Coercer coercer;
+		final Method method;
+		Path(Coercer coercer, Method method) {
+			this.coercer = coercer;
+			this.method = method;
+		}
+	}
+
+	/**
+	 * An immutable set of registered coercers, along with the paths resolved from them.
+	 */
+	private static class Registry {
+
+		final Map<Class<?>, Coercer> coercers;
+		final Map<Coercer, Map<Class<?>, Method>> methods;
+		final List<Class<?>> assignables;
+		final Coercer arrayCoercer;
+
+		/** target class -> coercer (or NONE) */
+		final ConcurrentHashMap<Class<?>, Path> targets;
+
+		/** target class -> source class -> path */
+		final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, Path>> paths;
+
+		Registry(Map<Class<?>, Coercer> coercers, Map<Coercer, Map<Class<?>, Method>> methods, List<Class<?>> assignables, Coercer arrayCoercer) {
+			this.coercers = coercers;
+			this.methods = methods;
+			this.assignables = assignables;
+			this.arrayCoercer = arrayCoercer;
+			this.targets = new ConcurrentHashMap<Class<?>, Path>();
+			this.paths = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, Path>>();
+		}
+
+		Coercer getCoercer(Class<?> type) {
+			Path path = targets.get(type);
+			if(path == null) {
+				Coercer coercer = coercers.get(type);
+				if(coercer == null) {
+					if(type.isArray()) {
+						coercer = arrayCoercer;
+					} else {
+						for(Class<?> clazz : assignables) {
+							if(clazz.isAssignableFrom(type)) {
+								coercer = coercers.get(clazz);
+							}
+						}
+					}
+				}
+				path = (coercer != null) ? new Path(coercer, null) : NONE;
+				if(targets.size() >= MAX_CACHE_SIZE) {
+					targets.clear();
+				}
+				targets.put(type, path);
+			}
+			return path.coercer;
+		}
+
+		Path getPath(Class<?> from, Class<?> to) {
+			ConcurrentHashMap<Class<?>, Path> map = paths.get(to);
+			if(map == null) {
+				if(paths.size() >= MAX_CACHE_SIZE) {
+					paths.clear();
+				}
+				map = new ConcurrentHashMap<Class<?>, Path>();
+				ConcurrentHashMap<Class<?>, Path> existing = paths.putIfAbsent(to, map);
+				if(existing != null) {
+					map = existing;
+				}
+			}
+			Path path = map.get(from);
+			if(path == null) {
+				Coercer coercer = getCoercer(to);
+				if(coercer == null) {
+					path = NONE;
+				} else {
+					// methods are added per coercer: next line should never return null
+					Map<Class<?>, Method> methods = this.methods.get(coercer);
+					Method method = methods.get(from);
+					if(method == null) {
+						// there is no specific method, try for a generic coerce(Object) method
+						method = methods.get(Object.class);
+					}
+					path = new Path(coercer, method);
+				}
+				if(map.size() >= MAX_CACHE_SIZE) {
+					map.clear();
+				}
+				map.put(from, path); // a race only resolves it twice
+			}
+			return path;
+		}
+
+	}
+
+	private static final Path NONE = new Path(null, null);
+
+	private static volatile Registry registry;
 	
 	static {
-		coercers = new HashMap<Class<?>, Coercer>();
-		methods = new HashMap<Coercer, Map<Class<?>, Method>>();
-		assignables = new ArrayList<Class<?>>();
+		registry = new Registry(new HashMap<Class<?>, Coercer>(0), new HashMap<Coercer, Map<Class<?>, Method>>(0), new ArrayList<Class<?>>(0), null);
 
 		addCoercer(new ArrayCoercer());
 		addCoercer(new BigDecimalCoercer());
@@ -86,34 +191,50 @@ public class TypeCoercer {
 		addCoercer(new TimeZoneCoercer());
 	}
 
-	public static void addCoercer(Coercer coercer) {
+	public static synchronized void addCoercer(Coercer coercer) {
 		Class<?> objectType = coercer.getType();
 		Map<Class<?>, Method> map = new HashMap<Class<?>, Method>();
 		for(Method method : coercer.getClass().getMethods()) {
 			if("coerce".equals(method.getName())) {
 				Class<?>[] params = method.getParameterTypes();
 				if(params.length == 2 && params[1] == Class.class) {
+					try {
+						method.setAccessible(true); // skip the access check on each invoke
+					} catch(SecurityException e) {
+						// use it as is
+					}
 					map.put(params[0], method);
 				}
 			}
 		}
 		if(!map.isEmpty()) {
-			lock.writeLock().lock();
-			try {
-				coercers.put(objectType, coercer);
-				methods.put(coercer, map);
-				if(coercer.handleSubTypes()) {
-					assignables.add(objectType);
-				}
-				if(objectType.isArray()) {
-					arrayCoercer = coercer;
-				}
-			} finally {
-				lock.writeLock().unlock();
+			Registry current = registry;
+			Map<Class<?>, Coercer> coercers = new HashMap<Class<?>, Coercer>(current.coercers);
+			Map<Coercer, Map<Class<?>, Method>> methods = new HashMap<Coercer, Map<Class<?>, Method>>(current.methods);
+			List<Class<?>> assignables = new ArrayList<Class<?>>(current.assignables);
+			Coercer arrayCoercer = current.arrayCoercer;
+			coercers.put(objectType, coercer);
+			methods.put(coercer, map);
+			if(coercer.handleSubTypes()) {
+				assignables.add(objectType);
+			}
+			if(objectType.isArray()) {
+				arrayCoercer = coercer;
 			}
+			registry = new Registry(coercers, methods, assignables, arrayCoercer);
 		}
 	}
 
+	/**
+	 * Clear the coercers and methods resolved for each pair of classes, releasing the references to those classes.
+	 * The registered coercers are not affected.
+	 */
+	public static void clearCache() {
+		Registry current = registry;
+		current.targets.clear();
+		current.paths.clear();
+	}
+
 	public static TypeCoercion coerce(Object object) {
 		return new TypeCoercion(object);
 	}
@@ -125,13 +246,7 @@ public class TypeCoercer {
 		}
 		
 		if(isNull(object)) {
-			Coercer coercer = null;
-			lock.readLock().lock();
-			try {
-				coercer = getCoercer(type);
-			} finally {
-				lock.readLock().unlock();
-			}
+			Coercer coercer = registry.getCoercer(type);
 			if(coercer == null) {
 				return null;
 			} else {
@@ -143,24 +258,9 @@ public class TypeCoercer {
 			return type.cast(object);
 		}
 		
-		Coercer coercer = null;
-		Method method = null;
-		
-		lock.readLock().lock();
-		try {
-			coercer = getCoercer(type);
-			if(coercer != null) {
-				// methods are added per coercer: next line should never return null
-				Map<Class<?>, Method> map = methods.get(coercer);
-				method = map.get(object.getClass());
-				if(method == null) {
-					// there is no specific method, try for a generic coerce(Object) method
-					method = map.get(Object.class);
-				}
-			}
-		} finally {
-			lock.readLock().unlock();
-		}
+		Path path = registry.getPath(object.getClass(), type);
+		Coercer coercer = path.coercer;
+		Method method = path.method;
 		
 		if(coercer == null) {
 			if(object instanceof String) {
@@ -172,7 +272,7 @@ public class TypeCoercer {
 			throw new UnsupportedOperationException("no coercer for type " + type.getName());
 		}
 		
-		if(methods == null) {
+		if(method == null) {
 			throw new UnsupportedOperationException(coercer.getClass().getName() + " can not coerce type " + object.getClass().getName() + " to type "+ type.getName());
 		}
 		
@@ -190,22 +290,6 @@ public class TypeCoercer {
 			throw new IllegalArgumentException(coercer.getClass().getName() + " can not coerce type " + object.getClass().getName() + " to type "+ type.getName(), e);
 		}
 	}
-	
-	private static Coercer getCoercer(Class<?> type) {
-		Coercer coercer = coercers.get(type);
-		if(coercer == null) {
-			if(type.isArray()) {
-				coercer = arrayCoercer;
-			} else {
-				for(Class<?> clazz : assignables) {
-					if(clazz.isAssignableFrom(type)) {
-						coercer = coercers.get(clazz);
-					}
-				}
-			}
-		}
-		return coercer;
-	}
 
 	private static boolean isNull(Object object) {
 		if(object == null) return true;
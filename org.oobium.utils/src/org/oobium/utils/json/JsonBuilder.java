@@ -10,14 +10,13 @@
  ******************************************************************************/
 package org.oobium.utils.json;
 
-import java.lang.reflect.Array;
-import java.util.Date;
-import java.util.Iterator;
+import java.io.IOException;
 import java.util.Map;
-import java.util.Map.Entry;
-
-import org.oobium.utils.Base64;
 
+/**
+ * Converts objects to JSON formatted Strings. Each conversion writes the whole document into a single
+ * StringBuilder through a {@link JsonWriter}; use a JsonWriter directly to write to some other {@link Appendable}.
+ */
 public class JsonBuilder {
 
 	public static JsonBuilder jsonBuilder(IConverter converter) {
@@ -42,14 +41,7 @@ public class JsonBuilder {
 		if(objs == null) {
 			return "null";
 		}
-		StringBuilder sb = new StringBuilder();
-		sb.append("[");
-		for(Iterator<?> iter = objs.iterator(); iter.hasNext(); ) {
-			sb.append(toJson(iter.next()));
-			if(iter.hasNext()) sb.append(",");
-		}
-		sb.append("]");
-		return sb.toString();
+		return write(objs);
 	}
 
 	/**
@@ -58,125 +50,38 @@ public class JsonBuilder {
 	 * @return a {@link String} in JSON format
 	 */
 	public String toJson(Map<?, ?> obj) {
-		StringBuilder sb = new StringBuilder();
-		sb.append('{');
-		for(Iterator<?> iter = obj.entrySet().iterator(); iter.hasNext(); ) {
-			Entry<?, ?> entry = (Entry<?, ?> ) iter.next();
-			String key = String.valueOf(entry.getKey());
-			Object val = entry.getValue();
-			sb.append('"').append(key).append('"').append(':');
-			if(val instanceof String && skip != null && skip.length > 0) {
-				boolean doSkip = false;
-				for(int i = 0; i < skip.length; i++) {
-					if(key.equals(skip[i])) {
-						doSkip = true;
-						break;
-					}
-				}
-				if(doSkip) {
-					sb.append(val);
-				} else {
-					sb.append(toJson(val));
-				}
-			} else {
-				sb.append(toJson(val));
-			}
-			if(iter.hasNext()) {
-				sb.append(',');
-			}
-		}
-		sb.append('}');
-		return sb.toString();
+		return write(obj);
 	}
 
-	private String asEscapedString(Object value) {
-		char[] ca = value.toString().toCharArray();
-		StringBuilder sb = new StringBuilder(ca.length + 10);
-		sb.append('"');
-		for(int i = 0; i < ca.length; i++) {
-			switch(ca[i]) {
-			case '\\':	if(i == 0 || ca[i] != '\\') { sb.append("\\\\"); } break;
-			case '"':	if(i == 0 || ca[i] != '\\') { sb.append("\\\""); } break;
-			case '\t':	if(i == 0 || ca[i] != '\\') { sb.append("\\t"); } break;
-			case '\n':  if(i == 0 || ca[i] != '\\') { sb.append("\\n"); } break;
-			default:	sb.append(ca[i]); break;
-			}
-		}
-		sb.append('"');
-		return sb.toString();
-	}
-	
 	public String toJson(Object value) {
-		if(converter != null) {
-			value = converter.convert(value);
-		}
-		if(value == null) {
-			return "null";
-		}
-		if(value instanceof String) {
-			String s = (String) value;
-			if(s.length() > 1 && 
-					((s.charAt(0) == '"' && s.charAt(s.length()-1) == '"') || (s.charAt(0) == '\'' && s.charAt(s.length()-1) == '\''))) {
-				return s;
-			}
-//			return "\"" + value.toString().replaceAll("\\\\", "\\\\\\\\").replaceAll("\"", "\\\\\"") + "\"";
-			return asEscapedString(value);
-		}
-		if(value instanceof Character) {
-			return "'" + value + "'";
-		}
-		if(value instanceof JsonModel) {
-			return ((JsonModel) value).toJson();
-		}
-		if(value instanceof Map<?,?>) {
-			return toJson((Map<?,?>) value);
-		}
-		if(value instanceof Iterable<?>) {
-			return toJson((Iterable<?>) value);
-		}
-		if(value instanceof byte[]) {
-			return "\"/Base64(" + new String(Base64.encode((byte[]) value)) + ")/\"";
-		}
-		if(value instanceof java.util.Date) {
-			return "\"/Date(" + ((Date) value).getTime() + ")/\"";
-		}
-		if(value.getClass().isArray()) {
-			if(value.getClass().getComponentType().isPrimitive()) {
-				Object[] oa = new Object[Array.getLength(value)];
-				for(int i = 0; i < oa.length; i++) {
-					oa[i] = Array.get(value, i);
-				}
-				return toJson(oa);
-			} else {
-				return toJson((Object[]) value);
-			}
-		}
-		if(value instanceof Number) {
-			return value.toString();
-		}
-		if(value instanceof Boolean) {
-			return value.toString();
-		}
-		if(value instanceof Class<?>) {
-			return ((Class<?>) value).getName();
-		}
-
-		return "\"" + value.toString().replaceAll("\\\\", "\\\\\\\\").replaceAll("\"", "\\\\\"") + "\"";
+		return write(value);
 	}
 	
 	public String toJson(Object[] objs) {
 		if(objs == null) {
 			return null;
 		}
+		return write(objs);
+	}
+
+	/**
+	 * Write the given object to the given writer, using this builder's converter and skip keys.
+	 */
+	public void toJson(JsonWriter writer, Object value) throws IOException {
+		writer.setConverter(converter);
+		writer.setSkip(skip);
+		writer.value(value);
+	}
+	
+	private String write(Object value) {
 		StringBuilder sb = new StringBuilder();
-		sb.append("[");
-		for(int i = 0; i < objs.length; i++) {
-			if(i != 0) sb.append(",");
-			sb.append(toJson(objs[i]));
+		try {
+			toJson(new JsonWriter(sb), value);
+		} catch(IOException e) {
+			// not thrown by a StringBuilder
+			throw new IllegalStateException(e);
 		}
-		sb.append("]");
 		return sb.toString();
 	}
-
 	
 }
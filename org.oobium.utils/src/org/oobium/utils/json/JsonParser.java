@@ -10,147 +10,146 @@
  ******************************************************************************/
 package org.oobium.utils.json;
 
-import static org.oobium.utils.CharStreamUtils.closer;
-import static org.oobium.utils.CharStreamUtils.find;
-import static org.oobium.utils.CharStreamUtils.findOutside;
-import static org.oobium.utils.CharStreamUtils.forward;
-import static org.oobium.utils.CharStreamUtils.getDouble;
-import static org.oobium.utils.CharStreamUtils.getInteger;
-import static org.oobium.utils.CharStreamUtils.getLong;
-import static org.oobium.utils.CharStreamUtils.isEqual;
-import static org.oobium.utils.CharStreamUtils.isNext;
-import static org.oobium.utils.CharStreamUtils.reverse;
-
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.oobium.utils.Base64;
+import org.oobium.utils.json.JsonReader.Event;
 
+/**
+ * Builds Maps, Lists and values from (relaxed) JSON, in a single pass over the input, using a {@link JsonReader}.
+ */
 public class JsonParser {
 
-	private class Values {
-		private Object[] values;
-		private int position;
-		Values(Object[] values) {
-			this.values = values;
-		}
-		Object next() {
-			if(position < values.length) {
-				return values[position++];
-			}
-			throw new IllegalStateException("JsonParser encountered another placeholder, but is out of values after " + position);
-		}
-	}
-	
-	private char[] ca;
 	private boolean keepOrder;
 	private boolean stringsOnly;
 	private IConverter converter;
-	private Values values;
+	private Object[] values;
 	
-	private Object getObject(int start, int end) {
-		if(ca == null || start >= end) {
-			return null;
+	private Object convert(Object object) {
+		if(converter != null) {
+			object = converter.convert(object);
 		}
-		
-		int s1 = forward(ca, start, end);
-		int s2 = reverse(ca, end-1) + 1;
-
-		if(s2 == (s1+1) && ca[s1] == '?') {
-			if(values != null) {
-				return values.next();
-			}
-			return "?";
+		return object;
+	}
+	
+	private Map<String, Object> newMap() {
+		return keepOrder ? new LinkedHashMap<String, Object>() : new HashMap<String, Object>();
+	}
+	
+	private JsonReader newReader(String json) {
+		JsonReader reader = new JsonReader(json);
+		if(values != null) {
+			reader.setValues(values);
 		}
-		
-		if(ca[s1] == '"' || ca[s1] == '\'') {
-			if((ca[s1] == '"' && ca[s2-1] == '"') || (ca[s1] == '\'' && ca[s2-1] == '\'')) {
-				if(ca[s1] == '\'') {
-					if(s2 - s1 == 3) { // this actually means they are 1 character apart: '1'
-						return new Character(ca[s1+1]);
-					} else if(s2 - s1 == 4) {
-						if(ca[s1+1] == '\\') {
-							switch(ca[s1+2]) {
-							case 'b':  return new Character('\b');
-							case 't':  return new Character('\t');
-							case 'n':  return new Character('\n');
-							case 'f':  return new Character('\f');
-							case 'r':  return new Character('\r');
-							case '"':  return new Character('\"');
-							case '\'': return new Character('\'');
-							case '\\': return new Character('\\');
-							}
-						}
-					} else if(s2 - s1 == 8) {
-						if(ca[s1+1] == '\\' && ca[s1+2] == 'u') {
-							try {
-								Integer u = Integer.parseInt(new String(ca, s1+3, 4), 16);
-								return new Character((char) u.intValue());
-							} catch(NumberFormatException e) {
-								// discard and fall through
-							}
-						}
-					}
+		return reader;
+	}
+	
+	private Object read(JsonReader reader, Event event) throws IOException {
+		switch(event) {
+		case BEGIN_OBJECT:
+			return convert(readMap(reader, newMap()));
+		case BEGIN_ARRAY:
+			return convert(readList(reader, new ArrayList<Object>()));
+		case NAME:
+			// an implied map: a:b
+			Map<String, Object> map = newMap();
+			String key = reader.getName();
+			map.put(key, readValue(reader));
+			return convert(map);
+		case VALUE:
+			return convert(reader.getValue());
+		default:
+			return null;
+		}
+	}
+	
+	/**
+	 * Read list items until the end of the current array, or of the document. Each comma separated slot holds
+	 * one item: an empty slot is a null item, and anything after the first value in a slot is skipped.
+	 */
+	private List<Object> readList(JsonReader reader, List<Object> list) throws IOException {
+		boolean filled = !list.isEmpty();
+		while(true) {
+			Event event = reader.peek();
+			for(int i = reader.getSeparators(); i > 0; i--) {
+				if(!filled) {
+					list.add(null);
 				}
-				if(isNext(ca, s1+1, new char[] {'/','D','a','t','e','('}) && ca[s2-3] == ')' && ca[s2-2] == '/') {
-					return new Date(getLong(ca, s1+7, s2-3));
-				} else if(isNext(ca, s1+1, new char[] {'/','B','a','s','e','6','4','('}) && ca[s2-3] == ')' && ca[s2-2] == '/') {
-					return Base64.decode(new String(ca, s1+9, s2-s1-12));
+				filled = false;
+			}
+			if(event == Event.END_DOCUMENT) {
+				return list;
+			}
+			if(event == Event.END_ARRAY || event == Event.END_OBJECT) {
+				reader.next();
+				return list;
+			}
+			if(filled) {
+				reader.skipValue();
+			} else {
+				if(stringsOnly) {
+					list.add(reader.nextRaw());
 				} else {
-					// remove escape characters, if any
-					StringBuilder sb = new StringBuilder(s2-s1-2);
-					for(int i = s1+1; i < s2-1; i++) {
-						if(ca[i] == '\\' && i < end && ca[i+1] == ca[s1]) {
-							continue;
-						}
-						sb.append(ca[i]);
-					}
-					return sb.toString();
+					list.add(read(reader, reader.next()));
 				}
+				filled = true;
 			}
-			return null;
-		}
-		if(isEqual(ca, s1, s2, new char[] {'n','u','l','l'})) {
-			return null;
-		}
-		if(isEqual(ca, s1, s2, new char[] {'t','r','u','e'})) {
-			return true;
-		}
-		if(isEqual(ca, s1, s2, new char[] {'f','a','l','s','e'})) {
-			return false;
 		}
-		if(ca[s1] == '[') {
-			if(ca[s2-1] == ']') {
-				return toList(s1, s2);
+	}
+
+	/**
+	 * Read map entries until the end of the current object, or of the document. Each comma separated slot holds
+	 * one entry: a name with no value before the next comma maps to null, and anything after the first entry
+	 * in a slot is skipped.
+	 */
+	private Map<String, Object> readMap(JsonReader reader, Map<String, Object> map) throws IOException {
+		boolean filled = false;
+		while(true) {
+			Event event = reader.peek();
+			if(reader.getSeparators() > 0) {
+				filled = false;
 			}
-		}
-		if(ca[s1] == '{') {
-			if(ca[s2-1] == '}') {
-				return toMap(s1, s2);
+			if(event == Event.END_DOCUMENT || event == Event.END_OBJECT || event == Event.END_ARRAY) {
+				reader.next();
+				return map;
 			}
+			if(filled) {
+				reader.skipValue();
+				continue;
+			}
+			event = reader.next();
+			switch(event) {
+			case NAME:
+				String key = reader.getName();
+				reader.peek();
+				if(reader.getSeparators() > 0) {
+					map.put(key, null);
+				} else {
+					map.put(key, stringsOnly ? reader.nextRaw() : readValue(reader));
+				}
+				break;
+			case VALUE:
+				// a key without a value
+				map.put(reader.getText(), null);
+				break;
+			default:
+				// an array or object without a key - skip it
+				read(reader, event);
+			}
+			filled = true;
 		}
-		
-		if(findOutside(ca, ',', s1, s2, '\'', '"', '{', '[') != -1) {
-			return toList(s1, s2);
-		}
-		
-		if(findOutside(ca, ':', s1, s2, '\'', '"', '{', '[') != -1) {
-			return toMap(s1, s2);
-		}
-		
-		Object obj = getDouble(ca, s1, s2);
-		if(obj == null) {
-			obj = getInteger(ca, s1, s2);
-		}
-		if(obj == null) {
-			obj = getLong(ca, s1, s2);
+	}
+	
+	private Object readValue(JsonReader reader) throws IOException {
+		Event event = reader.peek();
+		if(event == Event.END_DOCUMENT || event == Event.END_ARRAY || event == Event.END_OBJECT) {
+			return null;
 		}
-
-		return (obj != null) ? obj : new String(ca, s1, s2-s1);
+		return read(reader, reader.next());
 	}
 	
 	public void setConverter(IConverter converter) {
@@ -162,36 +161,42 @@ public class JsonParser {
 	}
 	
 	public void setValues(Object...values) {
-		this.values = new Values(values);
+		this.values = values;
 	}
 	
 	@SuppressWarnings("unchecked")
 	public Map<String, String> toStringMap(String json) {
-		if(json == null || json.length() == 0) {
-			return keepOrder ? new LinkedHashMap<String, String>() : new HashMap<String, String>();
-		}
 		stringsOnly = true;
-		int len = setChars(json);
-		return (Map<String, String>) toMap(0, len);
+		return (Map<String, String>) (Map<String, ?>) toMap(json);
 	}
 
 	@SuppressWarnings("unchecked")
 	public List<String> toStringList(String json) {
-		if(json == null || json.length() == 0) {
-			return new ArrayList<String>(0);
-		}
 		stringsOnly = true;
-		int len = setChars(json);
-		return (List<String>) toList(0, len);
+		return (List<String>) (List<?>) toList(json);
 	}
 	
-	@SuppressWarnings("unchecked")
 	public List<Object> toList(String json) {
 		if(json == null || json.length() == 0) {
 			return new ArrayList<Object>(0);
 		}
-		int len = setChars(json);
-		return (List<Object>) toList(0, len);
+		try {
+			return toList(newReader(json));
+		} catch(IOException e) {
+			// not thrown when reading from a String
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Read the next array from the given reader; if the next event is not the beginning of an array then
+	 * the remaining values of the document are read as the items of an (implied) list.
+	 */
+	public List<Object> toList(JsonReader reader) throws IOException {
+		if(reader.peek() == Event.BEGIN_ARRAY) {
+			reader.next();
+		}
+		return readList(reader, new ArrayList<Object>());
 	}
 	
 	/**
@@ -200,11 +205,7 @@ public class JsonParser {
 	 */
 	@SuppressWarnings("unchecked")
 	public <T> List<T> toList(String json, Class<T> elementType) {
-		if(json == null || json.length() == 0) {
-			return new ArrayList<T>(0);
-		}
-		int len = setChars(json);
-		List<?> list = toList(0, len);
+		List<?> list = toList(json);
 		for(Object element : list) {
 			if(element != null && !elementType.isAssignableFrom(element.getClass())) {
 				throw new IllegalStateException("cannot cast " + element.getClass() + " to type " + elementType);
@@ -213,280 +214,70 @@ public class JsonParser {
 		return (List<T>) list;
 	}
 	
-	private List<?> toList(int start, int end) {
-		int s = forward(ca, start, end);
-		
-		if(s == -1) {
-			// empty string - exit quick
-			return new ArrayList<Object>(0);
-		}
-
-		int e = end;
-		
-		List<Object> list = new ArrayList<Object>();
-
-		// container found, try again
-		if(ca[s] == '(') {
-			s = forward(ca, s+1, end);
-			e = reverse(ca, ')', end-1);
-		}
-		
-		if(ca[s] == '[') {
-			s = forward(ca, s+1, e);
-			e = reverse(ca, ']', e-1);
-		}
-		e = reverse(ca, e - 1) + 1;
-
-		int s1 = s;
-		int s2 = s;
-
-		while (s1 > -1 && s2 < e) {
-			switch(ca[s1]) {
-			case '{':
-			case '[':
-			case '"':
-			case '\'':
-				s2 = closer(ca, s1, e) + 1;
-				if(s2 == 0) {
-					list.add(getEmptyObject(ca[s1]));
-					s1++;
-					if(s1 >= ca.length) {
-						return list;
-					}
-					s2 = findNext(s1+1, e);
-				}
-				break;
-			default:
-				s2 = findNext(s1, e);
-			}
-			if(stringsOnly) {
-				if(ca[s1] == '\'' || ca[s1] == '"') {
-					s1++;
-				}
-				if(ca[s2-1] == '\'' || ca[s2-1] == '"') {
-					s2--;
-				}
-				list.add(new String(ca, s1, s2-s1));
-			} else {
-				list.add(toObject(s1, s2));
-			}
-			s1 = find(ca, ',', s2, e);
-			if (s1 == -1) {
-				break;
-			} else {
-				s1 = forward(ca, s1+1, e);
-			}
-		}
-
-		return list;
-	}
-
-	private int findNext(int start, int end) {
-		int s = find(ca, ',', start, end);
-		if (s == -1) {
-			s = end;
-		} else {
-			s = reverse(ca, s-1) + 1;
-		}
-		return s;
-	}
-	
-	private int setChars(String json) {
-		ca = json.toCharArray();
-		int len = ca.length;
-		for(int i = 1; i < len; i++) {
-			switch(ca[i]) {
-			case '\'':
-				i = closer(ca, i);
-				if(i == -1) i = len;
-				break;
-			case '"':
-				i = closer(ca, i);
-				if(i == -1) i = len;
-				break;
-			case '/':
-				if(ca[i-1] == '/') {
-					int s1 = i - 1;
-					int s2 = i + 1;
-					for( ; s2 < len; s2++) {
-						if(ca[s2] == '\n') break;
-					}
-					s2++;
-					System.arraycopy(ca, s2, ca, s1, len-s2);
-					len -= (s2-s1);
-					continue;
-				}
-				break;
-			case '*':
-				if(ca[i-1] == '/') {
-					int s1 = i - 1;
-					int s2 = i + 1;
-					for( ; s2 < len; s2++) {
-						if(ca[s2] == '/' && ca[s2-1] == '*') break;
-					}
-					s2++;
-					System.arraycopy(ca, s2, ca, s1, len-s2);
-					len -= (s2-s1);
-					continue;
-				}
-			}
-		}
-		return len;
-	}
-	
-	@SuppressWarnings("unchecked")
 	public Map<String, Object> toMap(String json) {
 		if(json == null || json.length() == 0) {
 			return keepOrder ? new LinkedHashMap<String, Object>(0) : new HashMap<String, Object>(0);
 		}
-		int len = setChars(json);
-		return (Map<String, Object>) toMap(0, len);
-	}
-
-	private Object getEmptyObject(char c) {
-		switch(c) {
-		case '[': return new ArrayList<Object>(0);
-		case '{': return new HashMap<String, Object>(0);
-		case '\'':
-		case '"': return "";
-		default:  return null;
+		try {
+			return toMap(newReader(json));
+		} catch(IOException e) {
+			// not thrown when reading from a String
+			throw new IllegalStateException(e);
 		}
 	}
 	
-	private Object toObject(char c, int s1, int s2) {
-		switch(c) {
-		case '[': return toList(s1, s2);
-		case '{': return toMap(s1, s2);
-		case '\'':
-		case '"': return toObject(s1, s2);
-		default:  return toObject(s1, s2);
+	/**
+	 * Read the next object from the given reader; if the next event is not the beginning of an object then
+	 * the remaining names and values of the document are read as the entries of an (implied) map.
+	 */
+	public Map<String, Object> toMap(JsonReader reader) throws IOException {
+		if(reader.peek() == Event.BEGIN_OBJECT) {
+			reader.next();
 		}
+		return readMap(reader, newMap());
 	}
 	
-	private Map<String, ?> toMap(int start, int end) {
-		int s = forward(ca, start, end);
-		
-		if(s == -1) {
-			// empty string - exit quick
-			return keepOrder ? new LinkedHashMap<String, Object>(0) : new HashMap<String, Object>(0);
-		}
-
-		int e = end;
-		
-		// container found, try again
-		if(ca[s] == '(') {
-			s = forward(ca, s+1, end);
-			e = reverse(ca, ')', end-1);
-		}
-		
-		int s1;
-		if(ca[s] == '{') {
-			s1 = forward(ca, s+1, e);
-			e = reverse(ca, '}', e-1);
-		} else {
-			s1 = s;
-			e = reverse(ca, e-1) + 1;
-		}
-
-		if(s1 < -1 || e < -1) {
+	public Object toObject(String json) {
+		if(json == null || json.length() == 0) {
 			return null;
 		}
-		
-		Map<String, Object> map = keepOrder ? new LinkedHashMap<String, Object>() : new HashMap<String, Object>();
-		
-		s = findOutside(ca, ':', s1, e, '\'', '"');
-		if(s == -1) {
-			if(e > s1) {
-				map.put(new String(ca, s1, e-s1), null);
+		try {
+			JsonReader reader = newReader(json);
+			if(reader.peek() != Event.END_DOCUMENT && reader.getSeparators() > 0) {
+				// starts with an empty slot: an implied list
+				return convert(readList(reader, new ArrayList<Object>()));
 			}
-		} else {
-			int s2 = reverse(ca, s-1);
-			while(s1 > -1 && s1 <= s2 && s2 < e) {
-				if(ca[s1] == '\'' || ca[s1] == '"') {
-					s1 = forward(ca, s1+1, s2);
-				}
-				if(ca[s2] == '\'' || ca[s2] == '"') {
-					s2 = reverse(ca, s2-1);
-				}
-				
-				String key = new String(ca, s1, s2-s1+1);
-				Object value = null;
-	
-				s1 = forward(ca, s+1, e);
-				if(s1 == -1) {
-					s2 = e;
-				} else {
-					if(stringsOnly) {
-						s2 = findOutside(ca, ',', s1, e, '\'', '"', '[', '{');
-						if(s2 < 0 || s2 >= e) {
-							s2 = reverse(ca, e-1);
-						} else {
-							s2--;
-						}
-						if(ca[s1] == '\'' || ca[s1] == '"') {
-							s1++;
-						}
-						if(ca[s2] == '\'' || ca[s2] == '"') {
-							s2--;
-						}
-						value = new String(ca, s1, s2-s1+1);
-					} else {
-						switch(ca[s1]) {
-						case '[':
-						case '{':
-						case '\'':
-						case '"':
-							s2 = closer(ca, s1, e) + 1;
-							if(s2 == 0) {
-								s2 = s1 + 1;
-								value = getEmptyObject(ca[s1]);
-							} else {
-								value = toObject(ca[s1], s1, s2);
-							}
-							break;
-						default:
-							s2 = find(ca, ',', s1, e);
-							if(s2 < 0 || s2 >= e) {
-								s2 = reverse(ca, e-1) + 1;
-							}
-							value = toObject(s1, s2);
-							break;
-						}
+			Event event = reader.next();
+			if(event == Event.VALUE && reader.isQuoted()) {
+				int next = reader.peekChar();
+				if(next != -1 && next != ',') {
+					// quotes that were not escaped, such as 'hello's' - the whole input is a single String
+					String s = json.trim();
+					char c = s.charAt(0);
+					if(s.length() > 1 && s.charAt(s.length()-1) == c) {
+						return convert(JsonReader.toValue(c, s.substring(1, s.length()-1)));
 					}
 				}
-				
-				map.put(key, value);
-		
-				s1 = find(ca, ',', s2, e);
-				if(s1 == -1) {
-					break;
-				}
-				s1 = forward(ca, s1+1, e);
-				s = findOutside(ca, ':', s1, e, '\'', '"');
-				s2 = reverse(ca, s-1);
 			}
+			Object object = read(reader, event);
+			if(reader.peek() == Event.END_DOCUMENT) {
+				return object;
+			}
+			// more than one value: an implied list
+			List<Object> list = new ArrayList<Object>();
+			list.add(object);
+			return convert(readList(reader, list));
+		} catch(IOException e) {
+			// not thrown when reading from a String
+			throw new IllegalStateException(e);
 		}
-		
-		return map;
 	}
 	
-	private Object toObject(int start, int end) {
-		Object object = getObject(start, end);
-		if(converter != null) {
-			object = converter.convert(object);
-		}
-		if(stringsOnly) {
-			return String.valueOf(object);
-		}
-		return object;
-	}
-
-	public Object toObject(String json) {
-		if(json == null || json.length() == 0) {
-			return null;
-		}
-		int len = setChars(json);
-		return toObject(0, len);
+	/**
+	 * Read the next value (which may be an array or an object) from the given reader.
+	 */
+	public Object toObject(JsonReader reader) throws IOException {
+		return readValue(reader);
 	}
 	
 }
@@ -0,0 +1,560 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.utils.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Date;
+
+import org.oobium.utils.Base64;
+
+/**
+ * A single pass, pull style, tokenizer for the (relaxed) JSON understood by {@link JsonParser}: keys and
+ * Strings may be unquoted or single quoted, separators and the enclosing braces or brackets may be
+ * left out, comments are skipped, a document may be wrapped in parentheses - "({...});" - and the
+ * <code>?</code> placeholder and the <code>"/Date(...)/"</code> and <code>"/Base64(...)/"</code> extensions
+ * are converted to values.
+ * <p>Large inputs can be read from a {@link Reader} one {@link Event} at a time, without ever holding more
+ * than the current token in memory:</p>
+ * <pre>
+ * JsonReader reader = new JsonReader(in);
+ * reader.next(); // BEGIN_ARRAY
+ * while(reader.peek() == Event.BEGIN_OBJECT) {
+ *   Map&lt;String, Object&gt; map = parser.toMap(reader);
+ * }
+ * </pre>
+ * <p>A scalar followed by a colon is reported as a {@link Event#NAME}, whether or not it is inside of an object;
+ * otherwise it is a {@link Event#VALUE}. Commas are optional and are skipped, but are counted (see
+ * {@link #getSeparators()}) so that empty slots, such as the middle one in <code>[1,,2]</code>, can be found.</p>
+ */
+public class JsonReader {
+
+	public enum Event { BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, VALUE, END_DOCUMENT }
+
+	private static class Values {
+		private Object[] values;
+		private int position;
+		Values(Object[] values) {
+			this.values = values;
+		}
+		Object next() {
+			if(position < values.length) {
+				return values[position++];
+			}
+			throw new IllegalStateException("JsonReader encountered another placeholder, but is out of values after " + position);
+		}
+	}
+
+	private static boolean isEnd(String s, int start, int end, String prefix) {
+		return end - start >= prefix.length() + 2 && s.startsWith(prefix, start) && s.charAt(end-2) == ')' && s.charAt(end-1) == '/';
+	}
+
+	private static Object toNumber(String s) {
+		int len = s.length();
+		boolean decimal = false;
+		for(int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if(c == '-') {
+				if(i != 0) {
+					return null;
+				}
+			} else if(c == '.') {
+				if(decimal) {
+					return null;
+				}
+				decimal = true;
+			} else if(c < '0' || c > '9') {
+				return null;
+			}
+		}
+		try {
+			if(decimal) {
+				return Double.valueOf(s);
+			}
+			if(len < 10) {
+				return Integer.valueOf(s);
+			}
+			long l = Long.parseLong(s);
+			if(l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+				return Integer.valueOf((int) l);
+			}
+			return Long.valueOf(l);
+		} catch(NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Convert the raw contents of a quoted String (without the quotes) into its value.
+	 */
+	static Object toValue(char quote, String raw) {
+		int len = raw.length();
+		if(quote == '\'') {
+			if(len == 1) {
+				return Character.valueOf(raw.charAt(0));
+			}
+			if(len == 2 && raw.charAt(0) == '\\') {
+				switch(raw.charAt(1)) {
+				case 'b':  return Character.valueOf('\b');
+				case 't':  return Character.valueOf('\t');
+				case 'n':  return Character.valueOf('\n');
+				case 'f':  return Character.valueOf('\f');
+				case 'r':  return Character.valueOf('\r');
+				case '"':  return Character.valueOf('\"');
+				case '\'': return Character.valueOf('\'');
+				case '\\': return Character.valueOf('\\');
+				}
+			}
+			if(len == 6 && raw.charAt(0) == '\\' && raw.charAt(1) == 'u') {
+				try {
+					return Character.valueOf((char) Integer.parseInt(raw.substring(2), 16));
+				} catch(NumberFormatException e) {
+					// discard and fall through
+				}
+			}
+		}
+		if(isEnd(raw, 0, len, "/Date(")) {
+			try {
+				return new Date(Long.parseLong(raw.substring(6, len-2)));
+			} catch(NumberFormatException e) {
+				// discard and fall through
+			}
+		}
+		if(isEnd(raw, 0, len, "/Base64(")) {
+			return Base64.decode(raw.substring(8, len-2));
+		}
+		// remove escape characters, if any
+		int ix = raw.indexOf('\\');
+		if(ix == -1) {
+			return raw;
+		}
+		StringBuilder sb = new StringBuilder(len);
+		sb.append(raw, 0, ix);
+		for(int i = ix; i < len; i++) {
+			char c = raw.charAt(i);
+			if(c == '\\' && i+1 < len) {
+				char next = raw.charAt(i+1);
+				if(next == quote) {
+					continue;
+				}
+				if(next == '\\') {
+					sb.append(c).append(next); // an escaped backslash: it does not escape what follows it
+					i++;
+					continue;
+				}
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+
+	private final Reader in;
+	private char[] buf;
+	private int pos;
+	private int limit;
+
+	private final StringBuilder sb = new StringBuilder();
+	private Values values;
+	private int depth;
+	private boolean started;
+	private boolean wrapped;
+	private boolean done;
+
+	private Event event;
+	private char quote;
+	private String text;
+	private Object value;
+	private boolean valueSet;
+	private int separators;
+
+	public JsonReader(Reader in) {
+		this.in = in;
+		this.buf = new char[8192];
+	}
+
+	public JsonReader(String json) {
+		this.in = null;
+		this.buf = (json == null) ? new char[0] : json.toCharArray();
+		this.limit = buf.length;
+	}
+
+	public void close() throws IOException {
+		done = true;
+		if(in != null) {
+			in.close();
+		}
+	}
+
+	/**
+	 * Make sure that there are at least n characters in the buffer after the current position.
+	 * @return false if the end of the input was reached first
+	 */
+	private boolean fill(int n) throws IOException {
+		if(limit - pos >= n) {
+			return true;
+		}
+		if(in == null) {
+			return false;
+		}
+		if(pos > 0) {
+			System.arraycopy(buf, pos, buf, 0, limit - pos);
+			limit -= pos;
+			pos = 0;
+		}
+		while(limit < n) {
+			if(limit == buf.length) {
+				char[] tmp = new char[buf.length * 2];
+				System.arraycopy(buf, 0, tmp, 0, limit);
+				buf = tmp;
+			}
+			int count = in.read(buf, limit, buf.length - limit);
+			if(count == -1) {
+				return false;
+			}
+			limit += count;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of arrays and objects that have been opened but not yet closed
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return the current event; null if {@link #next()} has not yet been called
+	 */
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return the name of the current {@link Event#NAME}; quotes, if any, and surrounding whitespace are removed
+	 */
+	public String getName() {
+		return (event == Event.NAME) ? ((quote != 0) ? text.trim() : text) : null;
+	}
+
+	/**
+	 * @return the number of commas skipped since the current event was read (by {@link #peek()}, for example)
+	 */
+	public int getSeparators() {
+		return separators;
+	}
+
+	/**
+	 * @return the text of the current NAME or VALUE as it is in the input, less its quotes (if any)
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return the value of the current NAME or VALUE: a String, Character, Integer, Long, Double,
+	 * Boolean, Date, byte[], the next placeholder value, or null
+	 */
+	public Object getValue() {
+		if(!valueSet) {
+			value = toValue();
+			valueSet = true;
+		}
+		return value;
+	}
+
+	private boolean isCommentStart(int offset) throws IOException {
+		if(fill(offset + 2) && buf[pos+offset] == '/') {
+			char c = buf[pos+offset+1];
+			return c == '/' || c == '*';
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the current NAME or VALUE was quoted
+	 */
+	public boolean isQuoted() {
+		return quote != 0;
+	}
+
+	/**
+	 * @return the next event
+	 */
+	public Event next() throws IOException {
+		quote = 0;
+		text = null;
+		value = null;
+		valueSet = false;
+
+		int c = skip(true);
+		separators = 0;
+		switch(c) {
+		case -1:
+			return event = Event.END_DOCUMENT;
+		case '{':
+			pos++;
+			depth++;
+			return event = Event.BEGIN_OBJECT;
+		case '[':
+			pos++;
+			depth++;
+			return event = Event.BEGIN_ARRAY;
+		case '}':
+			pos++;
+			if(depth > 0) depth--;
+			return event = Event.END_OBJECT;
+		case ']':
+			pos++;
+			if(depth > 0) depth--;
+			return event = Event.END_ARRAY;
+		case '"':
+		case '\'':
+			readString((char) c);
+			break;
+		default:
+			readToken(false);
+		}
+
+		if(skip(false) == ':') {
+			pos++;
+			return event = Event.NAME;
+		}
+		return event = Event.VALUE;
+	}
+
+	/**
+	 * Read the next value as raw text, exactly as it is in the input (less comments), without converting it.
+	 * Arrays and objects are returned whole, including their brackets or braces; quoted Strings are returned
+	 * without their quotes, and without removing any escape characters.
+	 * @return the text of the next value; or null if the next event is not a value, array or object (in which
+	 * case it is <b>not</b> consumed)
+	 */
+	public String nextRaw() throws IOException {
+		Event peek = peek();
+		if(peek != Event.VALUE && peek != Event.BEGIN_ARRAY && peek != Event.BEGIN_OBJECT) {
+			return null;
+		}
+		separators = 0;
+		quote = 0;
+		value = null;
+		valueSet = false;
+		event = Event.VALUE;
+		char c = buf[pos];
+		if(c == '"' || c == '\'') {
+			readString(c);
+			return text;
+		}
+		if(c != '{' && c != '[') {
+			readToken(true);
+			return text;
+		}
+		StringBuilder raw = new StringBuilder();
+		int level = 0;
+		while(fill(1)) {
+			c = buf[pos];
+			if(c == '"' || c == '\'') {
+				readString(c);
+				raw.append(c);
+				if(quote != 0) {
+					raw.append(text).append(c);
+				}
+				continue;
+			}
+			if(c == '/' && isCommentStart(0)) {
+				skipComment();
+				continue;
+			}
+			pos++;
+			raw.append(c);
+			if(c == '{' || c == '[') {
+				level++;
+			} else if(c == '}' || c == ']') {
+				if(--level == 0) {
+					break;
+				}
+			}
+		}
+		quote = 0;
+		valueSet = false;
+		return text = raw.toString();
+	}
+
+	/**
+	 * Peek at the type of the next event without consuming it. Scalars are always reported as a VALUE
+	 * here, even though they may turn out to be a NAME.
+	 */
+	public Event peek() throws IOException {
+		switch(skip(true)) {
+		case -1:  return Event.END_DOCUMENT;
+		case '{': return Event.BEGIN_OBJECT;
+		case '[': return Event.BEGIN_ARRAY;
+		case '}': return Event.END_OBJECT;
+		case ']': return Event.END_ARRAY;
+		default:  return Event.VALUE;
+		}
+	}
+
+	/**
+	 * @return the next character that is not whitespace or part of a comment, without consuming it; or -1 at the end of the document
+	 */
+	int peekChar() throws IOException {
+		return skip(false);
+	}
+
+	private void readString(char q) throws IOException {
+		int start = ++pos;
+		sb.setLength(0);
+		boolean escaped = false; // the previous character was an unescaped backslash
+		while(true) {
+			if(pos == limit) {
+				if(in == null) {
+					break;
+				}
+				sb.append(buf, start, pos - start);
+				if(!fill(1)) {
+					break;
+				}
+				start = pos;
+			}
+			char c = buf[pos++];
+			if(c == q && !escaped) {
+				sb.append(buf, start, pos - start - 1);
+				quote = q;
+				text = sb.toString();
+				return;
+			}
+			escaped = (c == '\\') && !escaped;
+		}
+		// not terminated - the value is an empty String, and the input continues after the opening quote, as if it were a separator
+		separators = 1;
+		if(in == null) {
+			pos = start;
+		} else {
+			char[] tmp = new char[sb.length()];
+			sb.getChars(0, tmp.length, tmp, 0);
+			buf = tmp;
+			pos = 0;
+			limit = tmp.length;
+		}
+		quote = 0;
+		text = "";
+		value = "";
+		valueSet = true;
+	}
+
+	private void readToken(boolean raw) throws IOException {
+		sb.setLength(0);
+		int end = 0;
+		while(fill(1)) {
+			char c = buf[pos];
+			if(c == ',' || c == ']' || c == '}' || (c == ':' && !raw) || (c == ')' && wrapped && depth == 0)) {
+				break;
+			}
+			if(c == '/' && isCommentStart(0)) {
+				break;
+			}
+			pos++;
+			sb.append(c);
+			if(!Character.isWhitespace(c)) {
+				end = sb.length();
+			}
+		}
+		sb.setLength(end);
+		text = sb.toString();
+	}
+
+	public void setValues(Object...values) {
+		this.values = new Values(values);
+	}
+
+	/**
+	 * Skip whitespace and comments and, if separators is true, separators (commas, and stray colons).
+	 * @return the next character, or -1 if the end of the document has been reached
+	 */
+	private int skip(boolean separators) throws IOException {
+		if(done) {
+			return -1;
+		}
+		while(fill(1)) {
+			char c = buf[pos];
+			if(Character.isWhitespace(c)) {
+				pos++;
+			} else if(c == '/' && isCommentStart(0)) {
+				skipComment();
+			} else if(separators && (c == ',' || c == ':' || c == ';')) {
+				if(c == ',') {
+					this.separators++;
+				}
+				pos++;
+			} else if(!started && c == '(') {
+				started = true;
+				wrapped = true;
+				pos++;
+			} else if(c == ')' && wrapped && depth == 0) {
+				done = true;
+				return -1;
+			} else {
+				started = true;
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	private void skipComment() throws IOException {
+		boolean line = (buf[pos+1] == '/');
+		pos += 2;
+		while(fill(1)) {
+			char c = buf[pos++];
+			if(line) {
+				if(c == '\n') {
+					return;
+				}
+			} else if(c == '*' && fill(1) && buf[pos] == '/') {
+				pos++;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Skip the next value, array or object.
+	 */
+	public void skipValue() throws IOException {
+		nextRaw();
+	}
+
+	private Object toValue() {
+		if(event != Event.VALUE && event != Event.NAME) {
+			return null;
+		}
+		if(quote != 0) {
+			return toValue(quote, text);
+		}
+		if("null".equals(text)) {
+			return null;
+		}
+		if("true".equals(text)) {
+			return Boolean.TRUE;
+		}
+		if("false".equals(text)) {
+			return Boolean.FALSE;
+		}
+		if("?".equals(text)) {
+			return (values != null) ? values.next() : "?";
+		}
+		Object number = toNumber(text);
+		return (number != null) ? number : text;
+	}
+
+}
@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.utils.json;
+
+import java.io.IOException;
+
+/**
+ * Implemented by objects that can write themselves to a {@link JsonWriter} directly, rather than
+ * first being converted to a JSON String which is then copied into the enclosing document.
+ */
+public interface JsonWritable {
+
+	/**
+	 * Write this object, as a single JSON value, to the given writer.
+	 */
+	public abstract void writeJson(JsonWriter writer) throws IOException;
+
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oobium, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jeremy Dowdall <jeremy@oobium.com> - initial API and implementation
+ ******************************************************************************/
+package org.oobium.utils.json;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.oobium.utils.Base64;
+
+/**
+ * Writes JSON directly to an {@link Appendable} (a StringBuilder, a Writer over a stream or a buffer, etc.)
+ * as it goes, so that nested values are never first converted to Strings of their own.
+ * <p>Values are converted the same way as they are by {@link JsonBuilder}, which itself uses a JsonWriter.
+ * Objects that implement {@link JsonWritable} write themselves to the writer.</p>
+ * <p>Structure is written with {@link #beginObject()}, {@link #name(String)}, {@link #value(Object)},
+ * {@link #endObject()}, {@link #beginArray()} and {@link #endArray()}; separators are added as needed.</p>
+ */
+public class JsonWriter {
+
+	private final Appendable out;
+	private IConverter converter;
+	private String[] skip;
+	private boolean format;
+
+	private int depth;
+	private boolean[] first = new boolean[16];
+	private boolean named;
+
+	public JsonWriter(Appendable out) {
+		this.out = out;
+	}
+
+	public JsonWriter beginArray() throws IOException {
+		return open('[');
+	}
+
+	public JsonWriter beginObject() throws IOException {
+		return open('{');
+	}
+
+	private JsonWriter close(char c) throws IOException {
+		if(depth == 0) {
+			throw new IllegalStateException("there is no open array or object");
+		}
+		depth--;
+		if(format) {
+			newline();
+		}
+		out.append(c);
+		return this;
+	}
+
+	public JsonWriter endArray() throws IOException {
+		return close(']');
+	}
+
+	public JsonWriter endObject() throws IOException {
+		return close('}');
+	}
+
+	public JsonWriter flush() throws IOException {
+		if(out instanceof Flushable) {
+			((Flushable) out).flush();
+		}
+		return this;
+	}
+
+	public Appendable getOut() {
+		return out;
+	}
+
+	/**
+	 * @return the number of arrays and objects that have been opened but not yet closed
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	private boolean isSkipped(String key) {
+		if(skip != null) {
+			for(int i = 0; i < skip.length; i++) {
+				if(key.equals(skip[i])) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Write the name of the next field of the current object. It must be followed by exactly one value
+	 * (or array or object).
+	 */
+	public JsonWriter name(String name) throws IOException {
+		separate();
+		out.append('"').append(name).append('"').append(':');
+		if(format) {
+			out.append(' ');
+		}
+		named = true;
+		return this;
+	}
+
+	private void newline() throws IOException {
+		out.append('\n');
+		for(int i = 0; i < depth; i++) {
+			out.append('\t');
+		}
+	}
+
+	private JsonWriter open(char c) throws IOException {
+		separate();
+		out.append(c);
+		depth++;
+		if(depth == first.length) {
+			first = Arrays.copyOf(first, depth * 2);
+		}
+		first[depth] = true;
+		if(format) {
+			newline();
+		}
+		return this;
+	}
+
+	/**
+	 * Write the given String, which must already be valid JSON, as the next value.
+	 */
+	public JsonWriter rawValue(CharSequence json) throws IOException {
+		separate();
+		out.append(json);
+		return this;
+	}
+
+	private void separate() throws IOException {
+		if(named) {
+			named = false;
+		} else if(depth > 0) {
+			if(first[depth]) {
+				first[depth] = false;
+			} else {
+				out.append(',');
+				if(format) {
+					newline();
+				}
+			}
+		}
+	}
+
+	public void setConverter(IConverter converter) {
+		this.converter = converter;
+	}
+
+	/**
+	 * Set whether or not the output is formatted for readability - the equivalent of {@link JsonUtils#format(String)}.
+	 */
+	public void setFormat(boolean format) {
+		this.format = format;
+	}
+
+	/**
+	 * Set the keys of Map entries whose String values are already in JSON format and are to be written as they are.
+	 */
+	public void setSkip(String...skip) {
+		this.skip = skip;
+	}
+
+	/**
+	 * Write the given object as the next value.
+	 */
+	public JsonWriter value(Object value) throws IOException {
+		if(converter != null) {
+			value = converter.convert(value);
+		}
+		if(value == null) {
+			return rawValue("null");
+		}
+		if(value instanceof String) {
+			String s = (String) value;
+			if(s.length() > 1 &&
+					((s.charAt(0) == '"' && s.charAt(s.length()-1) == '"') || (s.charAt(0) == '\'' && s.charAt(s.length()-1) == '\''))) {
+				return rawValue(s);
+			}
+			separate();
+			writeEscapedString(s);
+			return this;
+		}
+		if(value instanceof Character) {
+			separate();
+			out.append('\'').append((Character) value).append('\'');
+			return this;
+		}
+		if(value instanceof JsonWritable) {
+			separate();
+			named = true; // the value written by the object itself must not be separated again
+			((JsonWritable) value).writeJson(this);
+			return this;
+		}
+		if(value instanceof JsonModel) {
+			return rawValue(((JsonModel) value).toJson());
+		}
+		if(value instanceof Map<?,?>) {
+			return writeMap((Map<?,?>) value);
+		}
+		if(value instanceof Iterable<?>) {
+			return writeIterable((Iterable<?>) value);
+		}
+		if(value instanceof byte[]) {
+			separate();
+			out.append("\"/Base64(").append(new String(Base64.encode((byte[]) value))).append(")/\"");
+			return this;
+		}
+		if(value instanceof Date) {
+			separate();
+			out.append("\"/Date(").append(String.valueOf(((Date) value).getTime())).append(")/\"");
+			return this;
+		}
+		if(value.getClass().isArray()) {
+			beginArray();
+			if(value.getClass().getComponentType().isPrimitive()) {
+				for(int i = 0, len = Array.getLength(value); i < len; i++) {
+					value(Array.get(value, i));
+				}
+			} else {
+				for(Object o : (Object[]) value) {
+					value(o);
+				}
+			}
+			return endArray();
+		}
+		if(value instanceof Number || value instanceof Boolean) {
+			return rawValue(value.toString());
+		}
+		if(value instanceof Class<?>) {
+			return rawValue(((Class<?>) value).getName());
+		}
+
+		separate();
+		String s = value.toString();
+		out.append('"');
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c == '\\' || c == '"') {
+				out.append('\\');
+			}
+			out.append(c);
+		}
+		out.append('"');
+		return this;
+	}
+
+	private void writeEscapedString(String s) throws IOException {
+		out.append('"');
+		int run = 0;
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			String escaped;
+			switch(c) {
+			case '\\':	escaped = (i == 0) ? "\\\\" : ""; break; // same as the original JsonBuilder: only a leading backslash is kept
+			case '"':	escaped = "\\\""; break;
+			case '\t':	escaped = "\\t"; break;
+			case '\n':  escaped = "\\n"; break;
+			default:	continue;
+			}
+			out.append(s, run, i).append(escaped);
+			run = i + 1;
+		}
+		out.append(s, run, s.length()).append('"');
+	}
+
+	private JsonWriter writeIterable(Iterable<?> objs) throws IOException {
+		beginArray();
+		for(Iterator<?> iter = objs.iterator(); iter.hasNext(); ) {
+			value(iter.next());
+		}
+		return endArray();
+	}
+
+	private JsonWriter writeMap(Map<?,?> map) throws IOException {
+		beginObject();
+		for(Entry<?,?> entry : map.entrySet()) {
+			String key = String.valueOf(entry.getKey());
+			Object val = entry.getValue();
+			name(key);
+			if(val instanceof String && isSkipped(key)) {
+				rawValue((String) val);
+			} else {
+				value(val);
+			}
+		}
+		return endObject();
+	}
+
+}